@@ -0,0 +1,396 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import com.sun.jna.platform.win32.Kernel32;
+import com.sun.jna.platform.win32.Ole32;
+import com.sun.jna.platform.win32.User32;
+import com.sun.jna.platform.win32.WinDef;
+import com.sun.jna.platform.win32.WinUser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs automation calls on a single thread that owns its own UIAutomation instance.
+ *
+ * UIAutomation initialises COM as single threaded on whichever thread creates it, so
+ * strictly it (and every element and pattern it returns) should only be used from that
+ * thread. The dispatcher starts a thread that does this, and pumps messages, and other
+ * threads submit work to it, getting the results back as futures. Submitting never
+ * blocks; the work is added to a lock-free queue, and the thread is only woken if it is
+ * not already going to look at the queue, so work submitted in a burst is run together.
+ *
+ * Elements returned by a task belong to the dispatcher's thread too, so they should only
+ * be used by later tasks. Futures are completed on the dispatcher's thread, so anything
+ * slow that depends on them should use the ...Async methods of CompletableFuture.
+ */
+public final class AutomationDispatcher implements AutoCloseable {
+
+    /**
+     * Work to be run on the dispatcher's thread
+     *
+     * @param <T> The type of the result
+     */
+    public interface Task<T> {
+        /**
+         * Runs the work
+         *
+         * @param automation The dispatcher's automation instance
+         * @return The result
+         * @throws Exception Failed to do the work, which fails the future
+         */
+        T run(UIAutomation automation) throws Exception;
+    }
+
+    /**
+     * How the dispatcher's thread joins COM and waits for work
+     */
+    interface Apartment {
+        /**
+         * Called on the dispatcher's thread before anything else
+         */
+        void enter();
+
+        /**
+         * Waits until woken, handling anything else that arrives in the meantime
+         *
+         * @return False when the apartment has been asked to quit
+         */
+        boolean await();
+
+        /**
+         * Wakes the dispatcher's thread, from any thread
+         */
+        void wake();
+
+        /**
+         * Asks the dispatcher's thread to stop, from any thread
+         */
+        void quit();
+
+        /**
+         * Called on the dispatcher's thread after everything else
+         */
+        void leave();
+    }
+
+    /**
+     * A single threaded apartment, with a message pump
+     */
+    private static final class MessagePump implements Apartment {
+        /** Posted to the thread to wake it (WM_APP) */
+        private static final int WM_WAKE = 0x8000;
+
+        private static final int PM_NOREMOVE = 0;
+
+        private volatile int threadId;
+
+        public void enter() {
+            // COM is initialised by the automation instance as it is created, which leave balances
+
+            // Make sure the thread has a message queue before anything is posted to it
+            User32.INSTANCE.PeekMessage(new WinUser.MSG(), null, WinUser.WM_USER, WinUser.WM_USER, PM_NOREMOVE);
+
+            this.threadId = Kernel32.INSTANCE.GetCurrentThreadId();
+        }
+
+        public boolean await() {
+            WinUser.MSG msg = new WinUser.MSG();
+
+            while (true) {
+                int result = User32.INSTANCE.GetMessage(msg, null, 0, 0);
+
+                if (result == 0 || result == -1) {
+                    return false;
+                }
+
+                if (msg.hWnd == null && msg.message == WM_WAKE) {
+                    return true;
+                }
+
+                User32.INSTANCE.TranslateMessage(msg);
+                User32.INSTANCE.DispatchMessage(msg);
+            }
+        }
+
+        public void wake() {
+            this.post(WM_WAKE);
+        }
+
+        public void quit() {
+            this.post(WinUser.WM_QUIT);
+        }
+
+        private void post(int message) {
+            User32.INSTANCE.PostThreadMessage(this.threadId, message, new WinDef.WPARAM(0), new WinDef.LPARAM(0));
+        }
+
+        public void leave() {
+            Ole32.INSTANCE.CoUninitialize();
+        }
+    }
+
+    /**
+     * A task and the future for its result
+     */
+    private static final class Entry<T> {
+        private final Task<T> task;
+        private final CompletableFuture<T> future = new CompletableFuture<T>();
+
+        Entry(Task<T> task) {
+            this.task = task;
+        }
+
+        void run(UIAutomation automation) {
+            if (this.future.isDone()) {
+                return;
+            }
+
+            try {
+                this.future.complete(this.task.run(automation));
+            } catch (Throwable ex) {
+                this.future.completeExceptionally(ex);
+            }
+        }
+
+        void fail(Throwable ex) {
+            this.future.completeExceptionally(ex);
+        }
+    }
+
+    private final Queue<Entry<?>> queue = new ConcurrentLinkedQueue<Entry<?>>();
+
+    /**
+     * Whether the thread has been woken and has not finished looking at the queue
+     */
+    private final AtomicBoolean woken = new AtomicBoolean(false);
+
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private final Apartment apartment;
+    private final Thread thread;
+    private volatile UIAutomation automation;
+
+    AutomationDispatcher(Apartment apartment, final Callable<UIAutomation> factory)
+            throws AutomationException {
+        this.apartment = apartment;
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final Throwable[] failure = new Throwable[1];
+
+        this.thread = new Thread(new Runnable() {
+            public void run() {
+                AutomationDispatcher.this.run(factory, started, failure);
+            }
+        }, "ui-automation-dispatcher");
+
+        this.thread.setDaemon(true);
+        this.thread.start();
+
+        try {
+            started.await();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            this.close();
+            throw new AutomationException(ex.getMessage());
+        }
+
+        if (failure[0] != null) {
+            throw new AutomationException("Failed to start the dispatcher: " + failure[0]);
+        }
+    }
+
+    /**
+     * Starts a dispatcher, with its own thread and automation instance
+     *
+     * @return The dispatcher
+     * @throws AutomationException Failed to create the automation instance
+     */
+    public static AutomationDispatcher start() throws AutomationException {
+        return new AutomationDispatcher(new MessagePump(), new Callable<UIAutomation>() {
+            public UIAutomation call() {
+                return new UIAutomation(Ole32.COINIT_APARTMENTTHREADED);
+            }
+        });
+    }
+
+    private void run(Callable<UIAutomation> factory, CountDownLatch started, Throwable[] failure) {
+        try {
+            this.apartment.enter();
+
+            try {
+                this.automation = factory.call();
+                UIAutomation.setThreadInstance(this.automation);
+            } catch (Throwable ex) {
+                failure[0] = ex;
+                this.closed.set(true);
+                return;
+            } finally {
+                started.countDown();
+            }
+
+            do {
+                this.drain();
+
+                // A task that runs a modal loop can swallow the wake, so allow another one now that
+                // the queue has been looked at, and look again for anything queued in the meantime
+                this.woken.set(false);
+            } while (!this.closed.get() && (!this.queue.isEmpty() || this.apartment.await()));
+        } finally {
+            this.closed.set(true);
+
+            Entry<?> entry;
+            while ((entry = this.queue.poll()) != null) {
+                entry.fail(new IllegalStateException("The dispatcher has been closed"));
+            }
+
+            this.automation = null;
+            UIAutomation.setThreadInstance(null);
+            this.apartment.leave();
+        }
+    }
+
+    private void drain() {
+        Entry<?> entry;
+
+        while (!this.closed.get() && (entry = this.queue.poll()) != null) {
+            entry.run(this.automation);
+        }
+    }
+
+    /**
+     * Runs a task on the dispatcher's thread. A task submitted from the dispatcher's
+     * thread (i.e. by another task) is run straight away.
+     *
+     * @param task The task
+     * @param <T> The type of the result
+     * @return The future result, which fails if the task throws an exception or the
+     * dispatcher is closed before it runs
+     */
+    public <T> CompletableFuture<T> submit(Task<T> task) {
+        Entry<T> entry = new Entry<T>(task);
+
+        if (this.isDispatchThread()) {
+            entry.run(this.automation);
+        } else if (this.closed.get()) {
+            entry.fail(new IllegalStateException("The dispatcher has been closed"));
+        } else {
+            this.queue.offer(entry);
+
+            // Only wake the thread if it has not been woken since it last looked at the queue
+            if (this.woken.compareAndSet(false, true)) {
+                this.apartment.wake();
+            }
+
+            // Closed while queuing, so the thread may already have gone
+            if (this.closed.get() && this.queue.remove(entry)) {
+                entry.fail(new IllegalStateException("The dispatcher has been closed"));
+            }
+        }
+
+        return entry.future;
+    }
+
+    /**
+     * Runs several tasks, one after the other, in a single trip to the dispatcher's thread
+     *
+     * @param tasks The tasks
+     * @param <T> The type of the results
+     * @return The future results, in the same order as the tasks, which fails if any of
+     * the tasks fails
+     */
+    public <T> CompletableFuture<List<T>> submitAll(final List<? extends Task<? extends T>> tasks) {
+        return this.submit(new Task<List<T>>() {
+            public List<T> run(UIAutomation automation) throws Exception {
+                List<T> results = new ArrayList<T>(tasks.size());
+
+                for (Task<? extends T> task : tasks) {
+                    results.add(task.run(automation));
+                }
+
+                return results;
+            }
+        });
+    }
+
+    /**
+     * Runs a task on the dispatcher's thread and waits for the result
+     *
+     * @param task The task
+     * @param <T> The type of the result
+     * @return The result
+     * @throws AutomationException The task failed, or the wait was interrupted
+     */
+    public <T> T invoke(Task<T> task) throws AutomationException {
+        try {
+            return this.submit(task).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AutomationException(ex.getMessage());
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof AutomationException) {
+                throw (AutomationException)ex.getCause();
+            }
+
+            throw new AutomationException(String.valueOf(ex.getCause()));
+        }
+    }
+
+    /**
+     * Whether the current thread is the dispatcher's thread
+     *
+     * @return True if called from a task
+     */
+    public boolean isDispatchThread() {
+        return Thread.currentThread() == this.thread;
+    }
+
+    /**
+     * Whether the dispatcher has been closed
+     *
+     * @return True if it no longer runs tasks
+     */
+    public boolean isClosed() {
+        return this.closed.get();
+    }
+
+    /**
+     * Stops the dispatcher's thread once the task it is running (if any) has finished.
+     * Tasks that have not started fail.
+     */
+    @Override
+    public void close() {
+        if (this.closed.compareAndSet(false, true)) {
+            this.apartment.quit();
+
+            if (!this.isDispatchThread()) {
+                try {
+                    this.thread.join();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
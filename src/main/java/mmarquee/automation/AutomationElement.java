@@ -20,18 +20,27 @@ import com.sun.jna.platform.win32.*;
 import com.sun.jna.ptr.IntByReference;
 import com.sun.jna.ptr.PointerByReference;
 import mmarquee.automation.uiautomation.*;
+import mmarquee.automation.utils.BSTRUtils;
+import mmarquee.automation.utils.VariantUtils;
 import org.apache.log4j.Logger;
 
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Created by Mark Humphreys on 06/03/2016.
  * <p>
  * Wrapper for the underlying automation element.
  * </p>
+ * <p>
+ * The element owns its reference to the underlying element, which is released by close
+ * (or, failing that, once the element has been garbage collected).
+ * </p>
  */
-public class AutomationElement extends BaseAutomation {
+public class AutomationElement extends BaseAutomation implements AutoCloseable {
     /**
      * <p>
      * The underlying automation element
@@ -39,13 +48,170 @@ public class AutomationElement extends BaseAutomation {
      */
     public IUIAutomationElement3 element;
 
+    /**
+     * The properties that were fetched into the cache when the element was found
+     */
+    private Set<PropertyID> cachedProperties = EnumSet.noneOf(PropertyID.class);
+
+    /**
+     * The patterns that were fetched into the cache when the element was found
+     */
+    private Set<PatternID> cachedPatterns = EnumSet.noneOf(PatternID.class);
+
+    /**
+     * The patterns the element supports, fetched when first needed
+     */
+    private PatternSet availablePatterns;
+
+    /**
+     * Releases the reference to the underlying element
+     */
+    private ReferenceCleaner.Cleanable reference;
+
+    /**
+     * The automation instance that the element was found through
+     */
+    private UIAutomation automation;
+
     /**
      * Constructor of AutomationElement
      *
      * @param element The element
      */
     public AutomationElement(IUIAutomationElement3 element) {
+        this(element, true);
+    }
+
+    /**
+     * Constructor of AutomationElement, for an element found through the given automation
+     * instance (which is used for anything else that is needed, e.g. cache requests)
+     *
+     * @param element The element
+     * @param automation The automation instance
+     */
+    public AutomationElement(IUIAutomationElement3 element, UIAutomation automation) {
+        this(element, true);
+        this.automation = automation;
+    }
+
+    /**
+     * Constructor of AutomationElement
+     *
+     * @param element The element
+     * @param owned Whether this element releases the reference when it is closed
+     */
+    AutomationElement(IUIAutomationElement3 element, boolean owned) {
         this.element = element;
+
+        if (owned) {
+            this.reference = ReferenceCleaner.register(element, "AutomationElement");
+        }
+    }
+
+    /**
+     * Constructor of AutomationElement, for an element that was found with a cache request
+     *
+     * @param element The element
+     * @param cacheRequest The cache request used when finding the element
+     */
+    public AutomationElement(IUIAutomationElement3 element, CacheRequest cacheRequest) {
+        this(element, cacheRequest, true);
+    }
+
+    /**
+     * Constructor of AutomationElement, for an element that was found with a cache request,
+     * or is one of the cached children or descendants of such an element
+     *
+     * @param element The element
+     * @param cacheRequest The cache request
+     * @param found True if the request was used to find this element, false if the element
+     *              was cached as a child or descendant of the one that was found
+     */
+    AutomationElement(IUIAutomationElement3 element, CacheRequest cacheRequest, boolean found) {
+        this(element, true);
+
+        // A request for just the children or descendants caches nothing on the element itself
+        if (!found || cacheRequest.isElementCached()) {
+            this.cachedProperties.addAll(cacheRequest.getProperties());
+            this.cachedPatterns.addAll(cacheRequest.getPatterns());
+        }
+    }
+
+    /**
+     * Sets the automation instance that the element was found through
+     *
+     * @param automation The automation instance
+     * @return This element
+     */
+    AutomationElement withAutomation(UIAutomation automation) {
+        this.automation = automation;
+        return this;
+    }
+
+    /**
+     * Gets the automation instance that the element was found through. Elements found
+     * from this one belong to the same instance.
+     *
+     * @return The automation instance, or null if the element was created directly
+     */
+    @Override
+    public UIAutomation getAutomation() {
+        return this.automation;
+    }
+
+    /**
+     * Gets the automation instance that the element was found through, for the calls
+     * that need one. An element created directly uses the current thread's instance,
+     * as AutomationBase does.
+     */
+    private UIAutomation owner() {
+        return this.automation != null ? this.automation : UIAutomation.getInstance();
+    }
+
+    /**
+     * Whether the property was fetched into the cache when the element was found
+     *
+     * @param property The property
+     * @return True if the property can be read from the cache
+     */
+    public boolean isCached(PropertyID property) {
+        return this.cachedProperties.contains(property);
+    }
+
+    /**
+     * Whether the pattern was fetched into the cache when the element was found
+     *
+     * @param pattern The pattern
+     * @return True if the pattern can be read from the cache
+     */
+    public boolean isCached(PatternID pattern) {
+        return this.cachedPatterns.contains(pattern);
+    }
+
+    private void checkCached(PropertyID property) throws PropertyNotCachedException {
+        if (!this.isCached(property)) {
+            throw new PropertyNotCachedException(property.name());
+        }
+    }
+
+    private boolean isCachedProperty(int propertyId) {
+        for (PropertyID property : this.cachedProperties) {
+            if (property.getValue() == propertyId) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean isCachedPattern(int patternId) {
+        for (PatternID pattern : this.cachedPatterns) {
+            if (pattern.getValue() == patternId) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
     /**
@@ -56,15 +222,150 @@ public class AutomationElement extends BaseAutomation {
      * @throws AutomationException Call to Automation API failed
      */
     public Object getPropertyValue(int propertyId) throws AutomationException {
+        if (this.isCachedProperty(propertyId)) {
+            return this.getCachedPropertyValue(propertyId);
+        }
+
         Variant.VARIANT.ByReference value = new Variant.VARIANT.ByReference();
 
         if (this.element.getCurrentPropertyValue(propertyId, value) != 0) {
             throw new AutomationException();
         }
 
+        return this.valueOf(value);
+    }
+
+    /**
+     * Gets the cached value of the property associated with the passed in id
+     *
+     * @param propertyId The property ID to get
+     * @return The cached value
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public Object getCachedPropertyValue(int propertyId) throws AutomationException {
+        if (!this.isCachedProperty(propertyId)) {
+            throw new PropertyNotCachedException(String.valueOf(propertyId));
+        }
+
+        Variant.VARIANT.ByReference value = new Variant.VARIANT.ByReference();
+
+        if (this.element.getCachedPropertyValue(propertyId, value) != 0) {
+            throw new AutomationException();
+        }
+
+        return this.valueOf(value);
+    }
+
+    /**
+     * Gets the value held by a variant. Strings and arrays are copied out (see
+     * VariantUtils.getObject), and the variant cleared, which frees what it holds. An
+     * interface (e.g. the 'not supported' value) is released, and read as null.
+     *
+     * @param value The variant
+     * @return The value
+     * @throws AutomationException Failed to read the variant
+     */
+    private Object valueOf(Variant.VARIANT.ByReference value) throws AutomationException {
+        int type = VariantUtils.getType(value.getPointer());
+
+        if (type == Variant.VT_BSTR || type == Variant.VT_UNKNOWN || type == Variant.VT_DISPATCH ||
+                (type & Variant.VT_ARRAY) != 0) {
+            return VariantUtils.getObject(value.getPointer());
+        }
+
         return value.getValue();
     }
 
+    /**
+     * Reads a property into this thread's VARIANT buffer, from the cache if it was
+     * requested there
+     *
+     * @param property The property to read
+     * @return The buffer, holding the value
+     * @throws AutomationException Call to Automation API failed
+     */
+    private Pointer readProperty(PropertyID property) throws AutomationException {
+        Pointer variant = VariantUtils.buffer();
+
+        int result = this.isCached(property) ?
+                this.element.getCachedPropertyValueRaw(property.getValue(), variant) :
+                this.element.getCurrentPropertyValueRaw(property.getValue(), variant);
+
+        if (result != 0) {
+            throw new AutomationException();
+        }
+
+        return variant;
+    }
+
+    /**
+     * Gets a flag property (e.g. IsEnabled, or one of the Is...PatternAvailable properties)
+     *
+     * @param property The property to get
+     * @return The value, or false if the element does not support the property
+     * @throws AutomationException Call to Automation API failed
+     */
+    public boolean getBooleanProperty(PropertyID property) throws AutomationException {
+        return VariantUtils.getBoolean(this.readProperty(property));
+    }
+
+    /**
+     * Gets an integer property (e.g. ProcessId, ControlType or NativeWindowHandle)
+     *
+     * @param property The property to get
+     * @return The value, or 0 if the element does not support the property
+     * @throws AutomationException Call to Automation API failed
+     */
+    public int getIntProperty(PropertyID property) throws AutomationException {
+        return VariantUtils.getInt(this.readProperty(property));
+    }
+
+    /**
+     * Gets a numeric property (e.g. RangeValueValue)
+     *
+     * @param property The property to get
+     * @return The value, or 0 if the element does not support the property
+     * @throws AutomationException Call to Automation API failed
+     */
+    public double getDoubleProperty(PropertyID property) throws AutomationException {
+        return VariantUtils.getDouble(this.readProperty(property));
+    }
+
+    /**
+     * Gets a string property (e.g. Name or FrameworkId)
+     *
+     * @param property The property to get
+     * @return The value, or an empty string if the element does not support the property
+     * @throws AutomationException Call to Automation API failed
+     */
+    public String getStringProperty(PropertyID property) throws AutomationException {
+        return VariantUtils.getString(this.readProperty(property));
+    }
+
+    /**
+     * Gets a rectangle property (e.g. BoundingRectangle)
+     *
+     * @param property The property to get
+     * @return The value, or an empty rectangle if the element does not support the property
+     * @throws AutomationException Call to Automation API failed
+     */
+    public WinDef.RECT getRectProperty(PropertyID property) throws AutomationException {
+        return VariantUtils.getRect(this.readProperty(property));
+    }
+
+    /**
+     * Gets a property as a plain Java value, e.g. when the type of the property isn't known
+     *
+     * @param property The property to get
+     * @return A Boolean, Integer, Double, String, RECT (for an array of 4 doubles), double[]
+     * (e.g. ClickablePoint) or int[], or null if the element does not support the property
+     * @throws AutomationException Call to Automation API failed
+     */
+    public Object getProperty(PropertyID property) throws AutomationException {
+        return VariantUtils.getObject(this.readProperty(property));
+    }
+
     /**
      * Gets the current control type
      *
@@ -72,6 +373,10 @@ public class AutomationElement extends BaseAutomation {
      * @throws AutomationException Call to Automation API failed
      */
     public int getControlType() throws AutomationException {
+        if (this.isCached(PropertyID.ControlType)) {
+            return this.getCachedControlType();
+        }
+
         IntByReference ibr = new IntByReference();
 
         if (this.element.getCurrentControlType(ibr) != 0) {
@@ -81,6 +386,25 @@ public class AutomationElement extends BaseAutomation {
         return ibr.getValue();
     }
 
+    /**
+     * Gets the cached control type of the element
+     *
+     * @return The cached control type
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public int getCachedControlType() throws AutomationException {
+        this.checkCached(PropertyID.ControlType);
+
+        IntByReference ibr = new IntByReference();
+
+        if (this.element.getCachedControlType(ibr) != 0) {
+            throw new AutomationException();
+        }
+
+        return ibr.getValue();
+    }
+
     /**
      * Gets the current class name of the element
      *
@@ -88,13 +412,36 @@ public class AutomationElement extends BaseAutomation {
      * @throws AutomationException Call to Automation API failed
      */
     public String getClassName() throws AutomationException {
+        if (this.isCached(PropertyID.ClassName)) {
+            return this.getCachedClassName();
+        }
+
         PointerByReference sr = new PointerByReference();
 
         if (this.element.getCurrentClassName(sr) != 0) {
             throw new AutomationException();
         }
 
-        return sr.getValue().getWideString(0);
+        return BSTRUtils.readInterned(sr);
+    }
+
+    /**
+     * Gets the cached class name of the element
+     *
+     * @return The cached class name
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public String getCachedClassName() throws AutomationException {
+        this.checkCached(PropertyID.ClassName);
+
+        PointerByReference sr = new PointerByReference();
+
+        if (this.element.getCachedClassName(sr) != 0) {
+            throw new AutomationException();
+        }
+
+        return BSTRUtils.readInterned(sr);
     }
 
     /**
@@ -104,13 +451,36 @@ public class AutomationElement extends BaseAutomation {
      * @throws AutomationException Call to Automation API failed
      */
     public String getAutomationId() throws AutomationException {
+        if (this.isCached(PropertyID.AutomationId)) {
+            return this.getCachedAutomationId();
+        }
+
         PointerByReference sr = new PointerByReference();
 
         if (this.element.getCurrentAutomationId(sr) != 0) {
             throw new AutomationException();
         }
 
-        return sr.getValue().getWideString(0);
+        return BSTRUtils.read(sr);
+    }
+
+    /**
+     * Gets the cached automation id of the element
+     *
+     * @return The cached automation id
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public String getCachedAutomationId() throws AutomationException {
+        this.checkCached(PropertyID.AutomationId);
+
+        PointerByReference sr = new PointerByReference();
+
+        if (this.element.getCachedAutomationId(sr) != 0) {
+            throw new AutomationException();
+        }
+
+        return BSTRUtils.read(sr);
     }
 
     /**
@@ -120,13 +490,36 @@ public class AutomationElement extends BaseAutomation {
      * @throws AutomationException Call to Automation API failed
      */
     public String localizedControlType() throws AutomationException {
+        if (this.isCached(PropertyID.LocalizedControlType)) {
+            return this.getCachedLocalizedControlType();
+        }
+
         PointerByReference sr = new PointerByReference();
 
         if (this.element.getCurrentLocalizedControlType(sr) != 0) {
             throw new AutomationException();
         }
 
-        return sr.getValue().getWideString(0);
+        return BSTRUtils.readInterned(sr);
+    }
+
+    /**
+     * Gets the cached localized control type of the element
+     *
+     * @return The cached localized control type
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public String getCachedLocalizedControlType() throws AutomationException {
+        this.checkCached(PropertyID.LocalizedControlType);
+
+        PointerByReference sr = new PointerByReference();
+
+        if (this.element.getCachedLocalizedControlType(sr) != 0) {
+            throw new AutomationException();
+        }
+
+        return BSTRUtils.readInterned(sr);
     }
 
     /**
@@ -136,6 +529,10 @@ public class AutomationElement extends BaseAutomation {
      * @throws AutomationException Call to Automation API failed
      */
     public Boolean isPassword() throws AutomationException {
+        if (this.isCached(PropertyID.IsPassword)) {
+            return this.getCachedIsPassword();
+        }
+
         IntByReference ibr = new IntByReference();
 
         if (this.element.getCurrentIsPassword(ibr) != 0) {
@@ -145,12 +542,35 @@ public class AutomationElement extends BaseAutomation {
         return ibr.getValue() == 1;
     }
 
+    /**
+     * Gets the cached IsPassword value of the element
+     *
+     * @return The cached IsPassword value
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public Boolean getCachedIsPassword() throws AutomationException {
+        this.checkCached(PropertyID.IsPassword);
+
+        IntByReference ibr = new IntByReference();
+
+        if (this.element.getCachedIsPassword(ibr) != 0) {
+            throw new AutomationException();
+        }
+
+        return ibr.getValue() == 1;
+    }
+
     /**
      * Returns whether the element is off screen
      * @return True if off screen
      * @throws AutomationException Call to Automation API failed
      */
     public WinDef.BOOL offScreen() throws AutomationException {
+        if (this.isCached(PropertyID.IsOffscreen)) {
+            return this.getCachedIsOffscreen();
+        }
+
         WinDef.BOOLByReference bbr = new WinDef.BOOLByReference();
 
         if (this.element.getCurrentIsOffscreen(bbr) != 0) {
@@ -160,12 +580,35 @@ public class AutomationElement extends BaseAutomation {
         return bbr.getValue();
     }
 
+    /**
+     * Gets the cached off screen value of the element
+     *
+     * @return The cached off screen value
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public WinDef.BOOL getCachedIsOffscreen() throws AutomationException {
+        this.checkCached(PropertyID.IsOffscreen);
+
+        WinDef.BOOLByReference bbr = new WinDef.BOOLByReference();
+
+        if (this.element.getCachedIsOffscreen(bbr) != 0) {
+            throw new AutomationException();
+        }
+
+        return bbr.getValue();
+    }
+
     /**
      * Returns whether the element is a content element
      * @return True if content element
      * @throws AutomationException Call to Automation API failed
      */
     public WinDef.BOOL isContentElement() throws AutomationException {
+        if (this.isCached(PropertyID.IsContentElement)) {
+            return this.getCachedIsContentElement();
+        }
+
         WinDef.BOOLByReference bbr = new WinDef.BOOLByReference();
 
         if (this.element.getCurrentIsContentElement(bbr) != 0) {
@@ -175,12 +618,35 @@ public class AutomationElement extends BaseAutomation {
         return bbr.getValue();
     }
 
+    /**
+     * Gets the cached content element value of the element
+     *
+     * @return The cached content element value
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public WinDef.BOOL getCachedIsContentElement() throws AutomationException {
+        this.checkCached(PropertyID.IsContentElement);
+
+        WinDef.BOOLByReference bbr = new WinDef.BOOLByReference();
+
+        if (this.element.getCachedIsContentElement(bbr) != 0) {
+            throw new AutomationException();
+        }
+
+        return bbr.getValue();
+    }
+
     /**
      * Returns whether the element is a control element
      * @return True if control element
      * @throws AutomationException Call to Automation API failed
      */
     public WinDef.BOOL isControlElement() throws AutomationException {
+        if (this.isCached(PropertyID.IsControlElement)) {
+            return this.getCachedIsControlElement();
+        }
+
         WinDef.BOOLByReference bbr = new WinDef.BOOLByReference();
 
         if (this.element.getCurrentIsControlElement(bbr) != 0) {
@@ -191,93 +657,310 @@ public class AutomationElement extends BaseAutomation {
     }
 
     /**
-     * Returns whether the element is enabled
-     * @return True if enabled
+     * Gets the cached control element value of the element
+     *
+     * @return The cached control element value
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public WinDef.BOOL getCachedIsControlElement() throws AutomationException {
+        this.checkCached(PropertyID.IsControlElement);
+
+        WinDef.BOOLByReference bbr = new WinDef.BOOLByReference();
+
+        if (this.element.getCachedIsControlElement(bbr) != 0) {
+            throw new AutomationException();
+        }
+
+        return bbr.getValue();
+    }
+
+    /**
+     * Returns whether the element is enabled
+     * @return True if enabled
+     * @throws AutomationException Call to Automation API failed
+     */
+    public WinDef.BOOL isEnabled() throws AutomationException {
+        if (this.isCached(PropertyID.IsEnabled)) {
+            return this.getCachedIsEnabled();
+        }
+
+        WinDef.BOOLByReference bbr = new WinDef.BOOLByReference();
+
+        if (this.element.getCurrentIsEnabled(bbr)  != 0) {
+            throw new AutomationException();
+        }
+
+        return bbr.getValue();
+    }
+
+    /**
+     * Gets the cached enabled value of the element
+     *
+     * @return The cached enabled value
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public WinDef.BOOL getCachedIsEnabled() throws AutomationException {
+        this.checkCached(PropertyID.IsEnabled);
+
+        WinDef.BOOLByReference bbr = new WinDef.BOOLByReference();
+
+        if (this.element.getCachedIsEnabled(bbr)  != 0) {
+            throw new AutomationException();
+        }
+
+        return bbr.getValue();
+    }
+
+    /**
+     * Gets the name, either from the cache (if it was requested) or the current property
+     *
+     * @return The name (either cached or current)
+     * @throws AutomationException Call to Automation API failed
+     */
+    public String getName() throws AutomationException {
+        if (this.isCached(PropertyID.Name)) {
+            return this.getCachedName();
+        }
+
+        return this.currentName();
+    }
+
+    /**
+     * Gets the cached name of the element
+     *
+     * @return The cached name
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public String getCachedName() throws AutomationException {
+        this.checkCached(PropertyID.Name);
+
+        PointerByReference sr = new PointerByReference();
+
+        if (this.element.getCachedName(sr) != 0) {
+            throw new AutomationException();
+        }
+
+        return BSTRUtils.read(sr);
+    }
+
+    protected Logger logger = Logger.getLogger(AutomationElement.class.getName());
+
+    /**
+     * Gets the current name of the control
+     *
+     * @return The name of the element
+     * @throws AutomationException Call to Automation API failed
+     */
+    protected String currentName() throws AutomationException {
+        PointerByReference sr = new PointerByReference();
+
+        if (this.element.getCurrentName(sr) != 0) {
+            throw new AutomationException();
+        }
+
+        return BSTRUtils.read(sr);
+    }
+
+//    /**
+//     * Sets the name of the element
+//     * @param name The name to use
+//     */
+//    public void setName(String name) {
+//        this.element.setName(name);
+// Not sure how this worked
+//    }
+
+    /**
+     * Finds the first element that matches the raw condition
+     *
+     * @param scope      Tree scope
+     * @param pCondition The raw condition
+     * @return The first matching element
+     * @throws AutomationException Something has gone wrong
+     */
+    public AutomationElement findFirst(TreeScope scope, PointerByReference pCondition) throws AutomationException {
+        PointerByReference pbr = new PointerByReference();
+
+        this.element.findFirst(scope, pCondition.getValue(), pbr);
+
+        try {
+            IUIAutomationElement3 element = getAutomationElementFromReference(pbr);
+            return new AutomationElement(element, this.automation);
+        } catch (NullPointerException npe) {
+            throw new ElementNotFoundException();
+        }
+    }
+
+    /**
+     * Finds the first element that matches the raw condition, fetching the properties and
+     * patterns of the cache request in the same call
+     *
+     * @param scope        Tree scope
+     * @param pCondition   The raw condition
+     * @param cacheRequest The properties and patterns to cache
+     * @return The first matching element
+     * @throws AutomationException Something has gone wrong
+     */
+    public AutomationElement findFirst(TreeScope scope, PointerByReference pCondition, CacheRequest cacheRequest)
+            throws AutomationException {
+        PointerByReference pbr = new PointerByReference();
+
+        this.element.findFirstBuildCache(scope, pCondition.getValue(), cacheRequest.getPointer(), pbr);
+
+        try {
+            IUIAutomationElement3 element = getAutomationElementFromReference(pbr);
+            return new AutomationElement(element, cacheRequest).withAutomation(this.automation);
+        } catch (NullPointerException npe) {
+            throw new ElementNotFoundException();
+        }
+    }
+
+    /**
+     * Gets a new element, representing this element with the cache request applied
+     *
+     * @param cacheRequest The properties and patterns to cache
+     * @return The updated element
+     * @throws AutomationException Call to Automation API failed
+     */
+    public AutomationElement buildUpdatedCache(CacheRequest cacheRequest) throws AutomationException {
+        PointerByReference pbr = new PointerByReference();
+
+        if (this.element.buildUpdatedCache(cacheRequest.getPointer(), pbr) != 0) {
+            throw new AutomationException();
+        }
+
+        return new AutomationElement(getAutomationElementFromReference(pbr), cacheRequest)
+                .withAutomation(this.automation);
+    }
+
+    /**
+     * Gets the cached children of the element, which are fetched when the element is found
+     * with a cache request whose scope includes the children
+     *
+     * @param cacheRequest The cache request that the element was found with
+     * @return The children, which have the same properties and patterns cached
      * @throws AutomationException Call to Automation API failed
      */
-    public WinDef.BOOL isEnabled() throws AutomationException {
-        WinDef.BOOLByReference bbr = new WinDef.BOOLByReference();
+    public List<AutomationElement> getCachedChildren(CacheRequest cacheRequest) throws AutomationException {
+        PointerByReference pAll = new PointerByReference();
 
-        if (this.element.getCurrentIsEnabled(bbr)  != 0) {
+        if (this.element.getCachedChildren(pAll) != 0) {
             throw new AutomationException();
         }
 
-        return bbr.getValue();
+        if (pAll.getValue() == null) {
+            return Collections.emptyList();
+        }
+
+        // The children are in the request's scope, whether or not the element itself is
+        return AutomationElementList.of(this, getAutomationElementArrayFromReference(pAll), cacheRequest, false);
     }
 
     /**
-     * Gets the name, either from the current ot cache property
+     * Captures this element and its descendants in a single call, so that they can be
+     * searched without calling back into the application.
      *
-     * @return The name (either cached or current)
+     * The request's scope should include the descendants (UIAutomation.createSnapshotRequest
+     * creates a suitable one). The properties of the request are captured, and if it keeps
+     * live references (AutomationElementMode.Full) the snapshot holds on to the elements.
+     *
+     * @param cacheRequest The properties to capture
+     * @return The snapshot, which should be closed if it holds live elements
      * @throws AutomationException Call to Automation API failed
      */
-    public String getName() throws AutomationException {
-        return this.currentName();
-    }
+    public AutomationSnapshot snapshot(CacheRequest cacheRequest) throws AutomationException {
+        AutomationElement updated = this.buildUpdatedCache(cacheRequest);
 
-    protected Logger logger = Logger.getLogger(AutomationElement.class.getName());
+        try {
+            return AutomationSnapshot.capture(updated, cacheRequest, cacheRequest.getProperties(),
+                    cacheRequest.getAutomationElementMode() == AutomationElementMode.Full);
+        } catch (AutomationException ex) {
+            updated.close();
+            throw ex;
+        }
+    }
 
     /**
-     * Gets the current name of the control
+     * Gets the patterns that the element supports.
      *
-     * @return The name of the element
+     * All of the Is...PatternAvailable properties are fetched in a single call (or read
+     * from the cache, if the element was found with a request that included them), the
+     * first time this is called, and then remembered for the life of the element.
+     *
+     * @return The available patterns
      * @throws AutomationException Call to Automation API failed
      */
-    protected String currentName() throws AutomationException {
-        PointerByReference sr = new PointerByReference();
-
-        if (this.element.getCurrentName(sr) != 0) {
-            throw new AutomationException();
+    public PatternSet getAvailablePatterns() throws AutomationException {
+        if (this.availablePatterns == null) {
+            Map<PatternID, PropertyID> properties = PatternSet.getAvailabilityProperties();
+
+            if (this.cachedProperties.containsAll(properties.values())) {
+                this.availablePatterns = readAvailablePatterns(this, properties);
+            } else {
+                CacheRequest request = this.owner().getPatternAvailabilityRequest();
+
+                try (AutomationElement updated = this.buildUpdatedCache(request)) {
+                    this.availablePatterns = readAvailablePatterns(updated, properties);
+                }
+            }
         }
 
-        if (sr.getValue() == null) {
-            return "";
-        } else {
-            return sr.getValue().getWideString(0);
-        }
+        return this.availablePatterns;
     }
 
-//    /**
-//     * Sets the name of the element
-//     * @param name The name to use
-//     */
-//    public void setName(String name) {
-//        this.element.setName(name);
-// Not sure how this worked
-//    }
+    private static PatternSet readAvailablePatterns(AutomationElement source, Map<PatternID, PropertyID> properties)
+            throws AutomationException {
+        PatternSet patterns = PatternSet.none();
+
+        for (Map.Entry<PatternID, PropertyID> entry : properties.entrySet()) {
+            if (source.getBooleanProperty(entry.getValue())) {
+                patterns = patterns.with(entry.getKey());
+            }
+        }
+
+        return patterns;
+    }
 
     /**
-     * Finds the first element that matches the raw condition
+     * Get the current pattern that matches the patternId
      *
-     * @param scope      Tree scope
-     * @param pCondition The raw condition
-     * @return The first matching element
-     * @throws AutomationException Something has gone wrong
+     * @param patternId What pattern to get
+     * @return The pattern
+     * @throws AutomationException Call to Automation API failed
      */
-    public AutomationElement findFirst(TreeScope scope, PointerByReference pCondition) throws AutomationException {
-        PointerByReference pbr = new PointerByReference();
+    public PointerByReference getPattern(int patternId) throws AutomationException {
+        if (this.isCachedPattern(patternId)) {
+            return this.getCachedPattern(patternId);
+        }
 
-        this.element.findFirst(scope, pCondition.getValue(), pbr);
+        PointerByReference pbr = new PointerByReference();
 
-        try {
-            IUIAutomationElement3 element = getAutomationElementFromReference(pbr);
-            return new AutomationElement(element);
-        } catch (NullPointerException npe) {
-            throw new ElementNotFoundException();
+        if (this.element.getCurrentPattern(patternId, pbr) != 0) {
+            throw new AutomationException();
         }
+
+        return pbr;
     }
 
     /**
-     * Get the current pattern that matches the patternId
+     * Get the cached pattern that matches the patternId
      *
      * @param patternId What pattern to get
      * @return The pattern
+     * @throws PropertyNotCachedException The pattern was not part of the cache request
      * @throws AutomationException Call to Automation API failed
      */
-    public PointerByReference getPattern(int patternId) throws AutomationException {
+    public PointerByReference getCachedPattern(int patternId) throws AutomationException {
+        if (!this.isCachedPattern(patternId)) {
+            throw new PropertyNotCachedException(String.valueOf(patternId));
+        }
+
         PointerByReference pbr = new PointerByReference();
 
-        if (this.element.getCurrentPattern(patternId, pbr) != 0) {
+        if (this.element.getCachedPattern(patternId, pbr) != 0) {
             throw new AutomationException();
         }
 
@@ -307,39 +990,85 @@ public class AutomationElement extends BaseAutomation {
      *
      * @param scope The scope in the element tree
      * @param pCondition The condition
-     * @return List of matching elements
+     * @return List of matching elements, an AutomationElementList that takes them from the results as needed
      * @throws AutomationException Call to Automation API failed
      */
     public List<AutomationElement> findAll(TreeScope scope, Pointer pCondition) throws AutomationException {
-
-        List<AutomationElement> items = new ArrayList<AutomationElement>();
-
         PointerByReference pAll = new PointerByReference();
 
         if (this.element.findAll(scope, pCondition, pAll) != 0) {
             throw new AutomationException();
         }
 
-        IUIAutomationElementArray collection = getAutomationElementArrayFromReference(pAll);
-
-        IntByReference ibr = new IntByReference();
-
-        collection.getLength(ibr);
+        return this.referenceToList(pAll, null);
+    }
 
-        int counter = ibr.getValue();
+    /**
+     * Gets the nth descendant of this element in the view of the tree walker, stopping
+     * as soon as it has been found
+     *
+     * @param walker The tree walker, e.g. one created with a condition
+     * @param index The index of the descendant
+     * @return The descendant, or null if there are not that many
+     * @throws AutomationException Call to Automation API failed
+     */
+    public AutomationElement getDescendant(AutomationTreeWalker walker, int index) throws AutomationException {
+        return walker.getDescendant(this, index);
+    }
 
-        for (int a = 0; a < counter; a++) {
-            PointerByReference pbr = new PointerByReference();
+    /**
+     * Gets the nth element that matches the condition and scope. Only that element is
+     * taken from the results, rather than all of them.
+     *
+     * @param scope The scope in the element tree
+     * @param pCondition The condition
+     * @param index The index of the element
+     * @return The element, or null if there are not that many matches
+     * @throws AutomationException Call to Automation API failed
+     */
+    public AutomationElement findAt(TreeScope scope, Pointer pCondition, int index) throws AutomationException {
+        PointerByReference pAll = new PointerByReference();
 
-            collection.getElement(a, pbr);
+        if (this.element.findAll(scope, pCondition, pAll) != 0) {
+            throw new AutomationException();
+        }
 
-            IUIAutomationElement3 element = getAutomationElementFromReference(pbr);
+        try (AutomationElementList list = this.referenceToList(pAll, null)) {
+            return index < 0 || index >= list.size() ? null : list.getElement(index);
+        }
+    }
 
-            items.add(new AutomationElement(element));
+    /**
+     * Gets all of the elements that match the condition and scope, fetching the properties and
+     * patterns of the cache request in the same call
+     *
+     * @param scope The scope in the element tree
+     * @param pCondition The condition
+     * @param cacheRequest The properties and patterns to cache
+     * @return List of matching elements, an AutomationElementList that takes them from the results as needed
+     * @throws AutomationException Call to Automation API failed
+     */
+    public List<AutomationElement> findAll(TreeScope scope, Pointer pCondition, CacheRequest cacheRequest)
+            throws AutomationException {
+        PointerByReference pAll = new PointerByReference();
 
+        if (this.element.findAllBuildCache(scope, pCondition, cacheRequest.getPointer(), pAll) != 0) {
+            throw new AutomationException();
         }
 
-        return items;
+        return this.referenceToList(pAll, cacheRequest);
+    }
+
+    /**
+     * Wraps the raw element array in a list, which takes the elements from it as they are needed
+     *
+     * @param pAll The raw element array
+     * @param cacheRequest The cache request used to find the elements, or null
+     * @return List of elements
+     * @throws AutomationException Call to Automation API failed
+     */
+    private AutomationElementList referenceToList(PointerByReference pAll, CacheRequest cacheRequest) throws AutomationException {
+        return AutomationElementList.of(this, getAutomationElementArrayFromReference(pAll), cacheRequest);
     }
 
     /**
@@ -349,13 +1078,36 @@ public class AutomationElement extends BaseAutomation {
      * @throws AutomationException Call to Automation API failed
      */
     public String getAriaRole() throws AutomationException {
+        if (this.isCached(PropertyID.AriaRole)) {
+            return this.getCachedAriaRole();
+        }
+
         PointerByReference sr = new PointerByReference();
 
         if (this.element.getCurrentAriaRole(sr) != 0) {
             throw new AutomationException();
         }
 
-        return sr.getValue().getWideString(0);
+        return BSTRUtils.readInterned(sr);
+    }
+
+    /**
+     * Gets the cached ARIA role of the element
+     *
+     * @return The cached ARIA role
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public String getCachedAriaRole() throws AutomationException {
+        this.checkCached(PropertyID.AriaRole);
+
+        PointerByReference sr = new PointerByReference();
+
+        if (this.element.getCachedAriaRole(sr) != 0) {
+            throw new AutomationException();
+        }
+
+        return BSTRUtils.readInterned(sr);
     }
 
     /**
@@ -365,6 +1117,10 @@ public class AutomationElement extends BaseAutomation {
      * @throws AutomationException Something has gone wrong
      */
     public OrientationType getOrientation() throws AutomationException {
+        if (this.isCached(PropertyID.Orientation)) {
+            return this.getCachedOrientation();
+        }
+
         IntByReference ibr = new IntByReference();
 
         if (this.element.getCurrentOrientation(ibr) != 0) {
@@ -374,6 +1130,25 @@ public class AutomationElement extends BaseAutomation {
         return OrientationType.fromInt(ibr.getValue());
     }
 
+    /**
+     * Gets the cached orientation of the element
+     *
+     * @return The cached orientation
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public OrientationType getCachedOrientation() throws AutomationException {
+        this.checkCached(PropertyID.Orientation);
+
+        IntByReference ibr = new IntByReference();
+
+        if (this.element.getCachedOrientation(ibr) != 0) {
+            throw new AutomationException();
+        }
+
+        return OrientationType.fromInt(ibr.getValue());
+    }
+
     /**
      * Gets the framework ID
      *
@@ -381,13 +1156,36 @@ public class AutomationElement extends BaseAutomation {
      * @throws AutomationException Call to Automation API failed
      */
     public String getFrameworkId() throws AutomationException {
+        if (this.isCached(PropertyID.FrameworkId)) {
+            return this.getCachedFrameworkId();
+        }
+
         PointerByReference sr = new PointerByReference();
 
         if (this.element.getCurrentFrameworkId(sr) != 0) {
             throw new AutomationException();
         }
 
-        return sr.getValue().getWideString(0);
+        return BSTRUtils.readInterned(sr);
+    }
+
+    /**
+     * Gets the cached framework ID of the element
+     *
+     * @return The cached framework ID
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public String getCachedFrameworkId() throws AutomationException {
+        this.checkCached(PropertyID.FrameworkId);
+
+        PointerByReference sr = new PointerByReference();
+
+        if (this.element.getCachedFrameworkId(sr) != 0) {
+            throw new AutomationException();
+        }
+
+        return BSTRUtils.readInterned(sr);
     }
 
     /**
@@ -397,13 +1195,36 @@ public class AutomationElement extends BaseAutomation {
      * @throws AutomationException Call to Automation API failed
      */
     public String getProviderDescription() throws AutomationException {
+        if (this.isCached(PropertyID.ProviderDescription)) {
+            return this.getCachedProviderDescription();
+        }
+
         PointerByReference sr = new PointerByReference();
 
         if (this.element.getCurrentProviderDescription(sr) != 0) {
             throw new AutomationException();
         }
 
-        return sr.getValue().getWideString(0);
+        return BSTRUtils.readInterned(sr);
+    }
+
+    /**
+     * Gets the cached provider description of the element
+     *
+     * @return The cached provider description
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public String getCachedProviderDescription() throws AutomationException {
+        this.checkCached(PropertyID.ProviderDescription);
+
+        PointerByReference sr = new PointerByReference();
+
+        if (this.element.getCachedProviderDescription(sr) != 0) {
+            throw new AutomationException();
+        }
+
+        return BSTRUtils.readInterned(sr);
     }
 
 //    /**
@@ -421,6 +1242,10 @@ public class AutomationElement extends BaseAutomation {
      * @throws AutomationException Call to Automation API failed
      */
     public Integer getProcessId() throws AutomationException {
+        if (this.isCached(PropertyID.ProcessId)) {
+            return this.getCachedProcessId();
+        }
+
         IntByReference ibr = new IntByReference();
 
         if (this.element.getCurrentProcessId(ibr) != 0) {
@@ -430,6 +1255,25 @@ public class AutomationElement extends BaseAutomation {
         return ibr.getValue();
     }
 
+    /**
+     * Gets the cached process ID of the element
+     *
+     * @return The cached process ID
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public Integer getCachedProcessId() throws AutomationException {
+        this.checkCached(PropertyID.ProcessId);
+
+        IntByReference ibr = new IntByReference();
+
+        if (this.element.getCachedProcessId(ibr) != 0) {
+            throw new AutomationException();
+        }
+
+        return ibr.getValue();
+    }
+
     /**
      * Gets the current item status
      *
@@ -437,13 +1281,36 @@ public class AutomationElement extends BaseAutomation {
      * @throws AutomationException Call to Automation API failed
      */
     public String getItemStatus() throws AutomationException {
+        if (this.isCached(PropertyID.ItemStatus)) {
+            return this.getCachedItemStatus();
+        }
+
         PointerByReference sr = new PointerByReference();
 
         if (this.element.getCurrentItemStatus(sr) != 0) {
             throw new AutomationException();
         }
 
-        return sr.getValue().getWideString(0);
+        return BSTRUtils.read(sr);
+    }
+
+    /**
+     * Gets the cached item status of the element
+     *
+     * @return The cached item status
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public String getCachedItemStatus() throws AutomationException {
+        this.checkCached(PropertyID.ItemStatus);
+
+        PointerByReference sr = new PointerByReference();
+
+        if (this.element.getCachedItemStatus(sr) != 0) {
+            throw new AutomationException();
+        }
+
+        return BSTRUtils.read(sr);
     }
 
     /**
@@ -453,13 +1320,36 @@ public class AutomationElement extends BaseAutomation {
      * @throws AutomationException Call to Automation API failed
      */
     public String getAcceleratorKey() throws AutomationException {
+        if (this.isCached(PropertyID.AcceleratorKey)) {
+            return this.getCachedAcceleratorKey();
+        }
+
         PointerByReference sr = new PointerByReference();
 
         if (this.element.getCurrentAcceleratorKey(sr) != 0) {
             throw new AutomationException();
         }
 
-        return sr.getValue().getWideString(0);
+        return BSTRUtils.read(sr);
+    }
+
+    /**
+     * Gets the cached accelerator key of the element
+     *
+     * @return The cached accelerator key
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public String getCachedAcceleratorKey() throws AutomationException {
+        this.checkCached(PropertyID.AcceleratorKey);
+
+        PointerByReference sr = new PointerByReference();
+
+        if (this.element.getCachedAcceleratorKey(sr) != 0) {
+            throw new AutomationException();
+        }
+
+        return BSTRUtils.read(sr);
     }
 
     /**
@@ -485,6 +1375,10 @@ public class AutomationElement extends BaseAutomation {
      * @throws AutomationException Call to Automation API failed
      */
     public WinDef.RECT getBoundingRectangle() throws AutomationException {
+        if (this.isCached(PropertyID.BoundingRectangle)) {
+            return this.getCachedBoundingRectangle();
+        }
+
         WinDef.RECT rect = new WinDef.RECT();
 
         if (this.element.getCurrentBoundingRectangle(rect) != 0) {
@@ -494,6 +1388,25 @@ public class AutomationElement extends BaseAutomation {
         return rect;
     }
 
+    /**
+     * Gets the cached bounding rectangle of the element
+     *
+     * @return The cached bounding rectangle
+     * @throws PropertyNotCachedException The property was not part of the cache request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public WinDef.RECT getCachedBoundingRectangle() throws AutomationException {
+        this.checkCached(PropertyID.BoundingRectangle);
+
+        WinDef.RECT rect = new WinDef.RECT();
+
+        if (this.element.getCachedBoundingRectangle(rect) != 0) {
+            throw new AutomationException();
+        }
+
+        return rect;
+    }
+
     /**
      * Shows the context menu for the element
      * @throws AutomationException Failed to get the correct interface
@@ -503,4 +1416,88 @@ public class AutomationElement extends BaseAutomation {
             throw new AutomationException();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Listens for an event raised by this element (and/or its ancestors or descendants,
+     * depending on the scope)
+     *
+     * @param event The event
+     * @param scope The scope, e.g. new TreeScope(TreeScope.Subtree)
+     * @param listener Called, on one of automation's threads, for each event
+     * @return The handler, which is needed to stop listening
+     * @throws AutomationException Call to Automation API failed
+     */
+    public AutomationEventHandler addAutomationEventHandler(EventID event,
+                                                            TreeScope scope,
+                                                            AutomationEventHandler.Listener listener)
+            throws AutomationException {
+        AutomationEventHandler handler = new AutomationEventHandler(listener);
+
+        try {
+            this.addAutomationEventHandler(event, scope, handler);
+        } finally {
+            // Automation holds its own reference while the handler is registered
+            handler.close();
+        }
+
+        return handler;
+    }
+
+    /**
+     * Adds an event handler to this element, through the automation instance that the
+     * element was found through
+     *
+     * @param event The event
+     * @param scope The scope, e.g. new TreeScope(TreeScope.Subtree)
+     * @param handler The handler
+     * @throws AutomationException Call to Automation API failed
+     */
+    public void addAutomationEventHandler(EventID event, TreeScope scope, AutomationEventHandler handler)
+            throws AutomationException {
+        this.owner().addAutomationEventHandler(event, scope, this, handler);
+    }
+
+    /**
+     * Removes an event handler that was added to this element
+     *
+     * @param event The event
+     * @param handler The handler
+     * @throws AutomationException Call to Automation API failed
+     */
+    public void removeAutomationEventHandler(EventID event, AutomationEventHandler handler)
+            throws AutomationException {
+        this.owner().removeAutomationEventHandler(event, this, handler);
+    }
+
+    /**
+     * Gets another element for the same underlying element, holding its own reference,
+     * so that it can be closed independently of this one (e.g. when this one is held by
+     * a snapshot).
+     *
+     * @return The new element, which the caller must close
+     * @throws AutomationException Call to Automation API failed
+     */
+    public AutomationElement newReference() throws AutomationException {
+        Pointer pElement = this.getPointerFromElement(this.element);
+
+        AutomationElement copy = new AutomationElement(
+                IUIAutomationElement3.Converter.PointerToInterface(new PointerByReference(pElement)), this.automation);
+        copy.cachedProperties.addAll(this.cachedProperties);
+        copy.cachedPatterns.addAll(this.cachedPatterns);
+        return copy;
+    }
+
+    /**
+     * Releases the underlying element. The element cannot be used once it has been closed.
+     *
+     * Elements that are shared (e.g. the root element) are not released.
+     */
+    @Override
+    public void close() {
+        if (this.reference != null) {
+            this.reference.clean();
+            this.reference = null;
+            this.element = null;
+        }
+    }
+}
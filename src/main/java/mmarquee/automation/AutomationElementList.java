@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import com.sun.jna.ptr.IntByReference;
+import com.sun.jna.ptr.PointerByReference;
+import mmarquee.automation.uiautomation.IUIAutomationElementArray;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * A read-only list backed directly by an element array from the automation library.
+ *
+ * The length is read once, and each element is only taken from the array (and wrapped)
+ * the first time it is asked for, so a search that stops early doesn't pay for the
+ * elements it never looks at.
+ *
+ * The list holds a reference to the array until it is closed. Elements that have already
+ * been taken from it hold their own references, so they can still be used afterwards, but
+ * the others can no longer be reached.
+ */
+public class AutomationElementList extends AbstractList<AutomationElement>
+        implements RandomAccess, AutoCloseable {
+
+    /**
+     * Takes an element from the underlying array
+     */
+    interface Source {
+        AutomationElement get(int index) throws AutomationException;
+    }
+
+    private final Source source;
+    private final AutomationElement[] elements;
+    private final ReferenceCleaner.Cleanable reference;
+    private boolean closed = false;
+
+    AutomationElementList(int size, Source source, ReferenceCleaner.Cleanable reference) {
+        this.source = source;
+        this.elements = new AutomationElement[size];
+        this.reference = reference;
+    }
+
+    /**
+     * Creates a list over the element array
+     *
+     * @param owner Used to convert the raw elements
+     * @param collection The element array, which the list takes ownership of
+     * @param cacheRequest The cache request used to find the elements, or null
+     * @return The list
+     * @throws AutomationException Failed to get the length of the array
+     */
+    static AutomationElementList of(final BaseAutomation owner,
+                                    final IUIAutomationElementArray collection,
+                                    final CacheRequest cacheRequest) throws AutomationException {
+        return of(owner, collection, cacheRequest, true);
+    }
+
+    /**
+     * Creates a list over the element array
+     *
+     * @param owner Used to convert the raw elements
+     * @param collection The element array, which the list takes ownership of
+     * @param cacheRequest The cache request used to find the elements, or null
+     * @param found True if the elements were found with the request, false if they are the
+     *              cached children of an element that was
+     * @return The list
+     * @throws AutomationException Failed to get the length of the array
+     */
+    static AutomationElementList of(final BaseAutomation owner,
+                                    final IUIAutomationElementArray collection,
+                                    final CacheRequest cacheRequest,
+                                    final boolean found) throws AutomationException {
+        IntByReference ibr = new IntByReference();
+
+        if (collection.getLength(ibr) != 0) {
+            collection.Release();
+            throw new AutomationException();
+        }
+
+        return new AutomationElementList(ibr.getValue(), new Source() {
+            public AutomationElement get(int index) throws AutomationException {
+                PointerByReference pbr = new PointerByReference();
+
+                if (collection.getElement(index, pbr) != 0) {
+                    throw new AutomationException();
+                }
+
+                if (cacheRequest == null) {
+                    return new AutomationElement(owner.getAutomationElementFromReference(pbr), owner.getAutomation());
+                } else {
+                    return new AutomationElement(owner.getAutomationElementFromReference(pbr), cacheRequest, found)
+                            .withAutomation(owner.getAutomation());
+                }
+            }
+        }, ReferenceCleaner.register(collection, "AutomationElementList"));
+    }
+
+    /**
+     * Gets the number of elements, without taking any of them from the array
+     *
+     * @return The number of elements
+     */
+    @Override
+    public int size() {
+        return this.elements.length;
+    }
+
+    /**
+     * Gets an element, taking it from the array if this is the first time it has been asked for
+     *
+     * @param index The index of the element
+     * @return The element
+     * @throws IllegalStateException Failed to get the element, or the list has been closed
+     */
+    @Override
+    public AutomationElement get(int index) {
+        try {
+            return this.getElement(index);
+        } catch (AutomationException ex) {
+            throw new IllegalStateException("Failed to get element " + index, ex);
+        }
+    }
+
+    /**
+     * Gets an element, as get() does, but reporting a failure of the automation library
+     * as an AutomationException
+     *
+     * @param index The index of the element
+     * @return The element
+     * @throws AutomationException Failed to get the element
+     */
+    public AutomationElement getElement(int index) throws AutomationException {
+        if (index < 0 || index >= this.elements.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.elements.length);
+        }
+
+        AutomationElement element = this.elements[index];
+
+        if (element == null) {
+            if (this.closed) {
+                throw new IllegalStateException("The list has been closed");
+            }
+
+            element = this.source.get(index);
+            this.elements[index] = element;
+        }
+
+        return element;
+    }
+
+    /**
+     * Releases the underlying element array. The elements that have already been taken from
+     * the list are not closed.
+     */
+    @Override
+    public void close() {
+        if (!this.closed) {
+            this.closed = true;
+            this.reference.clean();
+        }
+    }
+}
@@ -15,18 +15,332 @@
  */
 package mmarquee.automation;
 
+import com.sun.jna.CallbackReference;
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.COM.COMUtils;
+import com.sun.jna.platform.win32.COM.Unknown;
+import com.sun.jna.platform.win32.Guid;
+import com.sun.jna.platform.win32.WinNT;
+import com.sun.jna.ptr.PointerByReference;
+import com.sun.jna.win32.StdCallLibrary;
+import mmarquee.automation.uiautomation.ComProxy;
+import mmarquee.automation.uiautomation.IUIAutomationElement3;
 import mmarquee.automation.uiautomation.IUIAutomationEventHandler;
+import org.apache.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by Mark Humphreys on 05/02/2017.
  *
- * Wrapper for event handling
+ * Wrapper for event handling.
+ *
+ * Either wraps an existing native handler, or is itself a COM object implementing
+ * IUIAutomationEventHandler, which passes each event on to a Java listener. The COM object
+ * is created when the handler is first registered (see
+ * AutomationElement.addAutomationEventHandler), and stays alive for as long as automation
+ * holds a reference to it, or until the handler is closed, whichever is later.
+ *
+ * Events arrive on one of automation's own threads, not the thread that registered the
+ * handler, so listeners should be quick and thread safe.
  */
-public class AutomationEventHandler  {
+public class AutomationEventHandler implements AutoCloseable {
+
+    /**
+     * Receives the events passed to a handler
+     */
+    public interface Listener {
+        /**
+         * Called for each event
+         *
+         * @param sender The element that raised the event, which the listener owns (and so
+         *               should close once it has finished with it)
+         * @param event The event
+         */
+        void handleEvent(AutomationElement sender, EventID event);
+    }
+
+    private static final Logger logger = Logger.getLogger(AutomationEventHandler.class.getName());
+
+    private static final Guid.IID IID_IUNKNOWN = new Guid.IID("{00000000-0000-0000-C000-000000000046}");
+
+    private static final int S_OK = 0;
+    private static final int E_NOINTERFACE = 0x80004002;
+    private static final int E_POINTER = 0x80004003;
+
+    /**
+     * Handlers that automation holds a reference to, which must not be garbage collected
+     * while it can still call them
+     */
+    private static final Set<AutomationEventHandler> referenced =
+            Collections.synchronizedSet(new HashSet<AutomationEventHandler>());
+
+    private static final Map<Integer, EventID> events = new HashMap<Integer, EventID>();
+
+    static {
+        for (EventID event : EventID.values()) {
+            events.put(event.getValue(), event);
+        }
+    }
+
+    private interface QueryInterfaceCallback extends StdCallLibrary.StdCallCallback {
+        int invoke(Pointer thisPointer, Pointer riid, Pointer ppvObject);
+    }
+
+    private interface AddRefCallback extends StdCallLibrary.StdCallCallback {
+        int invoke(Pointer thisPointer);
+    }
+
+    private interface ReleaseCallback extends StdCallLibrary.StdCallCallback {
+        int invoke(Pointer thisPointer);
+    }
+
+    private interface HandleAutomationEventCallback extends StdCallLibrary.StdCallCallback {
+        int invoke(Pointer thisPointer, Pointer sender, int eventId);
+    }
+
     private IUIAutomationEventHandler handler;
 
+    private final Listener listener;
+
+    /**
+     * The automation instance the handler was last added through, which the senders belong to
+     */
+    private volatile UIAutomation automation;
+    private final AtomicInteger references = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    /**
+     * The COM object, i.e. a pointer to the vtable, and the vtable and callbacks it points
+     * to, all of which are kept here so that they stay reachable
+     */
+    private Memory object;
+    private Memory vtable;
+    private Object[] callbacks;
+
+    /**
+     * Constructor for AutomationEventHandler, wrapping an existing native handler
+     *
+     * @param handler The native handler
+     */
     public AutomationEventHandler(IUIAutomationEventHandler handler) {
         this.handler = handler;
+        this.listener = null;
+    }
+
+    /**
+     * Constructor for AutomationEventHandler, passing events on to a listener
+     *
+     * @param listener The listener
+     */
+    public AutomationEventHandler(Listener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener must not be null");
+        }
+
+        this.listener = listener;
+    }
+
+    /**
+     * Gets the COM interface pointer to register with automation, creating the COM object
+     * the first time it is needed
+     *
+     * @return The IUIAutomationEventHandler pointer
+     * @throws AutomationException The handler was closed before it was ever registered
+     */
+    synchronized Pointer getPointer() throws AutomationException {
+        if (this.handler != null) {
+            if (!(this.handler instanceof ComProxy)) {
+                throw new AutomationException("The handler is not a COM object");
+            }
+
+            return ((ComProxy)this.handler).getInterfacePointer();
+        }
+
+        if (this.object == null) {
+            if (this.closed.get()) {
+                throw new AutomationException("The handler has been closed");
+            }
+
+            this.create();
+        }
+
+        return this.object;
+    }
+
+    private void create() {
+        QueryInterfaceCallback queryInterface = new QueryInterfaceCallback() {
+            public int invoke(Pointer thisPointer, Pointer riid, Pointer ppvObject) {
+                return queryInterface(riid, ppvObject);
+            }
+        };
+
+        AddRefCallback addRef = new AddRefCallback() {
+            public int invoke(Pointer thisPointer) {
+                return addRef();
+            }
+        };
+
+        ReleaseCallback release = new ReleaseCallback() {
+            public int invoke(Pointer thisPointer) {
+                return release();
+            }
+        };
+
+        HandleAutomationEventCallback handleAutomationEvent = new HandleAutomationEventCallback() {
+            public int invoke(Pointer thisPointer, Pointer sender, int eventId) {
+                return handleAutomationEvent(sender, eventId);
+            }
+        };
+
+        this.callbacks = new Object[] { queryInterface, addRef, release, handleAutomationEvent };
+
+        this.vtable = new Memory(Pointer.SIZE * 4);
+        this.vtable.setPointer(0, CallbackReference.getFunctionPointer(queryInterface));
+        this.vtable.setPointer(Pointer.SIZE, CallbackReference.getFunctionPointer(addRef));
+        this.vtable.setPointer(Pointer.SIZE * 2, CallbackReference.getFunctionPointer(release));
+        this.vtable.setPointer(Pointer.SIZE * 3, CallbackReference.getFunctionPointer(handleAutomationEvent));
+
+        this.object = new Memory(Pointer.SIZE);
+        this.object.setPointer(0, this.vtable);
+
+        // The handler's own reference, which close releases
+        this.addRef();
+    }
+
+    /**
+     * IUnknown::QueryInterface, which only knows about IUnknown and IUIAutomationEventHandler
+     *
+     * @param riid The interface being asked for
+     * @param ppvObject Where to put the interface pointer
+     * @return The HRESULT
+     */
+    int queryInterface(Pointer riid, Pointer ppvObject) {
+        if (ppvObject == null) {
+            return E_POINTER;
+        }
+
+        byte[] iid = riid == null ? null : riid.getByteArray(0, 16);
+
+        if (Arrays.equals(iid, IID_IUNKNOWN.toByteArray()) ||
+                Arrays.equals(iid, IUIAutomationEventHandler.IID.toByteArray())) {
+            ppvObject.setPointer(0, this.object);
+            this.addRef();
+            return S_OK;
+        }
+
+        ppvObject.setPointer(0, null);
+        return E_NOINTERFACE;
     }
 
+    /**
+     * IUnknown::AddRef
+     *
+     * @return The new reference count
+     */
+    int addRef() {
+        int count = this.references.incrementAndGet();
+
+        if (count == 1) {
+            referenced.add(this);
+        }
+
+        return count;
+    }
+
+    /**
+     * IUnknown::Release. Once nothing holds a reference, the handler (and its COM object)
+     * can be garbage collected.
+     *
+     * @return The new reference count
+     */
+    int release() {
+        int count = this.references.decrementAndGet();
+
+        if (count == 0) {
+            referenced.remove(this);
+        }
+
+        return count;
+    }
+
+    /**
+     * Gets the number of references held to the COM object
+     *
+     * @return The reference count
+     */
+    int getReferenceCount() {
+        return this.references.get();
+    }
+
+    /**
+     * IUIAutomationEventHandler::HandleAutomationEvent, which passes the event on to the
+     * listener. Failures are logged rather than handed back to automation.
+     *
+     * @param sender The element that raised the event, which automation owns
+     * @param eventId The event
+     * @return The HRESULT, which is always S_OK
+     */
+    int handleAutomationEvent(Pointer sender, int eventId) {
+        EventID event = events.get(eventId);
+
+        if (event == null || sender == null) {
+            return S_OK;
+        }
+
+        try {
+            this.listener.handleEvent(this.getSender(sender), event);
+        } catch (Throwable ex) {
+            logger.warn("Failed to handle " + event + " event", ex);
+        }
+
+        return S_OK;
+    }
+
+    /**
+     * Takes a reference of our own to the element that raised an event
+     *
+     * @param sender The element, which automation owns
+     * @return The element
+     * @throws AutomationException Failed to get the element
+     */
+    AutomationElement getSender(Pointer sender) throws AutomationException {
+        PointerByReference pElement = new PointerByReference();
+
+        WinNT.HRESULT result = new Unknown(sender).QueryInterface(new Guid.REFIID(IUIAutomationElement3.IID), pElement);
+
+        if (COMUtils.FAILED(result)) {
+            throw new AutomationException();
+        }
+
+        return new AutomationElement(IUIAutomationElement3.Converter.PointerToInterface(pElement), this.automation);
+    }
+
+    /**
+     * Records the automation instance that the handler has been added through
+     *
+     * @param automation The automation instance
+     */
+    void setAutomation(UIAutomation automation) {
+        this.automation = automation;
+    }
+
+    /**
+     * Releases the handler's own reference to its COM object. Automation keeps the object
+     * alive for as long as it is registered.
+     */
+    @Override
+    public synchronized void close() {
+        if (this.closed.compareAndSet(false, true) && this.object != null) {
+            this.release();
+        }
+    }
 }
@@ -21,4 +21,19 @@ package mmarquee.automation;
  * An exception thrown when there is an error returned by the underlying automation library
  */
 public class AutomationException extends Exception {
+    /**
+     * Constructor for the exception
+     */
+    public AutomationException() {
+        super();
+    }
+
+    /**
+     * Constructor for the exception, with a message
+     *
+     * @param message The message
+     */
+    public AutomationException(String message) {
+        super(message);
+    }
 }
@@ -0,0 +1,370 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable copy of a subtree of elements, captured with a single call (see
+ * AutomationElement.snapshot), that can be searched without calling back into the
+ * application.
+ *
+ * Each node holds the properties of the cache request that it was captured with, and
+ * the patterns that the element supports (if the request included the Is...PatternAvailable
+ * properties). If the request kept live references to the elements
+ * (AutomationElementMode.Full) each node also holds its element, which can be used to act
+ * on it. These are released when the snapshot is closed.
+ */
+public final class AutomationSnapshot implements AutoCloseable {
+
+    /**
+     * An element in the snapshot
+     */
+    public static final class Node {
+        private final Map<PropertyID, Object> properties;
+        private final PatternSet patterns;
+        private final List<Node> children;
+        private final int index;
+        private final int depth;
+        /**
+         * Nulled when the snapshot is closed, which may happen on another thread
+         */
+        private volatile AutomationElement element;
+
+        Node(Map<PropertyID, Object> properties, PatternSet patterns, List<Node> children,
+             int index, int depth, AutomationElement element) {
+            this.properties = Collections.unmodifiableMap(properties);
+            this.patterns = patterns;
+            this.children = Collections.unmodifiableList(children);
+            this.index = index;
+            this.depth = depth;
+            this.element = element;
+        }
+
+        /**
+         * Gets the value of a property, as it was when the snapshot was taken
+         *
+         * @param property The property
+         * @return The value, or null if the property was not captured
+         */
+        public Object getProperty(PropertyID property) {
+            return this.properties.get(property);
+        }
+
+        /**
+         * Whether the property was captured
+         *
+         * @param property The property
+         * @return True if it is in the snapshot
+         */
+        public boolean isCaptured(PropertyID property) {
+            return this.properties.containsKey(property);
+        }
+
+        /**
+         * Gets all of the captured properties
+         *
+         * @return The properties and their values
+         */
+        public Map<PropertyID, Object> getProperties() {
+            return this.properties;
+        }
+
+        /**
+         * Gets the runtime id, which identifies the element for as long as it exists
+         *
+         * @return A copy of the runtime id, or null if it was not captured
+         */
+        public int[] getRuntimeId() {
+            Object value = this.properties.get(PropertyID.RuntimeId);
+            return value instanceof int[] ? ((int[])value).clone() : null;
+        }
+
+        /**
+         * Gets the name
+         *
+         * @return The name, or null if it was not captured
+         */
+        public String getName() {
+            return (String)this.properties.get(PropertyID.Name);
+        }
+
+        /**
+         * Gets the automation id
+         *
+         * @return The automation id, or null if it was not captured
+         */
+        public String getAutomationId() {
+            return (String)this.properties.get(PropertyID.AutomationId);
+        }
+
+        /**
+         * Gets the class name
+         *
+         * @return The class name, or null if it was not captured
+         */
+        public String getClassName() {
+            return (String)this.properties.get(PropertyID.ClassName);
+        }
+
+        /**
+         * Gets the control type
+         *
+         * @return The control type id, or null if it was not captured
+         */
+        public Integer getControlType() {
+            return (Integer)this.properties.get(PropertyID.ControlType);
+        }
+
+        /**
+         * Gets the patterns that the element supports
+         *
+         * @return The patterns
+         */
+        public PatternSet getPatterns() {
+            return this.patterns;
+        }
+
+        /**
+         * Gets the children of the node
+         *
+         * @return The children
+         */
+        public List<Node> getChildren() {
+            return this.children;
+        }
+
+        /**
+         * Gets the position of the node in the snapshot's nodes (see getNodes)
+         *
+         * @return The index, where the root is 0
+         */
+        public int getIndex() {
+            return this.index;
+        }
+
+        /**
+         * Gets how far below the root of the snapshot the node is
+         *
+         * @return The depth, where the root is 0
+         */
+        public int getDepth() {
+            return this.depth;
+        }
+
+        /**
+         * Gets the live element
+         *
+         * @return The element, or null if the snapshot was taken without live references
+         * (or has been closed)
+         */
+        public AutomationElement getElement() {
+            return this.element;
+        }
+
+        @Override
+        public String toString() {
+            return "Node" + this.properties;
+        }
+    }
+
+    private final Node root;
+    private final List<Node> nodes;
+
+    private AutomationSnapshot(Node root, List<Node> nodes) {
+        this.root = root;
+        this.nodes = Collections.unmodifiableList(nodes);
+    }
+
+    /**
+     * Builds a snapshot from an element that has the subtree cached
+     *
+     * @param element The root element, found or updated with the cache request
+     * @param cacheRequest The cache request
+     * @param properties The properties in the cache request
+     * @param live Whether to keep the elements, otherwise they are closed
+     * @return The snapshot
+     * @throws AutomationException Failed to read from the cache
+     */
+    static AutomationSnapshot capture(AutomationElement element, CacheRequest cacheRequest,
+                                      Collection<PropertyID> properties, boolean live)
+            throws AutomationException {
+        List<Node> nodes = new ArrayList<Node>();
+        Node root = capture(element, cacheRequest, properties, live, 0, nodes);
+
+        return new AutomationSnapshot(root, nodes);
+    }
+
+    private static Node capture(AutomationElement element, CacheRequest cacheRequest,
+                                Collection<PropertyID> properties, boolean live,
+                                int depth, List<Node> nodes)
+            throws AutomationException {
+        Map<PropertyID, Object> values = new EnumMap<PropertyID, Object>(PropertyID.class);
+
+        for (PropertyID property : properties) {
+            values.put(property, element.getProperty(property));
+        }
+
+        PatternSet patterns = PatternSet.none();
+
+        for (Map.Entry<PatternID, PropertyID> entry : PatternSet.getAvailabilityProperties().entrySet()) {
+            if (Boolean.TRUE.equals(values.get(entry.getValue()))) {
+                patterns = patterns.with(entry.getKey());
+            }
+        }
+
+        // Added before the children, so the nodes are in document order
+        int index = nodes.size();
+        nodes.add(null);
+
+        List<Node> children = new ArrayList<Node>();
+
+        List<AutomationElement> cachedChildren = element.getCachedChildren(cacheRequest);
+
+        try {
+            for (AutomationElement child : cachedChildren) {
+                children.add(capture(child, cacheRequest, properties, live, depth + 1, nodes));
+            }
+        } finally {
+            if (cachedChildren instanceof AutomationElementList) {
+                ((AutomationElementList)cachedChildren).close();
+            }
+        }
+
+        if (!live) {
+            element.close();
+        }
+
+        Node node = new Node(values, patterns, children, index, depth, live ? element : null);
+        nodes.set(index, node);
+
+        return node;
+    }
+
+    /**
+     * Gets the root of the snapshot
+     *
+     * @return The node of the element the snapshot was taken from
+     */
+    public Node getRoot() {
+        return this.root;
+    }
+
+    /**
+     * Gets all of the nodes, in document order (starting with the root)
+     *
+     * @return The nodes
+     */
+    public List<Node> getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * Gets the number of nodes
+     *
+     * @return The number of nodes
+     */
+    public int size() {
+        return this.nodes.size();
+    }
+
+    /**
+     * Finds the nodes where the property has the given value
+     *
+     * @param property The property, which must have been captured
+     * @param value The value
+     * @return The matching nodes, in document order
+     */
+    public List<Node> findAll(PropertyID property, Object value) {
+        List<Node> matches = new ArrayList<Node>();
+
+        for (Node node : this.nodes) {
+            if (value.equals(node.getProperty(property))) {
+                matches.add(node);
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Finds the first node where the property has the given value
+     *
+     * @param property The property, which must have been captured
+     * @param value The value
+     * @return The first matching node, or null if there isn't one
+     */
+    public Node findFirst(PropertyID property, Object value) {
+        for (Node node : this.nodes) {
+            if (value.equals(node.getProperty(property))) {
+                return node;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds the nodes with the given name
+     *
+     * @param name The name
+     * @return The matching nodes, in document order
+     */
+    public List<Node> findByName(String name) {
+        return this.findAll(PropertyID.Name, name);
+    }
+
+    /**
+     * Finds the nodes with the given automation id
+     *
+     * @param automationId The automation id
+     * @return The matching nodes, in document order
+     */
+    public List<Node> findByAutomationId(String automationId) {
+        return this.findAll(PropertyID.AutomationId, automationId);
+    }
+
+    /**
+     * Finds the nodes of the given control type
+     *
+     * @param controlType The control type
+     * @return The matching nodes, in document order
+     */
+    public List<Node> findByControlType(ControlType controlType) {
+        return this.findAll(PropertyID.ControlType, controlType.getValue());
+    }
+
+    /**
+     * Releases the live elements held by the nodes. The captured properties can still be
+     * read afterwards.
+     */
+    @Override
+    public void close() {
+        for (Node node : this.nodes) {
+            AutomationElement element = node.element;
+
+            if (element != null) {
+                node.element = null;
+                element.close();
+            }
+        }
+    }
+}
@@ -16,8 +16,16 @@
 package mmarquee.automation;
 
 import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
 import com.sun.jna.ptr.PointerByReference;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import mmarquee.automation.uiautomation.ComProxy;
 import mmarquee.automation.uiautomation.IUIAutomationElement3;
 import mmarquee.automation.uiautomation.IUIAutomationTreeWalker;
 
@@ -26,11 +34,49 @@ import mmarquee.automation.uiautomation.IUIAutomationTreeWalker;
  *
  * Wrapper for the AutomationTreeWalker.
  */
-public class AutomationTreeWalker extends BaseAutomation {
+public class AutomationTreeWalker extends BaseAutomation implements AutoCloseable {
     IUIAutomationTreeWalker walker = null;
 
+    private ReferenceCleaner.Cleanable reference;
+
     public AutomationTreeWalker(IUIAutomationTreeWalker walker) {
         this.walker = walker;
+        this.reference = ReferenceCleaner.register(walker, "AutomationTreeWalker");
+    }
+
+    /**
+     * Releases the underlying tree walker
+     */
+    @Override
+    public void close() {
+        this.reference.clean();
+    }
+
+    /**
+     * Gets the parent element
+     * @param element The element
+     * @return The parent element, or null if the element is the root
+     * @throws AutomationException Something is up in automation
+     */
+    public AutomationElement getParentElement(AutomationElement element)
+            throws AutomationException {
+        PointerByReference pParent = new PointerByReference();
+
+        Pointer pElement = this.getPointerFromElement(element.element);
+
+        try {
+            if (this.walker.getParentElement(pElement, pParent) != 0) {
+                throw new AutomationException();
+            }
+        } finally {
+            this.releasePointer(pElement);
+        }
+
+        if (pParent.getValue() == null) {
+            return null;
+        }
+
+        return new AutomationElement(IUIAutomationElement3.Converter.PointerToInterface(pParent), element.getAutomation());
     }
 
     /**
@@ -45,12 +91,16 @@ public class AutomationTreeWalker extends BaseAutomation {
 
         Pointer pElement = this.getPointerFromElement(element.element);
 
-        this.walker.getNextSiblingElement(pElement, pChild);
+        try {
+            this.walker.getNextSiblingElement(pElement, pChild);
+        } finally {
+            this.releasePointer(pElement);
+        }
 
         try {
 	        IUIAutomationElement3 childElement =
 	                IUIAutomationElement3.Converter.PointerToInterface(pChild);
-	        return new AutomationElement(childElement);
+	        return new AutomationElement(childElement, element.getAutomation());
         } catch (NullPointerException ex) {
         	return null;
         }
@@ -68,12 +118,16 @@ public class AutomationTreeWalker extends BaseAutomation {
 
         Pointer pElement = this.getPointerFromElement(element.element);
 
-        this.walker.getPreviousSiblingElement(pElement, pChild);
+        try {
+            this.walker.getPreviousSiblingElement(pElement, pChild);
+        } finally {
+            this.releasePointer(pElement);
+        }
 
         try {
 	        IUIAutomationElement3 childElement =
 	                IUIAutomationElement3.Converter.PointerToInterface(pChild);
-	        return new AutomationElement(childElement);
+	        return new AutomationElement(childElement, element.getAutomation());
         } catch (NullPointerException ex) {
         	return null;
         }
@@ -91,12 +145,16 @@ public class AutomationTreeWalker extends BaseAutomation {
 
         Pointer pElement = this.getPointerFromElement(element.element);
 
-        this.walker.getLastChildElement(pElement, pChild);
+        try {
+            this.walker.getLastChildElement(pElement, pChild);
+        } finally {
+            this.releasePointer(pElement);
+        }
 
         try {
 	        IUIAutomationElement3 childElement =
 	                IUIAutomationElement3.Converter.PointerToInterface(pChild);
-	        return new AutomationElement(childElement);
+	        return new AutomationElement(childElement, element.getAutomation());
         } catch (NullPointerException ex) {
         	return null;
         }
@@ -113,17 +171,374 @@ public class AutomationTreeWalker extends BaseAutomation {
         PointerByReference pChild = new PointerByReference();
 
         Pointer pElement = this.getPointerFromElement(element.element);
-        this.walker.getFirstChildElement(pElement, pChild);
+
+        try {
+            this.walker.getFirstChildElement(pElement, pChild);
+        } finally {
+            this.releasePointer(pElement);
+        }
         
         try {
 	        IUIAutomationElement3 childElement =
 	                IUIAutomationElement3.Converter.PointerToInterface(pChild);
-	        return new AutomationElement(childElement);
+	        return new AutomationElement(childElement, element.getAutomation());
         } catch (NullPointerException ex) {
         	return null;
         }
     }
 
+    /**
+     * The steps that can be taken through the tree
+     */
+    private enum Step {
+        Parent,
+        FirstChild,
+        LastChild,
+        NextSibling,
+        PreviousSibling,
+        Normalize
+    }
+
+    /**
+     * Gets the parent of the supplied element, fetching the properties and patterns of the
+     * cache request in the same call
+     * @param element The element
+     * @param cacheRequest The properties and patterns to cache
+     * @return The parent element, or null if there isn't one
+     * @throws AutomationException Automation has returned an error
+     */
+    public AutomationElement getParentElement(AutomationElement element, CacheRequest cacheRequest)
+            throws AutomationException {
+        return this.step(Step.Parent, element, cacheRequest);
+    }
+
+    /**
+     * Gets the first child of the supplied element, fetching the properties and patterns of
+     * the cache request in the same call
+     * @param element The element
+     * @param cacheRequest The properties and patterns to cache
+     * @return The first child of the element, or null if not found
+     * @throws AutomationException Automation has returned an error
+     */
+    public AutomationElement getFirstChildElement(AutomationElement element, CacheRequest cacheRequest)
+            throws AutomationException {
+        return this.step(Step.FirstChild, element, cacheRequest);
+    }
+
+    /**
+     * Gets the last child of the supplied element, fetching the properties and patterns of
+     * the cache request in the same call
+     * @param element The element
+     * @param cacheRequest The properties and patterns to cache
+     * @return The last child of the element, or null if not found
+     * @throws AutomationException Automation has returned an error
+     */
+    public AutomationElement getLastChildElement(AutomationElement element, CacheRequest cacheRequest)
+            throws AutomationException {
+        return this.step(Step.LastChild, element, cacheRequest);
+    }
+
+    /**
+     * Gets the next sibling of the supplied element, fetching the properties and patterns of
+     * the cache request in the same call
+     * @param element The element
+     * @param cacheRequest The properties and patterns to cache
+     * @return The sibling element, or null if not found
+     * @throws AutomationException Automation has returned an error
+     */
+    public AutomationElement getNextSiblingElement(AutomationElement element, CacheRequest cacheRequest)
+            throws AutomationException {
+        return this.step(Step.NextSibling, element, cacheRequest);
+    }
+
+    /**
+     * Gets the previous sibling of the supplied element, fetching the properties and patterns
+     * of the cache request in the same call
+     * @param element The element
+     * @param cacheRequest The properties and patterns to cache
+     * @return The previous sibling element, or null if not found
+     * @throws AutomationException Automation has returned an error
+     */
+    public AutomationElement getPreviousSiblingElement(AutomationElement element, CacheRequest cacheRequest)
+            throws AutomationException {
+        return this.step(Step.PreviousSibling, element, cacheRequest);
+    }
+
+    /**
+     * Gets the nearest element to the supplied one (itself, or an ancestor) that is in the
+     * view of this walker, fetching the properties and patterns of the cache request in the
+     * same call
+     * @param element The element
+     * @param cacheRequest The properties and patterns to cache
+     * @return The element in this view, or null if there isn't one
+     * @throws AutomationException Automation has returned an error
+     */
+    public AutomationElement normalizeElement(AutomationElement element, CacheRequest cacheRequest)
+            throws AutomationException {
+        return this.step(Step.Normalize, element, cacheRequest);
+    }
+
+    private AutomationElement step(Step step, AutomationElement element, CacheRequest cacheRequest)
+            throws AutomationException {
+        PointerByReference pResult = new PointerByReference();
+
+        // The proxy's own pointer can be passed straight through, which saves the
+        // QueryInterface and Release that would otherwise go with every step
+        boolean borrowed = element.element instanceof ComProxy;
+        Pointer pElement = borrowed ?
+                ((ComProxy)element.element).getInterfacePointer() :
+                this.getPointerFromElement(element.element);
+
+        int result;
+
+        try {
+            result = this.step(step, pElement, cacheRequest.getPointer(), pResult);
+        } finally {
+            if (!borrowed) {
+                this.releasePointer(pElement);
+            }
+        }
+
+        if (result != 0) {
+            throw new AutomationException();
+        }
+
+        if (pResult.getValue() == null) {
+            return null;
+        }
+
+        return new AutomationElement(IUIAutomationElement3.Converter.PointerToInterface(pResult), cacheRequest)
+                .withAutomation(element.getAutomation());
+    }
+
+    private int step(Step step, Pointer pElement, Pointer pCacheRequest, PointerByReference pResult) {
+        switch (step) {
+            case Parent:
+                return this.walker.getParentElementBuildCache(pElement, pCacheRequest, pResult);
+            case FirstChild:
+                return this.walker.getFirstChildElementBuildCache(pElement, pCacheRequest, pResult);
+            case LastChild:
+                return this.walker.getLastChildElementBuildCache(pElement, pCacheRequest, pResult);
+            case NextSibling:
+                return this.walker.getNextSiblingElementBuildCache(pElement, pCacheRequest, pResult);
+            case PreviousSibling:
+                return this.walker.getPreviousSiblingElementBuildCache(pElement, pCacheRequest, pResult);
+            default:
+                return this.walker.normalizeElementBuildCache(pElement, pCacheRequest, pResult);
+        }
+    }
+
+    /**
+     * Gets the nth descendant of the supplied element, in document order (i.e. the order
+     * that findAll returns them in). The walk stops as soon as the element is found, and
+     * the elements passed on the way are released.
+     *
+     * When the walker has a condition that the root doesn't match, the first matches below
+     * the root are siblings of matches elsewhere in the tree (e.g. in other windows), so
+     * each of those is checked to be below the root, and the walk ends at the first that isn't.
+     * @param root The element to look under
+     * @param index The index of the descendant
+     * @return The descendant, or null if there are not that many
+     * @throws AutomationException Automation has returned an error
+     */
+    public AutomationElement getDescendant(AutomationElement root, int index)
+            throws AutomationException {
+        Deque<AutomationElement> parents = new ArrayDeque<AutomationElement>();
+
+        AutomationElement current = this.getFirstChildElement(root);
+        int counter = 0;
+
+        try {
+            while (current != null) {
+                if (counter == index) {
+                    AutomationElement found = current;
+                    current = null;
+                    return found;
+                }
+
+                counter++;
+
+                AutomationElement child = this.getFirstChildElement(current);
+
+                if (child != null) {
+                    parents.push(current);
+                    current = child;
+                    continue;
+                }
+
+                // Move on to the next sibling, of this element or of the nearest parent that has one
+                while (current != null) {
+                    AutomationElement next = this.getNextSiblingElement(current);
+                    current.close();
+
+                    if (next != null && parents.isEmpty() && !this.isWithin(next, root)) {
+                        // Past the end of the root, and everything after is too
+                        next.close();
+                        current = null;
+                        break;
+                    }
+
+                    current = next != null ? next : parents.poll();
+
+                    if (next != null) {
+                        break;
+                    }
+                }
+            }
+
+            return null;
+        } finally {
+            if (current != null) {
+                current.close();
+            }
+
+            for (AutomationElement parent : parents) {
+                parent.close();
+            }
+        }
+    }
+
+    /**
+     * Whether the element is below the root, going by its ancestors in the raw view
+     * @param element The element
+     * @param root The root
+     * @return True if one of the element's ancestors is the root
+     * @throws AutomationException Automation has returned an error
+     */
+    boolean isWithin(AutomationElement element, AutomationElement root) throws AutomationException {
+        UIAutomation automation = root.getAutomation() != null ? root.getAutomation() : UIAutomation.getInstance();
+
+        Pointer pRoot = this.getPointerFromElement(root.element);
+
+        try (AutomationTreeWalker raw = automation.getRawViewWalker()) {
+            AutomationElement ancestor = raw.getParentElement(element);
+
+            while (ancestor != null) {
+                Pointer pAncestor = this.getPointerFromElement(ancestor.element);
+                IntByReference same = new IntByReference();
+
+                try {
+                    if (automation.compareElements(pAncestor, pRoot, same) != 0) {
+                        throw new AutomationException();
+                    }
+                } finally {
+                    this.releasePointer(pAncestor);
+                }
+
+                if (same.getValue() != 0) {
+                    ancestor.close();
+                    return true;
+                }
+
+                AutomationElement next = raw.getParentElement(ancestor);
+                ancestor.close();
+                ancestor = next;
+            }
+
+            return false;
+        } finally {
+            this.releasePointer(pRoot);
+        }
+    }
+
+    /**
+     * The order in which {@link #stream} visits the descendants of an element
+     */
+    public enum TraversalOrder {
+        /**
+         * Each element is followed by its descendants, i.e. the order findAll uses
+         */
+        DepthFirst,
+
+        /**
+         * All of the elements at one level are visited before any of the next level
+         */
+        BreadthFirst
+    }
+
+    /**
+     * Gets the descendants of the supplied element, depth first
+     * @param root The element to walk under
+     * @return The descendants, fetched as the stream is consumed
+     */
+    public Stream<AutomationElement> stream(AutomationElement root) {
+        return this.stream(root, TraversalOrder.DepthFirst, Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * Gets the descendants of the supplied element. Elements are only fetched from the tree
+     * as the stream is consumed, so e.g. findFirst or anyMatch stop the walk as soon as they
+     * have their answer.
+     *
+     * The walk carries on from the elements that have been handed out, so they shouldn't be
+     * closed until the stream has finished.
+     * @param root The element to walk under (which is not included)
+     * @param order The order to visit the elements in
+     * @param maxDepth How far below the root to go, where 1 is just the children
+     * @param pruner Decides which elements to skip the descendants of, or null to visit all of them
+     * @return The descendants
+     */
+    public Stream<AutomationElement> stream(AutomationElement root,
+                                            TraversalOrder order,
+                                            int maxDepth,
+                                            AutomationElementPruner pruner) {
+        return this.stream(root, order, maxDepth, pruner, null);
+    }
+
+    /**
+     * Gets the descendants of the supplied element, as
+     * {@link #stream(AutomationElement, TraversalOrder, int, AutomationElementPruner)} does,
+     * fetching the properties and patterns of the cache request with each step. Reading those
+     * from the elements (including in the pruner) then needs no further calls.
+     * @param root The element to walk under (which is not included)
+     * @param order The order to visit the elements in
+     * @param maxDepth How far below the root to go, where 1 is just the children
+     * @param pruner Decides which elements to skip the descendants of, or null to visit all of them
+     * @param cacheRequest The properties and patterns to cache, or null
+     * @return The descendants
+     */
+    public Stream<AutomationElement> stream(AutomationElement root,
+                                            TraversalOrder order,
+                                            int maxDepth,
+                                            AutomationElementPruner pruner,
+                                            CacheRequest cacheRequest) {
+        return StreamSupport.stream(this.spliterator(root, order, maxDepth, pruner, cacheRequest), false);
+    }
+
+    /**
+     * Gets a spliterator over the descendants of the supplied element, as used by
+     * {@link #stream(AutomationElement, TraversalOrder, int, AutomationElementPruner)}
+     * @param root The element to walk under (which is not included)
+     * @param order The order to visit the elements in
+     * @param maxDepth How far below the root to go, where 1 is just the children
+     * @param pruner Decides which elements to skip the descendants of, or null to visit all of them
+     * @return The spliterator, which throws an IllegalStateException if the walk fails
+     */
+    public Spliterator<AutomationElement> spliterator(AutomationElement root,
+                                                      TraversalOrder order,
+                                                      int maxDepth,
+                                                      AutomationElementPruner pruner) {
+        return this.spliterator(root, order, maxDepth, pruner, null);
+    }
+
+    /**
+     * Gets a spliterator over the descendants of the supplied element, as used by
+     * {@link #stream(AutomationElement, TraversalOrder, int, AutomationElementPruner, CacheRequest)}
+     * @param root The element to walk under (which is not included)
+     * @param order The order to visit the elements in
+     * @param maxDepth How far below the root to go, where 1 is just the children
+     * @param pruner Decides which elements to skip the descendants of, or null to visit all of them
+     * @param cacheRequest The properties and patterns to cache, or null
+     * @return The spliterator, which throws an IllegalStateException if the walk fails
+     */
+    public Spliterator<AutomationElement> spliterator(AutomationElement root,
+                                                      TraversalOrder order,
+                                                      int maxDepth,
+                                                      AutomationElementPruner pruner,
+                                                      CacheRequest cacheRequest) {
+        return new TreeSpliterator(this, root, order, maxDepth, pruner, cacheRequest);
+    }
+
     /**
      * A generic walker algorithm
      * @param visitor The visitor to call on each element
@@ -158,4 +573,20 @@ public class AutomationTreeWalker extends BaseAutomation {
     	 */
     	boolean visit(AutomationTreeWalker walker, AutomationElement element) throws AutomationException;
     }
+
+    /**
+     * Decides which parts of the tree
+     * {@link AutomationTreeWalker#stream(AutomationElement, TraversalOrder, int, AutomationElementPruner)}
+     * skips
+     */
+    public interface AutomationElementPruner {
+        /**
+         * Called before the descendants of an element are visited
+         * @param element The element
+         * @param depth How far below the root the element is, where 1 is a child
+         * @return true to skip the descendants of the element, false to visit them
+         * @throws AutomationException Failed to read from the element
+         */
+        boolean prune(AutomationElement element, int depth) throws AutomationException;
+    }
 }
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import com.sun.jna.platform.win32.Ole32;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of threads that each join the multi-threaded apartment and create their own
+ * UIAutomation instance, to read from several windows or applications at once (see
+ * UIAutomation.parallelFindAll and UIAutomation.parallelSnapshot).
+ *
+ * Tasks are given the instance belonging to the thread they run on. Elements should be
+ * found through that instance (e.g. with getElementFromHandle), rather than handed over
+ * from another thread. The elements, and the controls built on them, carry on using that
+ * instance, and UIAutomation.getInstance returns it on the pool's threads.
+ */
+public final class AutomationWorkerPool implements AutoCloseable {
+
+    /**
+     * How each thread joins COM and creates its automation instance
+     */
+    interface Worker {
+        /**
+         * Called on each thread before it runs any tasks
+         *
+         * @return The thread's automation instance
+         * @throws Exception Failed to create the instance
+         */
+        UIAutomation enter() throws Exception;
+
+        /**
+         * Called on each thread as it finishes
+         */
+        void leave();
+    }
+
+    /**
+     * The multi-threaded apartment
+     */
+    private static final class MultiThreaded implements Worker {
+        private final ThreadLocal<Boolean> initialised = new ThreadLocal<Boolean>();
+
+        public UIAutomation enter() {
+            // The instance joins the apartment as it is created, which leave balances
+            this.initialised.set(true);
+
+            return new UIAutomation(Ole32.COINIT_MULTITHREADED);
+        }
+
+        public void leave() {
+            if (this.initialised.get() != null) {
+                this.initialised.remove();
+                Ole32.INSTANCE.CoUninitialize();
+            }
+        }
+    }
+
+    private final ThreadLocal<UIAutomation> automation = new ThreadLocal<UIAutomation>();
+    private final ThreadLocal<Throwable> failure = new ThreadLocal<Throwable>();
+    private final List<Thread> started = Collections.synchronizedList(new ArrayList<Thread>());
+    private final ExecutorService executor;
+    private final int threads;
+
+    AutomationWorkerPool(int threads, final Worker worker) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+
+        this.threads = threads;
+
+        final AtomicInteger count = new AtomicInteger();
+
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    public void run() {
+                        work(worker, runnable);
+                    }
+                }, "ui-automation-worker-" + count.incrementAndGet());
+
+                thread.setDaemon(true);
+                started.add(thread);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts a pool with a thread for each processor
+     *
+     * @return The pool
+     */
+    public static AutomationWorkerPool start() {
+        return start(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Starts a pool. The threads are started, and their automation instances created,
+     * as they are needed.
+     *
+     * @param threads The number of threads
+     * @return The pool
+     */
+    public static AutomationWorkerPool start(int threads) {
+        return new AutomationWorkerPool(threads, new MultiThreaded());
+    }
+
+    private void work(Worker worker, Runnable runnable) {
+        try {
+            UIAutomation instance = worker.enter();
+            this.automation.set(instance);
+
+            // Anything on this thread that asks for the default instance gets this one, rather
+            // than creating the shared (single threaded) instance in the multi-threaded apartment
+            UIAutomation.setThreadInstance(instance);
+        } catch (Throwable ex) {
+            this.failure.set(ex);
+        }
+
+        try {
+            runnable.run();
+        } finally {
+            this.automation.remove();
+            this.failure.remove();
+            UIAutomation.setThreadInstance(null);
+            worker.leave();
+        }
+    }
+
+    /**
+     * Gets the number of threads
+     *
+     * @return The number of threads
+     */
+    public int getThreadCount() {
+        return this.threads;
+    }
+
+    /**
+     * Runs a task on one of the threads
+     *
+     * @param task The task, which is given the thread's automation instance
+     * @param <T> The type of the result
+     * @return The future result
+     */
+    public <T> CompletableFuture<T> submit(final AutomationDispatcher.Task<T> task) {
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+
+        try {
+            this.executor.execute(new Runnable() {
+                public void run() {
+                    UIAutomation instance = automation.get();
+
+                    try {
+                        if (instance == null) {
+                            throw new AutomationException("The worker failed to start: " + failure.get());
+                        }
+
+                        future.complete(task.run(instance));
+                    } catch (Throwable ex) {
+                        future.completeExceptionally(ex);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(new IllegalStateException("The pool has been closed"));
+        }
+
+        return future;
+    }
+
+    /**
+     * Runs the tasks across the threads, and waits for them all to finish
+     *
+     * @param tasks The tasks
+     * @param <T> The type of the results
+     * @return The results, in the same order as the tasks
+     * @throws AutomationException One of the tasks failed, or the wait was interrupted
+     */
+    public <T> List<T> invokeAll(List<? extends AutomationDispatcher.Task<? extends T>> tasks)
+            throws AutomationException {
+        List<CompletableFuture<? extends T>> futures = new ArrayList<CompletableFuture<? extends T>>(tasks.size());
+
+        for (AutomationDispatcher.Task<? extends T> task : tasks) {
+            futures.add(this.submit(task));
+        }
+
+        List<T> results = new ArrayList<T>(tasks.size());
+
+        try {
+            for (CompletableFuture<? extends T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new AutomationException(ex.getMessage());
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof AutomationException) {
+                throw (AutomationException)ex.getCause();
+            }
+
+            throw new AutomationException(String.valueOf(ex.getCause()));
+        }
+
+        return results;
+    }
+
+    /**
+     * Stops the threads, once the tasks that have been submitted have finished
+     */
+    @Override
+    public void close() {
+        this.executor.shutdown();
+
+        // Wait for the threads themselves, so that they have left the apartment
+        for (Thread thread : new ArrayList<Thread>(this.started)) {
+            if (thread == Thread.currentThread()) {
+                continue;
+            }
+
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -20,12 +20,10 @@ import com.sun.jna.platform.win32.COM.COMUtils;
 import com.sun.jna.platform.win32.COM.Unknown;
 import com.sun.jna.platform.win32.Guid;
 import com.sun.jna.platform.win32.WinNT;
-import com.sun.jna.ptr.IntByReference;
 import com.sun.jna.ptr.PointerByReference;
 import mmarquee.automation.uiautomation.IUIAutomationElement3;
 import mmarquee.automation.uiautomation.IUIAutomationElementArray;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -56,7 +54,14 @@ public abstract class BaseAutomation {
             throws AutomationException {
         Unknown uElement = makeUnknown(pbr.getValue());
 
-        WinNT.HRESULT result0 = uElement.QueryInterface(new Guid.REFIID(IUIAutomationElement3.IID), pbr);
+        WinNT.HRESULT result0;
+
+        try {
+            result0 = uElement.QueryInterface(new Guid.REFIID(IUIAutomationElement3.IID), pbr);
+        } finally {
+            // The interface that was queried for holds its own reference
+            uElement.Release();
+        }
 
         if (COMUtils.FAILED(result0)) {
             throw new AutomationException();
@@ -76,7 +81,13 @@ public abstract class BaseAutomation {
         Unknown uElement = this.makeUnknown(pbr.getValue());
         PointerByReference pUnknown = new PointerByReference();
 
-        WinNT.HRESULT result0 = uElement.QueryInterface(new Guid.REFIID(IUIAutomationElementArray.IID), pUnknown);
+        WinNT.HRESULT result0;
+
+        try {
+            result0 = uElement.QueryInterface(new Guid.REFIID(IUIAutomationElementArray.IID), pUnknown);
+        } finally {
+            uElement.Release();
+        }
 
         if (COMUtils.FAILED(result0)) {
             throw new AutomationException();
@@ -85,46 +96,48 @@ public abstract class BaseAutomation {
         return IUIAutomationElementArray.Converter.PointerToInterface(pUnknown);
     }
 
+    /**
+     * Gets the automation instance that the elements found through this object belong to
+     *
+     * @return The automation instance, or null if it isn't known
+     */
+    public UIAutomation getAutomation() {
+        return null;
+    }
+
     /**
      * Turns a collection (array) of automation elements, into a collection.
      *
+     * The list is read-only, and is backed by the array, so each element is only taken
+     * from it when it is first asked for. Closing the list releases the array.
+     *
      * @param collection The ElementArray.
      * @return The List
      * @throws AutomationException Error in the automation library
      */
     public List<AutomationElement> collectionToList(IUIAutomationElementArray collection) throws AutomationException {
+        return AutomationElementList.of(this, collection, null);
+    }
 
-        IntByReference ibr = new IntByReference();
-
-        if (collection.getLength(ibr) != 0) {
-            throw new AutomationException();
-        }
-
-        List<AutomationElement> list = new ArrayList<AutomationElement>();
-
-        for (int count = 0; count < ibr.getValue(); count++) {
-
-            PointerByReference pbr = new PointerByReference();
-
-            if (collection.getElement(count, pbr) != 0) {
-                throw new AutomationException();
-            }
-
-            Unknown uElement = new Unknown(pbr.getValue());
-
-            WinNT.HRESULT result0 = uElement.QueryInterface(new Guid.REFIID(IUIAutomationElement3.IID), pbr);
-
-            if (COMUtils.SUCCEEDED(result0)) {
-                IUIAutomationElement3 element =
-                        IUIAutomationElement3.Converter.PointerToInterface(pbr);
-
-                list.add(new AutomationElement(element));
-            }
+    /**
+     * Releases a raw COM reference, e.g. a condition that is no longer needed
+     *
+     * @param pbr The reference to release (may be null)
+     */
+    protected void release(PointerByReference pbr) {
+        if (pbr != null && pbr.getValue() != null) {
+            this.makeUnknown(pbr.getValue()).Release();
         }
-
-        return list;
     }
 
+    /**
+     * Gets a new reference to the element's IUIAutomationElement3 interface, which must be
+     * released (see releasePointer) once it has been used
+     *
+     * @param element The element
+     * @return The raw interface pointer
+     * @throws AutomationException Automation library has thrown an error.
+     */
     protected Pointer getPointerFromElement(IUIAutomationElement3 element) throws AutomationException {
         PointerByReference pElement = new PointerByReference();
 
@@ -135,4 +148,15 @@ public abstract class BaseAutomation {
 
         return pElement.getValue();
     }
+
+    /**
+     * Releases a raw COM interface pointer
+     *
+     * @param pointer The pointer to release (may be null)
+     */
+    protected void releasePointer(Pointer pointer) {
+        if (pointer != null) {
+            this.makeUnknown(pointer).Release();
+        }
+    }
 }
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
+import com.sun.jna.ptr.PointerByReference;
+import mmarquee.automation.uiautomation.AutomationElementMode;
+import mmarquee.automation.uiautomation.IUIAutomationCacheRequest;
+import mmarquee.automation.uiautomation.TreeScope;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Wrapper for the IUIAutomationCacheRequest.
+ *
+ * A cache request lists the properties and patterns that are fetched from the
+ * provider in the same call that finds an element, so that they can be read
+ * afterwards without another cross-process call. The add / set methods return the
+ * request itself, so a request can be built up in a single expression, e.g.
+ *
+ * <pre>
+ *     CacheRequest request = automation.createCacheRequest()
+ *             .add(PropertyID.Name, PropertyID.AutomationId, PropertyID.ControlType)
+ *             .setTreeScope(new TreeScope(TreeScope.Element));
+ * </pre>
+ */
+public class CacheRequest extends BaseAutomation implements AutoCloseable {
+
+    private IUIAutomationCacheRequest request;
+
+    private ReferenceCleaner.Cleanable reference;
+
+    private Pointer pointer;
+
+    private Set<PropertyID> properties = EnumSet.noneOf(PropertyID.class);
+
+    private Set<PatternID> patterns = EnumSet.noneOf(PatternID.class);
+
+    /**
+     * The scope that was last set, which for a new request is just the element
+     */
+    private int treeScope = TreeScope.Element;
+
+    /**
+     * Constructor for the CacheRequest
+     *
+     * @param pointer The raw pointer to the request
+     * @param request The underlying cache request
+     */
+    public CacheRequest(Pointer pointer, IUIAutomationCacheRequest request) {
+        this.pointer = pointer;
+        this.request = request;
+        this.reference = ReferenceCleaner.register(request, "CacheRequest");
+    }
+
+    /**
+     * Releases the underlying cache request. Elements that were found with it keep
+     * their cached values.
+     */
+    @Override
+    public void close() {
+        this.reference.clean();
+    }
+
+    /**
+     * Gets the raw pointer to the underlying cache request, as passed to the *BuildCache methods
+     *
+     * @return The raw pointer
+     */
+    public Pointer getPointer() {
+        return this.pointer;
+    }
+
+    /**
+     * Adds properties to the request
+     *
+     * @param properties The properties to fetch along with each element
+     * @return This request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public CacheRequest add(PropertyID... properties) throws AutomationException {
+        for (PropertyID property : properties) {
+            if (this.request.addProperty(property.getValue()) != 0) {
+                throw new AutomationException();
+            }
+
+            this.properties.add(property);
+        }
+
+        return this;
+    }
+
+    /**
+     * Adds patterns to the request
+     *
+     * @param patterns The patterns to fetch along with each element
+     * @return This request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public CacheRequest add(PatternID... patterns) throws AutomationException {
+        for (PatternID pattern : patterns) {
+            if (this.request.addPattern(pattern.getValue()) != 0) {
+                throw new AutomationException();
+            }
+
+            this.patterns.add(pattern);
+        }
+
+        return this;
+    }
+
+    /**
+     * Sets the scope of the elements (relative to each found element) that are cached
+     *
+     * @param scope The scope
+     * @return This request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public CacheRequest setTreeScope(TreeScope scope) throws AutomationException {
+        if (this.request.setTreeScope(scope.value) != 0) {
+            throw new AutomationException();
+        }
+
+        this.treeScope = scope.value;
+        return this;
+    }
+
+    /**
+     * Gets the scope of the elements that are cached
+     *
+     * @return The scope
+     * @throws AutomationException Call to Automation API failed
+     */
+    public TreeScope getTreeScope() throws AutomationException {
+        IntByReference ibr = new IntByReference();
+
+        if (this.request.getTreeScope(ibr) != 0) {
+            throw new AutomationException();
+        }
+
+        return new TreeScope(ibr.getValue());
+    }
+
+    /**
+     * Sets the condition used to filter the elements that are cached
+     *
+     * @param condition The condition
+     * @return This request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public CacheRequest setTreeFilter(PointerByReference condition) throws AutomationException {
+        if (this.request.setTreeFilter(condition.getValue()) != 0) {
+            throw new AutomationException();
+        }
+
+        return this;
+    }
+
+    /**
+     * Sets whether the returned elements keep a live reference to the UI element
+     *
+     * @param mode The mode to use
+     * @return This request
+     * @throws AutomationException Call to Automation API failed
+     */
+    public CacheRequest setAutomationElementMode(AutomationElementMode mode) throws AutomationException {
+        if (this.request.setAutomationElementMode(mode.getValue()) != 0) {
+            throw new AutomationException();
+        }
+
+        return this;
+    }
+
+    /**
+     * Gets whether the returned elements keep a live reference to the UI element
+     *
+     * @return The mode
+     * @throws AutomationException Call to Automation API failed
+     */
+    public AutomationElementMode getAutomationElementMode() throws AutomationException {
+        IntByReference ibr = new IntByReference();
+
+        if (this.request.getAutomationElementMode(ibr) != 0) {
+            throw new AutomationException();
+        }
+
+        return AutomationElementMode.fromInt(ibr.getValue());
+    }
+
+    /**
+     * Whether the element that is found (rather than just its children or descendants)
+     * has its properties and patterns cached
+     *
+     * @return True if the scope includes TreeScope.Element
+     */
+    public boolean isElementCached() {
+        return (this.treeScope & TreeScope.Element) != 0;
+    }
+
+    /**
+     * Gets the properties that have been added to this request
+     *
+     * @return The properties
+     */
+    public Set<PropertyID> getProperties() {
+        return Collections.unmodifiableSet(this.properties);
+    }
+
+    /**
+     * Gets the patterns that have been added to this request
+     *
+     * @return The patterns
+     */
+    public Set<PatternID> getPatterns() {
+        return Collections.unmodifiableSet(this.patterns);
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import com.sun.jna.Pointer;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of native conditions, keyed on what they test for.
+ *
+ * Property conditions are keyed on the property and the value, and 'and' / 'or'
+ * conditions on the keys of the conditions they combine (so they can only be cached
+ * when both parts came from the cache). The cache holds its own reference to each
+ * condition, and every condition handed out has a reference of its own, which the
+ * caller releases as usual. A condition that is evicted (the least recently used one,
+ * once the cache is full) therefore stays valid for as long as a caller still holds it.
+ */
+final class ConditionCache {
+
+    /**
+     * Creates a condition that is not in the cache
+     */
+    interface Factory {
+        /**
+         * Creates the condition
+         *
+         * @return The new condition, which belongs to the caller
+         * @throws AutomationException Something has gone wrong
+         */
+        Pointer create() throws AutomationException;
+    }
+
+    /**
+     * Counts the references to conditions
+     */
+    interface References {
+        void addRef(Pointer condition);
+
+        void release(Pointer condition);
+    }
+
+    /**
+     * The key of a condition
+     */
+    static final class Key {
+        private static final int PROPERTY = 0;
+        private static final int AND = 1;
+        private static final int OR = 2;
+
+        private final int kind;
+        private final int property;
+        private final Object value;
+        private final Key left;
+        private final Key right;
+        private final int hash;
+
+        private Key(int kind, int property, Object value, Key left, Key right) {
+            this.kind = kind;
+            this.property = property;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+
+            int hash = kind;
+            hash = 31 * hash + property;
+            hash = 31 * hash + (value == null ? 0 : value.hashCode());
+            hash = 31 * hash + (left == null ? 0 : left.hashCode());
+            hash = 31 * hash + (right == null ? 0 : right.hashCode());
+            this.hash = hash;
+        }
+
+        /**
+         * The key of a property condition
+         *
+         * @param property The property
+         * @param value The value it is compared with
+         * @return The key
+         */
+        static Key property(PropertyID property, Object value) {
+            return new Key(PROPERTY, property.getValue(), value, null, null);
+        }
+
+        /**
+         * The key of an 'and' condition
+         *
+         * @param left The key of the first condition
+         * @param right The key of the second condition
+         * @return The key
+         */
+        static Key and(Key left, Key right) {
+            return new Key(AND, 0, null, left, right);
+        }
+
+        /**
+         * The key of an 'or' condition
+         *
+         * @param left The key of the first condition
+         * @param right The key of the second condition
+         * @return The key
+         */
+        static Key or(Key left, Key right) {
+            return new Key(OR, 0, null, left, right);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+
+            if (!(other instanceof Key)) {
+                return false;
+            }
+
+            Key key = (Key)other;
+
+            return this.hash == key.hash &&
+                    this.kind == key.kind &&
+                    this.property == key.property &&
+                    equal(this.value, key.value) &&
+                    equal(this.left, key.left) &&
+                    equal(this.right, key.right);
+        }
+
+        private static boolean equal(Object first, Object second) {
+            return first == null ? second == null : first.equals(second);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    private final int capacity;
+
+    private final References references;
+
+    private final LinkedHashMap<Key, Pointer> conditions;
+
+    /**
+     * The keys of the cached conditions, by address, so 'and' / 'or' conditions can be keyed
+     */
+    private final Map<Long, Key> keys = new HashMap<Long, Key>();
+
+    /**
+     * Constructor for the ConditionCache
+     *
+     * @param capacity The most conditions to hold
+     * @param references Counts the references to the conditions
+     */
+    ConditionCache(int capacity, References references) {
+        this.capacity = capacity;
+        this.references = references;
+        this.conditions = new LinkedHashMap<Key, Pointer>(16, 0.75f, true);
+    }
+
+    /**
+     * Gets a condition from the cache, creating it if it is not there
+     *
+     * @param key The key of the condition
+     * @param factory Creates the condition
+     * @return The condition, which the caller must release
+     * @throws AutomationException Failed to create the condition
+     */
+    Pointer get(Key key, Factory factory) throws AutomationException {
+        synchronized (this) {
+            Pointer condition = this.conditions.get(key);
+
+            if (condition != null) {
+                this.references.addRef(condition);
+                return condition;
+            }
+        }
+
+        // Created outside of the lock, another thread may get there first
+        Pointer created = factory.create();
+
+        synchronized (this) {
+            if (created != null && this.capacity > 0 && !this.conditions.containsKey(key)) {
+                this.references.addRef(created);
+                this.conditions.put(key, created);
+                this.keys.put(Pointer.nativeValue(created), key);
+                this.evict();
+            }
+        }
+
+        return created;
+    }
+
+    /**
+     * Gets the key of a cached condition
+     *
+     * @param condition The condition
+     * @return The key, or null if the condition did not come from the cache
+     */
+    synchronized Key keyOf(Pointer condition) {
+        if (condition == null) {
+            return null;
+        }
+
+        return this.keys.get(Pointer.nativeValue(condition));
+    }
+
+    /**
+     * Gets the number of cached conditions
+     *
+     * @return The number of conditions
+     */
+    synchronized int size() {
+        return this.conditions.size();
+    }
+
+    /**
+     * Releases all of the cached conditions
+     */
+    synchronized void clear() {
+        for (Pointer condition : this.conditions.values()) {
+            this.references.release(condition);
+        }
+
+        this.conditions.clear();
+        this.keys.clear();
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, Pointer>> iterator = this.conditions.entrySet().iterator();
+
+        while (this.conditions.size() > this.capacity && iterator.hasNext()) {
+            Map.Entry<Key, Pointer> eldest = iterator.next();
+
+            this.keys.remove(Pointer.nativeValue(eldest.getValue()));
+            iterator.remove();
+            this.references.release(eldest.getValue());
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import mmarquee.automation.uiautomation.TreeScope;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Waits for something to happen (e.g. a window to open), checking again whenever a
+ * matching automation event is raised, rather than sleeping for a fixed time.
+ *
+ * The wait should be created before whatever will raise the event (e.g. expanding a menu),
+ * so that the event isn't missed. If the events can't be listened for, or the event that
+ * is raised isn't one of them, the check is still repeated, at intervals that start short
+ * and grow (see RetryPolicy), until the time runs out.
+ */
+public final class EventWait extends Wait implements AutoCloseable {
+
+    /**
+     * Checks every 10ms to begin with, up to every 250ms. An event wakes the wait anyway,
+     * so there is no need for jitter.
+     */
+    static final RetryPolicy POLICY = RetryPolicy.DEFAULT.withDelays(10, 250).withJitter(0);
+
+    private static final Logger logger = Logger.getLogger(EventWait.class.getName());
+
+    private final AutomationElement element;
+    private final List<EventID> registered = new ArrayList<EventID>();
+    private AutomationEventHandler handler;
+
+    /**
+     * The number of events seen so far, and when the current check started
+     */
+    private long events = 0;
+    private long seen = 0;
+
+    /**
+     * A wait that isn't woken by events
+     */
+    EventWait() {
+        this.element = null;
+    }
+
+    private EventWait(AutomationElement element) {
+        this.element = element;
+    }
+
+    /**
+     * Starts listening for events
+     *
+     * @param element The element to listen to
+     * @param scope Which elements' events to listen for, e.g. new TreeScope(TreeScope.Subtree)
+     * @param events The events that mean it is worth checking again
+     * @return The wait, which must be closed to stop listening
+     */
+    public static EventWait listen(AutomationElement element, TreeScope scope, EventID... events) {
+        final EventWait wait = new EventWait(element);
+
+        wait.handler = new AutomationEventHandler(new AutomationEventHandler.Listener() {
+            public void handleEvent(AutomationElement sender, EventID event) {
+                sender.close();
+                wait.signal();
+            }
+        });
+
+        try {
+            for (EventID event : events) {
+                element.addAutomationEventHandler(event, scope, wait.handler);
+                wait.registered.add(event);
+            }
+        } catch (AutomationException ex) {
+            logger.warn("Unable to listen for events, so polling instead");
+        } finally {
+            // Automation holds its own reference for as long as the handler is registered
+            wait.handler.close();
+        }
+
+        return wait;
+    }
+
+    /**
+     * Whether events are being listened for
+     *
+     * @return False if the wait just polls
+     */
+    public boolean isListening() {
+        return !this.registered.isEmpty();
+    }
+
+    /**
+     * Whether any of the events have been raised since the wait started listening
+     *
+     * @return True once an event has been seen
+     */
+    public synchronized boolean isSignalled() {
+        return this.events > 0;
+    }
+
+    /**
+     * Wakes the wait, so that it checks again
+     */
+    synchronized void signal() {
+        this.events++;
+        this.notifyAll();
+    }
+
+    /**
+     * Waits until the probe gives a result, checking straight away, then again each time
+     * an event is raised, or the interval between checks has passed.
+     *
+     * @param probe The check
+     * @param timeout The longest time to wait, in milliseconds
+     * @param <T> The type of the result
+     * @return The result of the probe
+     * @throws ElementNotFoundException The time ran out
+     * @throws AutomationException The probe failed, or the wait was interrupted
+     */
+    public <T> T until(Probe<T> probe, long timeout) throws AutomationException {
+        return this.poll(probe, POLICY.withTimeout(timeout));
+    }
+
+    @Override
+    protected synchronized void beforeProbe() {
+        this.seen = this.events;
+    }
+
+    /**
+     * Waits for an event after the ones seen before the check, or for the time to pass
+     */
+    @Override
+    protected synchronized void pause(long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+
+        while (this.events == this.seen) {
+            long remaining = deadline - System.currentTimeMillis();
+
+            if (remaining <= 0) {
+                return;
+            }
+
+            this.wait(remaining);
+        }
+    }
+
+    /**
+     * Stops listening for events
+     */
+    @Override
+    public void close() {
+        for (EventID event : this.registered) {
+            try {
+                this.element.removeAutomationEventHandler(event, this.handler);
+            } catch (AutomationException ex) {
+                logger.warn("Failed to remove " + event + " handler");
+            }
+        }
+
+        this.registered.clear();
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The set of patterns that an element supports, held as a bitmap over the PatternIDs.
+ *
+ * Only the patterns that have an Is...PatternAvailable property can be in the set, as
+ * that is how it is filled in (see AutomationElement.getAvailablePatterns).
+ */
+public final class PatternSet {
+
+    private static final Map<PatternID, PropertyID> availability = new EnumMap<PatternID, PropertyID>(PatternID.class);
+
+    static {
+        availability.put(PatternID.Dock, PropertyID.IsDockPatternAvailable);
+        availability.put(PatternID.ExpandCollapse, PropertyID.IsExpandCollapsePatternAvailable);
+        availability.put(PatternID.GridItem, PropertyID.IsGridItemPatternAvailable);
+        availability.put(PatternID.Grid, PropertyID.IsGridPatternAvailable);
+        availability.put(PatternID.Invoke, PropertyID.IsInvokePatternAvailable);
+        availability.put(PatternID.MultipleView, PropertyID.IsMultipleViewPatternAvailable);
+        availability.put(PatternID.RangeValue, PropertyID.IsRangeValuePatternAvailable);
+        availability.put(PatternID.Scroll, PropertyID.IsScrollPatternAvailable);
+        availability.put(PatternID.ScrollItem, PropertyID.IsScrollItemPatternAvailable);
+        availability.put(PatternID.SelectionItem, PropertyID.IsSelectionItemPatternAvailable);
+        availability.put(PatternID.Selection, PropertyID.IsSelectionPatternAvailable);
+        availability.put(PatternID.Table, PropertyID.IsTablePatternAvailable);
+        availability.put(PatternID.TableItem, PropertyID.IsTableItemPatternAvailable);
+        availability.put(PatternID.Text, PropertyID.IsTextPatternAvailable);
+        availability.put(PatternID.Toggle, PropertyID.IsTogglePatternAvailable);
+        availability.put(PatternID.Transform, PropertyID.IsTransformPatternAvailable);
+        availability.put(PatternID.Value, PropertyID.IsValuePatternAvailable);
+        availability.put(PatternID.Window, PropertyID.IsWindowPatternAvailable);
+        availability.put(PatternID.ItemContainer, PropertyID.IsItemContainerPatternAvailablePropertyId);
+    }
+
+    private static final PatternSet NONE = new PatternSet(0L);
+
+    private final long bits;
+
+    private PatternSet(long bits) {
+        this.bits = bits;
+    }
+
+    private static long bit(PatternID pattern) {
+        return 1L << pattern.ordinal();
+    }
+
+    /**
+     * Gets the empty set
+     *
+     * @return The set
+     */
+    public static PatternSet none() {
+        return NONE;
+    }
+
+    /**
+     * Gets a set of patterns
+     *
+     * @param patterns The patterns in the set
+     * @return The set
+     */
+    public static PatternSet of(PatternID... patterns) {
+        long bits = 0L;
+
+        for (PatternID pattern : patterns) {
+            bits |= bit(pattern);
+        }
+
+        return new PatternSet(bits);
+    }
+
+    /**
+     * Gets the set of all the patterns that have an availability property
+     *
+     * @return The set
+     */
+    public static PatternSet all() {
+        return of(availability.keySet().toArray(new PatternID[availability.size()]));
+    }
+
+    /**
+     * Gets a set with another pattern added
+     *
+     * @param pattern The pattern to add
+     * @return The new set
+     */
+    public PatternSet with(PatternID pattern) {
+        return new PatternSet(this.bits | bit(pattern));
+    }
+
+    /**
+     * Whether the pattern is in the set
+     *
+     * @param pattern The pattern
+     * @return True if it is in the set
+     */
+    public boolean contains(PatternID pattern) {
+        return (this.bits & bit(pattern)) != 0;
+    }
+
+    /**
+     * Whether the set is empty
+     *
+     * @return True if there are no patterns
+     */
+    public boolean isEmpty() {
+        return this.bits == 0L;
+    }
+
+    /**
+     * Gets the number of patterns in the set
+     *
+     * @return The number of patterns
+     */
+    public int size() {
+        return Long.bitCount(this.bits);
+    }
+
+    /**
+     * Gets the patterns in the set
+     *
+     * @return The patterns
+     */
+    public Set<PatternID> toSet() {
+        Set<PatternID> patterns = EnumSet.noneOf(PatternID.class);
+
+        for (PatternID pattern : PatternID.values()) {
+            if (this.contains(pattern)) {
+                patterns.add(pattern);
+            }
+        }
+
+        return patterns;
+    }
+
+    /**
+     * Gets the property that says whether the pattern is available
+     *
+     * @param pattern The pattern
+     * @return The Is...PatternAvailable property, or null if there is not one
+     */
+    public static PropertyID getAvailabilityProperty(PatternID pattern) {
+        return availability.get(pattern);
+    }
+
+    /**
+     * Gets the patterns, and the properties that say whether each one is available
+     *
+     * @return The patterns and properties
+     */
+    static Map<PatternID, PropertyID> getAvailabilityProperties() {
+        return Collections.unmodifiableMap(availability);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof PatternSet && ((PatternSet)other).bits == this.bits;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.bits);
+    }
+
+    @Override
+    public String toString() {
+        return this.toSet().toString();
+    }
+}
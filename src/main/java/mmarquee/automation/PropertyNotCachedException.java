@@ -0,0 +1,30 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+/**
+ * Thrown when a cached property or pattern is read that was not part of the cache request.
+ */
+public class PropertyNotCachedException extends AutomationException {
+    /**
+     * Constructor for the exception
+     *
+     * @param property The property (or pattern) that was not cached
+     */
+    public PropertyNotCachedException(String property) {
+        super(property + " was not part of the cache request");
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A predicate over the properties of an element.
+ *
+ * Queries are built up from property comparisons, e.g.
+ *
+ * <pre>
+ *     Query query = Query.and(
+ *             Query.controlType(ControlType.Edit),
+ *             Query.className("PasswordBox"));
+ * </pre>
+ *
+ * and are turned into native conditions by the QueryCompiler, so that the provider
+ * does the matching. Any part that cannot be expressed as a native condition (see
+ * {@link #where(PropertyID, Predicate)}) is checked against each element afterwards.
+ */
+public abstract class Query {
+
+    Query() {
+    }
+
+    /**
+     * Matches elements where the property has the given value
+     *
+     * @param property The property
+     * @param value The value, a String, Integer or Boolean
+     * @return The query
+     */
+    public static Query property(PropertyID property, Object value) {
+        if (!(value instanceof String || value instanceof Integer || value instanceof Boolean)) {
+            throw new IllegalArgumentException("Unsupported value for " + property + ": " + value);
+        }
+
+        return new Property(property, value);
+    }
+
+    /**
+     * Matches elements with the given name
+     *
+     * @param name The name
+     * @return The query
+     */
+    public static Query name(String name) {
+        return property(PropertyID.Name, name);
+    }
+
+    /**
+     * Matches elements with the given class name
+     *
+     * @param className The class name
+     * @return The query
+     */
+    public static Query className(String className) {
+        return property(PropertyID.ClassName, className);
+    }
+
+    /**
+     * Matches elements with the given automation id
+     *
+     * @param automationId The automation id
+     * @return The query
+     */
+    public static Query automationId(String automationId) {
+        return property(PropertyID.AutomationId, automationId);
+    }
+
+    /**
+     * Matches elements of the given control type
+     *
+     * @param controlType The control type
+     * @return The query
+     */
+    public static Query controlType(ControlType controlType) {
+        return property(PropertyID.ControlType, controlType.getValue());
+    }
+
+    /**
+     * Matches elements where the value of the property passes the test. This can't be
+     * expressed as a native condition, so it is checked against each element.
+     *
+     * @param property The property
+     * @param test The test for the value
+     * @return The query
+     */
+    public static Query where(PropertyID property, Predicate<Object> test) {
+        return new Where(property, test);
+    }
+
+    /**
+     * Matches elements that match all of the queries
+     *
+     * @param queries The queries
+     * @return The query
+     */
+    public static Query and(Query... queries) {
+        return new And(Arrays.asList(queries));
+    }
+
+    /**
+     * Matches elements that match any of the queries
+     *
+     * @param queries The queries
+     * @return The query
+     */
+    public static Query or(Query... queries) {
+        return new Or(Arrays.asList(queries));
+    }
+
+    /**
+     * Matches elements that do not match the query
+     *
+     * @param query The query
+     * @return The query
+     */
+    public static Query not(Query query) {
+        return new Not(query);
+    }
+
+    /**
+     * Checks the query against an element, reading the properties from the element
+     *
+     * @param element The element
+     * @return True if the element matches
+     * @throws AutomationException Failed to read a property
+     */
+    public abstract boolean test(AutomationElement element) throws AutomationException;
+
+    /**
+     * Whether the whole query can be expressed as a native condition
+     *
+     * @return True if it can
+     */
+    abstract boolean isNative();
+
+    /**
+     * A property comparison
+     */
+    static final class Property extends Query {
+        private final PropertyID property;
+        private final Object value;
+
+        Property(PropertyID property, Object value) {
+            this.property = property;
+            this.value = value;
+        }
+
+        PropertyID getProperty() {
+            return this.property;
+        }
+
+        Object getValue() {
+            return this.value;
+        }
+
+        @Override
+        public boolean test(AutomationElement element) throws AutomationException {
+            switch (this.property) {
+                case Name:
+                    return this.value.equals(element.getName());
+                case ClassName:
+                    return this.value.equals(element.getClassName());
+                case AutomationId:
+                    return this.value.equals(element.getAutomationId());
+                case ControlType:
+                    return this.value.equals(element.getControlType());
+                default:
+                    break;
+            }
+
+            if (this.value instanceof String) {
+                return this.value.equals(element.getStringProperty(this.property));
+            } else if (this.value instanceof Integer) {
+                return this.value.equals(element.getIntProperty(this.property));
+            } else {
+                return this.value.equals(element.getBooleanProperty(this.property));
+            }
+        }
+
+        @Override
+        boolean isNative() {
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return this.property + " == " +
+                    (this.value instanceof String ? "\"" + this.value + "\"" : String.valueOf(this.value));
+        }
+    }
+
+    /**
+     * A test that is only run against elements
+     */
+    static final class Where extends Query {
+        private final PropertyID property;
+        private final Predicate<Object> test;
+
+        Where(PropertyID property, Predicate<Object> test) {
+            this.property = property;
+            this.test = test;
+        }
+
+        @Override
+        public boolean test(AutomationElement element) throws AutomationException {
+            return this.test.test(element.getPropertyValue(this.property.getValue()));
+        }
+
+        @Override
+        boolean isNative() {
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "where(" + this.property + ")";
+        }
+    }
+
+    /**
+     * The base of the 'and' and 'or' queries
+     */
+    abstract static class Composite extends Query {
+        private final List<Query> queries;
+
+        Composite(List<Query> queries) {
+            this.queries = Collections.unmodifiableList(new ArrayList<Query>(queries));
+        }
+
+        List<Query> getQueries() {
+            return this.queries;
+        }
+
+        @Override
+        boolean isNative() {
+            for (Query query : this.queries) {
+                if (!query.isNative()) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        String toString(String operator) {
+            StringBuilder builder = new StringBuilder(operator).append("(");
+
+            for (int index = 0; index < this.queries.size(); index++) {
+                if (index > 0) {
+                    builder.append(", ");
+                }
+
+                builder.append(this.queries.get(index));
+            }
+
+            return builder.append(")").toString();
+        }
+    }
+
+    /**
+     * Matches all of the queries
+     */
+    static final class And extends Composite {
+        And(List<Query> queries) {
+            super(queries);
+        }
+
+        @Override
+        public boolean test(AutomationElement element) throws AutomationException {
+            for (Query query : this.getQueries()) {
+                if (!query.test(element)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return this.toString("and");
+        }
+    }
+
+    /**
+     * Matches any of the queries
+     */
+    static final class Or extends Composite {
+        Or(List<Query> queries) {
+            super(queries);
+        }
+
+        @Override
+        public boolean test(AutomationElement element) throws AutomationException {
+            for (Query query : this.getQueries()) {
+                if (query.test(element)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return this.toString("or");
+        }
+    }
+
+    /**
+     * Matches when the query does not
+     */
+    static final class Not extends Query {
+        private final Query query;
+
+        Not(Query query) {
+            this.query = query;
+        }
+
+        Query getQuery() {
+            return this.query;
+        }
+
+        @Override
+        public boolean test(AutomationElement element) throws AutomationException {
+            return !this.query.test(element);
+        }
+
+        @Override
+        boolean isNative() {
+            return this.query.isNative();
+        }
+
+        @Override
+        public String toString() {
+            return "not(" + this.query + ")";
+        }
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.PointerByReference;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns a Query into the strongest native condition that it can, so the provider
+ * does as much of the matching as possible.
+ *
+ * Property comparisons, and 'and' / 'or' / 'not' queries made only from them, become
+ * native conditions. The parts of an 'and' query that can't be (e.g. a where() test)
+ * are left over, and checked against the elements that the native condition finds.
+ * An 'or' or 'not' query with a part that can't be expressed natively is left over
+ * as a whole.
+ */
+public final class QueryCompiler {
+
+    private QueryCompiler() {
+    }
+
+    /**
+     * The native and left over parts of a query
+     */
+    static final class Plan {
+        private final Query nativePart;
+        private final Query residual;
+
+        Plan(Query nativePart, Query residual) {
+            this.nativePart = nativePart;
+            this.residual = residual;
+        }
+
+        /**
+         * @return The part that becomes a native condition, or null if there is none
+         */
+        Query getNativePart() {
+            return this.nativePart;
+        }
+
+        /**
+         * @return The part that is checked against each element, or null if there is none
+         */
+        Query getResidual() {
+            return this.residual;
+        }
+    }
+
+    /**
+     * A query that has been compiled into a native condition
+     */
+    public static final class Compiled implements AutoCloseable {
+        private final UIAutomation automation;
+        private final PointerByReference condition;
+        private final Query residual;
+
+        Compiled(UIAutomation automation, PointerByReference condition, Query residual) {
+            this.automation = automation;
+            this.condition = condition;
+            this.residual = residual;
+        }
+
+        /**
+         * Gets the native condition
+         *
+         * @return The condition
+         */
+        public PointerByReference getCondition() {
+            return this.condition;
+        }
+
+        /**
+         * Whether the whole query is matched by the native condition
+         *
+         * @return True if nothing is left to check against the elements
+         */
+        public boolean isNative() {
+            return this.residual == null;
+        }
+
+        /**
+         * Checks the left over part of the query against an element
+         *
+         * @param element The element, found with the native condition
+         * @return True if the element matches the whole query
+         * @throws AutomationException Failed to read a property
+         */
+        public boolean test(AutomationElement element) throws AutomationException {
+            return this.residual == null || this.residual.test(element);
+        }
+
+        /**
+         * Keeps the elements that match the left over part of the query. The
+         * elements that don't are released.
+         *
+         * @param elements The elements, found with the native condition
+         * @return The matching elements
+         * @throws AutomationException Failed to read a property
+         */
+        public List<AutomationElement> filter(List<AutomationElement> elements) throws AutomationException {
+            if (this.residual == null) {
+                return elements;
+            }
+
+            List<AutomationElement> matches = new ArrayList<AutomationElement>();
+
+            for (AutomationElement element : elements) {
+                if (this.residual.test(element)) {
+                    matches.add(element);
+                } else {
+                    element.close();
+                }
+            }
+
+            return matches;
+        }
+
+        /**
+         * Releases the native condition
+         */
+        @Override
+        public void close() {
+            this.automation.releaseCondition(this.condition);
+        }
+    }
+
+    /**
+     * Compiles the query into a native condition
+     *
+     * @param automation The automation instance that creates the conditions
+     * @param query The query
+     * @return The compiled query, which must be closed once it is no longer needed
+     * @throws AutomationException Failed to create a condition
+     */
+    public static Compiled compile(UIAutomation automation, Query query) throws AutomationException {
+        Plan plan = plan(query);
+
+        PointerByReference condition = plan.getNativePart() == null ?
+                automation.createTrueCondition() :
+                emit(automation, plan.getNativePart());
+
+        return new Compiled(automation, condition, plan.getResidual());
+    }
+
+    /**
+     * Splits a query into the part that can be expressed as a native condition
+     * and the part that is left over
+     *
+     * @param query The query
+     * @return The plan
+     */
+    static Plan plan(Query query) {
+        if (query.isNative()) {
+            return new Plan(query, null);
+        }
+
+        if (!(query instanceof Query.And)) {
+            return new Plan(null, query);
+        }
+
+        List<Query> natives = new ArrayList<Query>();
+        List<Query> residuals = new ArrayList<Query>();
+
+        for (Query part : ((Query.And)query).getQueries()) {
+            Plan partPlan = plan(part);
+
+            if (partPlan.getNativePart() != null) {
+                natives.add(partPlan.getNativePart());
+            }
+
+            if (partPlan.getResidual() != null) {
+                residuals.add(partPlan.getResidual());
+            }
+        }
+
+        return new Plan(combine(natives), combine(residuals));
+    }
+
+    private static Query combine(List<Query> queries) {
+        if (queries.isEmpty()) {
+            return null;
+        } else if (queries.size() == 1) {
+            return queries.get(0);
+        } else {
+            return new Query.And(queries);
+        }
+    }
+
+    private static PointerByReference emit(UIAutomation automation, Query query) throws AutomationException {
+        if (query instanceof Query.Property) {
+            Query.Property property = (Query.Property)query;
+            Object value = property.getValue();
+
+            if (value instanceof String) {
+                return automation.createPropertyCondition(property.getProperty(), (String)value);
+            } else if (value instanceof Integer) {
+                return automation.createPropertyCondition(property.getProperty(), ((Integer)value).intValue());
+            } else {
+                return automation.createPropertyCondition(property.getProperty(), ((Boolean)value).booleanValue());
+            }
+        }
+
+        if (query instanceof Query.Not) {
+            PointerByReference inner = emit(automation, ((Query.Not)query).getQuery());
+
+            try {
+                return automation.createNotCondition(inner.getValue());
+            } finally {
+                automation.releaseCondition(inner);
+            }
+        }
+
+        List<Query> queries = ((Query.Composite)query).getQueries();
+
+        if (queries.isEmpty()) {
+            return query instanceof Query.And ?
+                    automation.createTrueCondition() :
+                    automation.createFalseCondition();
+        } else if (queries.size() == 1) {
+            return emit(automation, queries.get(0));
+        }
+
+        List<PointerByReference> parts = new ArrayList<PointerByReference>();
+
+        try {
+            Pointer[] conditions = new Pointer[queries.size()];
+
+            for (int index = 0; index < conditions.length; index++) {
+                PointerByReference part = emit(automation, queries.get(index));
+                parts.add(part);
+                conditions[index] = part.getValue();
+            }
+
+            if (query instanceof Query.And) {
+                return automation.createAndCondition(conditions);
+            } else {
+                return automation.createOrCondition(conditions);
+            }
+        } finally {
+            for (PointerByReference part : parts) {
+                automation.releaseCondition(part);
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.Ole32;
+import mmarquee.automation.uiautomation.ComProxy;
+import mmarquee.automation.uiautomation.DispatchTable;
+import org.apache.log4j.Logger;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Releases COM references once they are no longer reachable, as a safety net for the
+ * ones that are not closed explicitly.
+ *
+ * The reference is tracked through the Pointer instance that the proxy passes to every
+ * native call, so it cannot be released while a call is in progress. As the library
+ * targets Java 8 (without java.lang.ref.Cleaner) this keeps its own phantom references,
+ * and a daemon thread to release them.
+ *
+ * Setting the system property mmarquee.automation.trackReferences to true records where
+ * each reference was allocated. The outstanding references can then be listed with
+ * getOutstanding (or logged with logOutstanding), and a warning is logged for each
+ * reference that had to be released by the cleaner rather than being closed.
+ */
+public final class ReferenceCleaner {
+
+    /**
+     * The system property that turns on leak tracking
+     */
+    public static final String TRACK_REFERENCES = "mmarquee.automation.trackReferences";
+
+    private static final boolean tracking = Boolean.getBoolean(TRACK_REFERENCES);
+
+    private static final Logger logger = Logger.getLogger(ReferenceCleaner.class.getName());
+
+    private static final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+    /**
+     * The registered references, which keeps them reachable until they are cleaned
+     */
+    private static final Set<Registration> registrations =
+            Collections.newSetFromMap(new ConcurrentHashMap<Registration, Boolean>());
+
+    static {
+        // Initialise JNA on this thread first. The cleaner's first use of it (in Ole32) racing
+        // another thread's first use of Pointer can deadlock in the class initialisers.
+        Native.getNativeSize(Pointer.class);
+
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                ReferenceCleaner.run();
+            }
+        }, "ui-automation-cleaner");
+
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private ReferenceCleaner() {
+    }
+
+    /**
+     * Releases a registered reference
+     */
+    public interface Cleanable {
+        /**
+         * Releases the reference, if it has not already been released
+         */
+        void clean();
+    }
+
+    /**
+     * The action that actually releases a reference
+     */
+    interface Releaser {
+        void release();
+    }
+
+    private static final Cleanable NONE = new Cleanable() {
+        public void clean() {
+        }
+    };
+
+    private static final class Registration extends PhantomReference<Object> implements Cleanable {
+        private final Releaser releaser;
+        private final String description;
+        private final Throwable allocatedAt;
+        private final AtomicBoolean cleaned = new AtomicBoolean(false);
+
+        Registration(Object referent, Releaser releaser, String description) {
+            super(referent, queue);
+            this.releaser = releaser;
+            this.description = description;
+            this.allocatedAt = tracking ? new Throwable("Allocated " + description) : null;
+        }
+
+        public void clean() {
+            if (this.cleaned.compareAndSet(false, true)) {
+                registrations.remove(this);
+                this.clear();
+                this.releaser.release();
+            }
+        }
+    }
+
+    /**
+     * Registers the reference held by a generated proxy, to be released when the proxy's
+     * interface pointer is no longer reachable.
+     *
+     * Anything else (e.g. a mocked interface) is not tracked.
+     *
+     * @param reference The proxy
+     * @param description What the reference is, for the leak report
+     * @return Used to release the reference explicitly
+     */
+    public static Cleanable register(Object reference, String description) {
+        if (reference instanceof ComProxy) {
+            return register(((ComProxy)reference).getInterfacePointer(), description);
+        } else {
+            return NONE;
+        }
+    }
+
+    /**
+     * Registers a COM reference, to be released when the pointer is no longer reachable.
+     *
+     * @param pointer The COM interface pointer, as passed to native calls
+     * @param description What the reference is, for the leak report
+     * @return Used to release the reference explicitly
+     */
+    public static Cleanable register(Pointer pointer, String description) {
+        if (pointer == null) {
+            return NONE;
+        }
+
+        final long address = Pointer.nativeValue(pointer);
+
+        return register(pointer, new Releaser() {
+            public void release() {
+                Pointer unknown = new Pointer(address);
+                DispatchTable.of(unknown, 3)[2].invokeInt(new Object[]{unknown});
+            }
+        }, description);
+    }
+
+    static Cleanable register(Object referent, Releaser releaser, String description) {
+        Registration registration = new Registration(referent, releaser, description);
+        registrations.add(registration);
+        return registration;
+    }
+
+    /**
+     * Gets the number of references that have not been released yet
+     *
+     * @return The number of references
+     */
+    public static int getOutstandingCount() {
+        return registrations.size();
+    }
+
+    /**
+     * Gets where each outstanding reference was allocated. This is only recorded when
+     * the mmarquee.automation.trackReferences property is set.
+     *
+     * @return The allocation sites
+     */
+    public static List<Throwable> getOutstanding() {
+        List<Throwable> sites = new ArrayList<Throwable>();
+
+        for (Registration registration : registrations) {
+            if (registration.allocatedAt != null) {
+                sites.add(registration.allocatedAt);
+            }
+        }
+
+        return sites;
+    }
+
+    /**
+     * Logs the outstanding references, with where they were allocated (if tracked)
+     */
+    public static void logOutstanding() {
+        logger.info(getOutstandingCount() + " outstanding COM references");
+
+        for (Throwable site : getOutstanding()) {
+            logger.info(site.getMessage(), site);
+        }
+    }
+
+    private static void run() {
+        try {
+            // The automation objects are free-threaded, so they can be released from here
+            Ole32.INSTANCE.CoInitializeEx(Pointer.NULL, Ole32.COINIT_MULTITHREADED);
+        } catch (Throwable ex) {
+            // Not on Windows, nothing to initialise
+        }
+
+        while (true) {
+            try {
+                Registration registration = (Registration)queue.remove();
+
+                if (registration.allocatedAt != null) {
+                    logger.warn(registration.description + " was not closed", registration.allocatedAt);
+                }
+
+                registration.clean();
+            } catch (InterruptedException ex) {
+                return;
+            } catch (Throwable ex) {
+                logger.error("Failed to release COM reference", ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * How long, and how often, to keep looking for something (see Wait).
+ *
+ * The delay between attempts starts small and grows by a multiplier each time, up to a
+ * cap, so something that turns up quickly is found quickly, while something slow to
+ * appear costs a few cheap attempts rather than a tight loop. Each delay is shortened by
+ * a random amount (the jitter), so that several waits don't all look at the same time.
+ *
+ * Policies are immutable; the with... methods return a changed copy.
+ */
+public final class RetryPolicy {
+
+    /**
+     * Looks for up to 10 seconds, with delays growing from 50ms to 1 second
+     */
+    public static final RetryPolicy DEFAULT = new RetryPolicy(10000, Integer.MAX_VALUE, 50, 1000, 2.0, 0.25);
+
+    private final long timeout;
+    private final int maxAttempts;
+    private final long initialDelay;
+    private final long maxDelay;
+    private final double multiplier;
+    private final double jitter;
+
+    private RetryPolicy(long timeout, int maxAttempts, long initialDelay, long maxDelay,
+                        double multiplier, double jitter) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout must not be negative");
+        }
+
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+
+        if (initialDelay < 1 || maxDelay < initialDelay) {
+            throw new IllegalArgumentException("delays must be at least 1ms, with maxDelay >= initialDelay");
+        }
+
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("multiplier must be at least 1");
+        }
+
+        if (jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("jitter must be at least 0 and less than 1");
+        }
+
+        this.timeout = timeout;
+        this.maxAttempts = maxAttempts;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.multiplier = multiplier;
+        this.jitter = jitter;
+    }
+
+    /**
+     * Changes the time budget
+     *
+     * @param timeout The longest time to keep looking, in milliseconds
+     * @return The changed policy
+     */
+    public RetryPolicy withTimeout(long timeout) {
+        return new RetryPolicy(timeout, this.maxAttempts, this.initialDelay, this.maxDelay,
+                this.multiplier, this.jitter);
+    }
+
+    /**
+     * Changes the number of attempts
+     *
+     * @param maxAttempts The most attempts to make, including the first
+     * @return The changed policy
+     */
+    public RetryPolicy withMaxAttempts(int maxAttempts) {
+        return new RetryPolicy(this.timeout, maxAttempts, this.initialDelay, this.maxDelay,
+                this.multiplier, this.jitter);
+    }
+
+    /**
+     * Changes the delays between attempts
+     *
+     * @param initialDelay The delay after the first attempt, in milliseconds
+     * @param maxDelay The longest delay, in milliseconds
+     * @return The changed policy
+     */
+    public RetryPolicy withDelays(long initialDelay, long maxDelay) {
+        return new RetryPolicy(this.timeout, this.maxAttempts, initialDelay, maxDelay,
+                this.multiplier, this.jitter);
+    }
+
+    /**
+     * Changes how quickly the delays grow
+     *
+     * @param multiplier What each delay is multiplied by to get the next one
+     * @return The changed policy
+     */
+    public RetryPolicy withMultiplier(double multiplier) {
+        return new RetryPolicy(this.timeout, this.maxAttempts, this.initialDelay, this.maxDelay,
+                multiplier, this.jitter);
+    }
+
+    /**
+     * Changes the jitter
+     *
+     * @param jitter The most that a delay is shortened by, as a fraction of the delay
+     * @return The changed policy
+     */
+    public RetryPolicy withJitter(double jitter) {
+        return new RetryPolicy(this.timeout, this.maxAttempts, this.initialDelay, this.maxDelay,
+                this.multiplier, jitter);
+    }
+
+    /**
+     * Gets the time budget
+     *
+     * @return The longest time to keep looking, in milliseconds
+     */
+    public long getTimeout() {
+        return this.timeout;
+    }
+
+    /**
+     * Gets the number of attempts
+     *
+     * @return The most attempts to make
+     */
+    public int getMaxAttempts() {
+        return this.maxAttempts;
+    }
+
+    /**
+     * Gets the delay after an attempt
+     *
+     * @param attempt The attempt that has just failed, counting from 0
+     * @return The delay, in milliseconds
+     */
+    public long getDelay(int attempt) {
+        return this.getDelay(attempt, ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * Gets the delay after an attempt
+     *
+     * @param attempt The attempt that has just failed, counting from 0
+     * @param random A random number, from 0 (inclusive) to 1 (exclusive)
+     * @return The delay, in milliseconds
+     */
+    long getDelay(int attempt, double random) {
+        double delay = Math.min(this.initialDelay * Math.pow(this.multiplier, attempt), this.maxDelay);
+
+        return Math.max(1, (long)(delay * (1 - this.jitter * random)));
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy{timeout=" + this.timeout +
+                ", maxAttempts=" + this.maxAttempts +
+                ", delays=" + this.initialDelay + ".." + this.maxDelay +
+                ", multiplier=" + this.multiplier +
+                ", jitter=" + this.jitter + "}";
+    }
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The differences between two snapshots of the same part of the tree, e.g. taken before
+ * and after an action.
+ *
+ * Nodes are matched by their runtime id. Those without one (i.e. the runtime id was not
+ * captured) are matched by their parent plus their control type and automation id, or
+ * their position amongst the siblings of the same control type if they have no
+ * automation id. Each snapshot is only looked at once, so comparing them takes time in
+ * proportion to their size.
+ *
+ * Only nodes matched by their runtime id can be found to have moved; a node matched by
+ * its position that has moved shows up as removed and added.
+ */
+public final class SnapshotDiff {
+
+    /**
+     * A node that is in both snapshots, but has moved or changed
+     */
+    public static final class Change {
+        private final AutomationSnapshot.Node before;
+        private final AutomationSnapshot.Node after;
+        private final Set<PropertyID> properties;
+
+        Change(AutomationSnapshot.Node before, AutomationSnapshot.Node after, Set<PropertyID> properties) {
+            this.before = before;
+            this.after = after;
+            this.properties = Collections.unmodifiableSet(properties);
+        }
+
+        /**
+         * Gets the node in the first snapshot
+         *
+         * @return The node
+         */
+        public AutomationSnapshot.Node getBefore() {
+            return this.before;
+        }
+
+        /**
+         * Gets the node in the second snapshot
+         *
+         * @return The node
+         */
+        public AutomationSnapshot.Node getAfter() {
+            return this.after;
+        }
+
+        /**
+         * Gets the properties that have different values
+         *
+         * @return The properties (empty for a node that has only moved)
+         */
+        public Set<PropertyID> getProperties() {
+            return this.properties;
+        }
+
+        @Override
+        public String toString() {
+            return this.after.getName() + " " + this.properties;
+        }
+    }
+
+    /**
+     * The key of each node in a snapshot, and of its parent
+     */
+    private static final class Keys {
+        private final String[] keys;
+        private final String[] parents;
+        private final Map<String, AutomationSnapshot.Node> nodes;
+
+        Keys(AutomationSnapshot snapshot) {
+            List<AutomationSnapshot.Node> all = snapshot.getNodes();
+
+            this.keys = new String[all.size()];
+            this.parents = new String[all.size()];
+            this.nodes = new HashMap<String, AutomationSnapshot.Node>(all.size() * 2);
+
+            AutomationSnapshot.Node root = snapshot.getRoot();
+            this.put(root, keyOf(root, "", 0), null);
+
+            // The nodes are in document order, so each parent has its key before its children
+            for (AutomationSnapshot.Node node : all) {
+                String key = this.keys[node.getIndex()];
+                Map<String, Integer> positions = new HashMap<String, Integer>();
+
+                for (AutomationSnapshot.Node child : node.getChildren()) {
+                    String type = String.valueOf(child.getControlType());
+                    Integer position = positions.get(type);
+                    position = position == null ? 0 : position + 1;
+                    positions.put(type, position);
+
+                    this.put(child, keyOf(child, key, position), key);
+                }
+            }
+        }
+
+        private void put(AutomationSnapshot.Node node, String key, String parent) {
+            this.keys[node.getIndex()] = key;
+            this.parents[node.getIndex()] = parent;
+
+            if (!this.nodes.containsKey(key)) {
+                this.nodes.put(key, node);
+            }
+        }
+
+        private static String keyOf(AutomationSnapshot.Node node, String parent, int position) {
+            int[] runtimeId = node.getRuntimeId();
+
+            if (runtimeId != null && runtimeId.length > 0) {
+                return Arrays.toString(runtimeId);
+            }
+
+            String automationId = node.getAutomationId();
+
+            return parent + "/" + node.getControlType() +
+                    (automationId != null && !automationId.isEmpty() ? "[" + automationId + "]" : "#" + position);
+        }
+    }
+
+    private final List<AutomationSnapshot.Node> added;
+    private final List<AutomationSnapshot.Node> removed;
+    private final List<Change> moved;
+    private final List<Change> changed;
+
+    private SnapshotDiff(List<AutomationSnapshot.Node> added, List<AutomationSnapshot.Node> removed,
+                         List<Change> moved, List<Change> changed) {
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.moved = Collections.unmodifiableList(moved);
+        this.changed = Collections.unmodifiableList(changed);
+    }
+
+    /**
+     * Compares two snapshots
+     *
+     * @param before The earlier snapshot
+     * @param after The later snapshot
+     * @return The differences
+     */
+    public static SnapshotDiff compare(AutomationSnapshot before, AutomationSnapshot after) {
+        Keys beforeKeys = new Keys(before);
+        Keys afterKeys = new Keys(after);
+
+        List<AutomationSnapshot.Node> added = new ArrayList<AutomationSnapshot.Node>();
+        List<AutomationSnapshot.Node> removed = new ArrayList<AutomationSnapshot.Node>();
+        List<Change> moved = new ArrayList<Change>();
+        List<Change> changed = new ArrayList<Change>();
+
+        for (AutomationSnapshot.Node node : before.getNodes()) {
+            String key = beforeKeys.keys[node.getIndex()];
+            AutomationSnapshot.Node match = afterKeys.nodes.get(key);
+
+            if (match == null || beforeKeys.nodes.get(key) != node) {
+                removed.add(node);
+                continue;
+            }
+
+            Set<PropertyID> properties = differences(node, match);
+
+            if (!properties.isEmpty()) {
+                changed.add(new Change(node, match, properties));
+            }
+
+            if (!Objects.equals(beforeKeys.parents[node.getIndex()], afterKeys.parents[match.getIndex()])) {
+                moved.add(new Change(node, match, properties));
+            }
+        }
+
+        for (AutomationSnapshot.Node node : after.getNodes()) {
+            String key = afterKeys.keys[node.getIndex()];
+
+            if (!beforeKeys.nodes.containsKey(key) || afterKeys.nodes.get(key) != node) {
+                added.add(node);
+            }
+        }
+
+        return new SnapshotDiff(added, removed, moved, changed);
+    }
+
+    private static Set<PropertyID> differences(AutomationSnapshot.Node before, AutomationSnapshot.Node after) {
+        Set<PropertyID> properties = EnumSet.noneOf(PropertyID.class);
+
+        for (Map.Entry<PropertyID, Object> entry : before.getProperties().entrySet()) {
+            if (!Objects.deepEquals(entry.getValue(), after.getProperty(entry.getKey()))) {
+                properties.add(entry.getKey());
+            }
+        }
+
+        for (PropertyID property : after.getProperties().keySet()) {
+            if (!before.isCaptured(property) && after.getProperty(property) != null) {
+                properties.add(property);
+            }
+        }
+
+        return properties;
+    }
+
+    /**
+     * Gets the nodes that are only in the later snapshot
+     *
+     * @return The nodes, in document order
+     */
+    public List<AutomationSnapshot.Node> getAdded() {
+        return this.added;
+    }
+
+    /**
+     * Gets the nodes that are only in the earlier snapshot
+     *
+     * @return The nodes, in document order
+     */
+    public List<AutomationSnapshot.Node> getRemoved() {
+        return this.removed;
+    }
+
+    /**
+     * Gets the nodes that have a different parent
+     *
+     * @return The nodes, in document order (of the earlier snapshot)
+     */
+    public List<Change> getMoved() {
+        return this.moved;
+    }
+
+    /**
+     * Gets the nodes with properties that have changed
+     *
+     * @return The nodes, in document order (of the earlier snapshot)
+     */
+    public List<Change> getChanged() {
+        return this.changed;
+    }
+
+    /**
+     * Whether the snapshots are the same
+     *
+     * @return True if nothing has been added, removed, moved or changed
+     */
+    public boolean isEmpty() {
+        return this.added.isEmpty() && this.removed.isEmpty() && this.moved.isEmpty() && this.changed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "added " + this.added.size() + ", removed " + this.removed.size() +
+                ", moved " + this.moved.size() + ", changed " + this.changed.size();
+    }
+}
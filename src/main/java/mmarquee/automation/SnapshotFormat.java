@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The layout of a snapshot recording, shared by SnapshotWriter and SnapshotReader.
+ *
+ * A recording starts with the magic number and version, followed by a frame for each
+ * snapshot. A frame is its length, then:
+ *
+ * <pre>
+ *   long timestamp, int node count, int string count,
+ *   int offset of the string table, int offset of the node table,
+ *   strings (varint length, UTF-8 bytes),
+ *   string table (int offset of each string),
+ *   nodes (varint depth, varint distance to parent, varint size of subtree,
+ *          varint property count, then each property id and tagged value),
+ *   node table (int offset of each node)
+ * </pre>
+ *
+ * where the offsets are from the start of the frame (after its length). Each frame has
+ * its own strings, so it can be read on its own.
+ */
+final class SnapshotFormat {
+    static final int MAGIC = 0x55494153;
+    static final int VERSION = 1;
+
+    /** Magic number and version */
+    static final int FILE_HEADER_SIZE = 8;
+
+    /** Timestamp, counts and table offsets */
+    static final int FRAME_HEADER_SIZE = 24;
+
+    static final int NODE_COUNT_OFFSET = 8;
+    static final int STRING_COUNT_OFFSET = 12;
+    static final int STRING_TABLE_OFFSET = 16;
+    static final int NODE_TABLE_OFFSET = 20;
+
+    static final byte NULL = 0;
+    static final byte FALSE = 1;
+    static final byte TRUE = 2;
+    static final byte INT = 3;
+    static final byte DOUBLE = 4;
+    static final byte STRING = 5;
+    static final byte INT_ARRAY = 6;
+    static final byte RECT = 7;
+
+    private SnapshotFormat() {
+    }
+
+    /**
+     * Reads an unsigned varint
+     *
+     * @param buffer The buffer, positioned at the varint
+     * @return The value
+     */
+    static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        return value;
+    }
+
+    /**
+     * Reads a signed (zigzag encoded) varint
+     *
+     * @param buffer The buffer, positioned at the varint
+     * @return The value
+     */
+    static int getSignedVarint(ByteBuffer buffer) {
+        int value = getVarint(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Moves past a tagged value
+     *
+     * @param buffer The buffer, positioned after the tag
+     * @param tag The tag
+     */
+    static void skip(ByteBuffer buffer, byte tag) {
+        switch (tag) {
+            case INT:
+            case STRING:
+                getVarint(buffer);
+                break;
+            case DOUBLE:
+                buffer.position(buffer.position() + 8);
+                break;
+            case INT_ARRAY:
+                for (int i = getVarint(buffer); i > 0; i--) {
+                    getVarint(buffer);
+                }
+                break;
+            case RECT:
+                for (int i = 0; i < 4; i++) {
+                    getVarint(buffer);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,539 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Indexes over the nodes of an AutomationSnapshot, so that lookups don't have to scan
+ * the whole tree.
+ *
+ * Each kind of index is optional. They are built when they are added (in parallel, when
+ * more than one is asked for at a time), and more can be added later. A lookup that has
+ * no index to use falls back to scanning the snapshot, so the results are the same either
+ * way - always in document order.
+ */
+public final class SnapshotIndex {
+
+    /**
+     * The kinds of index
+     */
+    public enum Kind {
+        /**
+         * Hash of the automation ids
+         */
+        AutomationId,
+
+        /**
+         * Hash of the class names
+         */
+        ClassName,
+
+        /**
+         * Hash of the control types
+         */
+        ControlType,
+
+        /**
+         * Trie of the names, for exact, prefix and substring matches
+         */
+        Name,
+
+        /**
+         * The parent, depth and extent of each node, for ancestor queries
+         */
+        Structure
+    }
+
+    private final AutomationSnapshot snapshot;
+    private final List<AutomationSnapshot.Node> nodes;
+
+    private volatile Map<Object, int[]> automationIds;
+    private volatile Map<Object, int[]> classNames;
+    private volatile Map<Object, int[]> controlTypes;
+    private volatile NameTrie names;
+    private volatile Structure structure;
+
+    private SnapshotIndex(AutomationSnapshot snapshot) {
+        this.snapshot = snapshot;
+        this.nodes = snapshot.getNodes();
+    }
+
+    /**
+     * Builds indexes over the snapshot
+     *
+     * @param snapshot The snapshot
+     * @param kinds The kinds of index to build (all of them if none are given)
+     * @return The index
+     */
+    public static SnapshotIndex build(AutomationSnapshot snapshot, Kind... kinds) {
+        SnapshotIndex index = new SnapshotIndex(snapshot);
+
+        if (kinds.length == 0) {
+            index.add(Kind.values());
+        } else {
+            index.add(kinds);
+        }
+
+        return index;
+    }
+
+    /**
+     * Gets the snapshot that is indexed
+     *
+     * @return The snapshot
+     */
+    public AutomationSnapshot getSnapshot() {
+        return this.snapshot;
+    }
+
+    /**
+     * Adds more indexes. Those that have already been built are left alone.
+     *
+     * @param kinds The kinds of index to add
+     * @return This index
+     */
+    public synchronized SnapshotIndex add(Kind... kinds) {
+        Set<Kind> missing = EnumSet.noneOf(Kind.class);
+
+        for (Kind kind : kinds) {
+            if (!this.has(kind)) {
+                missing.add(kind);
+            }
+        }
+
+        if (missing.size() == 1) {
+            this.build(missing.iterator().next());
+        } else if (!missing.isEmpty()) {
+            List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+            for (final Kind kind : missing) {
+                tasks.add(new Callable<Void>() {
+                    public Void call() {
+                        SnapshotIndex.this.build(kind);
+                        return null;
+                    }
+                });
+            }
+
+            for (Future<Void> task : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                try {
+                    task.get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted building the index", ex);
+                } catch (ExecutionException ex) {
+                    throw new IllegalStateException("Failed to build the index", ex.getCause());
+                }
+            }
+        }
+
+        return this;
+    }
+
+    /**
+     * Whether an index has been built
+     *
+     * @param kind The kind of index
+     * @return True if it is available
+     */
+    public boolean has(Kind kind) {
+        switch (kind) {
+            case AutomationId:
+                return this.automationIds != null;
+            case ClassName:
+                return this.classNames != null;
+            case ControlType:
+                return this.controlTypes != null;
+            case Name:
+                return this.names != null;
+            default:
+                return this.structure != null;
+        }
+    }
+
+    private void build(Kind kind) {
+        switch (kind) {
+            case AutomationId:
+                this.automationIds = this.hash(PropertyID.AutomationId);
+                break;
+            case ClassName:
+                this.classNames = this.hash(PropertyID.ClassName);
+                break;
+            case ControlType:
+                this.controlTypes = this.hash(PropertyID.ControlType);
+                break;
+            case Name:
+                this.names = new NameTrie(this.nodes);
+                break;
+            default:
+                this.structure = new Structure(this.nodes);
+                break;
+        }
+    }
+
+    private Map<Object, int[]> hash(PropertyID property) {
+        Map<Object, List<Integer>> lists = new HashMap<Object, List<Integer>>();
+
+        for (AutomationSnapshot.Node node : this.nodes) {
+            Object value = node.getProperty(property);
+
+            if (value != null) {
+                List<Integer> list = lists.get(value);
+
+                if (list == null) {
+                    list = new ArrayList<Integer>();
+                    lists.put(value, list);
+                }
+
+                list.add(node.getIndex());
+            }
+        }
+
+        Map<Object, int[]> map = new HashMap<Object, int[]>(lists.size() * 2);
+
+        for (Map.Entry<Object, List<Integer>> entry : lists.entrySet()) {
+            map.put(entry.getKey(), toArray(entry.getValue()));
+        }
+
+        return map;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+
+        for (int index = 0; index < array.length; index++) {
+            array[index] = list.get(index);
+        }
+
+        return array;
+    }
+
+    private List<AutomationSnapshot.Node> nodesAt(int[] indexes) {
+        if (indexes == null) {
+            return Collections.emptyList();
+        }
+
+        List<AutomationSnapshot.Node> result = new ArrayList<AutomationSnapshot.Node>(indexes.length);
+
+        for (int index : indexes) {
+            result.add(this.nodes.get(index));
+        }
+
+        return result;
+    }
+
+    private List<AutomationSnapshot.Node> lookup(Map<Object, int[]> map, PropertyID property, Object value) {
+        return map == null ? this.snapshot.findAll(property, value) : this.nodesAt(map.get(value));
+    }
+
+    /**
+     * Finds the nodes with the given automation id
+     *
+     * @param automationId The automation id
+     * @return The matching nodes, in document order
+     */
+    public List<AutomationSnapshot.Node> findByAutomationId(String automationId) {
+        return this.lookup(this.automationIds, PropertyID.AutomationId, automationId);
+    }
+
+    /**
+     * Finds the nodes with the given class name
+     *
+     * @param className The class name
+     * @return The matching nodes, in document order
+     */
+    public List<AutomationSnapshot.Node> findByClassName(String className) {
+        return this.lookup(this.classNames, PropertyID.ClassName, className);
+    }
+
+    /**
+     * Finds the nodes of the given control type
+     *
+     * @param controlType The control type
+     * @return The matching nodes, in document order
+     */
+    public List<AutomationSnapshot.Node> findByControlType(ControlType controlType) {
+        return this.lookup(this.controlTypes, PropertyID.ControlType, controlType.getValue());
+    }
+
+    /**
+     * Finds the nodes with the given name
+     *
+     * @param name The name
+     * @return The matching nodes, in document order
+     */
+    public List<AutomationSnapshot.Node> findByName(String name) {
+        NameTrie trie = this.names;
+        return trie == null ? this.snapshot.findByName(name) : this.nodesAt(trie.exact(name));
+    }
+
+    /**
+     * Finds the nodes whose name starts with the prefix
+     *
+     * @param prefix The prefix
+     * @return The matching nodes, in document order
+     */
+    public List<AutomationSnapshot.Node> findByNamePrefix(String prefix) {
+        NameTrie trie = this.names;
+
+        if (trie != null) {
+            return this.nodesAt(trie.prefix(prefix));
+        }
+
+        List<AutomationSnapshot.Node> matches = new ArrayList<AutomationSnapshot.Node>();
+
+        for (AutomationSnapshot.Node node : this.nodes) {
+            if (node.getName() != null && node.getName().startsWith(prefix)) {
+                matches.add(node);
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Finds the nodes whose name contains the text
+     *
+     * @param text The text
+     * @return The matching nodes, in document order
+     */
+    public List<AutomationSnapshot.Node> findByNameContaining(String text) {
+        NameTrie trie = this.names;
+
+        if (trie != null) {
+            return this.nodesAt(trie.containing(text));
+        }
+
+        List<AutomationSnapshot.Node> matches = new ArrayList<AutomationSnapshot.Node>();
+
+        for (AutomationSnapshot.Node node : this.nodes) {
+            if (node.getName() != null && node.getName().contains(text)) {
+                matches.add(node);
+            }
+        }
+
+        return matches;
+    }
+
+    private Structure structure() {
+        Structure current = this.structure;
+
+        if (current == null) {
+            this.add(Kind.Structure);
+            current = this.structure;
+        }
+
+        return current;
+    }
+
+    /**
+     * Gets the parent of a node
+     *
+     * @param node The node
+     * @return The parent, or null for the root
+     */
+    public AutomationSnapshot.Node getParent(AutomationSnapshot.Node node) {
+        int parent = this.structure().parents[node.getIndex()];
+        return parent < 0 ? null : this.nodes.get(parent);
+    }
+
+    /**
+     * Gets the ancestors of a node
+     *
+     * @param node The node
+     * @return The ancestors, nearest first
+     */
+    public List<AutomationSnapshot.Node> getAncestors(AutomationSnapshot.Node node) {
+        int[] parents = this.structure().parents;
+        List<AutomationSnapshot.Node> ancestors = new ArrayList<AutomationSnapshot.Node>(node.getDepth());
+
+        for (int index = parents[node.getIndex()]; index >= 0; index = parents[index]) {
+            ancestors.add(this.nodes.get(index));
+        }
+
+        return ancestors;
+    }
+
+    /**
+     * Whether one node is an ancestor of another
+     *
+     * @param ancestor The possible ancestor
+     * @param node The node
+     * @return True if the node is below the ancestor
+     */
+    public boolean isAncestor(AutomationSnapshot.Node ancestor, AutomationSnapshot.Node node) {
+        int[] ends = this.structure().ends;
+        return node.getIndex() > ancestor.getIndex() && node.getIndex() < ends[ancestor.getIndex()];
+    }
+
+    /**
+     * Gets all of the descendants of a node
+     *
+     * @param node The node
+     * @return The descendants, in document order
+     */
+    public List<AutomationSnapshot.Node> getDescendants(AutomationSnapshot.Node node) {
+        int[] ends = this.structure().ends;
+        return this.nodes.subList(node.getIndex() + 1, ends[node.getIndex()]);
+    }
+
+    /**
+     * The parent of each node, and the end of its subtree. As the nodes are in document
+     * order, the descendants of a node are the ones between it and the end of its subtree.
+     */
+    private static final class Structure {
+        private final int[] parents;
+        private final int[] ends;
+
+        Structure(List<AutomationSnapshot.Node> nodes) {
+            this.parents = new int[nodes.size()];
+            this.ends = new int[nodes.size()];
+
+            if (!nodes.isEmpty()) {
+                this.parents[0] = -1;
+            }
+
+            // Backwards, so the children's subtrees are done before their parent's
+            for (int index = nodes.size() - 1; index >= 0; index--) {
+                AutomationSnapshot.Node node = nodes.get(index);
+                List<AutomationSnapshot.Node> children = node.getChildren();
+
+                for (AutomationSnapshot.Node child : children) {
+                    this.parents[child.getIndex()] = index;
+                }
+
+                this.ends[index] = children.isEmpty() ?
+                        index + 1 :
+                        this.ends[children.get(children.size() - 1).getIndex()];
+            }
+        }
+    }
+
+    /**
+     * A trie of the names. Each entry holds the nodes with exactly that name, and a prefix
+     * match collects the entries below it. Substring matches are checked against each
+     * distinct name, rather than each node.
+     */
+    private static final class NameTrie {
+        private static final class Entry {
+            private final Map<Character, Entry> children = new HashMap<Character, Entry>(4);
+            private List<Integer> nodes;
+        }
+
+        private final Entry root = new Entry();
+        private final Map<String, Entry> distinct = new LinkedHashMap<String, Entry>();
+
+        NameTrie(List<AutomationSnapshot.Node> nodes) {
+            for (AutomationSnapshot.Node node : nodes) {
+                String name = node.getName();
+
+                if (name != null) {
+                    this.add(name, node.getIndex());
+                }
+            }
+        }
+
+        private void add(String name, int index) {
+            Entry entry = this.distinct.get(name);
+
+            if (entry == null) {
+                entry = this.root;
+
+                for (int position = 0; position < name.length(); position++) {
+                    Character key = name.charAt(position);
+                    Entry child = entry.children.get(key);
+
+                    if (child == null) {
+                        child = new Entry();
+                        entry.children.put(key, child);
+                    }
+
+                    entry = child;
+                }
+
+                entry.nodes = new ArrayList<Integer>(1);
+                this.distinct.put(name, entry);
+            }
+
+            entry.nodes.add(index);
+        }
+
+        private Entry find(String prefix) {
+            Entry entry = this.root;
+
+            for (int position = 0; entry != null && position < prefix.length(); position++) {
+                entry = entry.children.get(prefix.charAt(position));
+            }
+
+            return entry;
+        }
+
+        int[] exact(String name) {
+            Entry entry = this.distinct.get(name);
+            return entry == null ? null : toArray(entry.nodes);
+        }
+
+        int[] prefix(String prefix) {
+            Entry start = this.find(prefix);
+
+            if (start == null) {
+                return null;
+            }
+
+            List<Integer> found = new ArrayList<Integer>();
+            List<Entry> pending = new ArrayList<Entry>();
+            pending.add(start);
+
+            while (!pending.isEmpty()) {
+                Entry entry = pending.remove(pending.size() - 1);
+
+                if (entry.nodes != null) {
+                    found.addAll(entry.nodes);
+                }
+
+                pending.addAll(entry.children.values());
+            }
+
+            Collections.sort(found);
+            return toArray(found);
+        }
+
+        int[] containing(String text) {
+            List<Integer> found = new ArrayList<Integer>();
+
+            for (Map.Entry<String, Entry> name : this.distinct.entrySet()) {
+                if (name.getKey().contains(text)) {
+                    found.addAll(name.getValue().nodes);
+                }
+            }
+
+            Collections.sort(found);
+            return toArray(found);
+        }
+    }
+}
@@ -0,0 +1,604 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import com.sun.jna.platform.win32.WinDef;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Reads a recording made by SnapshotWriter.
+ *
+ * Opening a recording only reads the length of each frame. A frame is mapped into memory
+ * when it is first asked for, and its nodes are read from the mapping as they are used,
+ * so large recordings can be searched without loading them onto the heap. A frame that
+ * was not completely written (e.g. the process died) is left out.
+ */
+public final class SnapshotReader implements Closeable {
+
+    private static final Map<Integer, PropertyID> PROPERTIES = new HashMap<Integer, PropertyID>();
+
+    static {
+        for (PropertyID property : PropertyID.values()) {
+            PROPERTIES.put(property.getValue(), property);
+        }
+    }
+
+    /**
+     * A recorded snapshot
+     */
+    public static final class Frame {
+        private final ByteBuffer buffer;
+        private final long timestamp;
+        private final int size;
+        private final int stringCount;
+        private final int stringTable;
+        private final int nodeTable;
+
+        Frame(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.timestamp = buffer.getLong(0);
+            this.size = buffer.getInt(SnapshotFormat.NODE_COUNT_OFFSET);
+            this.stringCount = buffer.getInt(SnapshotFormat.STRING_COUNT_OFFSET);
+            this.stringTable = buffer.getInt(SnapshotFormat.STRING_TABLE_OFFSET);
+            this.nodeTable = buffer.getInt(SnapshotFormat.NODE_TABLE_OFFSET);
+        }
+
+        /**
+         * Gets when the snapshot was recorded
+         *
+         * @return The time, in milliseconds since the epoch
+         */
+        public long getTimestamp() {
+            return this.timestamp;
+        }
+
+        /**
+         * Gets the number of nodes
+         *
+         * @return The number of nodes
+         */
+        public int size() {
+            return this.size;
+        }
+
+        /**
+         * Gets the root of the snapshot
+         *
+         * @return The first node
+         */
+        public Node getRoot() {
+            return this.getNode(0);
+        }
+
+        /**
+         * Gets a node
+         *
+         * @param index The position of the node, in document order
+         * @return The node
+         */
+        public Node getNode(int index) {
+            if (index < 0 || index >= this.size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+            }
+
+            return new Node(this, index);
+        }
+
+        /**
+         * Gets all of the nodes, in document order
+         *
+         * @return The nodes, read as they are used
+         */
+        public List<Node> getNodes() {
+            return new AbstractList<Node>() {
+                @Override
+                public Node get(int index) {
+                    return getNode(index);
+                }
+
+                @Override
+                public int size() {
+                    return Frame.this.size;
+                }
+            };
+        }
+
+        /**
+         * Finds the nodes where the property has the given value
+         *
+         * @param property The property
+         * @param value The value
+         * @return The matching nodes, in document order
+         */
+        public List<Node> findAll(PropertyID property, Object value) {
+            return this.find(property, value, false);
+        }
+
+        /**
+         * Finds the first node where the property has the given value
+         *
+         * @param property The property
+         * @param value The value
+         * @return The first matching node, or null if there isn't one
+         */
+        public Node findFirst(PropertyID property, Object value) {
+            List<Node> matches = this.find(property, value, true);
+            return matches.isEmpty() ? null : matches.get(0);
+        }
+
+        /**
+         * Finds the nodes with the given name
+         *
+         * @param name The name
+         * @return The matching nodes, in document order
+         */
+        public List<Node> findByName(String name) {
+            return this.findAll(PropertyID.Name, name);
+        }
+
+        /**
+         * Finds the nodes with the given automation id
+         *
+         * @param automationId The automation id
+         * @return The matching nodes, in document order
+         */
+        public List<Node> findByAutomationId(String automationId) {
+            return this.findAll(PropertyID.AutomationId, automationId);
+        }
+
+        /**
+         * Finds the nodes of the given control type
+         *
+         * @param controlType The control type
+         * @return The matching nodes, in document order
+         */
+        public List<Node> findByControlType(ControlType controlType) {
+            return this.findAll(PropertyID.ControlType, controlType.getValue());
+        }
+
+        private List<Node> find(PropertyID property, Object value, boolean first) {
+            List<Node> matches = new ArrayList<Node>();
+
+            // Strings are compared by their number, so they are not read for every node
+            int string = -1;
+
+            if (value instanceof String) {
+                string = this.findString((String)value);
+
+                if (string < 0) {
+                    return matches;
+                }
+            }
+
+            ByteBuffer cursor = this.buffer.duplicate();
+
+            for (int index = 0; index < this.size; index++) {
+                this.moveToProperties(cursor, index);
+
+                for (int count = SnapshotFormat.getVarint(cursor); count > 0; count--) {
+                    int id = SnapshotFormat.getVarint(cursor);
+                    byte tag = cursor.get();
+
+                    if (id != property.getValue()) {
+                        SnapshotFormat.skip(cursor, tag);
+                    } else {
+                        boolean matched = string >= 0
+                                ? tag == SnapshotFormat.STRING && SnapshotFormat.getVarint(cursor) == string
+                                : Objects.deepEquals(value, this.readValue(cursor, tag));
+
+                        if (matched) {
+                            matches.add(new Node(this, index));
+
+                            if (first) {
+                                return matches;
+                            }
+                        }
+
+                        break;
+                    }
+                }
+            }
+
+            return matches;
+        }
+
+        private int findString(String value) {
+            for (int i = 0; i < this.stringCount; i++) {
+                if (value.equals(this.getString(i))) {
+                    return i;
+                }
+            }
+
+            return -1;
+        }
+
+        private String getString(int index) {
+            ByteBuffer cursor = this.buffer.duplicate();
+            cursor.position(this.buffer.getInt(this.stringTable + index * 4));
+
+            byte[] bytes = new byte[SnapshotFormat.getVarint(cursor)];
+            cursor.get(bytes);
+
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private void moveToNode(ByteBuffer cursor, int index) {
+            cursor.position(this.buffer.getInt(this.nodeTable + index * 4));
+        }
+
+        private void moveToProperties(ByteBuffer cursor, int index) {
+            this.moveToNode(cursor, index);
+            SnapshotFormat.getVarint(cursor);
+            SnapshotFormat.getVarint(cursor);
+            SnapshotFormat.getVarint(cursor);
+        }
+
+        private Object readValue(ByteBuffer cursor, byte tag) {
+            switch (tag) {
+                case SnapshotFormat.FALSE:
+                    return false;
+                case SnapshotFormat.TRUE:
+                    return true;
+                case SnapshotFormat.INT:
+                    return SnapshotFormat.getSignedVarint(cursor);
+                case SnapshotFormat.DOUBLE:
+                    return cursor.getDouble();
+                case SnapshotFormat.STRING:
+                    return this.getString(SnapshotFormat.getVarint(cursor));
+                case SnapshotFormat.INT_ARRAY: {
+                    int[] values = new int[SnapshotFormat.getVarint(cursor)];
+
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = SnapshotFormat.getSignedVarint(cursor);
+                    }
+
+                    return values;
+                }
+                case SnapshotFormat.RECT: {
+                    WinDef.RECT rect = new WinDef.RECT();
+                    rect.left = SnapshotFormat.getSignedVarint(cursor);
+                    rect.top = SnapshotFormat.getSignedVarint(cursor);
+                    rect.right = SnapshotFormat.getSignedVarint(cursor);
+                    rect.bottom = SnapshotFormat.getSignedVarint(cursor);
+
+                    return rect;
+                }
+                default:
+                    return null;
+            }
+        }
+    }
+
+    /**
+     * A recorded element. Nothing is held but its position; the properties are read from
+     * the recording each time they are asked for.
+     */
+    public static final class Node {
+        private final Frame frame;
+        private final int index;
+
+        Node(Frame frame, int index) {
+            this.frame = frame;
+            this.index = index;
+        }
+
+        private ByteBuffer cursor() {
+            ByteBuffer cursor = this.frame.buffer.duplicate();
+            this.frame.moveToNode(cursor, this.index);
+            return cursor;
+        }
+
+        /**
+         * Gets the position of the node in the frame
+         *
+         * @return The index, where the root is 0
+         */
+        public int getIndex() {
+            return this.index;
+        }
+
+        /**
+         * Gets how far below the root of the snapshot the node is
+         *
+         * @return The depth, where the root is 0
+         */
+        public int getDepth() {
+            return SnapshotFormat.getVarint(this.cursor());
+        }
+
+        /**
+         * Gets the parent of the node
+         *
+         * @return The parent, or null for the root
+         */
+        public Node getParent() {
+            ByteBuffer cursor = this.cursor();
+            SnapshotFormat.getVarint(cursor);
+            int distance = SnapshotFormat.getVarint(cursor);
+
+            return distance == 0 ? null : new Node(this.frame, this.index - distance);
+        }
+
+        /**
+         * Gets the children of the node
+         *
+         * @return The children
+         */
+        public List<Node> getChildren() {
+            ByteBuffer cursor = this.cursor();
+            SnapshotFormat.getVarint(cursor);
+            SnapshotFormat.getVarint(cursor);
+            int end = this.index + SnapshotFormat.getVarint(cursor);
+
+            List<Node> children = new ArrayList<Node>();
+
+            // Each child is followed by its own subtree, then the next child
+            for (int child = this.index + 1; child < end; ) {
+                children.add(new Node(this.frame, child));
+
+                this.frame.moveToNode(cursor, child);
+                SnapshotFormat.getVarint(cursor);
+                SnapshotFormat.getVarint(cursor);
+                child += SnapshotFormat.getVarint(cursor);
+            }
+
+            return children;
+        }
+
+        /**
+         * Gets the value of a property, as it was when the snapshot was taken
+         *
+         * @param property The property
+         * @return The value, or null if the property was not captured
+         */
+        public Object getProperty(PropertyID property) {
+            ByteBuffer cursor = this.frame.buffer.duplicate();
+            this.frame.moveToProperties(cursor, this.index);
+
+            for (int count = SnapshotFormat.getVarint(cursor); count > 0; count--) {
+                int id = SnapshotFormat.getVarint(cursor);
+                byte tag = cursor.get();
+
+                if (id == property.getValue()) {
+                    return this.frame.readValue(cursor, tag);
+                }
+
+                SnapshotFormat.skip(cursor, tag);
+            }
+
+            return null;
+        }
+
+        /**
+         * Gets all of the recorded properties
+         *
+         * @return The properties and their values
+         */
+        public Map<PropertyID, Object> getProperties() {
+            Map<PropertyID, Object> properties = new EnumMap<PropertyID, Object>(PropertyID.class);
+
+            ByteBuffer cursor = this.frame.buffer.duplicate();
+            this.frame.moveToProperties(cursor, this.index);
+
+            for (int count = SnapshotFormat.getVarint(cursor); count > 0; count--) {
+                PropertyID property = PROPERTIES.get(SnapshotFormat.getVarint(cursor));
+                byte tag = cursor.get();
+
+                if (property == null) {
+                    SnapshotFormat.skip(cursor, tag);
+                } else {
+                    properties.put(property, this.frame.readValue(cursor, tag));
+                }
+            }
+
+            return Collections.unmodifiableMap(properties);
+        }
+
+        /**
+         * Gets the runtime id
+         *
+         * @return The runtime id, or null if it was not captured
+         */
+        public int[] getRuntimeId() {
+            Object value = this.getProperty(PropertyID.RuntimeId);
+            return value instanceof int[] ? (int[])value : null;
+        }
+
+        /**
+         * Gets the name
+         *
+         * @return The name, or null if it was not captured
+         */
+        public String getName() {
+            return (String)this.getProperty(PropertyID.Name);
+        }
+
+        /**
+         * Gets the automation id
+         *
+         * @return The automation id, or null if it was not captured
+         */
+        public String getAutomationId() {
+            return (String)this.getProperty(PropertyID.AutomationId);
+        }
+
+        /**
+         * Gets the class name
+         *
+         * @return The class name, or null if it was not captured
+         */
+        public String getClassName() {
+            return (String)this.getProperty(PropertyID.ClassName);
+        }
+
+        /**
+         * Gets the control type
+         *
+         * @return The control type id, or null if it was not captured
+         */
+        public Integer getControlType() {
+            return (Integer)this.getProperty(PropertyID.ControlType);
+        }
+
+        /**
+         * Gets the patterns that the element supported
+         *
+         * @return The patterns
+         */
+        public PatternSet getPatterns() {
+            Map<PropertyID, Object> properties = this.getProperties();
+            PatternSet patterns = PatternSet.none();
+
+            for (Map.Entry<PatternID, PropertyID> entry : PatternSet.getAvailabilityProperties().entrySet()) {
+                if (Boolean.TRUE.equals(properties.get(entry.getValue()))) {
+                    patterns = patterns.with(entry.getKey());
+                }
+            }
+
+            return patterns;
+        }
+
+        @Override
+        public String toString() {
+            return "Node" + this.getProperties();
+        }
+    }
+
+    private final FileChannel channel;
+    private final long[] positions;
+    private final int[] lengths;
+    private final Frame[] frames;
+
+    private SnapshotReader(FileChannel channel, long[] positions, int[] lengths) {
+        this.channel = channel;
+        this.positions = positions;
+        this.lengths = lengths;
+        this.frames = new Frame[positions.length];
+    }
+
+    /**
+     * Opens a recording
+     *
+     * @param path The file
+     * @return The reader
+     * @throws IOException Failed to read the file, or it is not a recording
+     */
+    public static SnapshotReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+            long size = channel.size();
+            ByteBuffer header = ByteBuffer.allocate(SnapshotFormat.FILE_HEADER_SIZE);
+            read(channel, header, 0);
+
+            if (header.getInt(0) != SnapshotFormat.MAGIC || header.getInt(4) != SnapshotFormat.VERSION) {
+                throw new IOException("Not a snapshot recording: " + path);
+            }
+
+            List<Long> positions = new ArrayList<Long>();
+            List<Integer> lengths = new ArrayList<Integer>();
+
+            ByteBuffer length = ByteBuffer.allocate(4);
+            long position = SnapshotFormat.FILE_HEADER_SIZE;
+
+            while (position + 4 <= size) {
+                length.clear();
+                read(channel, length, position);
+
+                int frameLength = length.getInt(0);
+
+                if (frameLength < SnapshotFormat.FRAME_HEADER_SIZE || position + 4 + frameLength > size) {
+                    break;
+                }
+
+                positions.add(position + 4);
+                lengths.add(frameLength);
+                position += 4 + frameLength;
+            }
+
+            long[] framePositions = new long[positions.size()];
+            int[] frameLengths = new int[lengths.size()];
+
+            for (int i = 0; i < framePositions.length; i++) {
+                framePositions[i] = positions.get(i);
+                frameLengths[i] = lengths.get(i);
+            }
+
+            return new SnapshotReader(channel, framePositions, frameLengths);
+        } catch (IOException | RuntimeException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of recording");
+            }
+        }
+    }
+
+    /**
+     * Gets the number of complete frames in the recording
+     *
+     * @return The number of frames
+     */
+    public int getFrameCount() {
+        return this.frames.length;
+    }
+
+    /**
+     * Gets a frame, mapping it into memory the first time
+     *
+     * @param index The number of the frame
+     * @return The frame
+     * @throws IOException Failed to map the frame
+     */
+    public synchronized Frame getFrame(int index) throws IOException {
+        if (this.frames[index] == null) {
+            this.frames[index] = new Frame(
+                    this.channel.map(FileChannel.MapMode.READ_ONLY, this.positions[index], this.lengths[index]));
+        }
+
+        return this.frames[index];
+    }
+
+    /**
+     * Closes the file. Frames that have already been mapped can still be read.
+     *
+     * @throws IOException Failed to close the file
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
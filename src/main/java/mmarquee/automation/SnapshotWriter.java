@@ -0,0 +1,297 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import com.sun.jna.platform.win32.WinDef;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records snapshots to a compact binary file, one frame per snapshot, e.g. to keep the
+ * state of the tree at each step of a test. The recording can be read back with
+ * SnapshotReader.
+ *
+ * Strings are only written once per frame and referred to by number, and numbers are
+ * written as varints, so a frame is much smaller than the equivalent text. Each frame is
+ * written to the channel as soon as it is appended, so a recording is usable up to the
+ * last complete frame even if the process dies.
+ */
+public final class SnapshotWriter implements Closeable {
+
+    /**
+     * A byte buffer that grows as it is written to
+     */
+    private static final class Encoder {
+        private ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+        private void ensure(int bytes) {
+            if (this.buffer.remaining() < bytes) {
+                ByteBuffer bigger = ByteBuffer.allocate(
+                        Math.max(this.buffer.capacity() * 2, this.buffer.position() + bytes));
+                this.buffer.flip();
+                bigger.put(this.buffer);
+                this.buffer = bigger;
+            }
+        }
+
+        void putVarint(int value) {
+            this.ensure(5);
+
+            while ((value & ~0x7F) != 0) {
+                this.buffer.put((byte)((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+
+            this.buffer.put((byte)value);
+        }
+
+        void putSignedVarint(int value) {
+            this.putVarint((value << 1) ^ (value >> 31));
+        }
+
+        void putByte(byte value) {
+            this.ensure(1);
+            this.buffer.put(value);
+        }
+
+        void putInt(int value) {
+            this.ensure(4);
+            this.buffer.putInt(value);
+        }
+
+        void putDouble(double value) {
+            this.ensure(8);
+            this.buffer.putDouble(value);
+        }
+
+        void putBytes(byte[] value) {
+            this.ensure(value.length);
+            this.buffer.put(value);
+        }
+
+        int position() {
+            return this.buffer.position();
+        }
+
+        ByteBuffer flip() {
+            this.buffer.flip();
+            return this.buffer;
+        }
+    }
+
+    private final WritableByteChannel channel;
+    private int frames = 0;
+
+    /**
+     * Starts a recording on a channel
+     *
+     * @param channel The channel to write to
+     * @throws IOException Failed to write the header
+     */
+    public SnapshotWriter(WritableByteChannel channel) throws IOException {
+        this.channel = channel;
+
+        ByteBuffer header = ByteBuffer.allocate(SnapshotFormat.FILE_HEADER_SIZE);
+        header.putInt(SnapshotFormat.MAGIC);
+        header.putInt(SnapshotFormat.VERSION);
+        header.flip();
+
+        this.write(header);
+    }
+
+    /**
+     * Starts a recording in a file, replacing anything that is already there
+     *
+     * @param path The file
+     * @return The writer
+     * @throws IOException Failed to create the file
+     */
+    public static SnapshotWriter create(Path path) throws IOException {
+        return new SnapshotWriter(FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * Adds a snapshot to the recording
+     *
+     * @param snapshot The snapshot
+     * @return The number of the frame it was written to
+     * @throws IOException Failed to write the frame
+     * @throws IllegalArgumentException A property holds a value that cannot be written
+     */
+    public int append(AutomationSnapshot snapshot) throws IOException {
+        List<AutomationSnapshot.Node> nodes = snapshot.getNodes();
+        int count = nodes.size();
+
+        int[] parents = new int[count];
+        int[] sizes = new int[count];
+
+        for (AutomationSnapshot.Node node : nodes) {
+            for (AutomationSnapshot.Node child : node.getChildren()) {
+                parents[child.getIndex()] = node.getIndex();
+            }
+        }
+
+        // Children come after their parents, so work backwards to size the subtrees
+        for (int i = count - 1; i >= 0; i--) {
+            sizes[i] = 1;
+
+            for (AutomationSnapshot.Node child : nodes.get(i).getChildren()) {
+                sizes[i] += sizes[child.getIndex()];
+            }
+        }
+
+        Map<String, Integer> dictionary = new HashMap<String, Integer>();
+        Encoder strings = new Encoder();
+        Encoder stringOffsets = new Encoder();
+        Encoder records = new Encoder();
+        int[] nodeOffsets = new int[count];
+
+        for (AutomationSnapshot.Node node : nodes) {
+            int index = node.getIndex();
+            nodeOffsets[index] = records.position();
+
+            records.putVarint(node.getDepth());
+            records.putVarint(index - parents[index]);
+            records.putVarint(sizes[index]);
+
+            Map<PropertyID, Object> properties = node.getProperties();
+            records.putVarint(properties.size());
+
+            for (Map.Entry<PropertyID, Object> entry : properties.entrySet()) {
+                records.putVarint(entry.getKey().getValue());
+                putValue(records, entry.getValue(), dictionary, strings, stringOffsets);
+            }
+        }
+
+        int stringCount = dictionary.size();
+        int stringTable = SnapshotFormat.FRAME_HEADER_SIZE + strings.position();
+        int recordsStart = stringTable + stringOffsets.position();
+        int nodeTable = recordsStart + records.position();
+
+        ByteBuffer header = ByteBuffer.allocate(4 + SnapshotFormat.FRAME_HEADER_SIZE);
+        header.putInt(nodeTable + count * 4);
+        header.putLong(System.currentTimeMillis());
+        header.putInt(count);
+        header.putInt(stringCount);
+        header.putInt(stringTable);
+        header.putInt(nodeTable);
+        header.flip();
+
+        ByteBuffer offsets = stringOffsets.flip();
+        for (int i = 0; i < stringCount; i++) {
+            offsets.putInt(i * 4, offsets.getInt(i * 4) + SnapshotFormat.FRAME_HEADER_SIZE);
+        }
+
+        ByteBuffer table = ByteBuffer.allocate(count * 4);
+        for (int offset : nodeOffsets) {
+            table.putInt(recordsStart + offset);
+        }
+        table.flip();
+
+        this.write(header);
+        this.write(strings.flip());
+        this.write(offsets);
+        this.write(records.flip());
+        this.write(table);
+
+        return this.frames++;
+    }
+
+    private static void putValue(Encoder records, Object value, Map<String, Integer> dictionary,
+                                 Encoder strings, Encoder stringOffsets) {
+        if (value == null) {
+            records.putByte(SnapshotFormat.NULL);
+        } else if (value instanceof Boolean) {
+            records.putByte((Boolean)value ? SnapshotFormat.TRUE : SnapshotFormat.FALSE);
+        } else if (value instanceof Integer) {
+            records.putByte(SnapshotFormat.INT);
+            records.putSignedVarint((Integer)value);
+        } else if (value instanceof Double) {
+            records.putByte(SnapshotFormat.DOUBLE);
+            records.putDouble((Double)value);
+        } else if (value instanceof String) {
+            Integer index = dictionary.get(value);
+
+            if (index == null) {
+                index = dictionary.size();
+                dictionary.put((String)value, index);
+
+                byte[] bytes = ((String)value).getBytes(StandardCharsets.UTF_8);
+                stringOffsets.putInt(strings.position());
+                strings.putVarint(bytes.length);
+                strings.putBytes(bytes);
+            }
+
+            records.putByte(SnapshotFormat.STRING);
+            records.putVarint(index);
+        } else if (value instanceof int[]) {
+            int[] values = (int[])value;
+
+            records.putByte(SnapshotFormat.INT_ARRAY);
+            records.putVarint(values.length);
+
+            for (int item : values) {
+                records.putSignedVarint(item);
+            }
+        } else if (value instanceof WinDef.RECT) {
+            WinDef.RECT rect = (WinDef.RECT)value;
+
+            records.putByte(SnapshotFormat.RECT);
+            records.putSignedVarint(rect.left);
+            records.putSignedVarint(rect.top);
+            records.putSignedVarint(rect.right);
+            records.putSignedVarint(rect.bottom);
+        } else {
+            throw new IllegalArgumentException("Cannot record a " + value.getClass().getName());
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+    }
+
+    /**
+     * Gets the number of frames written so far
+     *
+     * @return The number of frames
+     */
+    public int getFrameCount() {
+        return this.frames;
+    }
+
+    /**
+     * Closes the channel
+     *
+     * @throws IOException Failed to close the channel
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+}
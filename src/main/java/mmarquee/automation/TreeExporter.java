@@ -0,0 +1,379 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import com.sun.jna.platform.win32.WinDef;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Writes a tree of elements as JSON while it is being walked, so the tree is never held
+ * in memory; only the elements on the path from the root to the current element are
+ * kept, plus a fixed size output buffer. Writes block until the stream accepts them, so
+ * a slow consumer slows the walk down rather than letting output build up.
+ *
+ * The tree is walked either live, with a tree walker (optionally fetching the properties
+ * with a cache request as it goes), or through the cached children of an element found
+ * with a cache request that has a subtree scope.
+ */
+public final class TreeExporter {
+
+    /**
+     * The output formats
+     */
+    public enum Format {
+        /**
+         * One object per line for each element, with its index, parent and depth
+         */
+        NdJson,
+
+        /**
+         * A single object for the root, with the children of each element nested in it
+         */
+        Json
+    }
+
+    private static final List<PropertyID> DEFAULT_PROPERTIES = Collections.unmodifiableList(Arrays.asList(
+            PropertyID.Name, PropertyID.AutomationId, PropertyID.ClassName, PropertyID.ControlType));
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The children of an element that has been written, fetched one at a time
+     */
+    private interface Level {
+        AutomationElement next() throws AutomationException;
+
+        void close();
+    }
+
+    private final AutomationTreeWalker walker;
+    private final CacheRequest cacheRequest;
+
+    private List<PropertyID> properties = DEFAULT_PROPERTIES;
+    private int maxDepth = Integer.MAX_VALUE;
+    private Format format = Format.NdJson;
+
+    private TreeExporter(AutomationTreeWalker walker, CacheRequest cacheRequest) {
+        this.walker = walker;
+        this.cacheRequest = cacheRequest;
+    }
+
+    /**
+     * Creates an exporter that walks the live tree
+     *
+     * @param walker The walker, which decides the view of the tree
+     * @return The exporter
+     */
+    public static TreeExporter walking(AutomationTreeWalker walker) {
+        return new TreeExporter(walker, null);
+    }
+
+    /**
+     * Creates an exporter that walks the live tree, fetching each element with a cache
+     * request (which should include the exported properties) to save calls
+     *
+     * @param walker The walker, which decides the view of the tree
+     * @param cacheRequest The cache request
+     * @return The exporter
+     */
+    public static TreeExporter walking(AutomationTreeWalker walker, CacheRequest cacheRequest) {
+        return new TreeExporter(walker, cacheRequest);
+    }
+
+    /**
+     * Creates an exporter that walks the cached children, from an element that was found
+     * or updated with the cache request
+     *
+     * @param cacheRequest The cache request, with a subtree scope
+     * @return The exporter
+     */
+    public static TreeExporter cached(CacheRequest cacheRequest) {
+        return new TreeExporter(null, cacheRequest);
+    }
+
+    /**
+     * Sets the properties to write for each element (by default the name, automation id,
+     * class name and control type)
+     *
+     * @param properties The properties
+     * @return The exporter
+     */
+    public TreeExporter setProperties(PropertyID... properties) {
+        this.properties = Collections.unmodifiableList(Arrays.asList(properties.clone()));
+        return this;
+    }
+
+    /**
+     * Sets how far below the root to go
+     *
+     * @param maxDepth The deepest level written, where 0 is just the root
+     * @return The exporter
+     */
+    public TreeExporter setMaxDepth(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("maxDepth must not be negative");
+        }
+
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * Sets the output format (NdJson by default)
+     *
+     * @param format The format
+     * @return The exporter
+     */
+    public TreeExporter setFormat(Format format) {
+        this.format = format;
+        return this;
+    }
+
+    /**
+     * Writes the element and its descendants. The stream is flushed but not closed.
+     *
+     * @param root The element to start from, which is not closed
+     * @param out The stream to write to, as UTF-8
+     * @return The number of elements written
+     * @throws AutomationException Failed to read from the tree
+     * @throws IOException Failed to write to the stream
+     */
+    public long export(AutomationElement root, OutputStream out) throws AutomationException, IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+
+        Deque<Level> levels = new ArrayDeque<Level>();
+        Deque<Long> parents = new ArrayDeque<Long>();
+        Deque<Boolean> first = new ArrayDeque<Boolean>();
+
+        long count = 0;
+
+        try {
+            this.writeElement(writer, root, count++, -1, 0, levels, parents, first);
+
+            while (!levels.isEmpty()) {
+                AutomationElement child = levels.peek().next();
+
+                if (child == null) {
+                    levels.pop().close();
+                    parents.pop();
+                    first.pop();
+
+                    if (this.format == Format.Json) {
+                        writer.write("]}");
+                    }
+
+                    continue;
+                }
+
+                if (this.format == Format.Json && !first.peek()) {
+                    writer.write(",");
+                }
+
+                first.pop();
+                first.push(false);
+
+                this.writeElement(writer, child, count++, parents.peek(), levels.size(), levels, parents, first);
+            }
+
+            if (this.format == Format.Json) {
+                writer.write("\n");
+            }
+
+            writer.flush();
+        } finally {
+            while (!levels.isEmpty()) {
+                levels.pop().close();
+            }
+        }
+
+        return count;
+    }
+
+    private Level children(final AutomationElement parent) throws AutomationException {
+        if (this.walker == null) {
+            final List<AutomationElement> children = parent.getCachedChildren(this.cacheRequest);
+
+            return new Level() {
+                private int index = 0;
+
+                @Override
+                public AutomationElement next() {
+                    if (this.index > 0) {
+                        children.get(this.index - 1).close();
+                    }
+
+                    return this.index < children.size() ? children.get(this.index++) : null;
+                }
+
+                @Override
+                public void close() {
+                    if (this.index > 0) {
+                        children.get(this.index - 1).close();
+                    }
+
+                    if (children instanceof AutomationElementList) {
+                        ((AutomationElementList)children).close();
+                    }
+                }
+            };
+        }
+
+        return new Level() {
+            private AutomationElement current = null;
+            private boolean started = false;
+
+            @Override
+            public AutomationElement next() throws AutomationException {
+                AutomationElement previous = this.current;
+
+                if (!this.started) {
+                    this.started = true;
+                    this.current = cacheRequest == null ?
+                            walker.getFirstChildElement(parent) :
+                            walker.getFirstChildElement(parent, cacheRequest);
+                } else if (previous != null) {
+                    this.current = cacheRequest == null ?
+                            walker.getNextSiblingElement(previous) :
+                            walker.getNextSiblingElement(previous, cacheRequest);
+                    previous.close();
+                }
+
+                return this.current;
+            }
+
+            @Override
+            public void close() {
+                if (this.current != null) {
+                    this.current.close();
+                    this.current = null;
+                }
+            }
+        };
+    }
+
+    /**
+     * Writes the properties of an element, then starts on its children if it is not too deep
+     */
+    private void writeElement(Writer writer, AutomationElement element, long index, long parent, int depth,
+                              Deque<Level> levels, Deque<Long> parents, Deque<Boolean> first)
+            throws AutomationException, IOException {
+        writer.write("{");
+
+        if (this.format == Format.NdJson) {
+            writer.write("\"index\":" + index + ",\"parent\":" + (parent < 0 ? "null" : parent) +
+                    ",\"depth\":" + depth);
+        }
+
+        String separator = this.format == Format.NdJson ? "," : "";
+
+        for (PropertyID property : this.properties) {
+            writer.write(separator);
+            separator = ",";
+
+            writeString(writer, property.name());
+            writer.write(":");
+            writeValue(writer, element.getProperty(property));
+        }
+
+        boolean descend = depth < this.maxDepth;
+
+        if (this.format == Format.NdJson) {
+            writer.write("}\n");
+        } else {
+            writer.write(descend ? separator + "\"children\":[" : "}");
+        }
+
+        if (descend) {
+            levels.push(this.children(element));
+            parents.push(index);
+            first.push(true);
+        }
+    }
+
+    private static void writeValue(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+        } else if (value instanceof String) {
+            writeString(writer, (String)value);
+        } else if (value instanceof Double) {
+            double number = (Double)value;
+            writer.write(Double.isNaN(number) || Double.isInfinite(number) ? "null" : value.toString());
+        } else if (value instanceof int[]) {
+            int[] values = (int[])value;
+            writer.write("[");
+
+            for (int i = 0; i < values.length; i++) {
+                writer.write(i == 0 ? "" : ",");
+                writer.write(Integer.toString(values[i]));
+            }
+
+            writer.write("]");
+        } else if (value instanceof WinDef.RECT) {
+            WinDef.RECT rect = (WinDef.RECT)value;
+            writer.write("{\"left\":" + rect.left + ",\"top\":" + rect.top +
+                    ",\"right\":" + rect.right + ",\"bottom\":" + rect.bottom + "}");
+        } else if (value instanceof Boolean || value instanceof Integer) {
+            writer.write(value.toString());
+        } else {
+            writeString(writer, value.toString());
+        }
+    }
+
+    private static void writeString(Writer writer, String value) throws IOException {
+        writer.write('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            switch (c) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        writer.write(String.format("\\u%04x", (int)c));
+                    } else {
+                        writer.write(c);
+                    }
+            }
+        }
+
+        writer.write('"');
+    }
+}
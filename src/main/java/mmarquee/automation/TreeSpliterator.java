@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Walks the descendants of an element one at a time, as they are asked for.
+ *
+ * Only the elements needed to find the next one are fetched, so a short-circuiting
+ * operation (e.g. findFirst) stops the walk straight away. The walk carries on from the
+ * elements that have already been handed out, so they shouldn't be closed until it has
+ * finished.
+ */
+final class TreeSpliterator extends Spliterators.AbstractSpliterator<AutomationElement> {
+
+    /**
+     * An element, and how far below the root it is
+     */
+    private static final class Node {
+        private final AutomationElement element;
+        private final int depth;
+
+        Node(AutomationElement element, int depth) {
+            this.element = element;
+            this.depth = depth;
+        }
+    }
+
+    private final AutomationTreeWalker walker;
+    private final AutomationTreeWalker.TraversalOrder order;
+    private final int maxDepth;
+    private final AutomationTreeWalker.AutomationElementPruner pruner;
+    private final CacheRequest cacheRequest;
+
+    /**
+     * Depth first, the ancestors of the last element (below the root)
+     */
+    private final Deque<Node> parents = new ArrayDeque<Node>();
+
+    /**
+     * Breadth first, the elements whose children are still to be visited
+     */
+    private final Deque<Node> pending = new ArrayDeque<Node>();
+
+    private Node last;
+    private boolean finished = false;
+
+    TreeSpliterator(AutomationTreeWalker walker,
+                    AutomationElement root,
+                    AutomationTreeWalker.TraversalOrder order,
+                    int maxDepth,
+                    AutomationTreeWalker.AutomationElementPruner pruner,
+                    CacheRequest cacheRequest) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+
+        this.walker = walker;
+        this.order = order;
+        this.maxDepth = maxDepth;
+        this.pruner = pruner;
+        this.cacheRequest = cacheRequest;
+        this.last = new Node(root, 0);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super AutomationElement> action) {
+        if (this.finished) {
+            return false;
+        }
+
+        Node next;
+
+        try {
+            next = this.order == AutomationTreeWalker.TraversalOrder.BreadthFirst ?
+                    this.nextBreadthFirst() :
+                    this.nextDepthFirst();
+        } catch (AutomationException ex) {
+            this.finish();
+            throw new IllegalStateException("Failed to walk the tree", ex);
+        }
+
+        if (next == null) {
+            this.finish();
+            return false;
+        }
+
+        this.last = next;
+        action.accept(next.element);
+        return true;
+    }
+
+    private Node nextDepthFirst() throws AutomationException {
+        Node current = this.last;
+
+        if (this.expand(current)) {
+            AutomationElement child = this.firstChild(current.element);
+
+            if (child != null) {
+                if (current.depth > 0) {
+                    this.parents.push(current);
+                }
+
+                return new Node(child, current.depth + 1);
+            }
+        }
+
+        // Move on to the next sibling, of this element or of the nearest parent that has one
+        while (current != null && current.depth > 0) {
+            AutomationElement sibling = this.nextSibling(current.element);
+
+            if (sibling != null) {
+                return new Node(sibling, current.depth);
+            }
+
+            current = this.parents.poll();
+        }
+
+        return null;
+    }
+
+    private Node nextBreadthFirst() throws AutomationException {
+        Node current = this.last;
+
+        if (this.expand(current)) {
+            this.pending.add(current);
+        }
+
+        if (current.depth > 0) {
+            AutomationElement sibling = this.nextSibling(current.element);
+
+            if (sibling != null) {
+                return new Node(sibling, current.depth);
+            }
+        }
+
+        while (!this.pending.isEmpty()) {
+            Node parent = this.pending.poll();
+            AutomationElement child = this.firstChild(parent.element);
+
+            if (child != null) {
+                return new Node(child, parent.depth + 1);
+            }
+        }
+
+        return null;
+    }
+
+    private AutomationElement firstChild(AutomationElement element) throws AutomationException {
+        return this.cacheRequest == null ?
+                this.walker.getFirstChildElement(element) :
+                this.walker.getFirstChildElement(element, this.cacheRequest);
+    }
+
+    private AutomationElement nextSibling(AutomationElement element) throws AutomationException {
+        return this.cacheRequest == null ?
+                this.walker.getNextSiblingElement(element) :
+                this.walker.getNextSiblingElement(element, this.cacheRequest);
+    }
+
+    /**
+     * Whether to visit the children of the element
+     */
+    private boolean expand(Node node) throws AutomationException {
+        if (node.depth >= this.maxDepth) {
+            return false;
+        }
+
+        return node.depth == 0 || this.pruner == null || !this.pruner.prune(node.element, node.depth);
+    }
+
+    private void finish() {
+        this.finished = true;
+        this.last = null;
+        this.parents.clear();
+        this.pending.clear();
+    }
+}
@@ -15,6 +15,8 @@
  */
 package mmarquee.automation;
 
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
 import com.sun.jna.Pointer;
 import com.sun.jna.platform.win32.*;
 import com.sun.jna.platform.win32.COM.COMUtils;
@@ -31,7 +33,11 @@ import mmarquee.automation.utils.Utils;
 import mmarquee.demo.TreeWalker;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Logger;
 
 /**
@@ -45,6 +51,11 @@ public class UIAutomation extends BaseAutomation {
 
     protected static UIAutomation INSTANCE = null;
 
+    /**
+     * The instance belonging to the current thread, if it is a dispatcher or worker thread
+     */
+    private static final ThreadLocal<UIAutomation> THREAD_INSTANCE = new ThreadLocal<UIAutomation>();
+
     protected AutomationElement rootElement;
 
     /**
@@ -52,8 +63,41 @@ public class UIAutomation extends BaseAutomation {
      */
     private IUIAutomation automation;
 
+    /**
+     * Shared request for the Is...PatternAvailable properties, created when first needed
+     */
+    private CacheRequest patternAvailabilityRequest;
+
     /*final*/ static int FIND_DESKTOP_ATTEMPTS = 25; // not final to be set in tests
 
+    /**
+     * How desktop windows, objects and menus are looked for, unless told otherwise
+     *
+     * @return The policy, which allows FIND_DESKTOP_ATTEMPTS attempts
+     */
+    private static RetryPolicy getFindDesktopPolicy() {
+        return RetryPolicy.DEFAULT.withMaxAttempts(FIND_DESKTOP_ATTEMPTS);
+    }
+
+    /**
+     * The most conditions to keep in the condition cache
+     */
+    static final int CONDITION_CACHE_SIZE = 256;
+
+    /**
+     * The name, automation id, control type and and / or conditions that have been created
+     */
+    private final ConditionCache conditions = new ConditionCache(CONDITION_CACHE_SIZE,
+            new ConditionCache.References() {
+                public void addRef(Pointer condition) {
+                    makeUnknown(condition).AddRef();
+                }
+
+                public void release(Pointer condition) {
+                    makeUnknown(condition).Release();
+                }
+            });
+
     /**
      * Created for test, to allow mocking
      *
@@ -67,7 +111,17 @@ public class UIAutomation extends BaseAutomation {
      * Constructor for UIAutomation library
      */
     protected UIAutomation() {
-        Ole32.INSTANCE.CoInitializeEx(Pointer.NULL, Ole32.COINIT_APARTMENTTHREADED);
+        this(Ole32.COINIT_APARTMENTTHREADED);
+    }
+
+    /**
+     * Constructor for a thread that joins the given COM apartment, e.g. for the worker
+     * threads of AutomationWorkerPool
+     *
+     * @param apartment The COINIT_... flag to initialise COM with
+     */
+    UIAutomation(int apartment) {
+        Ole32.INSTANCE.CoInitializeEx(Pointer.NULL, apartment);
 
         PointerByReference pbr = new PointerByReference();
 
@@ -85,6 +139,8 @@ public class UIAutomation extends BaseAutomation {
         PointerByReference pbr1 = new PointerByReference();
 
         WinNT.HRESULT result = unk.QueryInterface(new Guid.REFIID(IUIAutomation.IID), pbr1);
+        unk.Release();
+
         if (COMUtils.SUCCEEDED(result)) {
             this.automation = IUIAutomation.Converter.PointerToInterface(pbr1);
         }
@@ -96,9 +152,13 @@ public class UIAutomation extends BaseAutomation {
         Unknown uRoot = new Unknown(pRoot.getValue());
 
         WinNT.HRESULT result0 = uRoot.QueryInterface(new Guid.REFIID(IUIAutomationElement3.IID), pRoot);
+        uRoot.Release();
 
         if (COMUtils.SUCCEEDED(result0)) {
-            this.rootElement = new AutomationElement(IUIAutomationElement3.Converter.PointerToInterface(pRoot));
+            // The root element is shared, and held for the life of the automation object
+            this.rootElement =
+                    new AutomationElement(IUIAutomationElement3.Converter.PointerToInterface(pRoot), false)
+                            .withAutomation(this);
         }
     }
 
@@ -125,16 +185,41 @@ public class UIAutomation extends BaseAutomation {
     }
 
     /**
-     * Gets the instance
+     * Gets the instance.
+     *
+     * On a dispatcher or worker pool thread this is the thread's own instance, so the
+     * shared instance is never created (or used) from the wrong COM apartment.
      *
      * @return the instance of the ui automation library
      */
     public static UIAutomation getInstance() {
-        if (INSTANCE == null) {
-            INSTANCE = new UIAutomation();
+        UIAutomation owned = THREAD_INSTANCE.get();
+
+        if (owned != null) {
+            return owned;
         }
 
-        return INSTANCE;
+        synchronized (UIAutomation.class) {
+            if (INSTANCE == null) {
+                INSTANCE = new UIAutomation();
+            }
+
+            return INSTANCE;
+        }
+    }
+
+    /**
+     * Sets the instance that getInstance returns on the current thread, for the threads
+     * that own an instance of their own (i.e. dispatcher and worker threads)
+     *
+     * @param instance The thread's instance, or null once the thread has finished with it
+     */
+    static void setThreadInstance(UIAutomation instance) {
+        if (instance == null) {
+            THREAD_INSTANCE.remove();
+        } else {
+            THREAD_INSTANCE.set(instance);
+        }
     }
 
     /**
@@ -220,10 +305,11 @@ public class UIAutomation extends BaseAutomation {
      * Gets the desktop object associated with the title
      *
      * @param title Title to search for
+     * @param policy How long, and how often, to look
      * @return AutomationWindow The found 'element'
      * @throws ElementNotFoundException Element is not found
      */
-    private AutomationElement get(ControlType controlType, String title, int numberOfRetries)
+    private AutomationElement get(ControlType controlType, String title, RetryPolicy policy)
             throws AutomationException {
         AutomationElement element = null;
 
@@ -236,30 +322,27 @@ public class UIAutomation extends BaseAutomation {
         WTypes.BSTR sysAllocated = OleAuto.INSTANCE.SysAllocString(title);
         variant2.setValue(Variant.VT_BSTR, sysAllocated);
 
+        PointerByReference pCondition1 = null;
+        PointerByReference pCondition2 = null;
+        PointerByReference pAndCondition = null;
+
         try {
             // First condition
-            PointerByReference pCondition1 = this.createPropertyCondition(PropertyID.Name.getValue(), variant2);
+            pCondition1 = this.createPropertyCondition(PropertyID.Name.getValue(), variant2);
 
             // Second condition
-            PointerByReference pCondition2 = this.createPropertyCondition(PropertyID.ControlType.getValue(), variant1);
+            pCondition2 = this.createPropertyCondition(PropertyID.ControlType.getValue(), variant1);
 
             // And Condition
-            PointerByReference pAndCondition = this.createAndCondition(pCondition1.getValue(), pCondition2.getValue());
-
-            for (int loop = 0; loop < numberOfRetries; loop++) {
+            pAndCondition = this.createAndCondition(pCondition1.getValue(), pCondition2.getValue());
 
-                try {
-                    element = this.rootElement.findFirst(new TreeScope(TreeScope.Descendants), pAndCondition);
-                } catch (AutomationException ex) {
-                    logger.info("Not found, retrying " + title);
-                }
-
-                if (element != null) {
-                    break;
-                }
-            }
+            element = this.findOnDesktop(pAndCondition, title, policy);
         } finally {
             OleAuto.INSTANCE.SysFreeString(sysAllocated);
+
+            this.releaseCondition(pAndCondition);
+            this.releaseCondition(pCondition2);
+            this.releaseCondition(pCondition1);
         }
 
         if (element == null) {
@@ -270,6 +353,34 @@ public class UIAutomation extends BaseAutomation {
         return element;
     }
 
+    /**
+     * Looks for a descendant of the desktop, until it turns up or the policy gives up
+     *
+     * @param condition The condition to match
+     * @param title What is being looked for, for the log
+     * @param policy How long, and how often, to look
+     * @return The element, or null if it wasn't found
+     * @throws AutomationException The wait was interrupted
+     */
+    private AutomationElement findOnDesktop(final PointerByReference condition,
+                                            final String title,
+                                            RetryPolicy policy) throws AutomationException {
+        try {
+            return Wait.until(new Wait.Probe<AutomationElement>() {
+                public AutomationElement probe() {
+                    try {
+                        return rootElement.findFirst(new TreeScope(TreeScope.Descendants), condition);
+                    } catch (AutomationException ex) {
+                        logger.info("Not found, retrying " + title);
+                        return null;
+                    }
+                }
+            }, policy);
+        } catch (ElementNotFoundException ex) {
+            return null;
+        }
+    }
+
     /**
      * Gets the desktop 'window' associated with the title
      *
@@ -280,7 +391,7 @@ public class UIAutomation extends BaseAutomation {
      */
     public AutomationWindow getDesktopWindow(String title)
             throws PatternNotFoundException, AutomationException {
-        return new AutomationWindow(this.get(ControlType.Window, title, FIND_DESKTOP_ATTEMPTS));
+        return new AutomationWindow(this.get(ControlType.Window, title, getFindDesktopPolicy()));
     }
 
     /**
@@ -295,7 +406,22 @@ public class UIAutomation extends BaseAutomation {
      */
     public AutomationWindow getDesktopWindow(String title, int retries)
             throws PatternNotFoundException, AutomationException {
-        return new AutomationWindow(this.get(ControlType.Window, title, retries));
+        return this.getDesktopWindow(title, RetryPolicy.DEFAULT.withMaxAttempts(Math.max(retries, 1)));
+    }
+
+    /**
+     * Gets the desktop 'window' associated with the title, looking for it as
+     * the policy says.
+     *
+     * @param title Title to search for
+     * @param policy How long, and how often, to look
+     * @return AutomationWindow The found window
+     * @throws ElementNotFoundException Element is not found
+     * @throws PatternNotFoundException Expected pattern not found
+     */
+    public AutomationWindow getDesktopWindow(String title, RetryPolicy policy)
+            throws PatternNotFoundException, AutomationException {
+        return new AutomationWindow(this.get(ControlType.Window, title, policy));
     }
 
     /**
@@ -306,13 +432,27 @@ public class UIAutomation extends BaseAutomation {
      * @return The new condition
      * @throws AutomationException Something is wrong
      */
-    public PointerByReference createAndCondition(Pointer pCondition1, Pointer pCondition2) throws AutomationException {
-        PointerByReference pbr = new PointerByReference();
+    public PointerByReference createAndCondition(final Pointer pCondition1, final Pointer pCondition2)
+            throws AutomationException {
+        ConditionCache.Key key1 = this.conditions.keyOf(pCondition1);
+        ConditionCache.Key key2 = this.conditions.keyOf(pCondition2);
 
-        if (this.automation.createAndCondition(pCondition1, pCondition2, pbr) == 0) {
-            return pbr;
+        ConditionCache.Factory factory = new ConditionCache.Factory() {
+            public Pointer create() throws AutomationException {
+                PointerByReference pbr = new PointerByReference();
+
+                if (automation.createAndCondition(pCondition1, pCondition2, pbr) == 0) {
+                    return pbr.getValue();
+                } else {
+                    throw new AutomationException();
+                }
+            }
+        };
+
+        if (key1 != null && key2 != null) {
+            return new PointerByReference(this.conditions.get(ConditionCache.Key.and(key1, key2), factory));
         } else {
-            throw new AutomationException();
+            return new PointerByReference(factory.create());
         }
     }
 
@@ -324,16 +464,96 @@ public class UIAutomation extends BaseAutomation {
      * @return The new condition
      * @throws AutomationException Something is wrong
      */
-    public PointerByReference createOrCondition(Pointer pCondition1, Pointer pCondition2) throws AutomationException {
+    public PointerByReference createOrCondition(final Pointer pCondition1, final Pointer pCondition2)
+            throws AutomationException {
+        ConditionCache.Key key1 = this.conditions.keyOf(pCondition1);
+        ConditionCache.Key key2 = this.conditions.keyOf(pCondition2);
+
+        ConditionCache.Factory factory = new ConditionCache.Factory() {
+            public Pointer create() throws AutomationException {
+                PointerByReference pbr = new PointerByReference();
+
+                if (automation.createOrCondition(pCondition1, pCondition2, pbr) == 0) {
+                    return pbr.getValue();
+                } else {
+                    throw new AutomationException();
+                }
+            }
+        };
+
+        if (key1 != null && key2 != null) {
+            return new PointerByReference(this.conditions.get(ConditionCache.Key.or(key1, key2), factory));
+        } else {
+            return new PointerByReference(factory.create());
+        }
+    }
+
+    /**
+     * Create an 'and' condition from any number of conditions, as a single native condition
+     * rather than a chain of binary ones
+     *
+     * @param conditions The conditions
+     * @return The new condition
+     * @throws AutomationException Something is wrong
+     */
+    public PointerByReference createAndCondition(Pointer... conditions) throws AutomationException {
+        if (conditions.length == 2) {
+            return this.createAndCondition(conditions[0], conditions[1]);
+        }
+
+        PointerByReference pbr = new PointerByReference();
+
+        if (this.automation.createAndConditionFromNativeArray(
+                this.createConditionArray(conditions), conditions.length, pbr) == 0) {
+            return pbr;
+        } else {
+            throw new AutomationException();
+        }
+    }
+
+    /**
+     * Create an 'or' condition from any number of conditions, as a single native condition
+     * rather than a chain of binary ones
+     *
+     * @param conditions The conditions
+     * @return The new condition
+     * @throws AutomationException Something is wrong
+     */
+    public PointerByReference createOrCondition(Pointer... conditions) throws AutomationException {
+        if (conditions.length == 2) {
+            return this.createOrCondition(conditions[0], conditions[1]);
+        }
+
         PointerByReference pbr = new PointerByReference();
 
-        if (this.automation.createOrCondition(pCondition1, pCondition2, pbr) == 0) {
+        if (this.automation.createOrConditionFromNativeArray(
+                this.createConditionArray(conditions), conditions.length, pbr) == 0) {
             return pbr;
         } else {
             throw new AutomationException();
         }
     }
 
+    /**
+     * Copies conditions into a native array of IUIAutomationCondition pointers
+     *
+     * @param conditions The conditions
+     * @return The native array, or null if there are no conditions
+     */
+    private Pointer createConditionArray(Pointer... conditions) {
+        if (conditions.length == 0) {
+            return null;
+        }
+
+        Memory array = new Memory(Native.POINTER_SIZE * conditions.length);
+
+        for (int index = 0; index < conditions.length; index++) {
+            array.setPointer(Native.POINTER_SIZE * index, conditions[index]);
+        }
+
+        return array;
+    }
+
     /**
      * Creates a condition, based on control id
      *
@@ -342,10 +562,7 @@ public class UIAutomation extends BaseAutomation {
      * @throws AutomationException Something went wrong
      */
     public PointerByReference createControlTypeCondition(ControlType id) throws AutomationException {
-        Variant.VARIANT.ByValue variant = new Variant.VARIANT.ByValue();
-        variant.setValue(Variant.VT_INT, id.getValue());
-
-        return this.createPropertyCondition(PropertyID.ControlType.getValue(), variant);
+        return this.createPropertyCondition(PropertyID.ControlType, id.getValue());
     }
 
     /**
@@ -356,15 +573,7 @@ public class UIAutomation extends BaseAutomation {
      * @throws AutomationException Something went wrong
      */
     public PointerByReference createAutomationIdPropertyCondition(String automationId) throws AutomationException {
-        Variant.VARIANT.ByValue variant = new Variant.VARIANT.ByValue();
-        WTypes.BSTR sysAllocated = OleAuto.INSTANCE.SysAllocString(automationId);
-        variant.setValue(Variant.VT_BSTR, sysAllocated);
-
-        try {
-            return this.createPropertyCondition(PropertyID.AutomationId.getValue(), variant);
-        } finally {
-            OleAuto.INSTANCE.SysFreeString(sysAllocated);
-        }
+        return this.createPropertyCondition(PropertyID.AutomationId, automationId);
     }
 
     /**
@@ -375,17 +584,109 @@ public class UIAutomation extends BaseAutomation {
      * @throws AutomationException Something went wrong
      */
     public PointerByReference createNamePropertyCondition(String name) throws AutomationException {
+        return this.createPropertyCondition(PropertyID.Name, name);
+    }
+
+    /**
+     * Creates a condition, based on element name, comparing the name as given by the flags
+     *
+     * @param name The name
+     * @param flags How to compare the name, e.g. IgnoreCase, MatchSubstring
+     * @return The condition
+     * @throws AutomationException Something went wrong
+     */
+    public PointerByReference createNamePropertyCondition(String name, PropertyConditionFlags... flags)
+            throws AutomationException {
         Variant.VARIANT.ByValue variant = new Variant.VARIANT.ByValue();
         WTypes.BSTR sysAllocated = OleAuto.INSTANCE.SysAllocString(name);
         variant.setValue(Variant.VT_BSTR, sysAllocated);
 
         try {
-            return this.createPropertyCondition(PropertyID.Name.getValue(), variant);
+            return this.createPropertyConditionEx(PropertyID.Name.getValue(), variant, flags);
         } finally {
             OleAuto.INSTANCE.SysFreeString(sysAllocated);
         }
     }
 
+    /**
+     * Creates a condition on an integer property, or gets it from the condition cache
+     *
+     * @param property The property
+     * @param value The value to compare with
+     * @return The condition
+     * @throws AutomationException Something went wrong
+     */
+    public PointerByReference createPropertyCondition(final PropertyID property, final int value)
+            throws AutomationException {
+        ConditionCache.Key key = ConditionCache.Key.property(property, value);
+
+        return new PointerByReference(this.conditions.get(key, new ConditionCache.Factory() {
+            public Pointer create() throws AutomationException {
+                Variant.VARIANT.ByValue variant = new Variant.VARIANT.ByValue();
+                variant.setValue(Variant.VT_INT, value);
+
+                return createPropertyCondition(property.getValue(), variant).getValue();
+            }
+        }));
+    }
+
+    /**
+     * Creates a condition on a flag property, or gets it from the condition cache
+     *
+     * @param property The property
+     * @param value The value to compare with
+     * @return The condition
+     * @throws AutomationException Something went wrong
+     */
+    public PointerByReference createPropertyCondition(final PropertyID property, final boolean value)
+            throws AutomationException {
+        ConditionCache.Key key = ConditionCache.Key.property(property, value);
+
+        return new PointerByReference(this.conditions.get(key, new ConditionCache.Factory() {
+            public Pointer create() throws AutomationException {
+                Variant.VARIANT.ByValue variant = new Variant.VARIANT.ByValue();
+                variant.setValue(Variant.VT_BOOL, new OaIdl.VARIANT_BOOL(value));
+
+                return createPropertyCondition(property.getValue(), variant).getValue();
+            }
+        }));
+    }
+
+    /**
+     * Creates a condition on a string property, or gets it from the condition cache
+     *
+     * @param property The property
+     * @param value The value to compare with
+     * @return The condition
+     * @throws AutomationException Something went wrong
+     */
+    public PointerByReference createPropertyCondition(final PropertyID property, final String value)
+            throws AutomationException {
+        ConditionCache.Key key = ConditionCache.Key.property(property, value);
+
+        return new PointerByReference(this.conditions.get(key, new ConditionCache.Factory() {
+            public Pointer create() throws AutomationException {
+                Variant.VARIANT.ByValue variant = new Variant.VARIANT.ByValue();
+                WTypes.BSTR sysAllocated = OleAuto.INSTANCE.SysAllocString(value);
+                variant.setValue(Variant.VT_BSTR, sysAllocated);
+
+                try {
+                    return createPropertyCondition(property.getValue(), variant).getValue();
+                } finally {
+                    OleAuto.INSTANCE.SysFreeString(sysAllocated);
+                }
+            }
+        }));
+    }
+
+    /**
+     * Releases the conditions held in the condition cache. Conditions that are still in use
+     * stay valid until they are released.
+     */
+    public void clearConditionCache() {
+        this.conditions.clear();
+    }
+
     /**
      * Creates a property condition
      *
@@ -403,6 +704,8 @@ public class UIAutomation extends BaseAutomation {
 
             WinNT.HRESULT result1 = unkCondition.QueryInterface(new Guid.REFIID(IUIAutomationCondition.IID), pUnknown);
             if (COMUtils.SUCCEEDED(result1)) {
+                // Only checking that it is a condition
+                this.release(pUnknown);
                 return pCondition;
             } else {
                 throw new AutomationException();
@@ -412,6 +715,28 @@ public class UIAutomation extends BaseAutomation {
         }
     }
 
+    /**
+     * Creates a property condition, with flags that control how string values are compared
+     *
+     * @param id    Which property to check for
+     * @param value The value of the property
+     * @param flags How to compare the value, e.g. IgnoreCase, MatchSubstring
+     * @return The new condition
+     * @throws AutomationException Something has gone wrong
+     */
+    public PointerByReference createPropertyConditionEx(int id, Variant.VARIANT.ByValue value,
+                                                        PropertyConditionFlags... flags)
+            throws AutomationException {
+        PointerByReference pCondition = new PointerByReference();
+
+        if (this.automation.createPropertyConditionEx(id, value,
+                PropertyConditionFlags.combine(flags), pCondition) == 0) {
+            return pCondition;
+        } else {
+            throw new AutomationException();
+        }
+    }
+
     /**
      * Gets the desktop object associated with the title
      *
@@ -422,7 +747,7 @@ public class UIAutomation extends BaseAutomation {
      */
     public AutomationWindow getDesktopObject(String title)
             throws PatternNotFoundException, AutomationException {
-        return new AutomationWindow(this.get(ControlType.Pane, title, FIND_DESKTOP_ATTEMPTS));
+        return new AutomationWindow(this.get(ControlType.Pane, title, getFindDesktopPolicy()));
     }
 
     /**
@@ -440,24 +765,16 @@ public class UIAutomation extends BaseAutomation {
         WTypes.BSTR sysAllocated = OleAuto.INSTANCE.SysAllocString(title);
         variant.setValue(Variant.VT_BSTR, sysAllocated);
 
-        try {
-            PointerByReference pCondition1 = this.createPropertyCondition(PropertyID.Name.getValue(), variant);
-
-            for (int loop = 0; loop < FIND_DESKTOP_ATTEMPTS; loop++) {
+        PointerByReference pCondition1 = null;
 
-                try {
-                    element = this.rootElement.findFirst(new TreeScope(TreeScope.Descendants),
-                            pCondition1);
-                } catch (AutomationException ex) {
-                    logger.info("Not found, retrying " + title);
-                }
+        try {
+            pCondition1 = this.createPropertyCondition(PropertyID.Name.getValue(), variant);
 
-                if (element != null) {
-                    break;
-                }
-            }
+            element = this.findOnDesktop(pCondition1, title, getFindDesktopPolicy());
         } finally {
             OleAuto.INSTANCE.SysFreeString(sysAllocated);
+
+            this.releaseCondition(pCondition1);
         }
 
         if (element == null) {
@@ -481,8 +798,13 @@ public class UIAutomation extends BaseAutomation {
 
         PointerByReference pTrueCondition = this.createTrueCondition();
 
-        List<AutomationElement> collection =
-                this.rootElement.findAll(new TreeScope(TreeScope.Children), pTrueCondition.getValue());
+        List<AutomationElement> collection;
+
+        try {
+            collection = this.rootElement.findAll(new TreeScope(TreeScope.Children), pTrueCondition.getValue());
+        } finally {
+            this.releaseCondition(pTrueCondition);
+        }
 
         for (AutomationElement element : collection) {
             result.add(new AutomationWindow(element));
@@ -491,6 +813,77 @@ public class UIAutomation extends BaseAutomation {
         return result;
     }
 
+    /**
+     * Creates a cache request, used to fetch properties and patterns along with the elements
+     * that are found, rather than calling back into the application for each of them.
+     *
+     * @param properties The properties to cache (more can be added to the request later)
+     * @return The cache request
+     * @throws AutomationException Something has gone wrong
+     */
+    public CacheRequest createCacheRequest(PropertyID... properties) throws AutomationException {
+        PointerByReference pbr = new PointerByReference();
+
+        if (this.automation.createCacheRequest(pbr) != 0) {
+            throw new AutomationException();
+        }
+
+        CacheRequest request = new CacheRequest(pbr.getValue(),
+                IUIAutomationCacheRequest.Converter.PointerToInterface(pbr));
+
+        return request.add(properties);
+    }
+
+    /**
+     * Creates a cache request for AutomationElement.snapshot, which captures the whole subtree
+     * with the runtime id, name, automation id, class name, control type and pattern
+     * availability of each element, along with any other properties that are asked for
+     *
+     * @param properties Any other properties to capture
+     * @return The cache request
+     * @throws AutomationException Something has gone wrong
+     */
+    public CacheRequest createSnapshotRequest(PropertyID... properties) throws AutomationException {
+        Collection<PropertyID> availability = PatternSet.getAvailabilityProperties().values();
+
+        return this.createCacheRequest(PropertyID.RuntimeId, PropertyID.Name, PropertyID.AutomationId,
+                        PropertyID.ClassName, PropertyID.ControlType)
+                .add(availability.toArray(new PropertyID[availability.size()]))
+                .add(properties)
+                .setTreeScope(new TreeScope(TreeScope.Subtree));
+    }
+
+    /**
+     * Gets the cache request for all of the Is...PatternAvailable properties, which is used
+     * to find which patterns an element supports in a single call. The request is shared,
+     * so it must not be changed or closed.
+     *
+     * @return The cache request
+     * @throws AutomationException Something has gone wrong
+     */
+    public synchronized CacheRequest getPatternAvailabilityRequest() throws AutomationException {
+        if (this.patternAvailabilityRequest == null) {
+            Collection<PropertyID> properties = PatternSet.getAvailabilityProperties().values();
+
+            this.patternAvailabilityRequest =
+                    this.createCacheRequest(properties.toArray(new PropertyID[properties.size()]));
+        }
+
+        return this.patternAvailabilityRequest;
+    }
+
+    /**
+     * Releases a condition once it is no longer needed.
+     *
+     * Conditions that have been combined (e.g. with createAndCondition) can be released as
+     * soon as the combined condition has been created, as it holds its own references.
+     *
+     * @param condition The condition to release (may be null)
+     */
+    public void releaseCondition(PointerByReference condition) {
+        this.release(condition);
+    }
+
     /**
      * Creates a true Condition
      *
@@ -552,7 +945,7 @@ public class UIAutomation extends BaseAutomation {
         if (this.automation.elementFromPoint(pt, pbr) == 0) {
             IUIAutomationElement3 element = getAutomationElementFromReference(pbr);
 
-            return new AutomationElement(element);
+            return new AutomationElement(element, this);
         } else {
             throw new AutomationException();
         }
@@ -569,12 +962,256 @@ public class UIAutomation extends BaseAutomation {
         if (this.automation.getFocusedElement(pbr) == 0) {
             IUIAutomationElement3 element = getAutomationElementFromReference(pbr);
 
-            return new AutomationElement(element);
+            return new AutomationElement(element, this);
+        } else {
+            throw new AutomationException();
+        }
+    }
+
+    /**
+     * Gets the element for a window handle
+     * @param hwnd The window handle
+     * @return The element
+     * @throws AutomationException Automation returned an error
+     */
+    public AutomationElement getElementFromHandle(WinDef.HWND hwnd) throws AutomationException {
+        PointerByReference pbr = new PointerByReference();
+
+        if (this.automation.getElementFromHandle(hwnd, pbr) == 0) {
+            IUIAutomationElement3 element = getAutomationElementFromReference(pbr);
+
+            return new AutomationElement(element, this);
         } else {
             throw new AutomationException();
         }
     }
 
+    /**
+     * Work done on a top level window, on one of the worker pool's threads
+     *
+     * @param <T> The type of the results
+     */
+    interface WindowTask<T> {
+        /**
+         * Does the work
+         * @param automation The worker's automation instance
+         * @param window The window, found through the worker's instance
+         * @return The results for the window
+         * @throws AutomationException Automation returned an error
+         */
+        List<T> run(UIAutomation automation, AutomationElement window) throws AutomationException;
+    }
+
+    /**
+     * Gets the handles of the top level windows
+     * @param processIds The processes to include, or null for all of them
+     * @return The handles
+     * @throws AutomationException Automation returned an error
+     */
+    List<WinDef.HWND> getDesktopWindowHandles(Set<Integer> processIds) throws AutomationException {
+        List<WinDef.HWND> handles = new ArrayList<WinDef.HWND>();
+
+        PointerByReference pTrueCondition = this.createTrueCondition();
+
+        try (CacheRequest request = this.createCacheRequest(PropertyID.NativeWindowHandle, PropertyID.ProcessId)) {
+            List<AutomationElement> windows =
+                    this.rootElement.findAll(new TreeScope(TreeScope.Children), pTrueCondition.getValue(), request);
+
+            try {
+                for (AutomationElement window : windows) {
+                    Object handle = window.getProperty(PropertyID.NativeWindowHandle);
+                    Object processId = window.getProperty(PropertyID.ProcessId);
+
+                    if (handle instanceof Integer && (Integer)handle != 0 &&
+                            (processIds == null || processIds.contains(processId))) {
+                        handles.add(new WinDef.HWND(Pointer.createConstant(((Integer)handle).longValue())));
+                    }
+
+                    window.close();
+                }
+            } finally {
+                if (windows instanceof AutomationElementList) {
+                    ((AutomationElementList)windows).close();
+                }
+            }
+        } finally {
+            this.releaseCondition(pTrueCondition);
+        }
+
+        return handles;
+    }
+
+    /**
+     * Runs the task for each of the windows, spread across the pool's threads, and merges
+     * the results. Windows that have closed by the time their task runs are left out.
+     * @param pool The worker pool
+     * @param handles The windows
+     * @param task The task
+     * @param <T> The type of the results
+     * @return The results, in the order of the windows
+     * @throws AutomationException One of the tasks failed
+     */
+    <T> List<T> forEachWindow(AutomationWorkerPool pool, List<WinDef.HWND> handles, final WindowTask<T> task)
+            throws AutomationException {
+        List<AutomationDispatcher.Task<List<T>>> tasks = new ArrayList<AutomationDispatcher.Task<List<T>>>();
+
+        for (final WinDef.HWND handle : handles) {
+            tasks.add(new AutomationDispatcher.Task<List<T>>() {
+                public List<T> run(UIAutomation automation) throws AutomationException {
+                    AutomationElement window;
+
+                    try {
+                        window = automation.getElementFromHandle(handle);
+                    } catch (AutomationException ex) {
+                        // The window has gone since the handles were listed
+                        return Collections.emptyList();
+                    }
+
+                    try {
+                        return task.run(automation, window);
+                    } finally {
+                        window.close();
+                    }
+                }
+            });
+        }
+
+        List<T> results = new ArrayList<T>();
+
+        for (List<T> windowResults : pool.<List<T>>invokeAll(tasks)) {
+            results.addAll(windowResults);
+        }
+
+        return results;
+    }
+
+    private Set<Integer> processIds(List<AutomationApplication> applications) {
+        Set<Integer> processIds = new HashSet<Integer>();
+
+        for (AutomationApplication application : applications) {
+            processIds.add(Kernel32.INSTANCE.GetProcessId(application.getHandle()));
+        }
+
+        return processIds;
+    }
+
+    /**
+     * Finds the elements that match the query in all of the top level windows, searching
+     * the windows in parallel on the pool's threads.
+     *
+     * The elements are found through the workers' automation instances, in the
+     * multi-threaded apartment, so should be used from the pool (see
+     * AutomationWorkerPool.submit) rather than a single threaded one.
+     *
+     * @param pool The worker pool
+     * @param scope The scope to search in each window
+     * @param query The query to match
+     * @return The matching elements, in the order of the windows
+     * @throws AutomationException Automation returned an error
+     */
+    public List<AutomationElement> parallelFindAll(AutomationWorkerPool pool, TreeScope scope, Query query)
+            throws AutomationException {
+        return this.findAllInWindows(pool, this.getDesktopWindowHandles(null), scope, query);
+    }
+
+    /**
+     * Finds the elements that match the query in the top level windows of the
+     * applications, searching the windows in parallel on the pool's threads
+     *
+     * @param pool The worker pool
+     * @param applications The applications
+     * @param scope The scope to search in each window
+     * @param query The query to match
+     * @return The matching elements, in the order of the windows
+     * @throws AutomationException Automation returned an error
+     */
+    public List<AutomationElement> parallelFindAll(AutomationWorkerPool pool,
+                                                   List<AutomationApplication> applications,
+                                                   TreeScope scope, Query query)
+            throws AutomationException {
+        return this.findAllInWindows(pool, this.getDesktopWindowHandles(this.processIds(applications)), scope, query);
+    }
+
+    private List<AutomationElement> findAllInWindows(AutomationWorkerPool pool, List<WinDef.HWND> handles,
+                                                     TreeScope scope, final Query query)
+            throws AutomationException {
+        // Each thread needs a scope of its own to pass to the native calls
+        final int scopeValue = scope.value;
+
+        return this.forEachWindow(pool, handles, new WindowTask<AutomationElement>() {
+            public List<AutomationElement> run(UIAutomation automation, AutomationElement window)
+                    throws AutomationException {
+                try (QueryCompiler.Compiled compiled = QueryCompiler.compile(automation, query)) {
+                    List<AutomationElement> found =
+                            window.findAll(new TreeScope(scopeValue), compiled.getCondition().getValue());
+
+                    try {
+                        return new ArrayList<AutomationElement>(compiled.filter(found));
+                    } finally {
+                        if (found instanceof AutomationElementList) {
+                            ((AutomationElementList)found).close();
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Takes a snapshot of each of the top level windows, in parallel on the pool's
+     * threads. The snapshots don't hold on to the elements, so can be used from any thread.
+     *
+     * @param pool The worker pool
+     * @param properties Any properties to capture, on top of those of createSnapshotRequest
+     * @return The snapshots, in the order of the windows
+     * @throws AutomationException Automation returned an error
+     */
+    public List<AutomationSnapshot> parallelSnapshot(AutomationWorkerPool pool, PropertyID... properties)
+            throws AutomationException {
+        return this.snapshotWindows(pool, this.getDesktopWindowHandles(null), properties);
+    }
+
+    /**
+     * Takes a snapshot of each of the top level windows of the applications, in parallel
+     * on the pool's threads
+     *
+     * @param pool The worker pool
+     * @param applications The applications
+     * @param properties Any properties to capture, on top of those of createSnapshotRequest
+     * @return The snapshots, in the order of the windows
+     * @throws AutomationException Automation returned an error
+     */
+    public List<AutomationSnapshot> parallelSnapshot(AutomationWorkerPool pool,
+                                                     List<AutomationApplication> applications,
+                                                     PropertyID... properties)
+            throws AutomationException {
+        return this.snapshotWindows(pool, this.getDesktopWindowHandles(this.processIds(applications)), properties);
+    }
+
+    private List<AutomationSnapshot> snapshotWindows(AutomationWorkerPool pool, List<WinDef.HWND> handles,
+                                                     final PropertyID... properties)
+            throws AutomationException {
+        return this.forEachWindow(pool, handles, new WindowTask<AutomationSnapshot>() {
+            public List<AutomationSnapshot> run(UIAutomation automation, AutomationElement window)
+                    throws AutomationException {
+                try (CacheRequest request = automation.createSnapshotRequest(properties)
+                        .setAutomationElementMode(AutomationElementMode.None)) {
+                    return Collections.singletonList(window.snapshot(request));
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets this instance, which the elements it finds belong to
+     *
+     * @return This instance
+     */
+    @Override
+    public UIAutomation getAutomation() {
+        return this;
+    }
+
     /**
      * Gets the root automation element
      *
@@ -607,18 +1244,90 @@ public class UIAutomation extends BaseAutomation {
     }
 
     /**
-     * Gets the control view walker
+     * Creates a tree walker that only visits the elements that match the condition
+     * @param condition The condition
      * @return The tree walker object
+     * @throws AutomationException Something has gone wrong
+     */
+    public AutomationTreeWalker createTreeWalker(PointerByReference condition) throws AutomationException {
+        PointerByReference pbrWalker = new PointerByReference();
+
+        if (this.automation.createTreeWalker(condition.getValue(), pbrWalker) != 0) {
+            throw new AutomationException();
+        }
+
+        return new AutomationTreeWalker(IUIAutomationTreeWalker.Converter.PointerToInterface(pbrWalker));
+    }
+
+    /**
+     * Creates a tree walker that only visits the elements that match the query
+     * @param query The query, which must be expressible as a native condition
+     * @return The tree walker object
+     * @throws AutomationException Something has gone wrong
+     * @throws IllegalArgumentException The query can't be expressed as a native condition
+     */
+    public AutomationTreeWalker createTreeWalker(Query query) throws AutomationException {
+        try (QueryCompiler.Compiled compiled = QueryCompiler.compile(this, query)) {
+            if (!compiled.isNative()) {
+                throw new IllegalArgumentException("Not a native query: " + query);
+            }
+
+            return this.createTreeWalker(compiled.getCondition());
+        }
+    }
+
+    /**
+     * Gets the control view walker, which only visits control elements
+     * @return The tree walker object
+     * @throws AutomationException Something has gone wrong
      */
     public AutomationTreeWalker getControlViewWalker() throws AutomationException {
         PointerByReference pbrWalker = new PointerByReference();
 
-        this.automation.getControlViewWalker(pbrWalker);
+        if (this.automation.getControlViewWalker(pbrWalker) != 0) {
+            throw new AutomationException();
+        }
+
+        return this.walkerFromReference(pbrWalker);
+    }
+
+    /**
+     * Gets the content view walker, which only visits content elements
+     * @return The tree walker object
+     * @throws AutomationException Something has gone wrong
+     */
+    public AutomationTreeWalker getContentViewWalker() throws AutomationException {
+        PointerByReference pbrWalker = new PointerByReference();
+
+        if (this.automation.getContentViewWalker(pbrWalker) != 0) {
+            throw new AutomationException();
+        }
+
+        return this.walkerFromReference(pbrWalker);
+    }
+
+    /**
+     * Gets the raw view walker, which visits every element
+     * @return The tree walker object
+     * @throws AutomationException Something has gone wrong
+     */
+    public AutomationTreeWalker getRawViewWalker() throws AutomationException {
+        PointerByReference pbrWalker = new PointerByReference();
 
+        if (this.automation.getRawViewWalker(pbrWalker) != 0) {
+            throw new AutomationException();
+        }
+
+        return this.walkerFromReference(pbrWalker);
+    }
+
+    private AutomationTreeWalker walkerFromReference(PointerByReference pbrWalker) throws AutomationException {
         Unknown unkConditionA = new Unknown(pbrWalker.getValue());
         PointerByReference pUnknownA = new PointerByReference();
 
         WinNT.HRESULT resultA = unkConditionA.QueryInterface(new Guid.REFIID(IUIAutomationTreeWalker.IID), pUnknownA);
+        unkConditionA.Release();
+
         if (COMUtils.SUCCEEDED(resultA)) {
 
             IUIAutomationTreeWalker walker =
@@ -630,55 +1339,97 @@ public class UIAutomation extends BaseAutomation {
         }
     }
 
+    /**
+     * Gets the condition that matches every element, as used by the raw view walker
+     * @return The condition, which must be released (see releaseCondition)
+     * @throws AutomationException Something has gone wrong
+     */
+    public PointerByReference getRawViewCondition() throws AutomationException {
+        PointerByReference condition = new PointerByReference();
+
+        if (this.automation.getRawViewCondition(condition) != 0) {
+            throw new AutomationException();
+        }
+
+        return condition;
+    }
+
+    /**
+     * Gets the condition that matches control elements, as used by the control view walker
+     * @return The condition, which must be released (see releaseCondition)
+     * @throws AutomationException Something has gone wrong
+     */
+    public PointerByReference getControlViewCondition() throws AutomationException {
+        PointerByReference condition = new PointerByReference();
+
+        if (this.automation.getControlViewCondition(condition) != 0) {
+            throw new AutomationException();
+        }
+
+        return condition;
+    }
+
+    /**
+     * Gets the condition that matches content elements, as used by the content view walker
+     * @return The condition, which must be released (see releaseCondition)
+     * @throws AutomationException Something has gone wrong
+     */
+    public PointerByReference getContentViewCondition() throws AutomationException {
+        PointerByReference condition = new PointerByReference();
+
+        if (this.automation.getContentViewCondition(condition) != 0) {
+            throw new AutomationException();
+        }
+
+        return condition;
+    }
+
     /**
      * Adds an automation event handler.
      *
-     IntByReference eventId,
-     TreeScope scope,
-     Pointer element,
-     PointerByReference cacheRequest,
-     PointerByReference handler
-     *
      * @param event The identifier of the event that the method handles.
      * @param scope The scope of events to be handled; that is, whether they are on the element itself, or on its ancestors and descendants.
      * @param element The UI Automation element to associate with the event handler.
      * @param handler The object that handles the event.
-     * @throws AutomationException
+     * @throws AutomationException Automation has returned an error
      */
-/*
     public void addAutomationEventHandler(EventID event,
                                           TreeScope scope,
                                           AutomationElement element,
-                                          AutomationHandler handler) throws AutomationException {
-
-        IntByReference ibr = new IntByReference();
-        ibr.setValue(event.getValue());
-
-        PointerByReference handlerRef = new PointerByReference();
+                                          AutomationEventHandler handler) throws AutomationException {
+        Pointer pElement = this.getPointerFromElement(element.element);
 
-        PointerByReference pElement = new PointerByReference();
+        // Before adding it, as events can be raised straight away
+        handler.setAutomation(this);
 
-        WinNT.HRESULT resultA = element.element.QueryInterface(new Guid.REFIID(IUIAutomationElement3.IID), pElement);
-        if (COMUtils.SUCCEEDED(resultA)) {
-            throw new AutomationException();
-        }
-
-        if (automation.addAutomationEventHandler(ibr, scope, pElement.getValue(), null, handler) != 0) {
-            throw new AutomationException();
+        try {
+            if (this.automation.addAutomationEventHandler(event.getValue(), pElement, scope, null, handler.getPointer()) != 0) {
+                throw new AutomationException();
+            }
+        } finally {
+            this.releasePointer(pElement);
         }
     }
-*/
-          /*
-        IntByReference eventId, PointerByReference element, PointerByReference handler
-         */
-  /*
-    public void removeAutomationEventHandler(EventID event) {
-
-        IntByReference ibr = new IntByReference();
-        ibr.setValue(event.getValue());
 
+    /**
+     * Removes an automation event handler, added with addAutomationEventHandler.
+     *
+     * @param event The identifier of the event that the handler handles.
+     * @param element The UI Automation element the handler was added to.
+     * @param handler The handler.
+     * @throws AutomationException Automation has returned an error
+     */
+    public void removeAutomationEventHandler(EventID event,
+                                             AutomationElement element,
+                                             AutomationEventHandler handler) throws AutomationException {
+        Pointer pElement = this.getPointerFromElement(element.element);
 
-        automation.removeAutomationEventHandler(ibr);
+        try {
+            if (this.automation.removeAutomationEventHandler(event.getValue(), pElement, handler.getPointer()) != 0) {
+                throw new AutomationException();
+            }
+        } finally {
+            this.releasePointer(pElement);
+        }
     }
-*/
 }
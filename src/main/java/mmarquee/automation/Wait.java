@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+/**
+ * Repeats a check until it gives a result, pausing between attempts as a RetryPolicy says.
+ *
+ * The check is made straight away, so there is no delay when the result is already there.
+ * The pauses can be interrupted, which abandons the wait.
+ */
+public class Wait {
+
+    /**
+     * Checks whether the wait is over
+     *
+     * @param <T> The type of the result
+     */
+    public interface Probe<T> {
+        /**
+         * Checks whether the wait is over
+         *
+         * @return The result, or null to carry on waiting
+         * @throws AutomationException Failed to check; the wait is abandoned
+         */
+        T probe() throws AutomationException;
+    }
+
+    /**
+     * Waits until the probe gives a result
+     *
+     * @param probe The check
+     * @param policy How long, and how often, to check
+     * @param <T> The type of the result
+     * @return The result of the probe
+     * @throws ElementNotFoundException The time, or the attempts, ran out
+     * @throws AutomationException The probe failed, or the wait was interrupted
+     */
+    public static <T> T until(Probe<T> probe, RetryPolicy policy) throws AutomationException {
+        return new Wait().poll(probe, policy);
+    }
+
+    /**
+     * Waits until the probe gives a result
+     *
+     * @param probe The check
+     * @param policy How long, and how often, to check
+     * @param <T> The type of the result
+     * @return The result of the probe
+     * @throws ElementNotFoundException The time, or the attempts, ran out
+     * @throws AutomationException The probe failed, or the wait was interrupted
+     */
+    public <T> T poll(Probe<T> probe, RetryPolicy policy) throws AutomationException {
+        long deadline = System.currentTimeMillis() + policy.getTimeout();
+
+        for (int attempt = 0; attempt < policy.getMaxAttempts(); attempt++) {
+            this.beforeProbe();
+
+            T result = probe.probe();
+
+            if (result != null) {
+                return result;
+            }
+
+            long remaining = deadline - System.currentTimeMillis();
+
+            if (remaining <= 0 || attempt + 1 == policy.getMaxAttempts()) {
+                break;
+            }
+
+            try {
+                this.pause(Math.min(policy.getDelay(attempt), remaining));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new AutomationException(ex.getMessage());
+            }
+        }
+
+        throw new ElementNotFoundException();
+    }
+
+    /**
+     * Called before each check
+     */
+    protected void beforeProbe() {
+    }
+
+    /**
+     * Pauses between checks
+     *
+     * @param millis The time to pause for, in milliseconds
+     * @throws InterruptedException The pause was interrupted
+     */
+    protected void pause(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+}
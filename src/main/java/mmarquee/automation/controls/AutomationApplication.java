@@ -164,6 +164,14 @@ public class AutomationApplication extends AutomationBase {
         }
     }
 
+    /**
+     * Gets the handle of the process
+     * @return The process handle
+     */
+    public WinNT.HANDLE getHandle() {
+        return this.handle;
+    }
+
     /**
      * Closes the process
      * @param title Title of the window to close
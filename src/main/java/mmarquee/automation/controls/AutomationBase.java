@@ -36,14 +36,25 @@ public abstract class AutomationBase implements Automatable {
 
     protected AutomationElement element;
 
-    protected UIAutomation automation = UIAutomation.getInstance();
+    /**
+     * The automation instance that the element was found through
+     */
+    protected UIAutomation automation;
 
     /**
      * Constructor for the AutomationBase class
+     *
+     * The control uses the automation instance that the element was found through. Only
+     * an element that was created directly (rather than found) falls back to the default
+     * instance, which is the calling thread's own instance on a dispatcher or worker thread.
+     *
      * @param element Element to use
      */
     public AutomationBase (AutomationElement element) {
         this.element = element;
+
+        UIAutomation owner = element.getAutomation();
+        this.automation = owner != null ? owner : UIAutomation.getInstance();
     }
 
     /**
@@ -56,12 +67,12 @@ public abstract class AutomationBase implements Automatable {
 
     /**
      * Checks whether a pattern is available
-     * @param property pattern to search for
+     * @param pattern pattern to search for
      * @return True if available
      */
-    private boolean isPatternAvailable(PropertyID property) {
+    private boolean isPatternAvailable(PatternID pattern) {
         try {
-            return !this.element.getPropertyValue(property.getValue()).equals(0);
+            return this.element.getAvailablePatterns().contains(pattern);
         } catch (AutomationException ex) {
             return false;
         }
@@ -72,7 +83,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isDockPatternAvailable () {
-        return isPatternAvailable(PropertyID.IsDockPatternAvailable);
+        return isPatternAvailable(PatternID.Dock);
     }
 
     /**
@@ -80,7 +91,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isExpandCollapsePatternAvailable () {
-        return isPatternAvailable(PropertyID.IsExpandCollapsePatternAvailable);
+        return isPatternAvailable(PatternID.ExpandCollapse);
     }
 
     /**
@@ -88,7 +99,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isGridItemPatternAvailable () {
-        return isPatternAvailable(PropertyID.IsGridItemPatternAvailable);
+        return isPatternAvailable(PatternID.GridItem);
     }
 
     /**
@@ -96,7 +107,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isMultipleViewPatternAvailable () {
-        return isPatternAvailable(PropertyID.IsMultipleViewPatternAvailable);
+        return isPatternAvailable(PatternID.MultipleView);
     }
 
     /**
@@ -104,7 +115,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isInvokePatternAvailable () {
-        return isPatternAvailable(PropertyID.IsInvokePatternAvailable);
+        return isPatternAvailable(PatternID.Invoke);
     }
 
     /**
@@ -112,7 +123,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isGridPatternAvailable () {
-        return isPatternAvailable(PropertyID.IsGridPatternAvailable);
+        return isPatternAvailable(PatternID.Grid);
     }
 
     /**
@@ -120,7 +131,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isRangeValuePatternAvailable () {
-        return isPatternAvailable(PropertyID.IsRangeValuePatternAvailable);
+        return isPatternAvailable(PatternID.RangeValue);
     }
 
     /**
@@ -128,7 +139,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isScrollPatternAvailable () {
-        return isPatternAvailable(PropertyID.IsScrollPatternAvailable);
+        return isPatternAvailable(PatternID.Scroll);
     }
 
     /**
@@ -136,7 +147,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isSelectionItemPatternAvailable () {
-        return isPatternAvailable(PropertyID.IsSelectionItemPatternAvailable);
+        return isPatternAvailable(PatternID.SelectionItem);
     }
 
     /**
@@ -144,7 +155,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isScrollItemPatternAvailable () {
-        return isPatternAvailable(PropertyID.IsScrollItemPatternAvailable);
+        return isPatternAvailable(PatternID.ScrollItem);
     }
 
     /**
@@ -152,7 +163,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isWindowPatternAvailable () {
-        return isPatternAvailable(PropertyID.IsWindowPatternAvailable);
+        return isPatternAvailable(PatternID.Window);
     }
 
     /**
@@ -160,7 +171,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isTextPatternAvailable () {
-        return isPatternAvailable(PropertyID.IsTextPatternAvailable);
+        return isPatternAvailable(PatternID.Text);
     }
 
     /**
@@ -168,7 +179,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isTableItemPatternAvailable () {
-        return isPatternAvailable(PropertyID.IsTableItemPatternAvailable);
+        return isPatternAvailable(PatternID.TableItem);
     }
 
     /**
@@ -176,7 +187,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isTablePatternAvailable () {
-        return isPatternAvailable(PropertyID.IsTablePatternAvailable);
+        return isPatternAvailable(PatternID.Table);
     }
 
     /**
@@ -184,7 +195,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isSelectionPatternAvailable () {
-        return isPatternAvailable(PropertyID.IsSelectionPatternAvailable);
+        return isPatternAvailable(PatternID.Selection);
     }
 
     /**
@@ -192,7 +203,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isTransformPatternAvailable () {
-        return isPatternAvailable(PropertyID.IsTransformPatternAvailable);
+        return isPatternAvailable(PatternID.Transform);
     }
 
     /**
@@ -200,7 +211,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isTogglePatternAvailable () {
-        return isPatternAvailable(PropertyID.IsTogglePatternAvailable);
+        return isPatternAvailable(PatternID.Toggle);
     }
 
     /**
@@ -208,7 +219,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isItemContainerPatternAvailable() {
-        return isPatternAvailable(PropertyID.IsItemContainerPatternAvailablePropertyId);
+        return isPatternAvailable(PatternID.ItemContainer);
     }
 
     /**
@@ -216,7 +227,7 @@ public abstract class AutomationBase implements Automatable {
      * @return Yes or no
      */
     boolean isValuePatternAvailable () {
-        return isPatternAvailable(PropertyID.IsValuePatternAvailable);
+        return isPatternAvailable(PatternID.Value);
     }
 
     /**
@@ -225,7 +236,7 @@ public abstract class AutomationBase implements Automatable {
      */
     boolean isOffScreen () {
         try {
-            return !this.element.getPropertyValue(PropertyID.IsOffscreen.getValue()).equals(0);
+            return this.element.getBooleanProperty(PropertyID.IsOffscreen);
         } catch (AutomationException ex) {
             return false;
         }
@@ -298,6 +309,146 @@ public abstract class AutomationBase implements Automatable {
         return this.element.findFirst(scope, condition);
    }
 
+    /**
+     * Finds the first element that matches the query. As much of the query as possible
+     * is matched by the provider, the rest is checked here.
+     * @param scope The scope of where to look
+     * @param query The query to match
+     * @return The found element
+     * @throws ElementNotFoundException There is no match
+     * @throws AutomationException An error has occurred in automation
+     */
+    protected AutomationElement findFirst(TreeScope scope, Query query) throws AutomationException {
+        try (QueryCompiler.Compiled compiled = QueryCompiler.compile(this.automation, query)) {
+            if (compiled.isNative()) {
+                return this.findFirst(scope, compiled.getCondition());
+            }
+
+            List<AutomationElement> candidates = this.findAll(scope, compiled.getCondition().getValue());
+
+            try {
+                // Stops at the first match, so the rest are never taken from the array
+                for (AutomationElement candidate : candidates) {
+                    if (compiled.test(candidate)) {
+                        return candidate;
+                    }
+
+                    candidate.close();
+                }
+            } finally {
+                if (candidates instanceof AutomationElementList) {
+                    ((AutomationElementList)candidates).close();
+                }
+            }
+
+            throw new ElementNotFoundException();
+        }
+    }
+
+    /**
+     * Finds the nth element that matches the condition, without getting hold of all of
+     * the other matches
+     * @param scope The scope of where to look
+     * @param condition The condition to use
+     * @param index The index of the element
+     * @return The found element
+     * @throws IndexOutOfBoundsException There are not that many matches
+     * @throws AutomationException An error has occurred in automation
+     */
+    protected AutomationElement findAt(TreeScope scope, Pointer condition, int index) throws AutomationException {
+        AutomationElement found = this.element.findAt(scope, condition, index);
+
+        if (found == null) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+
+        return found;
+    }
+
+    /**
+     * Finds the nth descendant that matches the condition, in the same order as findAll.
+     * The descendants are walked with a tree walker, stopping at the one that is wanted.
+     * @param condition The condition to use
+     * @param index The index of the element
+     * @return The found element, or null if there are not that many matches
+     * @throws AutomationException An error has occurred in automation
+     */
+    protected AutomationElement findDescendant(PointerByReference condition, int index) throws AutomationException {
+        try (AutomationTreeWalker walker = this.automation.createTreeWalker(condition)) {
+            return this.element.getDescendant(walker, index);
+        }
+    }
+
+    /**
+     * Finds the nth descendant that matches the query, in the same order as findAll.
+     * When the whole query can be matched by the provider, the descendants are walked
+     * with a tree walker, stopping at the one that is wanted.
+     * @param query The query to match
+     * @param index The index of the element
+     * @return The found element, or null if there are not that many matches
+     * @throws AutomationException An error has occurred in automation
+     */
+    protected AutomationElement findDescendant(Query query, int index) throws AutomationException {
+        try (QueryCompiler.Compiled compiled = QueryCompiler.compile(this.automation, query)) {
+            if (compiled.isNative()) {
+                return this.findDescendant(compiled.getCondition(), index);
+            }
+
+            List<AutomationElement> candidates =
+                    this.findAll(new TreeScope(TreeScope.Descendants), compiled.getCondition().getValue());
+
+            try {
+                int counter = 0;
+
+                // Stops at the nth match, so the rest are never taken from the array
+                for (AutomationElement candidate : candidates) {
+                    if (compiled.test(candidate)) {
+                        if (counter == index) {
+                            return candidate;
+                        }
+
+                        counter++;
+                    }
+
+                    candidate.close();
+                }
+            } finally {
+                if (candidates instanceof AutomationElementList) {
+                    ((AutomationElementList)candidates).close();
+                }
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Finds all of the elements that match the query. As much of the query as possible
+     * is matched by the provider, the rest is checked here.
+     * @param scope The scope of where to look
+     * @param query The query to match
+     * @return The matching elements
+     * @throws AutomationException An error has occurred in automation
+     */
+    protected List<AutomationElement> findAll(TreeScope scope, Query query) throws AutomationException {
+        try (QueryCompiler.Compiled compiled = QueryCompiler.compile(this.automation, query)) {
+            List<AutomationElement> found = this.findAll(scope, compiled.getCondition().getValue());
+
+            if (compiled.isNative()) {
+                // Nothing to filter, so the caller gets (and closes) the list itself
+                return found;
+            }
+
+            try {
+                return compiled.filter(found);
+            } finally {
+                if (found instanceof AutomationElementList) {
+                    ((AutomationElementList)found).close();
+                }
+            }
+        }
+    }
+
     /**
      * Finds all of the elements that are associated with the given condition.
      * @param scope The scope of where to look
@@ -306,7 +457,20 @@ public abstract class AutomationBase implements Automatable {
      */
     protected List<AutomationElement> findAll(TreeScope scope) throws AutomationException {
         PointerByReference condition = this.createTrueCondition();
-        return this.findAll(scope, condition.getValue());
+
+        try {
+            return this.findAll(scope, condition.getValue());
+        } finally {
+            this.releaseCondition(condition);
+        }
+    }
+
+    /**
+     * Releases a condition that is no longer needed
+     * @param condition The condition
+     */
+    protected void releaseCondition(PointerByReference condition) {
+        this.automation.releaseCondition(condition);
     }
 
     /**
@@ -398,6 +562,7 @@ public abstract class AutomationBase implements Automatable {
      */
     SelectionItem getSelectItemPattern() throws PatternNotFoundException, AutomationException {
         SelectionItem pattern = new SelectionItem();
+        pattern.setAutomation(this.automation);
 
         if (this.isSelectionItemPatternAvailable()) {
             PointerByReference unknown = this.getPattern(PatternID.SelectionItem.getValue());
@@ -417,6 +582,7 @@ public abstract class AutomationBase implements Automatable {
      */
     Selection getSelectionPattern() throws PatternNotFoundException, AutomationException {
         Selection pattern = new Selection();
+        pattern.setAutomation(this.automation);
 
         if (this.isSelectionPatternAvailable()) {
             PointerByReference unknown = this.getPattern(PatternID.Selection.getValue());
@@ -495,6 +661,7 @@ public abstract class AutomationBase implements Automatable {
      */
     Table getTablePattern() throws PatternNotFoundException, AutomationException {
         Table pattern = new Table();
+        pattern.setAutomation(this.automation);
 
         if (isTablePatternAvailable()) {
             PointerByReference unknown = this.getPattern(PatternID.Table.getValue());
@@ -555,6 +722,7 @@ public abstract class AutomationBase implements Automatable {
      */
     Grid getGridPattern() throws PatternNotFoundException, AutomationException {
         Grid pattern = new Grid();
+        pattern.setAutomation(this.automation);
 
         if (isGridPatternAvailable()) {
             PointerByReference unknown = this.getPattern(PatternID.Grid.getValue());
@@ -659,8 +827,8 @@ public abstract class AutomationBase implements Automatable {
      * @throws AutomationException Something is wrong in automation
      */
     public WinDef.HWND getNativeWindowHandle() throws AutomationException {
-        Object value = this.element.getPropertyValue(PropertyID.NativeWindowHandle.getValue());
-        return new WinDef.HWND(Pointer.createConstant(Integer.valueOf(value.toString())));
+        int value = this.element.getIntProperty(PropertyID.NativeWindowHandle);
+        return new WinDef.HWND(Pointer.createConstant(value));
     }
 
     /**
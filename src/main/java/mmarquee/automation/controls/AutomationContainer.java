@@ -16,22 +16,24 @@
 
 package mmarquee.automation.controls;
 
-import java.util.List;
-
-import com.sun.jna.platform.win32.Variant;
 import com.sun.jna.ptr.PointerByReference;
 
 import mmarquee.automation.AutomationElement;
 import mmarquee.automation.AutomationException;
+import mmarquee.automation.AutomationSnapshot;
+import mmarquee.automation.CacheRequest;
 import mmarquee.automation.ControlType;
 import mmarquee.automation.ElementNotFoundException;
-import mmarquee.automation.PropertyID;
+import mmarquee.automation.Query;
+import mmarquee.automation.SnapshotIndex;
 import mmarquee.automation.controls.rebar.AutomationReBar;
 import mmarquee.automation.controls.ribbon.AutomationRibbonBar;
 import mmarquee.automation.pattern.ItemContainer;
 import mmarquee.automation.pattern.PatternNotFoundException;
 import mmarquee.automation.uiautomation.TreeScope;
 
+import java.util.List;
+
 /**
  * Created by Mark Humphreys on 28/01/2016.
  *
@@ -42,6 +44,11 @@ public class AutomationContainer extends AutomationBase {
 
     private ItemContainer itemContainerPattern;
 
+    /**
+     * An index over a snapshot of this container, used to find the controls if present
+     */
+    private SnapshotIndex snapshotIndex;
+
     /**
      * Constructor for AutomationContainer
      *
@@ -67,6 +74,83 @@ public class AutomationContainer extends AutomationBase {
         itemContainerPattern = pattern;
     }
 
+    /**
+     * Finds the controls in an index over a snapshot of this container, rather than
+     * searching the live tree. The snapshot must have been taken from this container's
+     * element, with live references to the elements, and it reflects the controls as they
+     * were when it was taken.
+     *
+     * @param index The index, or null to search the live tree again
+     */
+    public void useIndex(SnapshotIndex index) {
+        this.snapshotIndex = index;
+    }
+
+    /**
+     * Takes a snapshot of this container, and finds the controls in an index over it from
+     * now on (see useIndex)
+     *
+     * @return The index. Its snapshot holds the elements, so should be closed once it is no
+     * longer needed
+     * @throws AutomationException Failed to take the snapshot
+     */
+    public SnapshotIndex buildIndex() throws AutomationException {
+        try (CacheRequest request = this.automation.createSnapshotRequest()) {
+            SnapshotIndex index = SnapshotIndex.build(this.element.snapshot(request));
+            this.useIndex(index);
+            return index;
+        }
+    }
+
+    /**
+     * Gets the index to find the controls with
+     *
+     * @return The index, or null if there isn't one (or its snapshot has no live elements)
+     */
+    private SnapshotIndex getIndex() {
+        SnapshotIndex index = this.snapshotIndex;
+
+        if (index == null || index.getSnapshot().getRoot().getElement() == null) {
+            return null;
+        }
+
+        return index;
+    }
+
+    /**
+     * Gets the nth of the candidate nodes below the container that match the control
+     * type (and class name, if given). The element is a new reference, so the control
+     * owns it, and it stays usable after the snapshot has been closed.
+     */
+    private static AutomationElement fromIndex(List<AutomationSnapshot.Node> candidates,
+                                               ControlType id, String className, int index)
+            throws AutomationException {
+        int counter = 0;
+
+        for (AutomationSnapshot.Node node : candidates) {
+            if (node.getIndex() == 0 ||
+                    !Integer.valueOf(id.getValue()).equals(node.getControlType()) ||
+                    (className != null && !className.equals(node.getClassName()))) {
+                continue;
+            }
+
+            if (counter == index) {
+                // Read once, as the snapshot may be closed at any time
+                AutomationElement element = node.getElement();
+
+                if (element == null) {
+                    throw new AutomationException("The index's snapshot has been closed");
+                }
+
+                return element.newReference();
+            }
+
+            counter++;
+        }
+
+        return null;
+    }
+
     /**
      * Gets a control by control type
      * @param index The nth item that matches
@@ -75,13 +159,17 @@ public class AutomationContainer extends AutomationBase {
      * @throws AutomationException Error in the Automation library
      */
     AutomationElement getControlByControlType(int index, ControlType id) throws AutomationException {
-        PointerByReference condition =  this.automation.createPropertyCondition(PropertyID.ControlType.getValue(),
-                this.createIntegerVariant(id.getValue()));
+        SnapshotIndex snapshotIndex = this.getIndex();
 
-        List<AutomationElement> collection = this.findAll(
-                new TreeScope(TreeScope.Subtree), condition.getValue());
+        AutomationElement found = snapshotIndex != null ?
+                fromIndex(snapshotIndex.findByControlType(id), id, null, index) :
+                this.findDescendant(Query.controlType(id), index);
 
-        return collection.get(index);
+        if (found == null) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+
+        return found;
     }
 
     /**
@@ -94,39 +182,22 @@ public class AutomationContainer extends AutomationBase {
      * @throws ElementNotFoundException Failed to find element
      */
     protected AutomationElement getControlByControlType(int index, ControlType id, String controlName) throws AutomationException, ElementNotFoundException {
-        List<AutomationElement> collection;
-
-        AutomationElement foundElement = null;
+        SnapshotIndex snapshotIndex = this.getIndex();
 
-        collection = this.findAll(new TreeScope(TreeScope.Descendants));
-
-        int counter = 0;
+        AutomationElement found = snapshotIndex != null ?
+                fromIndex(snapshotIndex.findByControlType(id), id, controlName, index) :
+                this.findDescendant(Query.and(Query.controlType(id), Query.className(controlName)), index);
 
-        for (AutomationElement element : collection) {
-            String cName = element.getClassName();
-
-            if (cName.equals(controlName)) {
-                if (counter == index) {
-                    foundElement = element;
-                    break;
-                } else {
-                    counter++;
-                }
-            }
-        }
-
-        if (foundElement == null) {
+        if (found == null) {
             throw new ElementNotFoundException();
         }
 
-        return foundElement;
+        return found;
     }
 
     /**
      * Gets the control by the control type, for s given control index.
      *
-     * There is probably a much better way of doing this
-     *
      * @param name Name of the control
      * @param id Control type
      * @param controlName The control name to use
@@ -134,27 +205,12 @@ public class AutomationContainer extends AutomationBase {
      * @throws AutomationException Did not find the element
      */
     protected AutomationElement getControlByControlType(String name, ControlType id, String controlName) throws AutomationException {
-        List<AutomationElement> collection;
-
-        AutomationElement foundElement = null;
+        SnapshotIndex snapshotIndex = this.getIndex();
 
-        collection = this.findAll(new TreeScope(TreeScope.Descendants));
-
-        for (AutomationElement element : collection) {
-            int retVal = element.getControlType();
-            String className = element.getClassName();
-
-            if (retVal == id.getValue()) {
-                if (className.equals(controlName)) {
-                    String cName = element.getName();
-
-                    if (cName.equals(name)) {
-                        foundElement = element;
-                        break;
-                    }
-                }
-            }
-        }
+        AutomationElement foundElement = snapshotIndex != null ?
+                fromIndex(snapshotIndex.findByName(name), id, controlName, 0) :
+                this.findFirst(new TreeScope(TreeScope.Descendants),
+                        Query.and(Query.controlType(id), Query.className(controlName), Query.name(name)));
 
         if (foundElement == null) {
             throw new ElementNotFoundException();
@@ -171,10 +227,34 @@ public class AutomationContainer extends AutomationBase {
      * @throws ElementNotFoundException Did not find the element
      */
     protected AutomationElement getControlByControlType(String name, ControlType id) throws AutomationException {
-        return this.findFirst(new TreeScope(TreeScope.Descendants),
-                this.createAndCondition(
-                        this.createNamePropertyCondition(name).getValue(),
-                        this.createControlTypeCondition(id).getValue()));
+        SnapshotIndex snapshotIndex = this.getIndex();
+
+        if (snapshotIndex != null) {
+            AutomationElement found = fromIndex(snapshotIndex.findByName(name), id, null, 0);
+
+            if (found == null) {
+                throw new ElementNotFoundException();
+            }
+
+            return found;
+        }
+
+        PointerByReference nameCondition = this.createNamePropertyCondition(name);
+        PointerByReference controlTypeCondition = this.createControlTypeCondition(id);
+
+        try {
+            PointerByReference condition =
+                    this.createAndCondition(nameCondition.getValue(), controlTypeCondition.getValue());
+
+            try {
+                return this.findFirst(new TreeScope(TreeScope.Descendants), condition);
+            } finally {
+                this.releaseCondition(condition);
+            }
+        } finally {
+            this.releaseCondition(nameCondition);
+            this.releaseCondition(controlTypeCondition);
+        }
     }
 
     /**
@@ -185,10 +265,34 @@ public class AutomationContainer extends AutomationBase {
      * @throws AutomationException An error has occurred in automation
      */
     protected AutomationElement getControlByAutomationId(String automationId, ControlType controlType) throws AutomationException {
-        return this.findFirst(new TreeScope(TreeScope.Descendants),
-                this.createAndCondition(
-                        this.createAutomationIdPropertyCondition(automationId).getValue(),
-                        this.createControlTypeCondition(controlType).getValue()));
+        SnapshotIndex snapshotIndex = this.getIndex();
+
+        if (snapshotIndex != null) {
+            AutomationElement found = fromIndex(snapshotIndex.findByAutomationId(automationId), controlType, null, 0);
+
+            if (found == null) {
+                throw new ElementNotFoundException();
+            }
+
+            return found;
+        }
+
+        PointerByReference idCondition = this.createAutomationIdPropertyCondition(automationId);
+        PointerByReference controlTypeCondition = this.createControlTypeCondition(controlType);
+
+        try {
+            PointerByReference condition =
+                    this.createAndCondition(idCondition.getValue(), controlTypeCondition.getValue());
+
+            try {
+                return this.findFirst(new TreeScope(TreeScope.Descendants), condition);
+            } finally {
+                this.releaseCondition(condition);
+            }
+        } finally {
+            this.releaseCondition(idCondition);
+            this.releaseCondition(controlTypeCondition);
+        }
     }
 
     /**
@@ -423,18 +527,6 @@ public class AutomationContainer extends AutomationBase {
         return new AutomationButton(this.getControlByControlType(index, ControlType.Button));
     }
 
-    /**
-     * Creates an integer variant
-     * @param value The value to set
-     * @return ByValue variant
-     */
-    private Variant.VARIANT.ByValue createIntegerVariant(int value) {
-        Variant.VARIANT.ByValue variant = new Variant.VARIANT.ByValue();
-        variant.setValue(Variant.VT_INT, value);
-
-        return variant;
-    }
-
     /**
      * Get a control, based on the class and the name
      *
@@ -16,6 +16,7 @@
 
 package mmarquee.automation.controls;
 
+import com.sun.jna.ptr.PointerByReference;
 import mmarquee.automation.AutomationElement;
 import mmarquee.automation.AutomationException;
 import mmarquee.automation.ControlType;
@@ -24,8 +25,6 @@ import mmarquee.automation.pattern.PatternNotFoundException;
 import mmarquee.automation.pattern.Text;
 import mmarquee.automation.uiautomation.TreeScope;
 
-import java.util.List;
-
 /**
  * Created by Mark Humphreys on 16/02/2016.
  *
@@ -85,10 +84,13 @@ public class AutomationDocument extends AutomationBase {
     }
 
     public AutomationDocumentPage getPage(int index) throws PatternNotFoundException, AutomationException {
-        List<AutomationElement> items = this.findAll(
-                new TreeScope(TreeScope.Descendants),
-                this.createControlTypeCondition(ControlType.Custom).getValue());
+        PointerByReference condition = this.createControlTypeCondition(ControlType.Custom);
 
-        return new AutomationDocumentPage(items.get(index));
+        try {
+            return new AutomationDocumentPage(
+                    this.findAt(new TreeScope(TreeScope.Descendants), condition.getValue(), index));
+        } finally {
+            this.releaseCondition(condition);
+        }
     }
 }
@@ -16,6 +16,7 @@
 
 package mmarquee.automation.controls;
 
+import com.sun.jna.ptr.PointerByReference;
 import mmarquee.automation.*;
 import mmarquee.automation.pattern.PatternNotFoundException;
 import mmarquee.automation.pattern.Selection;
@@ -66,15 +67,13 @@ public class AutomationList extends AutomationBase {
      */
     public AutomationListItem getItem(int index) throws PatternNotFoundException, AutomationException {
 
-        List<AutomationElement> items = this.findAll(new TreeScope(TreeScope.Descendants),
-                this.createControlTypeCondition(ControlType.ListItem).getValue());
+        PointerByReference condition = this.createControlTypeCondition(ControlType.ListItem);
 
-        AutomationElement item = items.get(index);
-
-        if (item != null) {
-            return new AutomationListItem(item);
-        } else {
-            throw new ItemNotFoundException();
+        try {
+            return new AutomationListItem(
+                    this.findAt(new TreeScope(TreeScope.Descendants), condition.getValue(), index));
+        } finally {
+            this.releaseCondition(condition);
         }
     }
 
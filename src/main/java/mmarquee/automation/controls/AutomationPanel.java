@@ -15,6 +15,7 @@
  */
 package mmarquee.automation.controls;
 
+import com.sun.jna.ptr.PointerByReference;
 import mmarquee.automation.AutomationElement;
 import mmarquee.automation.AutomationException;
 import mmarquee.automation.ControlType;
@@ -23,8 +24,6 @@ import mmarquee.automation.pattern.ItemContainer;
 import mmarquee.automation.pattern.PatternNotFoundException;
 import mmarquee.automation.uiautomation.TreeScope;
 
-import java.util.List;
-
 /**
  * Created by Mark Humphreys on 26/02/2016.
  *
@@ -63,12 +62,14 @@ public class AutomationPanel extends AutomationContainer {
      * @throws AutomationException Something went really wrong.
      */
     public AutomationWindow getMDIWindow(int index) throws PatternNotFoundException, AutomationException {
-        List<AutomationElement> list =
-                this.findAll(new TreeScope(TreeScope.Descendants),
-                    this.createControlTypeCondition(ControlType.Window).getValue());
+        PointerByReference condition = this.createControlTypeCondition(ControlType.Window);
 
-        AutomationElement item = list.get(index);
+        try {
+            AutomationElement item = this.findAt(new TreeScope(TreeScope.Descendants), condition.getValue(), index);
 
-        return new AutomationWindow(item);
+            return new AutomationWindow(item);
+        } finally {
+            this.releaseCondition(condition);
+        }
     }
 }
@@ -187,41 +187,38 @@ public class AutomationWindow extends AutomationContainer implements Focusable {
     }
 
     /**
-     * Finds the child window with the given title
+     * How long getWindow waits for the window to appear, in milliseconds
+     */
+    private static final long WINDOW_TIMEOUT = 5000;
+
+    /**
+     * Finds the child window with the given title, waiting for it to open if it
+     * isn't there yet
      * @param title Title to search for
      * @return The child window
      * @throws AutomationException Something has gone wrong
+     * @throws ElementNotFoundException The window didn't open in time
      * @throws PatternNotFoundException Expected pattern not found
      */
-    public AutomationWindow getWindow(String title) throws PatternNotFoundException, AutomationException {
-        AutomationElement item = null;
-
-        for (int count = 0; count < 10; count++) {
-            try {
-                item = this.findFirst(new TreeScope(TreeScope.Descendants),
-                        this.createAndCondition(
-                                this.createNamePropertyCondition(title).getValue(),
-                                this.createControlTypeCondition(ControlType.Window).getValue()));
-            } catch (ElementNotFoundException ex) {
-                logger.warn("Failed to find `" + title + "` window");
-            }
-
-            if (item != null) {
-                logger.warn("Found window");
-                break;
-            } else {
-                try {
-                    logger.warn("Did not find `" + title + "` window, retrying");
-                    // Wait for it
-                    Thread.sleep(500);
-                } catch (InterruptedException ex) {
-                    // interrupted
+    public AutomationWindow getWindow(final String title) throws PatternNotFoundException, AutomationException {
+        final Query query = Query.and(Query.name(title), Query.controlType(ControlType.Window));
+
+        AutomationElement item;
+
+        try (EventWait wait = EventWait.listen(this.element,
+                new TreeScope(TreeScope.Subtree), EventID.Window_WindowOpened)) {
+            item = wait.until(new EventWait.Probe<AutomationElement>() {
+                public AutomationElement probe() throws AutomationException {
+                    try {
+                        return findFirst(new TreeScope(TreeScope.Descendants), query);
+                    } catch (ElementNotFoundException ex) {
+                        return null;
+                    }
                 }
-            }
-        }
-
-        if (item == null) {
-            throw new ElementNotFoundException();
+            }, WINDOW_TIMEOUT);
+        } catch (ElementNotFoundException ex) {
+            logger.warn("Failed to find `" + title + "` window");
+            throw ex;
         }
 
         return new AutomationWindow(item);
@@ -19,6 +19,7 @@ import com.sun.jna.platform.win32.COM.COMUtils;
 import com.sun.jna.platform.win32.COM.Unknown;
 import com.sun.jna.platform.win32.Guid;
 import com.sun.jna.platform.win32.WinNT;
+import com.sun.jna.ptr.IntByReference;
 import com.sun.jna.ptr.PointerByReference;
 import mmarquee.automation.*;
 import mmarquee.automation.controls.AutomationBase;
@@ -49,6 +50,42 @@ public class AutomationMainMenu extends AutomationBase {
 
     public static ControlType controlType = ControlType.MenuBar;
 
+    /**
+     * How long to wait for a menu to open, in milliseconds
+     */
+    private static final long MENU_TIMEOUT = 2000;
+
+    /**
+     * Gets the window that the menu belongs to, which its popup menus are shown below
+     * @return The window, or the menu itself if there is no parent
+     */
+    private AutomationElement getWindow() {
+        return this.parent != null ? this.parent : this.element;
+    }
+
+    /**
+     * Starts listening for menus opening in the menu's own window (popup menus are not
+     * necessarily below the menu bar, but are below the window)
+     * @return The wait
+     */
+    private EventWait listenForMenus() {
+        return EventWait.listen(this.getWindow(), new TreeScope(TreeScope.Subtree), EventID.MenuOpened);
+    }
+
+    /**
+     * Whether a popup menu is showing in the menu's window
+     * @param condition Condition matching menus
+     * @return True if one has been found
+     * @throws AutomationException Something has gone wrong
+     */
+    private boolean isMenuShowing(PointerByReference condition) throws AutomationException {
+        try (AutomationElement menu = this.getWindow().findFirst(new TreeScope(TreeScope.Descendants), condition)) {
+            return menu != null;
+        } catch (ElementNotFoundException ex) {
+            return false;
+        }
+    }
+
     /**
      * Constructor for AutomationMainMenu
      * @param parent Parent of the element
@@ -84,15 +121,38 @@ public class AutomationMainMenu extends AutomationBase {
 
             WinNT.HRESULT resultA = unkConditionA.QueryInterface(new Guid.REFIID(IUIAutomationExpandCollapsePattern.IID), pUnknownA);
             if (COMUtils.SUCCEEDED(resultA)) {
-                IUIAutomationExpandCollapsePattern pattern =
+                final IUIAutomationExpandCollapsePattern pattern =
                         IUIAutomationExpandCollapsePattern.Converter.PointerToInterface(pUnknownA);
 
-                pattern.expand();
+                final PointerByReference menus = this.createControlTypeCondition(ControlType.Menu);
 
-                try {
-                    Thread.sleep(750);
-                } catch (Exception ex) {
-                    // Seems to be fine, but interrupted
+                try (EventWait wait = this.listenForMenus()) {
+                    pattern.expand();
+
+                    wait.until(new EventWait.Probe<Boolean>() {
+                        public Boolean probe() throws AutomationException {
+                            if (wait.isSignalled()) {
+                                return true;
+                            }
+
+                            // The event may never come, so poll as well. The item reports itself
+                            // as expanded before the menu has been shown, so look for the menu too
+                            IntByReference state = new IntByReference();
+
+                            // Expanded or partially expanded
+                            if (pattern.getCurrentExpandCollapseState(state) == 0 &&
+                                    (state.getValue() == 1 || state.getValue() == 2) &&
+                                    isMenuShowing(menus)) {
+                                return true;
+                            }
+
+                            return null;
+                        }
+                    }, MENU_TIMEOUT);
+                } catch (ElementNotFoundException ex) {
+                    // Not seen to open, but press the key anyway
+                } finally {
+                    this.releaseCondition(menus);
                 }
 
                 // Now press the correct key
@@ -138,17 +198,25 @@ public class AutomationMainMenu extends AutomationBase {
                     IUIAutomationExpandCollapsePattern pattern =
                             IUIAutomationExpandCollapsePattern.Converter.PointerToInterface(pUnknownA);
 
-                    pattern.expand();
-                    try {
-                        Thread.sleep(750);
-                    } catch (Exception ex) {
-                        // Seems to be find
-                    }
-
-                    foundElement = this.getParent().findFirst(new TreeScope(TreeScope.Descendants),
-                        this.createAndCondition(
+                    final PointerByReference condition = this.createAndCondition(
                             this.createNamePropertyCondition(name1).getValue(),
-                            this.createControlTypeCondition(ControlType.MenuItem).getValue()));
+                            this.createControlTypeCondition(ControlType.MenuItem).getValue());
+
+                    try (EventWait wait = this.listenForMenus()) {
+                        pattern.expand();
+
+                        foundElement = wait.until(new EventWait.Probe<AutomationElement>() {
+                            public AutomationElement probe() throws AutomationException {
+                                try {
+                                    return getParent().findFirst(new TreeScope(TreeScope.Descendants), condition);
+                                } catch (ElementNotFoundException ex) {
+                                    return null;
+                                }
+                            }
+                        }, MENU_TIMEOUT);
+                    } finally {
+                        this.releaseCondition(condition);
+                    }
                 }
             }
         }
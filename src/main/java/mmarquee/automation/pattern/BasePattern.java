@@ -21,9 +21,14 @@ import com.sun.jna.platform.win32.Guid;
 import com.sun.jna.platform.win32.WinNT;
 import com.sun.jna.ptr.PointerByReference;
 import mmarquee.automation.BaseAutomation;
+import mmarquee.automation.ReferenceCleaner;
+import mmarquee.automation.UIAutomation;
 import mmarquee.automation.uiautomation.IUIAutomationElement3;
 import mmarquee.automation.uiautomation.IUIAutomationElementArray;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Created by Mark Humphreys on 29/02/2016.
  *
@@ -41,6 +46,16 @@ public abstract class BasePattern extends BaseAutomation implements Pattern {
      */
     protected Pointer pattern;
 
+    /**
+     * The automation instance that the pattern's element was found through
+     */
+    private UIAutomation automation;
+
+    /**
+     * The COM references held by this pattern
+     */
+    private final List<ReferenceCleaner.Cleanable> references = new ArrayList<ReferenceCleaner.Cleanable>();
+
     /**
      * Constructs a Pattern
      */
@@ -54,6 +69,48 @@ public abstract class BasePattern extends BaseAutomation implements Pattern {
      */
     public void setPattern(Pointer pattern) {
         this.pattern =  pattern;
+
+        if (pattern != null) {
+            this.references.add(ReferenceCleaner.register(pattern, this.getClass().getSimpleName()));
+        }
+    }
+
+    /**
+     * Sets the automation instance that the pattern's element was found through, which
+     * the elements the pattern returns belong to
+     * @param automation The automation instance
+     */
+    public void setAutomation(UIAutomation automation) {
+        this.automation = automation;
+    }
+
+    /**
+     * Gets the automation instance that the pattern's element was found through
+     * @return The automation instance, or null if it isn't known
+     */
+    @Override
+    public UIAutomation getAutomation() {
+        return this.automation;
+    }
+
+    /**
+     * Takes ownership of a reference obtained by this pattern, so it is released with it
+     * @param reference The generated proxy holding the reference
+     */
+    protected void own(Object reference) {
+        this.references.add(ReferenceCleaner.register(reference, this.getClass().getSimpleName()));
+    }
+
+    /**
+     * Releases the references held by this pattern. Any that are not released are released
+     * once the pattern is garbage collected.
+     */
+    public void release() {
+        for (ReferenceCleaner.Cleanable reference : this.references) {
+            reference.clean();
+        }
+
+        this.references.clear();
     }
 
     /**
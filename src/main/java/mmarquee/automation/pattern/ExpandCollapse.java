@@ -59,7 +59,9 @@ public class ExpandCollapse extends BasePattern {
             WinNT.HRESULT result0 = this.getRawPatternPointer(pbr);
 
             if (COMUtils.SUCCEEDED(result0)) {
-                return IUIAutomationExpandCollapsePattern.Converter.PointerToInterface(pbr);
+                this.rawPattern = IUIAutomationExpandCollapsePattern.Converter.PointerToInterface(pbr);
+                this.own(this.rawPattern);
+                return this.rawPattern;
             } else {
                 throw new AutomationException();
             }
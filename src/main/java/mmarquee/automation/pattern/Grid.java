@@ -58,7 +58,9 @@ public class Grid extends BasePattern {
             WinNT.HRESULT result0 = this.getRawPatternPointer(pbr);
 
             if (COMUtils.SUCCEEDED(result0)) {
-                return this.convertPointerToInterface(pbr);
+                this.rawPattern = this.convertPointerToInterface(pbr);
+                this.own(this.rawPattern);
+                return this.rawPattern;
             } else {
                 throw new AutomationException();
             }
@@ -97,9 +99,10 @@ public class Grid extends BasePattern {
         PointerByReference pbr = new PointerByReference();
 
         WinNT.HRESULT result0 = uRoot.QueryInterface(new Guid.REFIID(IUIAutomationElement3.IID), pbr);
+        uRoot.Release();
 
         if (COMUtils.SUCCEEDED(result0)) {
-            return new AutomationElement(convertPointerToElementInterface(pbr));
+            return new AutomationElement(convertPointerToElementInterface(pbr), this.getAutomation());
         } else {
             throw new AutomationException();
         }
@@ -58,7 +58,9 @@ public class Range extends BasePattern {
             WinNT.HRESULT result0 = this.getRawPatternPointer(pbr);
 
             if (COMUtils.SUCCEEDED(result0)) {
-                return this.convertPointerToInterface(pbr);
+                this.rawPattern = this.convertPointerToInterface(pbr);
+                this.own(this.rawPattern);
+                return this.rawPattern;
             } else {
                 throw new AutomationException();
             }
@@ -61,7 +61,9 @@ public class SelectionItem extends BasePattern {
             WinNT.HRESULT result0 = this.getRawPatternPointer(pbr);
 
             if (COMUtils.SUCCEEDED(result0)) {
-                return convertPointerToInterface(pbr);
+                this.rawPattern = convertPointerToInterface(pbr);
+                this.own(this.rawPattern);
+                return this.rawPattern;
             } else {
                 throw new AutomationException();
             }
@@ -114,8 +116,10 @@ public class SelectionItem extends BasePattern {
         PointerByReference pUnknownA = new PointerByReference();
 
         WinNT.HRESULT resultA = unkConditionA.QueryInterface(new Guid.REFIID(IUIAutomationElement3.IID), pUnknownA);
+        unkConditionA.Release();
+
         if (COMUtils.SUCCEEDED(resultA)) {
-            return new AutomationElement(convertPointerToElementInterface(pUnknownA));
+            return new AutomationElement(convertPointerToElementInterface(pUnknownA), this.getAutomation());
         } else {
             throw new AutomationException();
         }
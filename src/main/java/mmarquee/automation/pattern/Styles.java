@@ -21,6 +21,7 @@ import com.sun.jna.ptr.IntByReference;
 import com.sun.jna.ptr.PointerByReference;
 import mmarquee.automation.AutomationException;
 import mmarquee.automation.uiautomation.IUIAutomationStylesPattern;
+import mmarquee.automation.utils.BSTRUtils;
 
 /**
  * Created by Mark Humphreys on 01/03/2016.
@@ -54,7 +55,9 @@ public class Styles extends BasePattern {
             WinNT.HRESULT result0 = this.getRawPatternPointer(pbr);
 
             if (COMUtils.SUCCEEDED(result0)) {
-                return this.convertPointerToInterface(pbr);
+                this.rawPattern = this.convertPointerToInterface(pbr);
+                this.own(this.rawPattern);
+                return this.rawPattern;
             } else {
                 throw new AutomationException();
             }
@@ -73,7 +76,7 @@ public class Styles extends BasePattern {
             throw new AutomationException();
         }
 
-        return sr.getValue().getWideString(0);
+        return BSTRUtils.read(sr);
     }
 
     /**
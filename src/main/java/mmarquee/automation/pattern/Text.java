@@ -23,6 +23,7 @@ import com.sun.jna.ptr.IntByReference;
 import com.sun.jna.ptr.PointerByReference;
 import mmarquee.automation.AutomationException;
 import mmarquee.automation.uiautomation.*;
+import mmarquee.automation.utils.BSTRUtils;
 
 /**
  * Created by Mark Humphreys on 25/02/2016.
@@ -54,7 +55,9 @@ public class Text extends BasePattern {
             WinNT.HRESULT result0 = this.getRawPatternPointer(pbr);
 
             if (COMUtils.SUCCEEDED(result0)) {
-                return IUIAutomationTextPattern.Converter.PointerToInterface(pbr);
+                this.rawPattern = IUIAutomationTextPattern.Converter.PointerToInterface(pbr);
+                this.own(this.rawPattern);
+                return this.rawPattern;
             } else {
                 throw new AutomationException();
             }
@@ -117,7 +120,7 @@ public class Text extends BasePattern {
                         throw new AutomationException();
                     }
 
-                    selectionResult = sr.getValue().getWideString(0);
+                    selectionResult = BSTRUtils.read(sr);
                 } else {
                     throw new AutomationException();
                 }
@@ -155,7 +158,7 @@ public class Text extends BasePattern {
                 throw new AutomationException();
             }
 
-            return sr.getValue().getWideString(0);
+            return BSTRUtils.read(sr);
         } else {
             throw new AutomationException();
         }
@@ -21,6 +21,7 @@ import com.sun.jna.ptr.IntByReference;
 import com.sun.jna.ptr.PointerByReference;
 import mmarquee.automation.AutomationException;
 import mmarquee.automation.uiautomation.IUIAutomationValuePattern;
+import mmarquee.automation.utils.BSTRUtils;
 
 /**
  * Created by Mark Humphreys on 25/02/2016.
@@ -56,7 +57,9 @@ public class Value extends BasePattern {
             WinNT.HRESULT result0 = this.getRawPatternPointer(pbr);
 
             if (COMUtils.SUCCEEDED(result0)) {
-                return this.convertPointerToInterface(pbr);
+                this.rawPattern = this.convertPointerToInterface(pbr);
+                this.own(this.rawPattern);
+                return this.rawPattern;
             } else {
                 throw new AutomationException();
             }
@@ -75,7 +78,7 @@ public class Value extends BasePattern {
             throw new AutomationException();
         }
 
-        return sr.getValue().getWideString(0);
+        return BSTRUtils.read(sr);
     }
 
     /**
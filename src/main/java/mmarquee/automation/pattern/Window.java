@@ -53,7 +53,9 @@ public class Window extends BasePattern {
             WinNT.HRESULT result0 = this.getRawPatternPointer(pbr);
 
             if (COMUtils.SUCCEEDED(result0)) {
-                return IUIAutomationWindowPattern.Converter.PointerToInterface(pbr);
+                this.rawPattern = IUIAutomationWindowPattern.Converter.PointerToInterface(pbr);
+                this.own(this.rawPattern);
+                return this.rawPattern;
             } else {
                 throw new AutomationException();
             }
@@ -0,0 +1,271 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Generates the proxies for the interfaces marked with ComInterface.
+ *
+ * Each proxy is a final class that holds the interface pointer and the shared
+ * dispatch table, and calls each method through its (constant) vtable slot. The
+ * processor is compiled before the rest of the library (see the pom), and is run
+ * on the uiautomation package.
+ */
+@SupportedAnnotationTypes(ComBindingProcessor.COM_INTERFACE)
+public class ComBindingProcessor extends AbstractProcessor {
+
+    static final String COM_INTERFACE = "mmarquee.automation.uiautomation.ComInterface";
+
+    private static final String VTABLE_SLOT = "mmarquee.automation.uiautomation.VTableSlot";
+
+    /**
+     * TreeScope is declared as a structure, but is passed to COM by value, as its int
+     */
+    private static final String TREE_SCOPE = "mmarquee.automation.uiautomation.TreeScope";
+
+    private static final String HRESULT = "com.sun.jna.platform.win32.WinNT.HRESULT";
+
+    private static final Map<String, Integer> IUNKNOWN_SLOTS = new HashMap<String, Integer>();
+
+    static {
+        IUNKNOWN_SLOTS.put("QueryInterface", 0);
+        IUNKNOWN_SLOTS.put("AddRef", 1);
+        IUNKNOWN_SLOTS.put("Release", 2);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                if (element instanceof TypeElement) {
+                    this.generate((TypeElement)element);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private void generate(TypeElement type) {
+        TreeMap<Integer, ExecutableElement> slots = new TreeMap<Integer, ExecutableElement>();
+        List<Map.Entry<Integer, ExecutableElement>> aliases = new ArrayList<Map.Entry<Integer, ExecutableElement>>();
+        Set<String> seen = new HashSet<String>();
+
+        List<ExecutableElement> methods =
+                ElementFilter.methodsIn(this.processingEnv.getElementUtils().getAllMembers(type));
+
+        for (ExecutableElement method : methods) {
+            if (!method.getModifiers().contains(Modifier.ABSTRACT)) {
+                continue;
+            }
+
+            // The IUnknown methods are usually redeclared on the interface itself
+            if (!seen.add(method.getSimpleName().toString() + method.getParameters().size())) {
+                continue;
+            }
+
+            Integer slot = this.slotOf(method);
+
+            if (slot == null) {
+                this.error(method, "No vtable slot for " + method.getSimpleName());
+                return;
+            }
+
+            if (this.isAlias(method)) {
+                aliases.add(new AbstractMap.SimpleEntry<Integer, ExecutableElement>(slot, method));
+                continue;
+            }
+
+            if (slots.containsKey(slot)) {
+                this.error(method, "Vtable slot " + slot + " is used by both " +
+                        slots.get(slot).getSimpleName() + " and " + method.getSimpleName());
+                return;
+            }
+
+            slots.put(slot, method);
+        }
+
+        for (Map.Entry<Integer, ExecutableElement> alias : aliases) {
+            if (!slots.containsKey(alias.getKey())) {
+                this.error(alias.getValue(), "Vtable slot " + alias.getKey() + " has no binding for the alias " +
+                        alias.getValue().getSimpleName());
+                return;
+            }
+        }
+
+        PackageElement pkg = this.processingEnv.getElementUtils().getPackageOf(type);
+        String packageName = pkg.getQualifiedName().toString();
+        String proxyName = type.getSimpleName() + "Proxy";
+
+        try {
+            JavaFileObject file = this.processingEnv.getFiler()
+                    .createSourceFile(packageName + "." + proxyName, type);
+
+            PrintWriter out = new PrintWriter(file.openWriter());
+
+            try {
+                this.write(out, packageName, type, proxyName, slots, aliases);
+            } finally {
+                out.close();
+            }
+        } catch (IOException ex) {
+            this.error(type, "Failed to write " + proxyName + ": " + ex.getMessage());
+        }
+    }
+
+    private Integer slotOf(ExecutableElement method) {
+        AnnotationValue value = this.slotAttribute(method, "value");
+
+        if (value != null) {
+            return (Integer)value.getValue();
+        }
+
+        return IUNKNOWN_SLOTS.get(method.getSimpleName().toString());
+    }
+
+    private boolean isAlias(ExecutableElement method) {
+        AnnotationValue value = this.slotAttribute(method, "alias");
+
+        return value != null && (Boolean)value.getValue();
+    }
+
+    private AnnotationValue slotAttribute(ExecutableElement method, String name) {
+        for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+            if (mirror.getAnnotationType().toString().equals(VTABLE_SLOT)) {
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                        mirror.getElementValues().entrySet()) {
+                    if (entry.getKey().getSimpleName().contentEquals(name)) {
+                        return entry.getValue();
+                    }
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private void write(PrintWriter out, String packageName, TypeElement type, String proxyName,
+                       TreeMap<Integer, ExecutableElement> slots,
+                       List<Map.Entry<Integer, ExecutableElement>> aliases) {
+        out.println("package " + packageName + ";");
+        out.println();
+        out.println("/**");
+        out.println(" * Generated from " + type.getSimpleName() + " by ComBindingProcessor, do not edit.");
+        out.println(" */");
+        out.println("final class " + proxyName + " implements " + type.getQualifiedName() +
+                ", mmarquee.automation.uiautomation.ComProxy {");
+        out.println("    private static final int METHODS = " + (slots.lastKey() + 1) + ";");
+        out.println();
+        out.println("    private final com.sun.jna.Pointer pointer;");
+        out.println("    private final com.sun.jna.Function[] vTable;");
+        out.println();
+        out.println("    " + proxyName + "(com.sun.jna.Pointer pointer) {");
+        out.println("        this.pointer = pointer;");
+        out.println("        this.vTable = mmarquee.automation.uiautomation.DispatchTable.of(pointer, METHODS);");
+        out.println("    }");
+        out.println();
+        out.println("    @Override");
+        out.println("    public com.sun.jna.Pointer getInterfacePointer() {");
+        out.println("        return this.pointer;");
+        out.println("    }");
+
+        for (Map.Entry<Integer, ExecutableElement> entry : slots.entrySet()) {
+            this.writeMethod(out, entry.getKey(), entry.getValue());
+        }
+
+        for (Map.Entry<Integer, ExecutableElement> alias : aliases) {
+            this.writeMethod(out, alias.getKey(), alias.getValue());
+        }
+
+        out.println("}");
+    }
+
+    private void writeMethod(PrintWriter out, int slot, ExecutableElement method) {
+        StringBuilder parameters = new StringBuilder();
+        StringBuilder arguments = new StringBuilder("this.pointer");
+
+        for (VariableElement parameter : method.getParameters()) {
+            if (parameters.length() > 0) {
+                parameters.append(", ");
+            }
+
+            String type = parameter.asType().toString();
+            String name = parameter.getSimpleName().toString();
+
+            parameters.append(type).append(' ').append(name);
+            arguments.append(", ").append(name);
+
+            if (type.equals(TREE_SCOPE)) {
+                arguments.append(".value");
+            }
+        }
+
+        String returnType = method.getReturnType().toString();
+        String call = "this.vTable[" + slot + "].invokeInt(new Object[]{" + arguments + "})";
+
+        String body;
+
+        if (method.getReturnType().getKind() == TypeKind.INT) {
+            body = "return " + call + ";";
+        } else if (returnType.equals(HRESULT)) {
+            body = "return new " + HRESULT + "(" + call + ");";
+        } else {
+            this.error(method, "Unsupported return type " + returnType + " for " + method.getSimpleName());
+            return;
+        }
+
+        out.println();
+        out.println("    @Override");
+        out.println("    public " + returnType + " " + method.getSimpleName() + "(" + parameters + ") {");
+        out.println("        " + body);
+        out.println("    }");
+    }
+
+    private void error(Element element, String message) {
+        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
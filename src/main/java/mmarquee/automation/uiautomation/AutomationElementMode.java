@@ -0,0 +1,57 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation.uiautomation;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Whether elements returned with a cache request keep a live reference to the
+ * underlying UI element (Full), or only hold the cached data (None).
+ */
+public enum AutomationElementMode {
+    None(0),
+    Full(1);
+
+    private int value;
+
+    public int getValue() {
+        return this.value;
+    }
+
+    AutomationElementMode (int value) {
+        this.value = value;
+    }
+
+    private static final Map<Integer, AutomationElementMode> intToTypeMap = new HashMap<Integer, AutomationElementMode>();
+    static {
+        for (AutomationElementMode type : AutomationElementMode.values()) {
+            intToTypeMap.put(type.value, type);
+        }
+    }
+
+    /**
+     * Gets the enumeration from the given integer
+     * @param i The given integer
+     * @return The value (as an AutomationElementMode)
+     */
+    public static AutomationElementMode fromInt(int i) {
+        AutomationElementMode type = intToTypeMap.get(Integer.valueOf(i));
+        if (type == null)
+            return AutomationElementMode.Full;
+        return type;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation.uiautomation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a COM interface whose proxy is generated at compile time.
+ *
+ * The processor (mmarquee.automation.processor.ComBindingProcessor) generates a
+ * final class called &lt;Interface&gt;Proxy in the same package, that calls each
+ * method through the vtable slot given by its {@link VTableSlot}. The IUnknown
+ * methods (QueryInterface, AddRef and Release) are always slots 0-2, and do not
+ * need to be annotated.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface ComInterface {
+}
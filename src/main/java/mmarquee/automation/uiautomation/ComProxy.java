@@ -0,0 +1,33 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation.uiautomation;
+
+import com.sun.jna.Pointer;
+
+/**
+ * Implemented by the generated proxies (see {@link ComInterface}).
+ */
+public interface ComProxy {
+    /**
+     * Gets the COM interface pointer that the proxy calls through.
+     *
+     * This is the same Pointer instance that is passed to every native call, so it stays
+     * reachable for as long as a call is in progress.
+     *
+     * @return The interface pointer
+     */
+    Pointer getInterfacePointer();
+}
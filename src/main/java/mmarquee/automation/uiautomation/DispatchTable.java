@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation.uiautomation;
+
+import com.sun.jna.Function;
+import com.sun.jna.Pointer;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Process-wide cache of COM dispatch tables.
+ *
+ * All the objects of the same COM class share a single vtable, so the Function
+ * handles for its slots are built once, keyed on the address of the vtable, and
+ * shared by every proxy created by the Converters. The vtables of the automation
+ * interfaces live in the static data of UIAutomationCore, so they stay valid
+ * for the life of the process.
+ */
+public final class DispatchTable {
+
+    private static final ConcurrentMap<Long, Function[]> tables = new ConcurrentHashMap<Long, Function[]>();
+
+    private DispatchTable() {
+    }
+
+    /**
+     * Gets the dispatch table for the COM interface pointer
+     *
+     * @param interfacePointer The COM interface pointer
+     * @param methods The number of slots the caller needs (including those of IUnknown)
+     * @return The Function handles for the slots, at least methods long
+     */
+    public static Function[] of(Pointer interfacePointer, int methods) {
+        Pointer vTablePointer = interfacePointer.getPointer(0);
+        Long key = Pointer.nativeValue(vTablePointer);
+
+        Function[] table = tables.get(key);
+
+        if (table != null && table.length >= methods) {
+            return table;
+        }
+
+        Pointer[] slots = vTablePointer.getPointerArray(0, methods);
+
+        Function[] built = new Function[methods];
+
+        for (int slot = 0; slot < methods; slot++) {
+            built[slot] = Function.getFunction(slots[slot], Function.ALT_CONVENTION);
+        }
+
+        // Another thread may have built the table at the same time, possibly asking for more slots
+        Function[] previous = tables.putIfAbsent(key, built);
+
+        while (previous != null && previous.length < methods) {
+            if (tables.replace(key, previous, built)) {
+                return built;
+            }
+
+            previous = tables.putIfAbsent(key, built);
+        }
+
+        return previous == null ? built : previous;
+    }
+
+    /**
+     * Gets the number of vtables that have been cached
+     *
+     * @return The number of vtables
+     */
+    public static int size() {
+        return tables.size();
+    }
+}
@@ -42,18 +42,18 @@ import com.sun.jna.ptr.PointerByReference;
 //
   //              @Override
     //            public WinNT.HRESULT QueryInterface(Guid.REFIID byValue, PointerByReference pointerByReference) {
-      //              Function f = Function.getFunction(vTable[0], Function.ALT_CONVENTION);
+      //              Function f = vTable[0];
         //            return new WinNT.HRESULT(f.invokeInt(new Object[]{myInterfacePointer, byValue, pointerByReference}));
           //      }
 //
   //              @Override
     //            public int AddRef() {
-      //              Function f = Function.getFunction(vTable[1], Function.ALT_CONVENTION);
+      //              Function f = vTable[1];
         //            return f.invokeInt(new Object[]{myInterfacePointer});
           //      }
 //
   //              public int Release() {
-    //                Function f = Function.getFunction(vTable[2], Function.ALT_CONVENTION);
+    //                Function f = vTable[2];
       //              return f.invokeInt(new Object[]{myInterfacePointer});
         //        }
           //  };
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation.uiautomation;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.COM.IUnknown;
+import com.sun.jna.platform.win32.Guid;
+import com.sun.jna.platform.win32.WinNT;
+import com.sun.jna.ptr.IntByReference;
+import com.sun.jna.ptr.PointerByReference;
+
+/**
+ * Wrapper around the IUIAutomationCacheRequest interface, which describes the properties and
+ * patterns that are fetched (and cached) along with an element.
+ */
+@ComInterface
+public interface IUIAutomationCacheRequest extends IUnknown {
+    /**
+     * The interface IID for QueryInterface et al
+     */
+    Guid.IID IID = new Guid.IID(
+            "{B32A92B5-BC25-4078-9C08-D7EE95C48E03}");
+
+    int AddRef();
+    int Release();
+    WinNT.HRESULT QueryInterface(Guid.REFIID byValue, PointerByReference pointerByReference);
+
+    @VTableSlot(3)
+    int addProperty(int propertyId);
+    @VTableSlot(4)
+    int addPattern(int patternId);
+    @VTableSlot(5)
+    int clone(PointerByReference clonedRequest);
+    @VTableSlot(6)
+    int getTreeScope(IntByReference scope);
+    @VTableSlot(7)
+    int setTreeScope(int scope);
+    @VTableSlot(8)
+    int getTreeFilter(PointerByReference filter);
+    @VTableSlot(9)
+    int setTreeFilter(Pointer filter);
+    @VTableSlot(10)
+    int getAutomationElementMode(IntByReference mode);
+    @VTableSlot(11)
+    int setAutomationElementMode(int mode);
+
+    class Converter {
+        public static IUIAutomationCacheRequest PointerToInterface(final PointerByReference ptr) {
+            return new IUIAutomationCacheRequestProxy(ptr.getValue());
+        }
+    }
+}
@@ -15,7 +15,6 @@
  */
 package mmarquee.automation.uiautomation;
 
-import com.sun.jna.Function;
 import com.sun.jna.Pointer;
 import com.sun.jna.platform.win32.COM.IUnknown;
 import com.sun.jna.platform.win32.Guid;
@@ -25,6 +24,7 @@ import com.sun.jna.ptr.PointerByReference;
 /**
  * Created by Mark Humphreys on 08/07/2016.
  */
+@ComInterface
 public interface IUIAutomationCondition extends IUnknown {
     /**
      * The interface IID for QueryInterface et al
@@ -38,30 +38,7 @@ public interface IUIAutomationCondition extends IUnknown {
 
     class Converter {
         public static IUIAutomationCondition PointerToInterface(final PointerByReference ptr) {
-            final Pointer interfacePointer = ptr.getValue();
-            final Pointer vTablePointer = interfacePointer.getPointer(0);
-            final Pointer[] vTable = new Pointer[85];  //  82 + 3 from IUnknown
-            vTablePointer.read(0, vTable, 0, vTable.length);
-            return new IUIAutomationCondition() {
-
-                // IUnknown
-                @Override
-                public WinNT.HRESULT QueryInterface(Guid.REFIID byValue, PointerByReference pointerByReference) {
-                    Function f = Function.getFunction(vTable[0], Function.ALT_CONVENTION);
-                    return new WinNT.HRESULT(f.invokeInt(new Object[]{interfacePointer, byValue, pointerByReference}));
-                }
-
-                @Override
-                public int AddRef() {
-                    Function f = Function.getFunction(vTable[1], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer});
-                }
-
-                public int Release() {
-                    Function f = Function.getFunction(vTable[2], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer});
-                }
-            };
+            return new IUIAutomationConditionProxy(ptr.getValue());
         }
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,5 @@
 package mmarquee.automation.uiautomation;
 
-import com.sun.jna.Function;
 import com.sun.jna.Pointer;
 import com.sun.jna.platform.win32.COM.IUnknown;
 import com.sun.jna.platform.win32.Guid;
@@ -11,6 +10,7 @@ import com.sun.jna.ptr.PointerByReference;
 /**
  * Created by Mark Humphreys on 04/02/2017.
  */
+@ComInterface
 public interface IUIAutomationEventHandler extends IUnknown {
 
     /**
@@ -23,40 +23,12 @@ public interface IUIAutomationEventHandler extends IUnknown {
     int Release();
     WinNT.HRESULT QueryInterface(Guid.REFIID byValue, PointerByReference pointerByReference);
 
+    @VTableSlot(3)
     int handleAutomationEvent(PointerByReference sender, IntByReference event);
 
     class Converter {
-        private static int IUIAutomationEventHandlerArray_Methods = 4; // 0-2 IUnknown, 3 IUIAutomationEventHandler
-
         public static IUIAutomationEventHandler PointerToInterface(final PointerByReference ptr) {
-            final Pointer interfacePointer = ptr.getValue();
-            final Pointer vTablePointer = interfacePointer.getPointer(0);
-            final Pointer[] vTable = new Pointer[IUIAutomationEventHandlerArray_Methods];
-            vTablePointer.read(0, vTable, 0, vTable.length);
-            return new IUIAutomationEventHandler() {
-                // IUnknown
-                @Override
-                public WinNT.HRESULT QueryInterface(Guid.REFIID byValue, PointerByReference pointerByReference) {
-                    Function f = Function.getFunction(vTable[0], Function.ALT_CONVENTION);
-                    return new WinNT.HRESULT(f.invokeInt(new Object[]{interfacePointer, byValue, pointerByReference}));
-                }
-
-                @Override
-                public int AddRef() {
-                    Function f = Function.getFunction(vTable[1], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer});
-                }
-
-                public int Release() {
-                    Function f = Function.getFunction(vTable[2], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer});
-                }
-
-                public int handleAutomationEvent(PointerByReference sender, IntByReference event) {
-                    Function f = Function.getFunction(vTable[3], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer, sender, event});
-                }
-            };
+            return new IUIAutomationEventHandlerProxy(ptr.getValue());
         }
     }
-}
\ No newline at end of file
+}
@@ -15,7 +15,6 @@
  */
 package mmarquee.automation.uiautomation;
 
-import com.sun.jna.Function;
 import com.sun.jna.Pointer;
 import com.sun.jna.platform.win32.COM.IUnknown;
 import com.sun.jna.platform.win32.Guid;
@@ -26,6 +25,7 @@ import com.sun.jna.ptr.PointerByReference;
 /**
  * Created by Mark Humphreys on 27/01/2017.
  */
+@ComInterface
 public interface IUIAutomationGridItemPattern extends IUnknown {
     /**
      * The interface IID for QueryInterface et al
@@ -37,63 +37,18 @@ public interface IUIAutomationGridItemPattern extends IUnknown {
     int Release();
     WinNT.HRESULT QueryInterface(Guid.REFIID byValue, PointerByReference pointerByReference);
 
+    @VTableSlot(4)
     int getCurrentRow(IntByReference retVal);
+    @VTableSlot(5)
     int getCurrentColumn(IntByReference retVal);
+    @VTableSlot(6)
     int getRowSpan(IntByReference retVal);
+    @VTableSlot(7)
     int getColumnSpan(IntByReference retVal);
 
     class Converter {
-        private static int METHODS = 8; // 0-2 IUnknown, 3-7 IUIAutomationGridItemPattern
-
         public static IUIAutomationGridItemPattern PointerToInterface(final PointerByReference ptr) {
-            final Pointer interfacePointer = ptr.getValue();
-            final Pointer vTablePointer = interfacePointer.getPointer(0);
-            final Pointer[] vTable = new Pointer[METHODS];
-            vTablePointer.read(0, vTable, 0, vTable.length);
-            return new IUIAutomationGridItemPattern() {
-
-                // IUnknown
-                @Override
-                public WinNT.HRESULT QueryInterface(Guid.REFIID byValue, PointerByReference pointerByReference) {
-                    Function f = Function.getFunction(vTable[0], Function.ALT_CONVENTION);
-                    return new WinNT.HRESULT(f.invokeInt(new Object[]{interfacePointer, byValue, pointerByReference}));
-                }
-
-                @Override
-                public int AddRef() {
-                    Function f = Function.getFunction(vTable[1], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer});
-                }
-
-                public int Release() {
-                    Function f = Function.getFunction(vTable[2], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer});
-                }
-
-                /*
-        3            function Get_CurrentContainingGrid(out retVal: IUIAutomationElement3): HResult; stdcall;
-                 */
-
-                public int getCurrentRow(IntByReference retVal) {
-                    Function f = Function.getFunction(vTable[4], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer, retVal});
-                }
-
-                public int getCurrentColumn(IntByReference retVal) {
-                    Function f = Function.getFunction(vTable[5], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer, retVal});
-                }
-
-                public int getRowSpan(IntByReference retVal) {
-                    Function f = Function.getFunction(vTable[6], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer, retVal});
-                }
-
-                public int getColumnSpan(IntByReference retVal) {
-                    Function f = Function.getFunction(vTable[7], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer, retVal});
-                }
-            };
+            return new IUIAutomationGridItemPatternProxy(ptr.getValue());
         }
     }
-}
\ No newline at end of file
+}
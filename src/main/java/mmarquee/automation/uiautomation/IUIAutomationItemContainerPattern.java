@@ -53,23 +53,23 @@ import com.sun.jna.ptr.PointerByReference;
 //                // IUnknown
 //                @Override
 //                public WinNT.HRESULT QueryInterface(Guid.REFIID byValue, PointerByReference pointerByReference) {
-//                    Function f = Function.getFunction(vTable[0], Function.ALT_CONVENTION);
+//                    Function f = vTable[0];
 //                    return new WinNT.HRESULT(f.invokeInt(new Object[]{interfacePointer, byValue, pointerByReference}));
 //                //}
 //
  //               @Override
  //              public int AddRef() {
-  //                  Function f = Function.getFunction(vTable[1], Function.ALT_CONVENTION);
+  //                  Function f = vTable[1];
  //                   return f.invokeInt(new Object[]{interfacePointer});
  //               }
 //
   //              public int Release() {
-    //                Function f = Function.getFunction(vTable[2], Function.ALT_CONVENTION);
+    //                Function f = vTable[2];
       //              return f.invokeInt(new Object[]{interfacePointer});
         //        }
 //
   //              public int FindItemByProperty(Pointer startAfter, int propertyId, Variant.VARIANT.ByValue value, PointerByReference found) {
-    //                Function f = Function.getFunction(vTable[3], Function.ALT_CONVENTION);
+    //                Function f = vTable[3];
       //              return f.invokeInt(new Object[]{interfacePointer, startAfter, propertyId, value, found});
         //        }
 //
@@ -15,7 +15,6 @@
  */
 package mmarquee.automation.uiautomation;
 
-import com.sun.jna.Function;
 import com.sun.jna.Pointer;
 import com.sun.jna.platform.win32.COM.IUnknown;
 import com.sun.jna.platform.win32.Guid;
@@ -26,6 +25,7 @@ import com.sun.jna.ptr.PointerByReference;
 /**
  * Created by Mark Humphreys on 13/07/2016.
  */
+@ComInterface
 public interface IUIAutomationSelectionItemPattern extends IUnknown {
     /**
      * The interface IID for QueryInterface et al
@@ -37,66 +37,20 @@ public interface IUIAutomationSelectionItemPattern extends IUnknown {
     int Release();
     WinNT.HRESULT QueryInterface(Guid.REFIID byValue, PointerByReference pointerByReference);
 
+    @VTableSlot(3)
     int select();
+    @VTableSlot(6)
     int getCurrentIsSelected(IntByReference ibr);
+    @VTableSlot(4)
     int addToSelection();
+    @VTableSlot(5)
     int removeFromSelection();
+    @VTableSlot(7)
     int getCurrentSelectionContainer(PointerByReference pbr);
 
     class Converter {
-
-        private static int METHODS = 8; // 0-2 IUnknown, 3-7 IUIAutomationSelectionItemPattern
-
         public static IUIAutomationSelectionItemPattern PointerToInterface(final PointerByReference ptr) {
-            final Pointer interfacePointer = ptr.getValue();
-            final Pointer vTablePointer = interfacePointer.getPointer(0);
-            final Pointer[] vTable = new Pointer[METHODS];
-            vTablePointer.read(0, vTable, 0, vTable.length);
-            return new IUIAutomationSelectionItemPattern() {
-                // IUnknown
-
-                @Override
-                public WinNT.HRESULT QueryInterface(Guid.REFIID byValue, PointerByReference pointerByReference) {
-                    Function f = Function.getFunction(vTable[0], Function.ALT_CONVENTION);
-                    return new WinNT.HRESULT(f.invokeInt(new Object[]{interfacePointer, byValue, pointerByReference}));
-                }
-
-                @Override
-                public int AddRef() {
-                    Function f = Function.getFunction(vTable[1], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer});
-                }
-
-                public int Release() {
-                    Function f = Function.getFunction(vTable[2], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer});
-                }
-
-                public int select() {
-                    Function f = Function.getFunction(vTable[3], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer});
-                }
-
-                public int addToSelection() {
-                    Function f = Function.getFunction(vTable[4], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer});
-                }
-
-                public int removeFromSelection() {
-                    Function f = Function.getFunction(vTable[5], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer});
-                }
-
-                public int getCurrentIsSelected(IntByReference ibr) {
-                    Function f = Function.getFunction(vTable[6], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer, ibr});
-                }
-
-                public int getCurrentSelectionContainer(PointerByReference pbr) {
-                    Function f = Function.getFunction(vTable[7], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer, pbr});
-                }
-            };
+            return new IUIAutomationSelectionItemPatternProxy(ptr.getValue());
         }
     }
 }
@@ -15,7 +15,6 @@
  */
 package mmarquee.automation.uiautomation;
 
-import com.sun.jna.Function;
 import com.sun.jna.Pointer;
 import com.sun.jna.platform.win32.COM.IUnknown;
 import com.sun.jna.platform.win32.Guid;
@@ -25,6 +24,7 @@ import com.sun.jna.ptr.PointerByReference;
 /**
  * Created by Mark Humphreys on 13/07/2016.
  */
+@ComInterface
 public interface IUIAutomationTextPattern extends IUnknown {
     /**
      * The interface IID for QueryInterface et al
@@ -35,53 +35,16 @@ public interface IUIAutomationTextPattern extends IUnknown {
     int Release();
     WinNT.HRESULT QueryInterface(Guid.REFIID byValue, PointerByReference pointerByReference);
 
+    @VTableSlot(5)
     int getSelection(PointerByReference result);
+    @VTableSlot(6)
     int getVisibleRanges(PointerByReference ranges);
+    @VTableSlot(7)
     int getDocumentRange(PointerByReference range);
 
     class Converter {
-        private static int METHODS = 9; // 0-2 IUnknown, 3-8 IUIAutomationTextPattern
-
         public static IUIAutomationTextPattern PointerToInterface(final PointerByReference ptr) {
-            final Pointer interfacePointer = ptr.getValue();
-            final Pointer vTablePointer = interfacePointer.getPointer(0);
-            final Pointer[] vTable = new Pointer[METHODS];
-            vTablePointer.read(0, vTable, 0, vTable.length);
-            return new IUIAutomationTextPattern() {
-                // IUnknown
-
-                @Override
-                public WinNT.HRESULT QueryInterface(Guid.REFIID byValue, PointerByReference pointerByReference) {
-                    Function f = Function.getFunction(vTable[0], Function.ALT_CONVENTION);
-                    return new WinNT.HRESULT(f.invokeInt(new Object[]{interfacePointer, byValue, pointerByReference}));
-                }
-
-                @Override
-                public int AddRef() {
-                    Function f = Function.getFunction(vTable[1], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer});
-                }
-
-                public int Release() {
-                    Function f = Function.getFunction(vTable[2], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer});
-                }
-
-                public int getSelection(PointerByReference result) {
-                    Function f = Function.getFunction(vTable[5], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer, result});
-                }
-
-                public int getVisibleRanges(PointerByReference ranges) {
-                    Function f = Function.getFunction(vTable[6], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer, ranges});
-                }
-
-                public int getDocumentRange(PointerByReference range) {
-                    Function f = Function.getFunction(vTable[7], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer, range});
-                }
-            };
+            return new IUIAutomationTextPatternProxy(ptr.getValue());
         }
     }
 }
@@ -15,7 +15,6 @@
  */
 package mmarquee.automation.uiautomation;
 
-import com.sun.jna.Function;
 import com.sun.jna.Pointer;
 import com.sun.jna.platform.win32.COM.IUnknown;
 import com.sun.jna.platform.win32.Guid;
@@ -25,6 +24,7 @@ import com.sun.jna.ptr.PointerByReference;
 /**
  * Created by Mark Humphreys on 02/02/2017.
  */
+@ComInterface
 public interface IUIAutomationTreeWalker extends IUnknown {
     /**
      * The interface IID for QueryInterface et al
@@ -36,73 +36,36 @@ public interface IUIAutomationTreeWalker extends IUnknown {
     int Release();
     WinNT.HRESULT QueryInterface(Guid.REFIID byValue, PointerByReference pointerByReference);
 
-    int getParentElement(PointerByReference element, PointerByReference parent);
+    @VTableSlot(3)
+    int getParentElement(Pointer element, PointerByReference parent);
+    @VTableSlot(4)
     int getFirstChildElement(Pointer element, PointerByReference first);
+    @VTableSlot(5)
     int getLastChildElement(Pointer element, PointerByReference last);
+    @VTableSlot(6)
     int getNextSiblingElement(Pointer element, PointerByReference next);
+    @VTableSlot(7)
     int getPreviousSiblingElement(Pointer element, PointerByReference previous);
-/* 8-14 cache equivalents */
+    @VTableSlot(8)
+    int normalizeElement(Pointer element, PointerByReference normalized);
+    @VTableSlot(9)
+    int getParentElementBuildCache(Pointer element, Pointer cacheRequest, PointerByReference parent);
+    @VTableSlot(10)
+    int getFirstChildElementBuildCache(Pointer element, Pointer cacheRequest, PointerByReference first);
+    @VTableSlot(11)
+    int getLastChildElementBuildCache(Pointer element, Pointer cacheRequest, PointerByReference last);
+    @VTableSlot(12)
+    int getNextSiblingElementBuildCache(Pointer element, Pointer cacheRequest, PointerByReference next);
+    @VTableSlot(13)
+    int getPreviousSiblingElementBuildCache(Pointer element, Pointer cacheRequest, PointerByReference previous);
+    @VTableSlot(14)
+    int normalizeElementBuildCache(Pointer element, Pointer cacheRequest, PointerByReference normalized);
+    @VTableSlot(15)
     int getCondition(PointerByReference condition);
 
     class Converter {
-        private static int METHODS = 16; // 0-2 IUnknown, 3-15 IUIAutomationTreeWalker
-
         public static IUIAutomationTreeWalker PointerToInterface(final PointerByReference ptr) {
-            final Pointer interfacePointer = ptr.getValue();
-            final Pointer vTablePointer = interfacePointer.getPointer(0);
-            final Pointer[] vTable = new Pointer[METHODS];
-            vTablePointer.read(0, vTable, 0, vTable.length);
-            return new IUIAutomationTreeWalker() {
-                // IUnknown
-
-                @Override
-                public WinNT.HRESULT QueryInterface(Guid.REFIID byValue, PointerByReference pointerByReference) {
-                    Function f = Function.getFunction(vTable[0], Function.ALT_CONVENTION);
-                    return new WinNT.HRESULT(f.invokeInt(new Object[]{interfacePointer, byValue, pointerByReference}));
-                }
-
-                @Override
-                public int AddRef() {
-                    Function f = Function.getFunction(vTable[1], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer});
-                }
-
-                public int Release() {
-                    Function f = Function.getFunction(vTable[2], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer});
-                }
-
-                public int getParentElement(PointerByReference element, PointerByReference parent) {
-                    Function f = Function.getFunction(vTable[3], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer, element, parent});
-                }
-
-                public int getFirstChildElement(Pointer element, PointerByReference first) {
-                    Function f = Function.getFunction(vTable[4], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer, element, first});
-                }
-
-                public int getLastChildElement(Pointer element, PointerByReference last) {
-                    Function f = Function.getFunction(vTable[5], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer, element, last});
-                }
-
-                public int getNextSiblingElement(Pointer element, PointerByReference next) {
-                    Function f = Function.getFunction(vTable[6], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer, element, next});
-                }
-
-                public int getPreviousSiblingElement(Pointer element, PointerByReference previous) {
-                    Function f = Function.getFunction(vTable[7], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer, element, previous});
-                }
-
-                public int getCondition(PointerByReference condition) {
-                    Function f = Function.getFunction(vTable[15], Function.ALT_CONVENTION);
-                    return f.invokeInt(new Object[]{interfacePointer, condition});
-                }
-
-            };
+            return new IUIAutomationTreeWalkerProxy(ptr.getValue());
         }
     }
 }
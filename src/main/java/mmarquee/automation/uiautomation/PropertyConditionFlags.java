@@ -0,0 +1,51 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation.uiautomation;
+
+/**
+ * How the value of a string property is compared in a property condition.
+ * The flags can be combined, e.g. IgnoreCase and MatchSubstring.
+ */
+public enum PropertyConditionFlags {
+    None(0),
+    IgnoreCase(1),
+    MatchSubstring(2);
+
+    private int value;
+
+    public int getValue() {
+        return this.value;
+    }
+
+    PropertyConditionFlags (int value) {
+        this.value = value;
+    }
+
+    /**
+     * Combines flags into the value passed to CreatePropertyConditionEx
+     * @param flags The flags
+     * @return The combined value
+     */
+    public static int combine(PropertyConditionFlags... flags) {
+        int value = 0;
+
+        for (PropertyConditionFlags flag : flags) {
+            value |= flag.value;
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation.uiautomation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The vtable slot of a method of a {@link ComInterface}, counting from the start of
+ * IUnknown (so the first method of an interface deriving directly from IUnknown is 3).
+ *
+ * A slot is normally bound by a single method. A second binding of the same slot (e.g.
+ * one that takes a raw Pointer rather than a Structure) has to be marked as an alias.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.METHOD)
+public @interface VTableSlot {
+    /**
+     * The slot
+     *
+     * @return The slot
+     */
+    int value();
+
+    /**
+     * Whether this is a second binding of a slot that is bound by another method
+     *
+     * @return True for an alias
+     */
+    boolean alias() default false;
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation.utils;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.OleAuto;
+import com.sun.jna.platform.win32.WTypes;
+import com.sun.jna.ptr.PointerByReference;
+
+import java.nio.ByteOrder;
+
+/**
+ * Reads the BSTRs returned by the automation library.
+ *
+ * A BSTR belongs to the caller, so it is freed once it has been read. The length is
+ * taken from the prefix in front of the characters rather than by searching for the
+ * terminator, and the characters are copied into a per-thread buffer, so the only
+ * allocation is the resulting string. Values that repeat a lot across a tree (class
+ * names, framework ids, etc.) can be read with readInterned, which returns the same
+ * string each time rather than a new one.
+ */
+public final class BSTRUtils {
+
+    private static final int INTERN_SLOTS = 4096;
+
+    private static final int INTERN_MAX_LENGTH = 128;
+
+    /**
+     * Longer strings (e.g. the text of a document) get a buffer of their own, rather than
+     * one that is kept for the thread
+     */
+    private static final int MAX_BUFFER_LENGTH = 8192;
+
+    private static final InternTable interned = new InternTable(INTERN_SLOTS, INTERN_MAX_LENGTH);
+
+    private static final ThreadLocal<char[]> buffers = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[256];
+        }
+    };
+
+    private BSTRUtils() {
+    }
+
+    /**
+     * Reads a BSTR returned by the automation library, and frees it
+     *
+     * @param sr The reference the BSTR was returned in
+     * @return The string, or an empty string if no BSTR was returned
+     */
+    public static String read(PointerByReference sr) {
+        return read(sr, false);
+    }
+
+    /**
+     * Reads a BSTR returned by the automation library, and frees it. The value is
+     * interned, so it should only be used for values that often repeat.
+     *
+     * @param sr The reference the BSTR was returned in
+     * @return The string, or an empty string if no BSTR was returned
+     */
+    public static String readInterned(PointerByReference sr) {
+        return read(sr, true);
+    }
+
+    private static String read(PointerByReference sr, boolean intern) {
+        Pointer value = sr.getValue();
+
+        if (value == null) {
+            return "";
+        }
+
+        try {
+            return decode(value, intern);
+        } finally {
+            OleAuto.INSTANCE.SysFreeString(new WTypes.BSTR(value));
+        }
+    }
+
+    /**
+     * Decodes a BSTR, without freeing it
+     *
+     * @param value The BSTR
+     * @param intern Whether to intern the value
+     * @return The string
+     */
+    static String decode(Pointer value, boolean intern) {
+        // The prefix is the length in bytes, not including the terminator
+        int length = value.getInt(-4) / 2;
+
+        if (length == 0) {
+            return "";
+        }
+
+        char[] buffer = buffers.get();
+
+        if (buffer.length < length) {
+            if (length > MAX_BUFFER_LENGTH) {
+                buffer = new char[length];
+            } else {
+                buffer = new char[Math.max(length, Math.min(buffer.length * 2, MAX_BUFFER_LENGTH))];
+                buffers.set(buffer);
+            }
+        }
+
+        // Read as UTF-16, whatever the size of wchar_t
+        value.getByteBuffer(0, length * 2L).order(ByteOrder.nativeOrder()).asCharBuffer().get(buffer, 0, length);
+
+        if (intern) {
+            return interned.intern(buffer, length);
+        } else {
+            return new String(buffer, 0, length);
+        }
+    }
+}
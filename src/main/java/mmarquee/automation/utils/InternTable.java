@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation.utils;
+
+/**
+ * A bounded table of interned strings, looked up directly from a character buffer.
+ *
+ * The table is direct-mapped: each value goes in the slot picked by its hash, replacing
+ * whatever was there before. Values that repeat a lot (class names, framework ids and so
+ * on) stay in the table and are returned without creating a new string, while the size
+ * of the table never grows. Slots are read and written without locking, which is safe
+ * as strings are immutable; the worst a race can do is lose an entry.
+ */
+final class InternTable {
+
+    private final String[] slots;
+
+    private final int mask;
+
+    private final int maxLength;
+
+    /**
+     * Constructor for the InternTable
+     *
+     * @param size The number of slots, rounded up to a power of 2
+     * @param maxLength The longest value that is interned
+     */
+    InternTable(int size, int maxLength) {
+        int capacity = size <= 1 ? 1 : Integer.highestOneBit(size - 1) << 1;
+        this.slots = new String[capacity];
+        this.mask = capacity - 1;
+        this.maxLength = maxLength;
+    }
+
+    /**
+     * Gets the interned value for the characters
+     *
+     * @param chars The buffer holding the characters
+     * @param length The number of characters to use
+     * @return The interned string, or a new one if it is too long to intern
+     */
+    String intern(char[] chars, int length) {
+        if (length > this.maxLength) {
+            return new String(chars, 0, length);
+        }
+
+        int hash = 0;
+
+        for (int index = 0; index < length; index++) {
+            hash = 31 * hash + chars[index];
+        }
+
+        int slot = (hash ^ (hash >>> 16)) & this.mask;
+
+        String existing = this.slots[slot];
+
+        if (existing != null && matches(existing, chars, length)) {
+            return existing;
+        }
+
+        String value = new String(chars, 0, length);
+        this.slots[slot] = value;
+        return value;
+    }
+
+    private static boolean matches(String value, char[] chars, int length) {
+        if (value.length() != length) {
+            return false;
+        }
+
+        for (int index = 0; index < length; index++) {
+            if (value.charAt(index) != chars[index]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
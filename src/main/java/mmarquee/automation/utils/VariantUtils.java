@@ -0,0 +1,330 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation.utils;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.Variant;
+import com.sun.jna.platform.win32.WinDef;
+import com.sun.jna.win32.StdCallLibrary;
+import com.sun.jna.win32.W32APIOptions;
+import mmarquee.automation.AutomationException;
+
+/**
+ * Reads property values straight out of a VARIANT, without going through the
+ * Variant.VARIANT structure.
+ *
+ * Each thread has a VARIANT-sized buffer that is passed to the automation library
+ * and then read according to its type, so reading a number or a flag does not
+ * create any objects. A variant that holds a string, an array or an interface is
+ * cleared once it has been read, which frees what it holds.
+ *
+ * An empty variant (which is what is returned for a property the element does not
+ * support) reads as false, 0, an empty string or an empty rectangle.
+ */
+public final class VariantUtils {
+
+    /**
+     * The size of a VARIANT (the largest member of the union is a pair of pointers)
+     */
+    private static final int SIZE = Native.POINTER_SIZE == 8 ? 24 : 16;
+
+    /**
+     * The value follows the type and 3 reserved words
+     */
+    private static final int VALUE_OFFSET = 8;
+
+    /**
+     * Offset of pvData in a SAFEARRAY (after cDims, fFeatures, cbElements and cLocks)
+     */
+    private static final int SAFEARRAY_DATA_OFFSET = Native.POINTER_SIZE == 8 ? 16 : 12;
+
+    /**
+     * Offset of the element count of the first dimension, which follows pvData
+     */
+    private static final int SAFEARRAY_COUNT_OFFSET = SAFEARRAY_DATA_OFFSET + Native.POINTER_SIZE;
+
+    private static final ThreadLocal<Memory> buffers = new ThreadLocal<Memory>() {
+        @Override
+        protected Memory initialValue() {
+            return new Memory(SIZE);
+        }
+    };
+
+    private interface OleAut32 extends StdCallLibrary {
+        OleAut32 INSTANCE = Native.loadLibrary("OleAut32", OleAut32.class, W32APIOptions.DEFAULT_OPTIONS);
+
+        int VariantClear(Pointer variant);
+    }
+
+    private VariantUtils() {
+    }
+
+    /**
+     * Gets this thread's VARIANT buffer, emptied ready for a call
+     *
+     * @return The buffer
+     */
+    public static Pointer buffer() {
+        Memory buffer = buffers.get();
+        buffer.setShort(0, (short)Variant.VT_EMPTY);
+        return buffer;
+    }
+
+    /**
+     * Gets the type of the variant
+     *
+     * @param variant The variant
+     * @return The VT_ type
+     */
+    public static int getType(Pointer variant) {
+        return variant.getShort(0) & 0xFFFF;
+    }
+
+    /**
+     * Reads a flag from the variant, and clears it
+     *
+     * @param variant The variant
+     * @return The value
+     * @throws AutomationException The variant does not hold a flag
+     */
+    public static boolean getBoolean(Pointer variant) throws AutomationException {
+        int type = getType(variant);
+
+        if (type == Variant.VT_BOOL) {
+            return variant.getShort(VALUE_OFFSET) != 0;
+        } else if (type == Variant.VT_I4) {
+            return variant.getInt(VALUE_OFFSET) != 0;
+        } else {
+            return unexpected(variant, type, false);
+        }
+    }
+
+    /**
+     * Reads an integer from the variant, and clears it
+     *
+     * @param variant The variant
+     * @return The value
+     * @throws AutomationException The variant does not hold an integer
+     */
+    public static int getInt(Pointer variant) throws AutomationException {
+        int type = getType(variant);
+
+        if (type == Variant.VT_I4 || type == Variant.VT_INT || type == Variant.VT_UI4) {
+            return variant.getInt(VALUE_OFFSET);
+        } else if (type == Variant.VT_I2) {
+            return variant.getShort(VALUE_OFFSET);
+        } else if (type == Variant.VT_BOOL) {
+            return variant.getShort(VALUE_OFFSET) != 0 ? 1 : 0;
+        } else {
+            return unexpected(variant, type, 0);
+        }
+    }
+
+    /**
+     * Reads a number from the variant, and clears it
+     *
+     * @param variant The variant
+     * @return The value
+     * @throws AutomationException The variant does not hold a number
+     */
+    public static double getDouble(Pointer variant) throws AutomationException {
+        int type = getType(variant);
+
+        if (type == Variant.VT_R8) {
+            return variant.getDouble(VALUE_OFFSET);
+        } else if (type == Variant.VT_R4) {
+            return variant.getFloat(VALUE_OFFSET);
+        } else if (type == Variant.VT_I4 || type == Variant.VT_INT) {
+            return variant.getInt(VALUE_OFFSET);
+        } else {
+            return unexpected(variant, type, 0.0);
+        }
+    }
+
+    /**
+     * Reads a string from the variant, and clears it
+     *
+     * @param variant The variant
+     * @return The value
+     * @throws AutomationException The variant does not hold a string
+     */
+    public static String getString(Pointer variant) throws AutomationException {
+        int type = getType(variant);
+
+        if (type == Variant.VT_BSTR) {
+            try {
+                Pointer value = variant.getPointer(VALUE_OFFSET);
+                return value == null ? "" : BSTRUtils.decode(value, false);
+            } finally {
+                clear(variant);
+            }
+        } else {
+            return unexpected(variant, type, "");
+        }
+    }
+
+    /**
+     * Reads a rectangle (an array of left, top, width and height) from the variant,
+     * and clears it
+     *
+     * @param variant The variant
+     * @return The value
+     * @throws AutomationException The variant does not hold a rectangle
+     */
+    public static WinDef.RECT getRect(Pointer variant) throws AutomationException {
+        int type = getType(variant);
+
+        if (type == (Variant.VT_ARRAY | Variant.VT_R8)) {
+            try {
+                Pointer array = variant.getPointer(VALUE_OFFSET);
+                int count = array.getInt(SAFEARRAY_COUNT_OFFSET);
+
+                if (count != 4) {
+                    throw new AutomationException("Expected 4 values for a rectangle, got " + count);
+                }
+
+                Pointer data = array.getPointer(SAFEARRAY_DATA_OFFSET);
+
+                double left = data.getDouble(0);
+                double top = data.getDouble(8);
+                double width = data.getDouble(16);
+                double height = data.getDouble(24);
+
+                WinDef.RECT rect = new WinDef.RECT();
+                rect.left = (int)left;
+                rect.top = (int)top;
+                rect.right = (int)(left + width);
+                rect.bottom = (int)(top + height);
+                return rect;
+            } finally {
+                clear(variant);
+            }
+        } else {
+            return unexpected(variant, type, new WinDef.RECT());
+        }
+    }
+
+    /**
+     * Reads an array of doubles (e.g. a ClickablePoint) from the variant, and clears it
+     *
+     * @param variant The variant
+     * @return The value
+     * @throws AutomationException The variant does not hold an array of doubles
+     */
+    public static double[] getDoubleArray(Pointer variant) throws AutomationException {
+        int type = getType(variant);
+
+        if (type == (Variant.VT_ARRAY | Variant.VT_R8)) {
+            try {
+                Pointer array = variant.getPointer(VALUE_OFFSET);
+                int count = array.getInt(SAFEARRAY_COUNT_OFFSET);
+
+                return array.getPointer(SAFEARRAY_DATA_OFFSET).getDoubleArray(0, count);
+            } finally {
+                clear(variant);
+            }
+        } else {
+            return unexpected(variant, type, new double[0]);
+        }
+    }
+
+    /**
+     * Reads an array of integers (e.g. a RuntimeId) from the variant, and clears it
+     *
+     * @param variant The variant
+     * @return The value
+     * @throws AutomationException The variant does not hold an array of integers
+     */
+    public static int[] getIntArray(Pointer variant) throws AutomationException {
+        int type = getType(variant);
+
+        if (type == (Variant.VT_ARRAY | Variant.VT_I4)) {
+            try {
+                Pointer array = variant.getPointer(VALUE_OFFSET);
+                int count = array.getInt(SAFEARRAY_COUNT_OFFSET);
+
+                return array.getPointer(SAFEARRAY_DATA_OFFSET).getIntArray(0, count);
+            } finally {
+                clear(variant);
+            }
+        } else {
+            return unexpected(variant, type, new int[0]);
+        }
+    }
+
+    /**
+     * Reads whatever the variant holds as a plain Java value, and clears it
+     *
+     * @param variant The variant
+     * @return A Boolean, Integer, Double, String, RECT (for an array of 4 doubles), double[],
+     * or int[], or null if the variant is empty (or holds something else)
+     * @throws AutomationException Failed to read the variant
+     */
+    public static Object getObject(Pointer variant) throws AutomationException {
+        int type = getType(variant);
+
+        if (type == Variant.VT_BOOL) {
+            return getBoolean(variant);
+        } else if (type == Variant.VT_I4 || type == Variant.VT_INT || type == Variant.VT_UI4 || type == Variant.VT_I2) {
+            return getInt(variant);
+        } else if (type == Variant.VT_R8 || type == Variant.VT_R4) {
+            return getDouble(variant);
+        } else if (type == Variant.VT_BSTR) {
+            return getString(variant);
+        } else if (type == (Variant.VT_ARRAY | Variant.VT_R8)) {
+            if (variant.getPointer(VALUE_OFFSET).getInt(SAFEARRAY_COUNT_OFFSET) == 4) {
+                return getRect(variant);
+            } else {
+                return getDoubleArray(variant);
+            }
+        } else if (type == (Variant.VT_ARRAY | Variant.VT_I4)) {
+            return getIntArray(variant);
+        } else {
+            clear(variant);
+            return null;
+        }
+    }
+
+    /**
+     * Clears the variant, releasing whatever it holds. Variants that only hold a
+     * number or a flag are left alone, as there is nothing to release.
+     *
+     * @param variant The variant
+     */
+    public static void clear(Pointer variant) {
+        int type = getType(variant);
+
+        if (type == Variant.VT_BSTR || type == Variant.VT_UNKNOWN || type == Variant.VT_DISPATCH ||
+                (type & Variant.VT_ARRAY) != 0) {
+            OleAut32.INSTANCE.VariantClear(variant);
+        }
+
+        variant.setShort(0, (short)Variant.VT_EMPTY);
+    }
+
+    private static <T> T unexpected(Pointer variant, int type, T empty) throws AutomationException {
+        // Unsupported properties come back as either VT_EMPTY or the 'not supported' IUnknown
+        if (type == Variant.VT_EMPTY || type == Variant.VT_UNKNOWN) {
+            clear(variant);
+            return empty;
+        }
+
+        clear(variant);
+        throw new AutomationException("Unexpected variant type " + type);
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import mmarquee.automation.uiautomation.IUIAutomation;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the dispatcher, with a plain Java apartment in place of the message pump.
+ */
+public class AutomationDispatcherTest {
+
+    private static class FakeApartment implements AutomationDispatcher.Apartment {
+        private final Semaphore wakes = new Semaphore(0);
+        private final AtomicInteger woken = new AtomicInteger();
+        private volatile boolean quit = false;
+        private volatile boolean left = false;
+        private volatile boolean dropWakes = false;
+
+        public void enter() {
+        }
+
+        public boolean await() {
+            this.wakes.acquireUninterruptibly();
+            return !this.quit;
+        }
+
+        public void wake() {
+            this.woken.incrementAndGet();
+
+            // As a modal loop in a task would, by taking the wake message off the queue
+            if (!this.dropWakes) {
+                this.wakes.release();
+            }
+        }
+
+        public void quit() {
+            this.quit = true;
+            this.wakes.release();
+        }
+
+        public void leave() {
+            this.left = true;
+        }
+    }
+
+    private final FakeApartment apartment = new FakeApartment();
+    private final UIAutomation instance = new UIAutomation((IUIAutomation)null);
+    private AutomationDispatcher dispatcher;
+
+    private AutomationDispatcher start() throws AutomationException {
+        this.dispatcher = new AutomationDispatcher(this.apartment, new Callable<UIAutomation>() {
+            public UIAutomation call() {
+                return instance;
+            }
+        });
+
+        return this.dispatcher;
+    }
+
+    @After
+    public void tearDown() {
+        if (this.dispatcher != null) {
+            this.dispatcher.close();
+        }
+    }
+
+    private static final AutomationDispatcher.Task<Thread> CURRENT_THREAD = new AutomationDispatcher.Task<Thread>() {
+        public Thread run(UIAutomation automation) {
+            return Thread.currentThread();
+        }
+    };
+
+    @Test
+    public void test_Tasks_Run_On_The_Dispatcher_Thread() throws Exception {
+        AutomationDispatcher dispatcher = start();
+
+        Thread first = dispatcher.submit(CURRENT_THREAD).get(5, TimeUnit.SECONDS);
+        Thread second = dispatcher.submit(CURRENT_THREAD).get(5, TimeUnit.SECONDS);
+
+        assertSame(first, second);
+        assertEquals("ui-automation-dispatcher", first.getName());
+        assertFalse(dispatcher.isDispatchThread());
+
+        assertSame(instance, dispatcher.invoke(new AutomationDispatcher.Task<UIAutomation>() {
+            public UIAutomation run(UIAutomation automation) {
+                return automation;
+            }
+        }));
+    }
+
+    @Test
+    public void test_Failures_Are_Passed_Back() throws Exception {
+        AutomationDispatcher dispatcher = start();
+
+        CompletableFuture<Object> future = dispatcher.submit(new AutomationDispatcher.Task<Object>() {
+            public Object run(UIAutomation automation) throws AutomationException {
+                throw new ElementNotFoundException();
+            }
+        });
+
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Expected the future to fail");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof ElementNotFoundException);
+        }
+
+        try {
+            dispatcher.invoke(new AutomationDispatcher.Task<Object>() {
+                public Object run(UIAutomation automation) throws AutomationException {
+                    throw new ElementNotFoundException();
+                }
+            });
+            fail("Expected invoke to throw");
+        } catch (ElementNotFoundException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void test_Tasks_Submitted_Together_Share_A_Wake_Up() throws Exception {
+        AutomationDispatcher dispatcher = start();
+
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        dispatcher.submit(new AutomationDispatcher.Task<Object>() {
+            public Object run(UIAutomation automation) throws InterruptedException {
+                running.countDown();
+                release.await();
+                return null;
+            }
+        });
+
+        running.await();
+        int before = apartment.woken.get();
+
+        final List<Integer> order = new ArrayList<Integer>();
+        List<CompletableFuture<Integer>> futures = new ArrayList<CompletableFuture<Integer>>();
+
+        for (int i = 0; i < 100; i++) {
+            final int value = i;
+            futures.add(dispatcher.submit(new AutomationDispatcher.Task<Integer>() {
+                public Integer run(UIAutomation automation) {
+                    order.add(value);
+                    return value;
+                }
+            }));
+        }
+
+        release.countDown();
+
+        for (CompletableFuture<Integer> future : futures) {
+            future.get(5, TimeUnit.SECONDS);
+        }
+
+        assertTrue(apartment.woken.get() - before <= 1);
+        assertEquals(100, order.size());
+        assertEquals(Integer.valueOf(99), order.get(99));
+    }
+
+    @Test
+    public void test_Dropped_Wake_Does_Not_Stop_Later_Tasks() throws Exception {
+        AutomationDispatcher dispatcher = start();
+
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        dispatcher.submit(new AutomationDispatcher.Task<Object>() {
+            public Object run(UIAutomation automation) throws InterruptedException {
+                running.countDown();
+                release.await();
+                return null;
+            }
+        });
+
+        running.await();
+
+        // Wakes the thread while the first task is running, and the wake is lost
+        apartment.dropWakes = true;
+        CompletableFuture<Thread> during = dispatcher.submit(CURRENT_THREAD);
+        apartment.dropWakes = false;
+
+        release.countDown();
+        during.get(5, TimeUnit.SECONDS);
+
+        assertEquals("ui-automation-dispatcher", dispatcher.submit(CURRENT_THREAD).get(5, TimeUnit.SECONDS).getName());
+    }
+
+    @Test
+    public void test_SubmitAll_Keeps_The_Order() throws Exception {
+        AutomationDispatcher dispatcher = start();
+
+        List<AutomationDispatcher.Task<String>> tasks = new ArrayList<AutomationDispatcher.Task<String>>();
+
+        for (final String name : Arrays.asList("a", "b", "c")) {
+            tasks.add(new AutomationDispatcher.Task<String>() {
+                public String run(UIAutomation automation) {
+                    return name;
+                }
+            });
+        }
+
+        assertEquals(Arrays.asList("a", "b", "c"), dispatcher.<String>submitAll(tasks).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void test_Nested_Tasks_Run_Straight_Away() throws Exception {
+        final AutomationDispatcher dispatcher = start();
+
+        Thread thread = dispatcher.submit(new AutomationDispatcher.Task<Thread>() {
+            public Thread run(UIAutomation automation) throws Exception {
+                assertTrue(dispatcher.isDispatchThread());
+
+                // Would deadlock if it were queued
+                return dispatcher.submit(CURRENT_THREAD).get();
+            }
+        }).get(5, TimeUnit.SECONDS);
+
+        assertEquals("ui-automation-dispatcher", thread.getName());
+    }
+
+    @Test
+    public void test_Close_Fails_Later_Tasks() throws Exception {
+        AutomationDispatcher dispatcher = start();
+        dispatcher.close();
+
+        assertTrue(dispatcher.isClosed());
+        assertTrue(apartment.left);
+
+        try {
+            dispatcher.submit(CURRENT_THREAD).get(5, TimeUnit.SECONDS);
+            fail("Expected the future to fail");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test(expected = AutomationException.class)
+    public void test_Failure_To_Start_Is_Reported() throws AutomationException {
+        new AutomationDispatcher(this.apartment, new Callable<UIAutomation>() {
+            public UIAutomation call() {
+                throw new IllegalStateException("No automation");
+            }
+        });
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the lazy element list, using a fake element array.
+ */
+public class AutomationElementListTest {
+
+    /**
+     * Hands out new elements, recording which ones were asked for
+     */
+    private static class FakeSource implements AutomationElementList.Source {
+        private final List<Integer> fetched = new ArrayList<Integer>();
+
+        public AutomationElement get(int index) {
+            this.fetched.add(index);
+            return new AutomationElement(null);
+        }
+    }
+
+    private static class Releaser implements ReferenceCleaner.Cleanable {
+        private int released = 0;
+
+        public void clean() {
+            this.released++;
+        }
+    }
+
+    @Test
+    public void test_Size_Does_Not_Fetch_Elements() {
+        FakeSource source = new FakeSource();
+        AutomationElementList list = new AutomationElementList(5, source, new Releaser());
+
+        assertEquals(5, list.size());
+        assertTrue(source.fetched.isEmpty());
+    }
+
+    @Test
+    public void test_Elements_Are_Fetched_Once_When_Needed() {
+        FakeSource source = new FakeSource();
+        AutomationElementList list = new AutomationElementList(5, source, new Releaser());
+
+        AutomationElement element = list.get(3);
+
+        assertSame(element, list.get(3));
+        assertEquals(1, source.fetched.size());
+        assertEquals(3, source.fetched.get(0).intValue());
+    }
+
+    @Test
+    public void test_Stream_Stops_At_The_First_Match() {
+        FakeSource source = new FakeSource();
+        AutomationElementList list = new AutomationElementList(100, source, new Releaser());
+
+        list.stream().skip(1).findFirst();
+
+        assertEquals(2, source.fetched.size());
+    }
+
+    @Test
+    public void test_Close_Releases_The_Array_Once() {
+        Releaser releaser = new Releaser();
+        AutomationElementList list = new AutomationElementList(2, new FakeSource(), releaser);
+
+        AutomationElement element = list.get(0);
+
+        list.close();
+        list.close();
+
+        assertEquals(1, releaser.released);
+        assertSame(element, list.get(0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void test_Unfetched_Elements_Cannot_Be_Reached_After_Close() {
+        AutomationElementList list = new AutomationElementList(2, new FakeSource(), new Releaser());
+
+        list.close();
+        list.get(1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void test_Index_Out_Of_Range() {
+        AutomationElementList list = new AutomationElementList(2, new FakeSource(), new Releaser());
+
+        list.get(2);
+    }
+}
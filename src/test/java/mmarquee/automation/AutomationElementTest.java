@@ -21,6 +21,7 @@ import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Matchers.isA;
 import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -33,6 +34,7 @@ import org.mockito.Mockito;
 import com.sun.jna.platform.win32.WinDef;
 import com.sun.jna.ptr.PointerByReference;
 
+import mmarquee.automation.uiautomation.IUIAutomationCacheRequest;
 import mmarquee.automation.uiautomation.IUIAutomationElement3;
 import mmarquee.automation.uiautomation.OrientationType;
 import mmarquee.automation.uiautomation.TreeScope;
@@ -357,4 +359,89 @@ public class AutomationElementTest extends BaseAutomationTest {
 
 		verify(mocked, atLeastOnce()).getCurrentIsEnabled(anyObject());
 	}
-}
\ No newline at end of file
+
+	@Test(expected = AutomationException.class)
+	public void test_FindAll_With_CacheRequest_Throws_Exception_When_Element_Returns_Error() throws Exception {
+		IUIAutomationElement3 mocked = Mockito.mock(IUIAutomationElement3.class);
+		IUIAutomationCacheRequest mockedRequest = Mockito.mock(IUIAutomationCacheRequest.class);
+
+		when(mocked.findAllBuildCache(anyObject(), anyObject(), anyObject(), anyObject())).thenReturn(-1);
+
+		AutomationElement element = new AutomationElement(mocked);
+
+		element.findAll(new TreeScope(TreeScope.Descendants), null, new CacheRequest(null, mockedRequest));
+	}
+
+	@Test(expected = AutomationException.class)
+	public void test_BuildUpdatedCache_Throws_Exception_When_Element_Returns_Error() throws Exception {
+		IUIAutomationElement3 mocked = Mockito.mock(IUIAutomationElement3.class);
+		IUIAutomationCacheRequest mockedRequest = Mockito.mock(IUIAutomationCacheRequest.class);
+
+		when(mocked.buildUpdatedCache(anyObject(), anyObject())).thenReturn(-1);
+
+		AutomationElement element = new AutomationElement(mocked);
+
+		element.buildUpdatedCache(new CacheRequest(null, mockedRequest));
+	}
+
+	@Test(expected = PropertyNotCachedException.class)
+	public void test_GetCachedName_Throws_Exception_When_Name_Not_Cached() throws Exception {
+		IUIAutomationElement3 mocked = Mockito.mock(IUIAutomationElement3.class);
+
+		AutomationElement element = new AutomationElement(mocked);
+
+		element.getCachedName();
+	}
+
+	@Test
+	public void test_GetName_Uses_Cache_When_Name_Is_Cached() throws Exception {
+		IUIAutomationElement3 mocked = Mockito.mock(IUIAutomationElement3.class);
+		IUIAutomationCacheRequest mockedRequest = Mockito.mock(IUIAutomationCacheRequest.class);
+
+		when(mocked.getCachedName(anyObject()))
+				.thenAnswer(answerWithSetPointerReferenceToWideString("cachedName"));
+
+		AutomationElement element =
+				new AutomationElement(mocked, new CacheRequest(null, mockedRequest).add(PropertyID.Name));
+
+		assertEquals("cachedName", element.getName());
+		verify(mocked, never()).getCurrentName(anyObject());
+	}
+
+	@Test
+	public void test_GetClassName_Uses_Current_When_ClassName_Not_Cached() throws Exception {
+		IUIAutomationElement3 mocked = Mockito.mock(IUIAutomationElement3.class);
+		IUIAutomationCacheRequest mockedRequest = Mockito.mock(IUIAutomationCacheRequest.class);
+
+		when(mocked.getCurrentClassName(anyObject()))
+				.thenAnswer(answerWithSetPointerReferenceToWideString("currentClass"));
+
+		AutomationElement element =
+				new AutomationElement(mocked, new CacheRequest(null, mockedRequest).add(PropertyID.Name));
+
+		assertEquals("currentClass", element.getClassName());
+		verify(mocked, never()).getCachedClassName(anyObject());
+	}
+
+	@Test
+	public void test_GetName_Uses_Current_When_Only_Children_Are_Cached() throws Exception {
+		IUIAutomationElement3 mocked = Mockito.mock(IUIAutomationElement3.class);
+		IUIAutomationCacheRequest mockedRequest = Mockito.mock(IUIAutomationCacheRequest.class);
+
+		when(mocked.getCurrentName(anyObject()))
+				.thenAnswer(answerWithSetPointerReferenceToWideString("currentName"));
+
+		CacheRequest request = new CacheRequest(null, mockedRequest)
+				.add(PropertyID.Name)
+				.setTreeScope(new TreeScope(TreeScope.Children));
+
+		AutomationElement element = new AutomationElement(mocked, request);
+
+		assertEquals("currentName", element.getName());
+		verify(mocked, never()).getCachedName(anyObject());
+
+		// The children themselves are in the request's scope
+		AutomationElement child = new AutomationElement(mocked, request, false);
+		assertTrue(child.isCached(PropertyID.Name));
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import com.sun.jna.Function;
+import com.sun.jna.Memory;
+import com.sun.jna.Platform;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.Guid;
+import mmarquee.automation.uiautomation.IUIAutomation;
+import mmarquee.automation.uiautomation.IUIAutomationEventHandler;
+import mmarquee.automation.uiautomation.TreeScope;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests for the Java implementation of IUIAutomationEventHandler, called as automation
+ * would call it.
+ *
+ * The COM object's methods are stdcall callbacks, which can only be created on Windows, so
+ * the tests that need the object are skipped elsewhere.
+ */
+public class AutomationEventHandlerTest {
+
+    private static class Recorder implements AutomationEventHandler.Listener {
+        private final List<EventID> events = new ArrayList<EventID>();
+        private final List<AutomationElement> senders = new ArrayList<AutomationElement>();
+
+        public void handleEvent(AutomationElement sender, EventID event) {
+            this.senders.add(sender);
+            this.events.add(event);
+        }
+    }
+
+    /**
+     * Hands the listener a plain element in place of the native sender
+     */
+    private static class FakeHandler extends AutomationEventHandler {
+        private final AutomationElement sender = new AutomationElement(null);
+
+        FakeHandler(Listener listener) {
+            super(listener);
+        }
+
+        @Override
+        AutomationElement getSender(Pointer sender) {
+            return this.sender;
+        }
+    }
+
+    /**
+     * Records the handlers added and removed, in place of registering them with COM
+     */
+    private static class FakeAutomation extends UIAutomation {
+        private final List<AutomationElement> added = new ArrayList<AutomationElement>();
+        private final List<AutomationElement> removed = new ArrayList<AutomationElement>();
+
+        FakeAutomation() {
+            super((IUIAutomation)null);
+        }
+
+        @Override
+        public void addAutomationEventHandler(EventID event, TreeScope scope,
+                                              AutomationElement element, AutomationEventHandler handler) {
+            this.added.add(element);
+        }
+
+        @Override
+        public void removeAutomationEventHandler(EventID event,
+                                                 AutomationElement element, AutomationEventHandler handler) {
+            this.removed.add(element);
+        }
+    }
+
+    private static Memory iid(Guid.GUID guid) {
+        Memory memory = new Memory(16);
+        memory.write(0, guid.toByteArray(), 0, 16);
+        return memory;
+    }
+
+    /**
+     * Calls a method through the COM object's vtable
+     */
+    private static int call(Pointer object, int slot, Object... args) {
+        Object[] all = new Object[args.length + 1];
+        all[0] = object;
+        System.arraycopy(args, 0, all, 1, args.length);
+
+        Pointer method = object.getPointer(0).getPointer((long)slot * Pointer.SIZE);
+        return Function.getFunction(method).invokeInt(all);
+    }
+
+    @Test
+    public void test_QueryInterface_Knows_IUnknown_And_The_Handler() throws Exception {
+        assumeTrue(Platform.isWindows());
+
+        AutomationEventHandler handler = new FakeHandler(new Recorder());
+        Pointer object = handler.getPointer();
+        Memory result = new Memory(Pointer.SIZE);
+
+        assertEquals(0, call(object, 0, iid(IUIAutomationEventHandler.IID), result));
+        assertEquals(object, result.getPointer(0));
+
+        assertEquals(0, call(object, 0, iid(new Guid.IID("{00000000-0000-0000-C000-000000000046}")), result));
+        assertEquals(object, result.getPointer(0));
+
+        assertEquals(0x80004002, call(object, 0, iid(new Guid.IID("{00000003-0000-0000-C000-000000000046}")), result));
+        assertNull(result.getPointer(0));
+
+        // The handler's own reference, and one for each successful QueryInterface
+        assertEquals(3, handler.getReferenceCount());
+    }
+
+    @Test
+    public void test_References_Are_Counted() throws Exception {
+        assumeTrue(Platform.isWindows());
+
+        AutomationEventHandler handler = new FakeHandler(new Recorder());
+        Pointer object = handler.getPointer();
+
+        assertEquals(2, call(object, 1));
+        assertEquals(1, call(object, 2));
+
+        handler.close();
+        handler.close();
+
+        assertEquals(0, handler.getReferenceCount());
+
+        // Still the same object, so that it can be removed once it has been closed
+        assertSame(object, handler.getPointer());
+    }
+
+    @Test(expected = AutomationException.class)
+    public void test_Closed_Handler_Cannot_Be_Registered() throws Exception {
+        assumeTrue(Platform.isWindows());
+
+        AutomationEventHandler handler = new FakeHandler(new Recorder());
+        handler.close();
+        handler.getPointer();
+    }
+
+    @Test
+    public void test_Events_Are_Passed_To_The_Listener() throws Exception {
+        assumeTrue(Platform.isWindows());
+
+        Recorder recorder = new Recorder();
+        FakeHandler handler = new FakeHandler(recorder);
+        Pointer object = handler.getPointer();
+
+        assertEquals(0, call(object, 3, Pointer.createConstant(1), EventID.Window_WindowOpened.getValue()));
+        assertEquals(0, handler.handleAutomationEvent(Pointer.createConstant(1), EventID.MenuOpened.getValue()));
+
+        // Unknown events, and events without a sender, are ignored
+        assertEquals(0, handler.handleAutomationEvent(Pointer.createConstant(1), 12345));
+        assertEquals(0, handler.handleAutomationEvent(null, EventID.MenuClosed.getValue()));
+
+        assertEquals(2, recorder.events.size());
+        assertEquals(EventID.Window_WindowOpened, recorder.events.get(0));
+        assertEquals(EventID.MenuOpened, recorder.events.get(1));
+        assertSame(handler.sender, recorder.senders.get(0));
+    }
+
+    @Test
+    public void test_Listener_Failures_Are_Not_Passed_To_Automation() throws Exception {
+        FakeHandler handler = new FakeHandler(new AutomationEventHandler.Listener() {
+            public void handleEvent(AutomationElement sender, EventID event) {
+                throw new IllegalStateException("Listener failed");
+            }
+        });
+
+        assertEquals(0, handler.handleAutomationEvent(Pointer.createConstant(1), EventID.Invoke_Invoked.getValue()));
+    }
+
+    @Test
+    public void test_Element_Created_Directly_Uses_The_Thread_Instance() throws Exception {
+        FakeAutomation automation = new FakeAutomation();
+        AutomationElement element = new AutomationElement(null);
+        FakeHandler handler = new FakeHandler(new Recorder());
+
+        UIAutomation.setThreadInstance(automation);
+
+        try {
+            element.addAutomationEventHandler(EventID.MenuOpened, new TreeScope(TreeScope.Subtree), handler);
+            element.removeAutomationEventHandler(EventID.MenuOpened, handler);
+        } finally {
+            UIAutomation.setThreadInstance(null);
+        }
+
+        assertEquals(1, automation.added.size());
+        assertSame(element, automation.added.get(0));
+        assertEquals(1, automation.removed.size());
+        assertSame(element, automation.removed.get(0));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for building and searching a snapshot, using fake cached elements.
+ */
+public class AutomationSnapshotTest {
+
+    private static FakeElement fake(String name, String automationId, ControlType controlType, FakeElement... children) {
+        return new FakeElement(name, controlType, children).with(PropertyID.AutomationId, automationId);
+    }
+
+    private static final List<PropertyID> PROPERTIES = Arrays.asList(
+            PropertyID.Name, PropertyID.AutomationId, PropertyID.ControlType,
+            PropertyID.IsInvokePatternAvailable, PropertyID.IsValuePatternAvailable);
+
+    private final FakeElement ok = fake("OK", "okButton", ControlType.Button)
+            .with(PropertyID.IsInvokePatternAvailable, true)
+            .with(PropertyID.IsValuePatternAvailable, false);
+    private final FakeElement cancel = fake("Cancel", "cancelButton", ControlType.Button);
+    private final FakeElement user = fake("User", "userEdit", ControlType.Edit)
+            .with(PropertyID.IsValuePatternAvailable, true);
+    private final FakeElement panel = fake("Buttons", "buttons", ControlType.Pane, ok, cancel);
+    private final FakeElement window = fake("Login", "login", ControlType.Window, user, panel);
+
+    @Test
+    public void test_Nodes_Are_In_Document_Order() throws AutomationException {
+        AutomationSnapshot snapshot = AutomationSnapshot.capture(window, null, PROPERTIES, false);
+
+        List<String> names = new ArrayList<String>();
+
+        for (AutomationSnapshot.Node node : snapshot.getNodes()) {
+            names.add(node.getName());
+        }
+
+        assertEquals(Arrays.asList("Login", "User", "Buttons", "OK", "Cancel"), names);
+        assertEquals(5, snapshot.size());
+        assertEquals("Login", snapshot.getRoot().getName());
+        assertEquals(2, snapshot.getRoot().getChildren().size());
+        assertEquals(2, snapshot.findFirst(PropertyID.Name, "OK").getDepth());
+    }
+
+    @Test
+    public void test_Find_By_Name_AutomationId_And_ControlType() throws AutomationException {
+        AutomationSnapshot snapshot = AutomationSnapshot.capture(window, null, PROPERTIES, false);
+
+        assertEquals("okButton", snapshot.findByName("OK").get(0).getAutomationId());
+        assertEquals("Cancel", snapshot.findByAutomationId("cancelButton").get(0).getName());
+        assertEquals(2, snapshot.findByControlType(ControlType.Button).size());
+        assertEquals(Integer.valueOf(ControlType.Edit.getValue()), snapshot.findByName("User").get(0).getControlType());
+        assertTrue(snapshot.findByName("Missing").isEmpty());
+        assertNull(snapshot.findFirst(PropertyID.Name, "Missing"));
+    }
+
+    @Test
+    public void test_Pattern_Availability_Is_Captured() throws AutomationException {
+        AutomationSnapshot snapshot = AutomationSnapshot.capture(window, null, PROPERTIES, false);
+
+        assertEquals(PatternSet.of(PatternID.Invoke), snapshot.findByName("OK").get(0).getPatterns());
+        assertEquals(PatternSet.of(PatternID.Value), snapshot.findByName("User").get(0).getPatterns());
+        assertTrue(snapshot.findByName("Cancel").get(0).getPatterns().isEmpty());
+    }
+
+    @Test
+    public void test_Elements_Are_Released_Unless_Kept() throws AutomationException {
+        AutomationSnapshot snapshot = AutomationSnapshot.capture(window, null, PROPERTIES, false);
+
+        assertTrue(ok.closed);
+        assertTrue(window.closed);
+        assertNull(snapshot.getRoot().getElement());
+    }
+
+    @Test
+    public void test_Live_Elements_Are_Kept_Until_Closed() throws AutomationException {
+        AutomationSnapshot snapshot = AutomationSnapshot.capture(window, null, PROPERTIES, true);
+
+        assertSame(ok, snapshot.findByName("OK").get(0).getElement());
+        assertFalse(ok.closed);
+
+        snapshot.close();
+
+        assertTrue(ok.closed);
+        assertNull(snapshot.findByName("OK").get(0).getElement());
+        assertEquals("okButton", snapshot.findByName("OK").get(0).getAutomationId());
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for finding a descendant with the tree walker, using a fake tree.
+ */
+public class AutomationTreeWalkerTest {
+
+    /**
+     * Walks a tree of elements held in memory
+     */
+    private static class FakeWalker extends AutomationTreeWalker {
+        private final Map<AutomationElement, List<AutomationElement>> children =
+                new HashMap<AutomationElement, List<AutomationElement>>();
+        private final Map<AutomationElement, AutomationElement> parents =
+                new HashMap<AutomationElement, AutomationElement>();
+        private final Map<AutomationElement, AutomationElement> rawParents =
+                new HashMap<AutomationElement, AutomationElement>();
+        private int fetched = 0;
+        private int cached = 0;
+
+        FakeWalker() {
+            super(null);
+        }
+
+        void add(AutomationElement parent, AutomationElement... elements) {
+            this.view(parent, elements);
+
+            for (AutomationElement element : elements) {
+                this.rawParents.put(element, parent);
+            }
+        }
+
+        /**
+         * Arranges the elements under the parent in the walker's view only, as a walker
+         * with a condition sees them
+         */
+        void view(AutomationElement parent, AutomationElement... elements) {
+            this.children.put(parent, Arrays.asList(elements));
+
+            for (AutomationElement element : elements) {
+                this.parents.put(element, parent);
+            }
+        }
+
+        @Override
+        boolean isWithin(AutomationElement element, AutomationElement root) {
+            for (AutomationElement parent = this.rawParents.get(element); parent != null;
+                 parent = this.rawParents.get(parent)) {
+                if (parent == root) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public AutomationElement getFirstChildElement(AutomationElement element) {
+            this.fetched++;
+            List<AutomationElement> list = this.children.get(element);
+            return list == null ? null : list.get(0);
+        }
+
+        @Override
+        public AutomationElement getFirstChildElement(AutomationElement element, CacheRequest cacheRequest) {
+            this.cached++;
+            return this.getFirstChildElement(element);
+        }
+
+        @Override
+        public AutomationElement getNextSiblingElement(AutomationElement element, CacheRequest cacheRequest) {
+            this.cached++;
+            return this.getNextSiblingElement(element);
+        }
+
+        @Override
+        public AutomationElement getNextSiblingElement(AutomationElement element) {
+            this.fetched++;
+            List<AutomationElement> list = this.children.get(this.parents.get(element));
+            int index = list.indexOf(element) + 1;
+            return index < list.size() ? list.get(index) : null;
+        }
+    }
+
+    /**
+     * An element that remembers whether it has been closed
+     */
+    private static class FakeElement extends AutomationElement {
+        private boolean closed = false;
+
+        FakeElement() {
+            super(null);
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+    }
+
+    private static FakeElement element() {
+        return new FakeElement();
+    }
+
+    @Test
+    public void test_Descendants_Are_Found_In_Document_Order() throws AutomationException {
+        FakeWalker walker = new FakeWalker();
+
+        AutomationElement root = element();
+        AutomationElement a = element();
+        AutomationElement a1 = element();
+        AutomationElement a2 = element();
+        AutomationElement b = element();
+        AutomationElement b1 = element();
+
+        walker.add(root, a, b);
+        walker.add(a, a1, a2);
+        walker.add(b, b1);
+
+        List<AutomationElement> order = new ArrayList<AutomationElement>(Arrays.asList(a, a1, a2, b, b1));
+
+        for (int index = 0; index < order.size(); index++) {
+            assertSame(order.get(index), walker.getDescendant(root, index));
+        }
+
+        assertNull(walker.getDescendant(root, order.size()));
+    }
+
+    @Test
+    public void test_Elements_Passed_On_The_Way_Are_Released() throws AutomationException {
+        FakeWalker walker = new FakeWalker();
+
+        FakeElement root = element();
+        FakeElement a = element();
+        FakeElement a1 = element();
+        FakeElement b = element();
+
+        walker.add(root, a, b);
+        walker.add(a, a1);
+
+        AutomationElement found = walker.getDescendant(root, 2);
+
+        assertSame(b, found);
+        assertFalse(b.closed);
+        assertTrue(a.closed);
+        assertTrue(a1.closed);
+        assertFalse(root.closed);
+    }
+
+    /**
+     * desktop
+     *   root
+     *     panel
+     *       a
+     *     b
+     *   other
+     *     x
+     *
+     * where only a, b and x match the walker's condition, so in its view they are all
+     * children of the desktop
+     */
+    @Test
+    public void test_Matches_Outside_The_Root_Are_Not_Counted() throws AutomationException {
+        FakeWalker walker = new FakeWalker();
+
+        FakeElement desktop = element();
+        FakeElement root = element();
+        FakeElement panel = element();
+        FakeElement a = element();
+        FakeElement b = element();
+        FakeElement other = element();
+        FakeElement x = element();
+
+        walker.add(desktop, root, other);
+        walker.add(root, panel, b);
+        walker.add(panel, a);
+        walker.add(other, x);
+
+        // The first match below the root, which the walker's view has as a sibling of the others
+        walker.view(root, a);
+        walker.view(desktop, a, b, x);
+
+        assertSame(a, walker.getDescendant(root, 0));
+        assertSame(b, walker.getDescendant(root, 1));
+
+        assertNull(walker.getDescendant(root, 2));
+        assertTrue(x.closed);
+    }
+
+    /**
+     * root
+     *   a
+     *     a1
+     *       a11
+     *     a2
+     *   b
+     *     b1
+     */
+    private static class Tree {
+        final FakeWalker walker = new FakeWalker();
+        final AutomationElement root = element();
+        final AutomationElement a = element();
+        final AutomationElement a1 = element();
+        final AutomationElement a11 = element();
+        final AutomationElement a2 = element();
+        final AutomationElement b = element();
+        final AutomationElement b1 = element();
+
+        Tree() {
+            walker.add(root, a, b);
+            walker.add(a, a1, a2);
+            walker.add(a1, a11);
+            walker.add(b, b1);
+        }
+
+        List<AutomationElement> walk(AutomationTreeWalker.TraversalOrder order,
+                                     int maxDepth,
+                                     AutomationTreeWalker.AutomationElementPruner pruner) {
+            return walker.stream(root, order, maxDepth, pruner).collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void test_Stream_Depth_First() {
+        Tree tree = new Tree();
+
+        assertEquals(Arrays.asList(tree.a, tree.a1, tree.a11, tree.a2, tree.b, tree.b1),
+                tree.walker.stream(tree.root).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void test_Stream_Breadth_First() {
+        Tree tree = new Tree();
+
+        assertEquals(Arrays.asList(tree.a, tree.b, tree.a1, tree.a2, tree.b1, tree.a11),
+                tree.walk(AutomationTreeWalker.TraversalOrder.BreadthFirst, Integer.MAX_VALUE, null));
+    }
+
+    @Test
+    public void test_Stream_Stops_At_The_Max_Depth() {
+        Tree tree = new Tree();
+
+        assertEquals(Arrays.asList(tree.a, tree.a1, tree.a2, tree.b, tree.b1),
+                tree.walk(AutomationTreeWalker.TraversalOrder.DepthFirst, 2, null));
+        assertEquals(Arrays.asList(tree.a, tree.b),
+                tree.walk(AutomationTreeWalker.TraversalOrder.BreadthFirst, 1, null));
+        assertTrue(tree.walk(AutomationTreeWalker.TraversalOrder.DepthFirst, 0, null).isEmpty());
+    }
+
+    @Test
+    public void test_Stream_Skips_Pruned_Subtrees() {
+        final Tree tree = new Tree();
+
+        AutomationTreeWalker.AutomationElementPruner pruner = new AutomationTreeWalker.AutomationElementPruner() {
+            public boolean prune(AutomationElement element, int depth) {
+                return element == tree.a1;
+            }
+        };
+
+        assertEquals(Arrays.asList(tree.a, tree.a1, tree.a2, tree.b, tree.b1),
+                tree.walk(AutomationTreeWalker.TraversalOrder.DepthFirst, Integer.MAX_VALUE, pruner));
+        assertEquals(Arrays.asList(tree.a, tree.b, tree.a1, tree.a2, tree.b1),
+                tree.walk(AutomationTreeWalker.TraversalOrder.BreadthFirst, Integer.MAX_VALUE, pruner));
+    }
+
+    @Test
+    public void test_Stream_Short_Circuits() {
+        Tree tree = new Tree();
+
+        assertSame(tree.a, tree.walker.stream(tree.root).findFirst().get());
+        assertEquals(1, tree.walker.fetched);
+    }
+
+    @Test
+    public void test_Stream_Fetches_The_Cache_Request_With_Each_Step() {
+        Tree tree = new Tree();
+
+        List<AutomationElement> elements = tree.walker.stream(tree.root,
+                AutomationTreeWalker.TraversalOrder.DepthFirst, Integer.MAX_VALUE, null,
+                new CacheRequest(null, null)).collect(Collectors.toList());
+
+        assertEquals(6, elements.size());
+        assertEquals(tree.walker.fetched, tree.walker.cached);
+    }
+}
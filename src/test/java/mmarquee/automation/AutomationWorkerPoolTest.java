@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.WinDef;
+import mmarquee.automation.uiautomation.IUIAutomation;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the worker pool, with fake automation instances in place of COM.
+ */
+public class AutomationWorkerPoolTest {
+
+    /**
+     * An element that remembers whether it has been closed
+     */
+    private static class FakeWindow extends AutomationElement {
+        private final long handle;
+        private boolean closed = false;
+
+        FakeWindow(long handle) {
+            super(null);
+            this.handle = handle;
+        }
+
+        @Override
+        public void close() {
+            this.closed = true;
+        }
+    }
+
+    /**
+     * Finds a fake window for each handle, apart from the ones that have 'closed'
+     */
+    private static class FakeAutomation extends UIAutomation {
+        private final Set<Long> missing;
+        private final List<FakeWindow> found = Collections.synchronizedList(new ArrayList<FakeWindow>());
+
+        FakeAutomation(Long... missing) {
+            super((IUIAutomation)null);
+            this.missing = new HashSet<Long>(Arrays.asList(missing));
+        }
+
+        @Override
+        public AutomationElement getElementFromHandle(WinDef.HWND hwnd) throws AutomationException {
+            long handle = Pointer.nativeValue(hwnd.getPointer());
+
+            if (this.missing.contains(handle)) {
+                throw new AutomationException();
+            }
+
+            FakeWindow window = new FakeWindow(handle);
+            this.found.add(window);
+            return window;
+        }
+    }
+
+    private static class FakeWorker implements AutomationWorkerPool.Worker {
+        private final AtomicInteger entered = new AtomicInteger();
+        private final AtomicInteger left = new AtomicInteger();
+        private final Long[] missing;
+
+        FakeWorker(Long... missing) {
+            this.missing = missing;
+        }
+
+        public UIAutomation enter() {
+            this.entered.incrementAndGet();
+            return new FakeAutomation(this.missing);
+        }
+
+        public void leave() {
+            this.left.incrementAndGet();
+        }
+    }
+
+    private AutomationWorkerPool pool;
+
+    @After
+    public void tearDown() {
+        if (this.pool != null) {
+            this.pool.close();
+        }
+    }
+
+    @Test
+    public void test_Each_Thread_Has_Its_Own_Instance() throws Exception {
+        FakeWorker worker = new FakeWorker();
+        this.pool = new AutomationWorkerPool(3, worker);
+
+        final CountDownLatch together = new CountDownLatch(3);
+        List<AutomationDispatcher.Task<UIAutomation>> tasks = new ArrayList<AutomationDispatcher.Task<UIAutomation>>();
+
+        for (int i = 0; i < 3; i++) {
+            tasks.add(new AutomationDispatcher.Task<UIAutomation>() {
+                public UIAutomation run(UIAutomation automation) throws InterruptedException {
+                    // Only returns once all three are running at once
+                    together.countDown();
+                    assertTrue(together.await(5, TimeUnit.SECONDS));
+                    return automation;
+                }
+            });
+        }
+
+        List<UIAutomation> instances = this.pool.invokeAll(tasks);
+
+        assertEquals(3, new HashSet<UIAutomation>(instances).size());
+        assertEquals(3, worker.entered.get());
+        assertEquals(3, this.pool.getThreadCount());
+
+        this.pool.close();
+
+        assertEquals(3, worker.left.get());
+    }
+
+    @Test
+    public void test_getInstance_Returns_The_Worker_Instance() throws Exception {
+        this.pool = new AutomationWorkerPool(1, new FakeWorker());
+
+        assertTrue(this.pool.invokeAll(Collections.singletonList(new AutomationDispatcher.Task<Boolean>() {
+            public Boolean run(UIAutomation automation) {
+                return UIAutomation.getInstance() == automation;
+            }
+        })).get(0));
+    }
+
+    @Test
+    public void test_Windows_Are_Searched_And_Merged_In_Order() throws Exception {
+        this.pool = new AutomationWorkerPool(4, new FakeWorker(3L));
+
+        List<WinDef.HWND> handles = new ArrayList<WinDef.HWND>();
+
+        for (long handle = 1; handle <= 6; handle++) {
+            handles.add(new WinDef.HWND(Pointer.createConstant(handle)));
+        }
+
+        final List<FakeWindow> windows = Collections.synchronizedList(new ArrayList<FakeWindow>());
+
+        List<String> results = new FakeAutomation().forEachWindow(this.pool, handles,
+                new UIAutomation.WindowTask<String>() {
+                    public List<String> run(UIAutomation automation, AutomationElement window) {
+                        FakeWindow fake = (FakeWindow)window;
+                        windows.add(fake);
+                        return Arrays.asList(fake.handle + "a", fake.handle + "b");
+                    }
+                });
+
+        // Window 3 has closed, so is left out
+        assertEquals(Arrays.asList("1a", "1b", "2a", "2b", "4a", "4b", "5a", "5b", "6a", "6b"), results);
+        assertEquals(5, windows.size());
+
+        for (FakeWindow window : windows) {
+            assertTrue(window.closed);
+        }
+    }
+
+    @Test
+    public void test_Failures_Are_Passed_Back() throws Exception {
+        this.pool = new AutomationWorkerPool(2, new FakeWorker());
+
+        try {
+            this.pool.invokeAll(Arrays.asList(new AutomationDispatcher.Task<Object>() {
+                public Object run(UIAutomation automation) throws AutomationException {
+                    throw new ElementNotFoundException();
+                }
+            }));
+            fail("Expected invokeAll to throw");
+        } catch (ElementNotFoundException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void test_Failure_To_Start_A_Worker_Fails_Its_Tasks() throws Exception {
+        this.pool = new AutomationWorkerPool(1, new AutomationWorkerPool.Worker() {
+            public UIAutomation enter() {
+                throw new IllegalStateException("No COM");
+            }
+
+            public void leave() {
+            }
+        });
+
+        try {
+            this.pool.submit(new AutomationDispatcher.Task<Object>() {
+                public Object run(UIAutomation automation) {
+                    return automation;
+                }
+            }).get(5, TimeUnit.SECONDS);
+            fail("Expected the task to fail");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof AutomationException);
+        }
+    }
+
+    @Test
+    public void test_Closed_Pool_Rejects_Tasks() throws Exception {
+        this.pool = new AutomationWorkerPool(1, new FakeWorker());
+        this.pool.close();
+
+        try {
+            this.pool.submit(new AutomationDispatcher.Task<Object>() {
+                public Object run(UIAutomation automation) {
+                    return automation;
+                }
+            }).get(5, TimeUnit.SECONDS);
+            fail("Expected the task to fail");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+    }
+}
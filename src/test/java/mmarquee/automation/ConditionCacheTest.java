@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import com.sun.jna.Pointer;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for the condition cache, using fake conditions.
+ */
+public class ConditionCacheTest {
+
+    private static class Counter implements ConditionCache.References {
+        private final Map<Long, Integer> counts = new HashMap<Long, Integer>();
+
+        public void addRef(Pointer condition) {
+            this.counts.put(Pointer.nativeValue(condition), this.count(condition) + 1);
+        }
+
+        public void release(Pointer condition) {
+            this.counts.put(Pointer.nativeValue(condition), this.count(condition) - 1);
+        }
+
+        int count(Pointer condition) {
+            Integer count = this.counts.get(Pointer.nativeValue(condition));
+            return count == null ? 0 : count;
+        }
+    }
+
+    private static class Creator implements ConditionCache.Factory {
+        private int created = 0;
+
+        public Pointer create() {
+            this.created++;
+            return new Pointer(0x1000 + this.created);
+        }
+    }
+
+    @Test
+    public void test_Hit_Returns_The_Same_Condition_With_A_Reference() throws AutomationException {
+        Counter counter = new Counter();
+        Creator creator = new Creator();
+        ConditionCache cache = new ConditionCache(4, counter);
+
+        Pointer first = cache.get(ConditionCache.Key.property(PropertyID.Name, "OK"), creator);
+        Pointer second = cache.get(ConditionCache.Key.property(PropertyID.Name, "OK"), creator);
+
+        assertEquals(first, second);
+        assertEquals(1, creator.created);
+        assertEquals(2, counter.count(first));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void test_Least_Recently_Used_Condition_Is_Evicted_And_Released() throws AutomationException {
+        Counter counter = new Counter();
+        Creator creator = new Creator();
+        ConditionCache cache = new ConditionCache(2, counter);
+
+        Pointer a = cache.get(ConditionCache.Key.property(PropertyID.Name, "A"), creator);
+        Pointer b = cache.get(ConditionCache.Key.property(PropertyID.Name, "B"), creator);
+        cache.get(ConditionCache.Key.property(PropertyID.Name, "A"), creator);
+        Pointer c = cache.get(ConditionCache.Key.property(PropertyID.Name, "C"), creator);
+
+        assertEquals(2, cache.size());
+        assertEquals(0, counter.count(b));
+        assertNull(cache.keyOf(b));
+        assertEquals(ConditionCache.Key.property(PropertyID.Name, "A"), cache.keyOf(a));
+        assertEquals(ConditionCache.Key.property(PropertyID.Name, "C"), cache.keyOf(c));
+    }
+
+    @Test
+    public void test_Composite_Keys_Are_Structural() throws AutomationException {
+        ConditionCache.Key name = ConditionCache.Key.property(PropertyID.Name, "OK");
+        ConditionCache.Key type = ConditionCache.Key.property(PropertyID.ControlType, ControlType.Button.getValue());
+
+        assertEquals(ConditionCache.Key.and(name, type), ConditionCache.Key.and(name, type));
+        assertEquals(ConditionCache.Key.and(name, type).hashCode(), ConditionCache.Key.and(name, type).hashCode());
+        assertNotSame(ConditionCache.Key.and(name, type), ConditionCache.Key.or(name, type));
+        assertEquals(false, ConditionCache.Key.and(name, type).equals(ConditionCache.Key.or(name, type)));
+        assertEquals(false, ConditionCache.Key.and(name, type).equals(ConditionCache.Key.and(type, name)));
+    }
+
+    @Test
+    public void test_Clear_Releases_The_Cached_Conditions() throws AutomationException {
+        Counter counter = new Counter();
+        ConditionCache cache = new ConditionCache(4, counter);
+
+        Pointer condition = cache.get(ConditionCache.Key.property(PropertyID.Name, "OK"), new Creator());
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals(0, counter.count(condition));
+        assertNull(cache.keyOf(condition));
+    }
+
+    @Test
+    public void test_Zero_Capacity_Caches_Nothing() throws AutomationException {
+        Counter counter = new Counter();
+        Creator creator = new Creator();
+        ConditionCache cache = new ConditionCache(0, counter);
+
+        Pointer first = cache.get(ConditionCache.Key.property(PropertyID.Name, "OK"), creator);
+        Pointer second = cache.get(ConditionCache.Key.property(PropertyID.Name, "OK"), creator);
+
+        assertEquals(2, creator.created);
+        assertEquals(0, cache.size());
+        assertEquals(0, counter.count(first));
+        assertSame(null, cache.keyOf(second));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for waiting on events, with the events signalled by hand.
+ */
+public class EventWaitTest {
+
+    @Test
+    public void test_Result_Is_Returned_Straight_Away() throws Exception {
+        EventWait wait = new EventWait();
+
+        assertFalse(wait.isListening());
+        assertEquals("found", wait.until(new EventWait.Probe<String>() {
+            public String probe() {
+                return "found";
+            }
+        }, 0));
+    }
+
+    @Test
+    public void test_Event_Wakes_The_Wait() throws Exception {
+        final EventWait wait = new EventWait();
+        final AtomicInteger probes = new AtomicInteger();
+        final boolean[] ready = new boolean[1];
+
+        Thread raiser = new Thread(new Runnable() {
+            public void run() {
+                // Until the wait has settled into its longest interval
+                while (probes.get() < 7) {
+                    Thread.yield();
+                }
+
+                synchronized (ready) {
+                    ready[0] = true;
+                }
+
+                wait.signal();
+            }
+        });
+
+        raiser.start();
+
+        long start = System.currentTimeMillis();
+
+        String result = wait.until(new EventWait.Probe<String>() {
+            public String probe() {
+                probes.incrementAndGet();
+
+                synchronized (ready) {
+                    return ready[0] ? "opened" : null;
+                }
+            }
+        }, 60000);
+
+        raiser.join();
+
+        assertEquals("opened", result);
+        assertTrue(System.currentTimeMillis() - start < 30000);
+    }
+
+    @Test
+    public void test_Signalled_Once_An_Event_Is_Seen() throws Exception {
+        EventWait wait = new EventWait();
+
+        assertFalse(wait.isSignalled());
+
+        wait.signal();
+
+        assertTrue(wait.isSignalled());
+    }
+
+    @Test
+    public void test_Polling_Backs_Off_Until_The_Time_Runs_Out() throws Exception {
+        EventWait wait = new EventWait();
+        final AtomicInteger probes = new AtomicInteger();
+
+        try {
+            wait.until(new EventWait.Probe<Object>() {
+                public Object probe() {
+                    probes.incrementAndGet();
+                    return null;
+                }
+            }, 1000);
+            fail("Expected the wait to time out");
+        } catch (ElementNotFoundException ex) {
+            // expected
+        }
+
+        // 10, 20, 40, 80, 160, then every 250ms, rather than every 10ms
+        assertTrue(probes.get() >= 3);
+        assertTrue(probes.get() <= 12);
+    }
+
+    @Test
+    public void test_Interrupt_Abandons_The_Wait() throws Exception {
+        EventWait wait = new EventWait();
+        Thread.currentThread().interrupt();
+
+        try {
+            wait.until(new EventWait.Probe<Object>() {
+                public Object probe() {
+                    return null;
+                }
+            }, 60000);
+            fail("Expected the wait to be abandoned");
+        } catch (ElementNotFoundException ex) {
+            fail("Expected the wait to be interrupted");
+        } catch (AutomationException ex) {
+            assertTrue(Thread.interrupted());
+        }
+    }
+}
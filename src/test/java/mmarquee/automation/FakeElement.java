@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An element with fixed properties and cached children, in place of COM, which remembers
+ * whether it has been closed. Shared by the snapshot and exporter tests.
+ */
+class FakeElement extends AutomationElement {
+    private final Map<PropertyID, Object> properties = new EnumMap<PropertyID, Object>(PropertyID.class);
+    final List<AutomationElement> children = new ArrayList<AutomationElement>();
+    FakeElement parent;
+    boolean closed = false;
+
+    FakeElement(String name, ControlType controlType, FakeElement... children) {
+        super(null);
+        this.properties.put(PropertyID.Name, name);
+        this.properties.put(PropertyID.ControlType, controlType.getValue());
+        this.children.addAll(Arrays.asList(children));
+
+        for (FakeElement child : children) {
+            child.parent = this;
+        }
+    }
+
+    FakeElement with(PropertyID property, Object value) {
+        this.properties.put(property, value);
+        return this;
+    }
+
+    @Override
+    public Object getProperty(PropertyID property) {
+        return this.properties.get(property);
+    }
+
+    @Override
+    public List<AutomationElement> getCachedChildren(CacheRequest cacheRequest) {
+        return this.children;
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import org.junit.Test;
+
+import java.util.EnumSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the pattern bitmap.
+ */
+public class PatternSetTest {
+
+    @Test
+    public void test_None_Is_Empty() {
+        assertTrue(PatternSet.none().isEmpty());
+        assertEquals(0, PatternSet.none().size());
+        assertFalse(PatternSet.none().contains(PatternID.Invoke));
+    }
+
+    @Test
+    public void test_Of_Contains_Only_The_Given_Patterns() {
+        PatternSet patterns = PatternSet.of(PatternID.Value, PatternID.CustomNavigation);
+
+        assertTrue(patterns.contains(PatternID.Value));
+        assertTrue(patterns.contains(PatternID.CustomNavigation));
+        assertFalse(patterns.contains(PatternID.Invoke));
+        assertEquals(2, patterns.size());
+        assertEquals(EnumSet.of(PatternID.Value, PatternID.CustomNavigation), patterns.toSet());
+    }
+
+    @Test
+    public void test_With_Adds_A_Pattern() {
+        PatternSet patterns = PatternSet.none().with(PatternID.Grid);
+
+        assertTrue(patterns.contains(PatternID.Grid));
+        assertEquals(PatternSet.of(PatternID.Grid), patterns);
+        assertTrue(PatternSet.none().isEmpty());
+    }
+
+    @Test
+    public void test_All_Holds_The_Patterns_With_Availability_Properties() {
+        PatternSet all = PatternSet.all();
+
+        assertEquals(PatternSet.getAvailabilityProperties().size(), all.size());
+        assertTrue(all.contains(PatternID.ItemContainer));
+        assertFalse(all.contains(PatternID.LegacyIAccessible));
+    }
+
+    @Test
+    public void test_Availability_Property() {
+        assertEquals(PropertyID.IsWindowPatternAvailable, PatternSet.getAvailabilityProperty(PatternID.Window));
+        assertEquals(PropertyID.IsItemContainerPatternAvailablePropertyId,
+                PatternSet.getAvailabilityProperty(PatternID.ItemContainer));
+        assertNull(PatternSet.getAvailabilityProperty(PatternID.Drag));
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import org.junit.Test;
+
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for splitting queries into native conditions and left over tests.
+ */
+public class QueryCompilerTest {
+
+    private static final Predicate<Object> ANYTHING = new Predicate<Object>() {
+        @Override
+        public boolean test(Object value) {
+            return true;
+        }
+    };
+
+    @Test
+    public void test_Property_Comparisons_Are_Native() {
+        QueryCompiler.Plan plan = QueryCompiler.plan(
+                Query.and(Query.controlType(ControlType.Edit), Query.className("PasswordBox")));
+
+        assertEquals("and(ControlType == " + ControlType.Edit.getValue() + ", ClassName == \"PasswordBox\")",
+                plan.getNativePart().toString());
+        assertNull(plan.getResidual());
+    }
+
+    @Test
+    public void test_Where_Is_Left_Over_From_And() {
+        QueryCompiler.Plan plan = QueryCompiler.plan(
+                Query.and(Query.name("OK"), Query.where(PropertyID.HelpText, ANYTHING), Query.automationId("ID")));
+
+        assertEquals("and(Name == \"OK\", AutomationId == \"ID\")", plan.getNativePart().toString());
+        assertEquals("where(HelpText)", plan.getResidual().toString());
+    }
+
+    @Test
+    public void test_Nested_And_Is_Flattened() {
+        QueryCompiler.Plan plan = QueryCompiler.plan(
+                Query.and(Query.name("OK"),
+                        Query.and(Query.where(PropertyID.HelpText, ANYTHING), Query.property(PropertyID.IsEnabled, true))));
+
+        assertEquals("and(Name == \"OK\", IsEnabled == true)", plan.getNativePart().toString());
+        assertEquals("where(HelpText)", plan.getResidual().toString());
+    }
+
+    @Test
+    public void test_Or_With_A_Where_Is_Left_Over_As_A_Whole() {
+        QueryCompiler.Plan plan = QueryCompiler.plan(
+                Query.or(Query.name("OK"), Query.where(PropertyID.HelpText, ANYTHING)));
+
+        assertNull(plan.getNativePart());
+        assertEquals("or(Name == \"OK\", where(HelpText))", plan.getResidual().toString());
+    }
+
+    @Test
+    public void test_Not_Of_A_Native_Query_Is_Native() {
+        QueryCompiler.Plan plan = QueryCompiler.plan(Query.not(Query.or(Query.name("A"), Query.name("B"))));
+
+        assertEquals("not(or(Name == \"A\", Name == \"B\"))", plan.getNativePart().toString());
+        assertNull(plan.getResidual());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_Unsupported_Value_Is_Rejected() {
+        Query.property(PropertyID.BoundingRectangle, new Object());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the reference cleaner, using a counting releaser rather than real COM references.
+ */
+public class ReferenceCleanerTest {
+
+    private static class CountingReleaser implements ReferenceCleaner.Releaser {
+        final AtomicInteger released = new AtomicInteger();
+
+        public void release() {
+            released.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void test_Clean_Releases_Once() {
+        CountingReleaser releaser = new CountingReleaser();
+        Object referent = new Object();
+
+        ReferenceCleaner.Cleanable cleanable = ReferenceCleaner.register(referent, releaser, "test");
+
+        cleanable.clean();
+        cleanable.clean();
+
+        assertEquals(1, releaser.released.get());
+    }
+
+    @Test
+    public void test_Unreachable_Referent_Is_Released() throws InterruptedException {
+        CountingReleaser releaser = new CountingReleaser();
+
+        ReferenceCleaner.register(new Object(), releaser, "test");
+
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (releaser.released.get() == 0 && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, releaser.released.get());
+    }
+
+    @Test
+    public void test_Objects_That_Are_Not_Proxies_Are_Not_Tracked() {
+        int before = ReferenceCleaner.getOutstandingCount();
+
+        ReferenceCleaner.Cleanable cleanable = ReferenceCleaner.register(new Object(), "test");
+
+        assertEquals(before, ReferenceCleaner.getOutstandingCount());
+
+        cleanable.clean();
+    }
+
+    @Test
+    public void test_Clean_Removes_Outstanding_Reference() {
+        Object referent = new Object();
+
+        ReferenceCleaner.Cleanable cleanable = ReferenceCleaner.register(referent, new CountingReleaser(), "test");
+
+        int outstanding = ReferenceCleaner.getOutstandingCount();
+
+        cleanable.clean();
+
+        assertEquals(outstanding - 1, ReferenceCleaner.getOutstandingCount());
+    }
+}
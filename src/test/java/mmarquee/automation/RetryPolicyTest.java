@@ -0,0 +1,78 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the delays between attempts.
+ */
+public class RetryPolicyTest {
+
+    @Test
+    public void test_Delays_Grow_Up_To_The_Cap() {
+        RetryPolicy policy = RetryPolicy.DEFAULT.withDelays(10, 100).withJitter(0);
+
+        assertEquals(10, policy.getDelay(0));
+        assertEquals(20, policy.getDelay(1));
+        assertEquals(40, policy.getDelay(2));
+        assertEquals(80, policy.getDelay(3));
+        assertEquals(100, policy.getDelay(4));
+        assertEquals(100, policy.getDelay(1000));
+    }
+
+    @Test
+    public void test_Jitter_Only_Shortens_The_Delay() {
+        RetryPolicy policy = RetryPolicy.DEFAULT.withDelays(100, 1000).withMultiplier(1).withJitter(0.5);
+
+        assertEquals(100, policy.getDelay(3, 0));
+        assertEquals(75, policy.getDelay(3, 0.5));
+        assertEquals(50, policy.getDelay(3, 0.999999));
+
+        for (int attempt = 0; attempt < 100; attempt++) {
+            long delay = policy.getDelay(attempt);
+            assertTrue(delay >= 50 && delay <= 100);
+        }
+    }
+
+    @Test
+    public void test_Policies_Are_Copied_When_Changed() {
+        RetryPolicy policy = RetryPolicy.DEFAULT.withTimeout(500).withMaxAttempts(3);
+
+        assertEquals(500, policy.getTimeout());
+        assertEquals(3, policy.getMaxAttempts());
+        assertEquals(10000, RetryPolicy.DEFAULT.getTimeout());
+        assertEquals(Integer.MAX_VALUE, RetryPolicy.DEFAULT.getMaxAttempts());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_At_Least_One_Attempt_Is_Needed() {
+        RetryPolicy.DEFAULT.withMaxAttempts(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_Max_Delay_Must_Not_Be_Less_Than_The_Initial_Delay() {
+        RetryPolicy.DEFAULT.withDelays(100, 10);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void test_Jitter_Must_Be_Less_Than_One() {
+        RetryPolicy.DEFAULT.withJitter(1);
+    }
+}
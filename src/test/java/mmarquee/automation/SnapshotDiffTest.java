@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for comparing snapshots, with and without runtime ids.
+ */
+public class SnapshotDiffTest {
+
+    private static FakeElement fake(int id, String name, String automationId, ControlType controlType, FakeElement... children) {
+        return new FakeElement(name, controlType, children)
+                .with(PropertyID.RuntimeId, new int[] { 42, id })
+                .with(PropertyID.AutomationId, automationId);
+    }
+
+    private static final List<PropertyID> WITH_RUNTIME_ID = Arrays.asList(
+            PropertyID.RuntimeId, PropertyID.Name, PropertyID.AutomationId, PropertyID.ControlType);
+
+    private static final List<PropertyID> WITHOUT_RUNTIME_ID = Arrays.asList(
+            PropertyID.Name, PropertyID.AutomationId, PropertyID.ControlType);
+
+    private static FakeElement before() {
+        return fake(1, "Login", "login", ControlType.Window,
+                fake(2, "User", "user", ControlType.Edit),
+                fake(3, "Buttons", "", ControlType.Pane,
+                        fake(4, "OK", "", ControlType.Button),
+                        fake(5, "Cancel", "", ControlType.Button)),
+                fake(6, "Status", "status", ControlType.Text));
+    }
+
+    private static FakeElement after() {
+        // The user edit has moved into the pane, OK has been renamed, Help has been added
+        // and the status text has gone
+        return fake(1, "Login", "login", ControlType.Window,
+                fake(3, "Buttons", "", ControlType.Pane,
+                        fake(2, "User", "user", ControlType.Edit),
+                        fake(4, "Sign in", "", ControlType.Button),
+                        fake(5, "Cancel", "", ControlType.Button),
+                        fake(7, "Help", "", ControlType.Button)));
+    }
+
+    private static List<String> names(List<AutomationSnapshot.Node> nodes) {
+        List<String> names = new ArrayList<String>();
+
+        for (AutomationSnapshot.Node node : nodes) {
+            names.add(node.getName());
+        }
+
+        return names;
+    }
+
+    private static List<String> changes(List<SnapshotDiff.Change> changes) {
+        List<String> names = new ArrayList<String>();
+
+        for (SnapshotDiff.Change change : changes) {
+            names.add(change.getBefore().getName());
+        }
+
+        return names;
+    }
+
+    @Test
+    public void test_Same_Tree_Has_No_Differences() throws AutomationException {
+        SnapshotDiff diff = SnapshotDiff.compare(
+                AutomationSnapshot.capture(before(), null, WITH_RUNTIME_ID, false),
+                AutomationSnapshot.capture(before(), null, WITH_RUNTIME_ID, false));
+
+        assertTrue(diff.isEmpty());
+    }
+
+    @Test
+    public void test_Matched_By_Runtime_Id() throws AutomationException {
+        SnapshotDiff diff = SnapshotDiff.compare(
+                AutomationSnapshot.capture(before(), null, WITH_RUNTIME_ID, false),
+                AutomationSnapshot.capture(after(), null, WITH_RUNTIME_ID, false));
+
+        assertEquals(Arrays.asList("Help"), names(diff.getAdded()));
+        assertEquals(Arrays.asList("Status"), names(diff.getRemoved()));
+        assertEquals(Arrays.asList("User"), changes(diff.getMoved()));
+        assertTrue(diff.getMoved().get(0).getProperties().isEmpty());
+        assertEquals(Arrays.asList("OK"), changes(diff.getChanged()));
+        assertEquals(EnumSet.of(PropertyID.Name), diff.getChanged().get(0).getProperties());
+        assertEquals("Sign in", diff.getChanged().get(0).getAfter().getName());
+    }
+
+    @Test
+    public void test_Matched_By_Path_Without_Runtime_Id() throws AutomationException {
+        SnapshotDiff diff = SnapshotDiff.compare(
+                AutomationSnapshot.capture(before(), null, WITHOUT_RUNTIME_ID, false),
+                AutomationSnapshot.capture(after(), null, WITHOUT_RUNTIME_ID, false));
+
+        // Without a runtime id the moved edit is a different node, the buttons are
+        // matched by their position
+        assertEquals(Arrays.asList("User", "Help"), names(diff.getAdded()));
+        assertEquals(Arrays.asList("User", "Status"), names(diff.getRemoved()));
+        assertTrue(diff.getMoved().isEmpty());
+        assertEquals(Arrays.asList("OK"), changes(diff.getChanged()));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the snapshot indexes, checking them against a scan of the snapshot.
+ */
+public class SnapshotIndexTest {
+
+    private static FakeElement fake(String name, String className, ControlType controlType, FakeElement... children) {
+        return new FakeElement(name, controlType, children)
+                .with(PropertyID.AutomationId, name.toLowerCase())
+                .with(PropertyID.ClassName, className);
+    }
+
+    private static final List<PropertyID> PROPERTIES = Arrays.asList(
+            PropertyID.Name, PropertyID.AutomationId, PropertyID.ClassName, PropertyID.ControlType);
+
+    private static AutomationSnapshot snapshot() throws AutomationException {
+        FakeElement window = fake("Login", "Form", ControlType.Window,
+                fake("User name", "TEdit", ControlType.Edit),
+                fake("Password", "TEdit", ControlType.Edit),
+                fake("Buttons", "TPanel", ControlType.Pane,
+                        fake("OK", "TButton", ControlType.Button),
+                        fake("Options", "TPanel", ControlType.Pane,
+                                fake("Use password", "TCheckBox", ControlType.CheckBox)),
+                        fake("Cancel", "TButton", ControlType.Button)));
+
+        return AutomationSnapshot.capture(window, null, PROPERTIES, false);
+    }
+
+    private static List<String> names(List<AutomationSnapshot.Node> nodes) {
+        List<String> names = new ArrayList<String>();
+
+        for (AutomationSnapshot.Node node : nodes) {
+            names.add(node.getName());
+        }
+
+        return names;
+    }
+
+    @Test
+    public void test_Hash_Lookups_Match_A_Scan() throws AutomationException {
+        AutomationSnapshot snapshot = snapshot();
+        SnapshotIndex indexed = SnapshotIndex.build(snapshot);
+        SnapshotIndex scanned = SnapshotIndex.build(snapshot, SnapshotIndex.Kind.Structure);
+
+        assertEquals(Arrays.asList("OK", "Cancel"), names(indexed.findByControlType(ControlType.Button)));
+        assertEquals(Arrays.asList("Buttons", "Options"), names(indexed.findByClassName("TPanel")));
+        assertEquals(Arrays.asList("Password"), names(indexed.findByAutomationId("password")));
+        assertTrue(indexed.findByAutomationId("missing").isEmpty());
+
+        assertEquals(names(scanned.findByControlType(ControlType.Edit)), names(indexed.findByControlType(ControlType.Edit)));
+        assertEquals(names(scanned.findByClassName("TButton")), names(indexed.findByClassName("TButton")));
+    }
+
+    @Test
+    public void test_Name_Trie() throws AutomationException {
+        AutomationSnapshot snapshot = snapshot();
+        SnapshotIndex indexed = SnapshotIndex.build(snapshot, SnapshotIndex.Kind.Name);
+        SnapshotIndex scanned = SnapshotIndex.build(snapshot, SnapshotIndex.Kind.Structure);
+
+        assertEquals(Arrays.asList("OK"), names(indexed.findByName("OK")));
+        assertEquals(Arrays.asList("Password"), names(indexed.findByNamePrefix("Pass")));
+        assertEquals(Arrays.asList("Password", "Use password"), names(indexed.findByNameContaining("assword")));
+        assertEquals(8, indexed.findByNamePrefix("").size());
+        assertTrue(indexed.findByNamePrefix("Z").isEmpty());
+
+        assertEquals(names(scanned.findByNamePrefix("O")), names(indexed.findByNamePrefix("O")));
+        assertEquals(names(scanned.findByNameContaining("s")), names(indexed.findByNameContaining("s")));
+    }
+
+    @Test
+    public void test_Structure() throws AutomationException {
+        AutomationSnapshot snapshot = snapshot();
+        SnapshotIndex index = SnapshotIndex.build(snapshot, SnapshotIndex.Kind.Structure);
+
+        AutomationSnapshot.Node root = snapshot.getRoot();
+        AutomationSnapshot.Node buttons = index.findByName("Buttons").get(0);
+        AutomationSnapshot.Node check = index.findByName("Use password").get(0);
+        AutomationSnapshot.Node user = index.findByName("User name").get(0);
+
+        assertNull(index.getParent(root));
+        assertEquals("Options", index.getParent(check).getName());
+        assertEquals(Arrays.asList("Options", "Buttons", "Login"), names(index.getAncestors(check)));
+        assertTrue(index.isAncestor(buttons, check));
+        assertTrue(index.isAncestor(root, check));
+        assertFalse(index.isAncestor(user, check));
+        assertFalse(index.isAncestor(check, check));
+        assertEquals(Arrays.asList("OK", "Options", "Use password", "Cancel"), names(index.getDescendants(buttons)));
+    }
+
+    @Test
+    public void test_Indexes_Can_Be_Added_Later() throws AutomationException {
+        SnapshotIndex index = SnapshotIndex.build(snapshot(), SnapshotIndex.Kind.Name);
+
+        assertTrue(index.has(SnapshotIndex.Kind.Name));
+        assertFalse(index.has(SnapshotIndex.Kind.ControlType));
+
+        assertSame(index, index.add(SnapshotIndex.Kind.ControlType, SnapshotIndex.Kind.ClassName));
+
+        assertTrue(index.has(SnapshotIndex.Kind.ControlType));
+        assertTrue(index.has(SnapshotIndex.Kind.ClassName));
+        assertFalse(index.has(SnapshotIndex.Kind.AutomationId));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import com.sun.jna.platform.win32.WinDef;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for writing snapshots to a recording and reading them back.
+ */
+public class SnapshotReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static FakeElement fake(int id, String name, ControlType controlType, FakeElement... children) {
+        return new FakeElement(name, controlType, children)
+                .with(PropertyID.RuntimeId, new int[] { 42, -id })
+                .with(PropertyID.AutomationId, name.toLowerCase());
+    }
+
+    private static final List<PropertyID> PROPERTIES = Arrays.asList(
+            PropertyID.RuntimeId, PropertyID.Name, PropertyID.AutomationId, PropertyID.ControlType,
+            PropertyID.IsInvokePatternAvailable, PropertyID.BoundingRectangle, PropertyID.HelpText);
+
+    private static WinDef.RECT rect(int left, int top, int right, int bottom) {
+        WinDef.RECT rect = new WinDef.RECT();
+        rect.left = left;
+        rect.top = top;
+        rect.right = right;
+        rect.bottom = bottom;
+        return rect;
+    }
+
+    private static AutomationSnapshot snapshot(String okName) throws AutomationException {
+        FakeElement window = fake(1, "Login", ControlType.Window,
+                fake(2, "User", ControlType.Edit),
+                fake(3, "Buttons", ControlType.Pane,
+                        fake(4, okName, ControlType.Button)
+                                .with(PropertyID.IsInvokePatternAvailable, true)
+                                .with(PropertyID.BoundingRectangle, rect(-10, 20, 300, 4000)),
+                        fake(5, "Cancel", ControlType.Button)
+                                .with(PropertyID.IsInvokePatternAvailable, true)),
+                fake(6, "Status ✓", ControlType.Text));
+
+        return AutomationSnapshot.capture(window, null, PROPERTIES, false);
+    }
+
+    private static List<String> names(List<SnapshotReader.Node> nodes) {
+        List<String> names = new ArrayList<String>();
+
+        for (SnapshotReader.Node node : nodes) {
+            names.add(node.getName());
+        }
+
+        return names;
+    }
+
+    private Path record(String... okNames) throws IOException, AutomationException {
+        Path path = folder.newFile().toPath();
+
+        try (SnapshotWriter writer = SnapshotWriter.create(path)) {
+            for (String okName : okNames) {
+                writer.append(snapshot(okName));
+            }
+        }
+
+        return path;
+    }
+
+    @Test
+    public void test_Properties_Are_Read_Back() throws Exception {
+        try (SnapshotReader reader = SnapshotReader.open(record("OK"))) {
+            SnapshotReader.Frame frame = reader.getFrame(0);
+            SnapshotReader.Node ok = frame.findByName("OK").get(0);
+
+            assertEquals(6, frame.size());
+            assertEquals("ok", ok.getAutomationId());
+            assertEquals(Integer.valueOf(ControlType.Button.getValue()), ok.getControlType());
+            assertArrayEquals(new int[] { 42, -4 }, ok.getRuntimeId());
+            assertEquals(PatternSet.of(PatternID.Invoke), ok.getPatterns());
+            assertEquals(Boolean.TRUE, ok.getProperty(PropertyID.IsInvokePatternAvailable));
+            assertNull(ok.getProperty(PropertyID.HelpText));
+            assertNull(ok.getProperty(PropertyID.ClassName));
+
+            WinDef.RECT bounds = (WinDef.RECT)ok.getProperty(PropertyID.BoundingRectangle);
+            assertEquals(-10, bounds.left);
+            assertEquals(4000, bounds.bottom);
+
+            assertEquals("Status ✓", frame.getNode(5).getName());
+            assertEquals(snapshot("OK").getNodes().get(3).getProperties().keySet(), ok.getProperties().keySet());
+        }
+    }
+
+    @Test
+    public void test_Structure_Is_Read_Back() throws Exception {
+        try (SnapshotReader reader = SnapshotReader.open(record("OK"))) {
+            SnapshotReader.Frame frame = reader.getFrame(0);
+            SnapshotReader.Node root = frame.getRoot();
+            SnapshotReader.Node cancel = frame.findFirst(PropertyID.Name, "Cancel");
+
+            assertEquals(Arrays.asList("User", "Buttons", "Status ✓"), names(root.getChildren()));
+            assertEquals(Arrays.asList("Login", "User", "Buttons", "OK", "Cancel", "Status ✓"),
+                    names(frame.getNodes()));
+            assertEquals("Buttons", cancel.getParent().getName());
+            assertEquals(2, cancel.getDepth());
+            assertNull(root.getParent());
+            assertTrue(cancel.getChildren().isEmpty());
+        }
+    }
+
+    @Test
+    public void test_Frames_Are_Kept_Apart() throws Exception {
+        try (SnapshotReader reader = SnapshotReader.open(record("OK", "Sign in"))) {
+            assertEquals(2, reader.getFrameCount());
+
+            assertEquals(1, reader.getFrame(0).findByName("OK").size());
+            assertTrue(reader.getFrame(1).findByName("OK").isEmpty());
+            assertEquals("Sign in", reader.getFrame(1).findByAutomationId("sign in").get(0).getName());
+            assertEquals(2, reader.getFrame(1).findByControlType(ControlType.Button).size());
+            assertEquals("Login", reader.getFrame(1).findFirst(PropertyID.RuntimeId, new int[] { 42, -1 }).getName());
+        }
+    }
+
+    @Test
+    public void test_Incomplete_Frame_Is_Left_Out() throws Exception {
+        Path path = record("OK", "Sign in");
+        long size = Files.size(path);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        try (SnapshotReader reader = SnapshotReader.open(path)) {
+            assertEquals(1, reader.getFrameCount());
+            assertEquals("OK", reader.getFrame(0).getNode(3).getName());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void test_Other_Files_Are_Rejected() throws Exception {
+        Path path = folder.newFile().toPath();
+        Files.write(path, ByteBuffer.allocate(16).putInt(1234).array());
+
+        SnapshotReader.open(path);
+    }
+}
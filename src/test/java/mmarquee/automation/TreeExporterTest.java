@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for exporting a tree as JSON, walked live and from the cache.
+ */
+public class TreeExporterTest {
+
+    private static FakeElement fake(String name, FakeElement... children) {
+        return new FakeElement(name, ControlType.Pane, children);
+    }
+
+    private static class FakeWalker extends AutomationTreeWalker {
+        FakeWalker() {
+            super(null);
+        }
+
+        @Override
+        public AutomationElement getFirstChildElement(AutomationElement element) {
+            List<AutomationElement> children = ((FakeElement)element).children;
+            return children.isEmpty() ? null : children.get(0);
+        }
+
+        @Override
+        public AutomationElement getNextSiblingElement(AutomationElement element) {
+            List<AutomationElement> siblings = ((FakeElement)element).parent.children;
+            int index = siblings.indexOf(element) + 1;
+            return index < siblings.size() ? siblings.get(index) : null;
+        }
+    }
+
+    private final FakeElement ok = fake("OK \"default\"");
+    private final FakeElement cancel = fake("Cancel");
+    private final FakeElement buttons = fake("Buttons", ok, cancel);
+    private final FakeElement user = fake("User");
+    private final FakeElement window = fake("Login", user, buttons);
+
+    private static String export(TreeExporter exporter, AutomationElement root) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.export(root, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void test_NdJson_Has_A_Line_Per_Element() throws Exception {
+        String json = export(TreeExporter.walking(new FakeWalker()).setProperties(PropertyID.Name), window);
+
+        assertEquals(
+                "{\"index\":0,\"parent\":null,\"depth\":0,\"Name\":\"Login\"}\n" +
+                "{\"index\":1,\"parent\":0,\"depth\":1,\"Name\":\"User\"}\n" +
+                "{\"index\":2,\"parent\":0,\"depth\":1,\"Name\":\"Buttons\"}\n" +
+                "{\"index\":3,\"parent\":2,\"depth\":2,\"Name\":\"OK \\\"default\\\"\"}\n" +
+                "{\"index\":4,\"parent\":2,\"depth\":2,\"Name\":\"Cancel\"}\n",
+                json);
+    }
+
+    @Test
+    public void test_Json_Nests_The_Children() throws Exception {
+        String json = export(TreeExporter.cached(null)
+                .setFormat(TreeExporter.Format.Json)
+                .setProperties(PropertyID.Name), window);
+
+        assertEquals("{\"Name\":\"Login\",\"children\":[{\"Name\":\"User\",\"children\":[]}," +
+                "{\"Name\":\"Buttons\",\"children\":[{\"Name\":\"OK \\\"default\\\"\",\"children\":[]}," +
+                "{\"Name\":\"Cancel\",\"children\":[]}]}]}\n", json);
+    }
+
+    @Test
+    public void test_Depth_Is_Limited() throws Exception {
+        String json = export(TreeExporter.walking(new FakeWalker())
+                .setFormat(TreeExporter.Format.Json)
+                .setProperties(PropertyID.Name)
+                .setMaxDepth(1), window);
+
+        assertEquals("{\"Name\":\"Login\",\"children\":[{\"Name\":\"User\"},{\"Name\":\"Buttons\"}]}\n", json);
+
+        assertEquals(1, TreeExporter.cached(null).setMaxDepth(0).export(window, new ByteArrayOutputStream()));
+    }
+
+    @Test
+    public void test_Values_Are_Written_As_Json() throws Exception {
+        ok.with(PropertyID.RuntimeId, new int[] { 42, 7 })
+                .with(PropertyID.IsEnabled, true)
+                .with(PropertyID.HelpText, "Line 1\nLine 2\u0001");
+
+        String json = export(TreeExporter.cached(null)
+                .setProperties(PropertyID.RuntimeId, PropertyID.IsEnabled, PropertyID.HelpText, PropertyID.AutomationId)
+                .setMaxDepth(2), buttons);
+
+        assertTrue(json.contains("\"RuntimeId\":[42,7],\"IsEnabled\":true," +
+                "\"HelpText\":\"Line 1\\nLine 2\\u0001\",\"AutomationId\":null}"));
+    }
+
+    @Test
+    public void test_Elements_Are_Closed_But_Not_The_Root() throws Exception {
+        long count = TreeExporter.walking(new FakeWalker()).export(window, new ByteArrayOutputStream());
+
+        assertEquals(5, count);
+        assertTrue(ok.closed);
+        assertTrue(cancel.closed);
+        assertTrue(buttons.closed);
+        assertTrue(user.closed);
+        assertFalse(window.closed);
+    }
+}
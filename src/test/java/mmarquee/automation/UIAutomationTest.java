@@ -18,8 +18,12 @@ package mmarquee.automation;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.IOException;
@@ -45,6 +49,7 @@ import mmarquee.automation.controls.menu.AutomationMenu;
 import mmarquee.automation.pattern.PatternNotFoundException;
 import mmarquee.automation.uiautomation.IUIAutomation;
 import mmarquee.automation.uiautomation.IUIAutomationCondition;
+import mmarquee.automation.uiautomation.PropertyConditionFlags;
 import mmarquee.automation.uiautomation.TreeScope;
 
 /**
@@ -505,6 +510,59 @@ public class UIAutomationTest extends BaseAutomationTest {
                 new PointerByReference().getValue());
     }
 
+    @Test
+    public void testCreateAndCondition_With_Many_Conditions_Uses_A_Single_Native_Condition()
+            throws AutomationException {
+        IUIAutomation mocked = Mockito.mock(IUIAutomation.class);
+
+        when(mocked.createAndConditionFromNativeArray(any(Pointer.class), eq(3), any(PointerByReference.class))).thenReturn(0);
+
+        UIAutomation instanceWithMocking = new UIAutomation(mocked);
+
+        instanceWithMocking.createAndCondition(new Pointer(1), new Pointer(2), new Pointer(3));
+
+        verify(mocked).createAndConditionFromNativeArray(any(Pointer.class), eq(3), any(PointerByReference.class));
+        verify(mocked, never()).createAndCondition(any(Pointer.class), any(Pointer.class), any(PointerByReference.class));
+    }
+
+    @Test(expected = AutomationException.class)
+    public void testCreateOrCondition_With_Many_Conditions_Throws_Exception_When_Automation_Returns_False()
+            throws AutomationException {
+        IUIAutomation mocked = Mockito.mock(IUIAutomation.class);
+
+        when(mocked.createOrConditionFromNativeArray(any(Pointer.class), eq(3), any(PointerByReference.class))).thenReturn(-1);
+
+        UIAutomation instanceWithMocking = new UIAutomation(mocked);
+
+        instanceWithMocking.createOrCondition(new Pointer(1), new Pointer(2), new Pointer(3));
+    }
+
+    @Test
+    public void testCreatePropertyConditionEx_Combines_Flags() throws AutomationException {
+        IUIAutomation mocked = Mockito.mock(IUIAutomation.class);
+
+        when(mocked.createPropertyConditionEx(anyInt(), any(Variant.VARIANT.ByValue.class), anyInt(), any(PointerByReference.class))).thenReturn(0);
+
+        UIAutomation instanceWithMocking = new UIAutomation(mocked);
+
+        instanceWithMocking.createPropertyConditionEx(PropertyID.Name.getValue(), new Variant.VARIANT.ByValue(),
+                PropertyConditionFlags.IgnoreCase, PropertyConditionFlags.MatchSubstring);
+
+        verify(mocked).createPropertyConditionEx(eq(PropertyID.Name.getValue()), any(Variant.VARIANT.ByValue.class), eq(3), any(PointerByReference.class));
+    }
+
+    @Test(expected = AutomationException.class)
+    public void testCreateCacheRequest_Throws_Exception_When_Automation_Returns_False()
+            throws AutomationException {
+        IUIAutomation mocked = Mockito.mock(IUIAutomation.class);
+
+        when(mocked.createCacheRequest(any(PointerByReference.class))).thenReturn(-1);
+
+        UIAutomation instanceWithMocking = new UIAutomation(mocked);
+
+        instanceWithMocking.createCacheRequest(PropertyID.Name);
+    }
+
     @Test
     public void test_GetDesktopWindows()
             throws IOException, AutomationException, PatternNotFoundException {
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for retrying a check, with the pauses recorded rather than slept.
+ */
+public class WaitTest {
+
+    /**
+     * Records the pauses, without sleeping
+     */
+    private static class RecordingWait extends Wait {
+        private final List<Long> pauses = new ArrayList<Long>();
+
+        @Override
+        protected void pause(long millis) {
+            this.pauses.add(millis);
+        }
+    }
+
+    /**
+     * Gives a result on the given attempt (counting from 1)
+     */
+    private static Wait.Probe<String> succeedsOn(final int attempt, final AtomicInteger attempts) {
+        return new Wait.Probe<String>() {
+            public String probe() {
+                return attempts.incrementAndGet() == attempt ? "found" : null;
+            }
+        };
+    }
+
+    @Test
+    public void test_Pauses_Follow_The_Policy() throws Exception {
+        RecordingWait wait = new RecordingWait();
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = wait.poll(succeedsOn(5, attempts),
+                RetryPolicy.DEFAULT.withDelays(50, 200).withJitter(0));
+
+        assertEquals("found", result);
+        assertEquals(5, attempts.get());
+        assertEquals(Arrays.asList(50L, 100L, 200L, 200L), wait.pauses);
+    }
+
+    @Test
+    public void test_Attempts_Run_Out() throws Exception {
+        RecordingWait wait = new RecordingWait();
+        AtomicInteger attempts = new AtomicInteger();
+
+        try {
+            wait.poll(succeedsOn(10, attempts), RetryPolicy.DEFAULT.withMaxAttempts(3));
+            fail("Expected the attempts to run out");
+        } catch (ElementNotFoundException ex) {
+            // expected
+        }
+
+        assertEquals(3, attempts.get());
+        assertEquals(2, wait.pauses.size());
+    }
+
+    @Test
+    public void test_Time_Runs_Out() throws Exception {
+        AtomicInteger attempts = new AtomicInteger();
+        long start = System.currentTimeMillis();
+
+        try {
+            Wait.until(succeedsOn(1000, attempts), RetryPolicy.DEFAULT.withTimeout(300).withDelays(10, 50));
+            fail("Expected the time to run out");
+        } catch (ElementNotFoundException ex) {
+            // expected
+        }
+
+        assertTrue(System.currentTimeMillis() - start >= 300);
+
+        // Far fewer attempts than a busy loop would have made
+        assertTrue(attempts.get() < 30);
+    }
+
+    @Test
+    public void test_Probe_Failures_Abandon_The_Wait() throws Exception {
+        final AtomicInteger attempts = new AtomicInteger();
+
+        try {
+            Wait.until(new Wait.Probe<Object>() {
+                public Object probe() throws AutomationException {
+                    attempts.incrementAndGet();
+                    throw new PropertyNotCachedException("Name");
+                }
+            }, RetryPolicy.DEFAULT);
+            fail("Expected the probe's exception");
+        } catch (PropertyNotCachedException ex) {
+            // expected
+        }
+
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    public void test_Interrupt_Abandons_The_Wait() throws Exception {
+        Thread.currentThread().interrupt();
+
+        try {
+            Wait.until(succeedsOn(1000, new AtomicInteger()), RetryPolicy.DEFAULT);
+            fail("Expected the wait to be abandoned");
+        } catch (ElementNotFoundException ex) {
+            fail("Expected the wait to be interrupted");
+        } catch (AutomationException ex) {
+            assertTrue(Thread.interrupted());
+        }
+    }
+}
@@ -24,6 +24,7 @@ import com.sun.jna.ptr.PointerByReference;
 import mmarquee.automation.AutomationElement;
 import mmarquee.automation.AutomationException;
 import mmarquee.automation.PatternID;
+import mmarquee.automation.PatternSet;
 import mmarquee.automation.pattern.ItemContainer;
 import mmarquee.automation.pattern.PatternNotFoundException;
 import mmarquee.automation.pattern.Window;
@@ -150,7 +151,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.all());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -165,7 +166,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.all());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -180,7 +181,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.all());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -195,7 +196,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.all());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -210,7 +211,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.all());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -225,7 +226,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.all());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -240,7 +241,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.all());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -255,7 +256,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.all());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -270,7 +271,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.all());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -285,7 +286,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.all());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -300,7 +301,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.all());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -315,7 +316,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.all());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -330,7 +331,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.all());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -345,7 +346,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getBooleanProperty(anyObject())).thenReturn(true);
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -360,7 +361,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(0);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.none());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -375,7 +376,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.all());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -390,7 +391,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.all());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -405,7 +406,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.all());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -420,7 +421,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(0);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.none());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -435,7 +436,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.all());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -450,7 +451,7 @@ public class AutomationBaseTest {
         Window pattern = Mockito.mock(Window.class);
         ItemContainer container = Mockito.mock(ItemContainer.class);
 
-        when(element.getPropertyValue(anyInt())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.all());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -559,7 +560,7 @@ public class AutomationBaseTest {
 
         doThrow(AutomationException.class)
                 .when(element)
-                .getPropertyValue(anyObject());
+                .getBooleanProperty(anyObject());
 
         AutomationWindow window = new AutomationWindow(element, pattern, container);
 
@@ -66,7 +66,7 @@ public class AutomationButtonTest {
         AutomationElement element = Mockito.mock(AutomationElement.class);
         Invoke pattern = Mockito.mock(Invoke.class);
 
-        when(element.getPropertyValue(PropertyID.IsInvokePatternAvailable.getValue())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.of(PatternID.Invoke));
 
         AutomationButton button = new AutomationButton(element, pattern);
 
@@ -80,7 +80,7 @@ public class AutomationButtonTest {
         AutomationElement element = Mockito.mock(AutomationElement.class);
         Invoke pattern = Mockito.mock(Invoke.class);
 
-        when(element.getPropertyValue(PropertyID.IsInvokePatternAvailable.getValue())).thenReturn(0);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.none());
 
         AutomationButton button = new AutomationButton(element, pattern);
 
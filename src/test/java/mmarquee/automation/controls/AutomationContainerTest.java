@@ -26,6 +26,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Mockito.*;
 
@@ -50,6 +51,20 @@ public class AutomationContainerTest {
     @InjectMocks
     UIAutomation automation;
 
+    /**
+     * Answers getDescendant with the element at the index in the list, or null
+     */
+    private static Answer<AutomationElement> descendantOf(final List<AutomationElement> list) {
+        return new Answer<AutomationElement>() {
+            @Override
+            public AutomationElement answer(InvocationOnMock invocation) throws Throwable {
+                int index = (Integer)invocation.getArguments()[1];
+
+                return index < list.size() ? list.get(index) : null;
+            }
+        };
+    }
+
     @Test
     public void test_getEditBox_By_Index_Calls_findFirst_From_Element() throws Exception {
 
@@ -59,12 +74,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationEditBox edit = wndw.getEditBox(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test(expected=IndexOutOfBoundsException.class)
@@ -75,12 +90,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationEditBox edit = wndw.getEditBox(1);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -92,12 +107,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationAppBar appBar = wndw.getAppBar(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -109,12 +124,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationSlider slider = wndw.getSlider(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -125,12 +140,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationButton btn = wndw.getButton(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -141,12 +156,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationTab tab = wndw.getTab(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
 
         assertTrue(tab != null);
     }
@@ -159,14 +174,14 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationTab tab = wndw.getTab(99);
 
         assertTrue(tab != null);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -177,12 +192,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationEditBox editBox = wndw.getEditBox(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -193,12 +208,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationToolBar editBox = wndw.getToolBar(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -209,12 +224,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationComboBox editBox = wndw.getCombobox(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test (expected=IndexOutOfBoundsException.class)
@@ -225,12 +240,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationComboBox editBox = wndw.getCombobox(99);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -241,12 +256,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationCheckbox radio = wndw.getCheckbox(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test (expected=IndexOutOfBoundsException.class)
@@ -257,12 +272,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationRadioButton radio = wndw.getRadioButton(99);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -273,12 +288,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationRadioButton radio = wndw.getRadioButton(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -289,12 +304,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationPanel panel = wndw.getPanel(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -305,12 +320,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationDocument doc = wndw.getDocument(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -321,12 +336,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationProgressBar progress = wndw.getProgressBar(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test (expected=IndexOutOfBoundsException.class)
@@ -337,12 +352,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationHyperlink link = wndw.getHyperlink(99);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -353,12 +368,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationHyperlink link = wndw.getHyperlink(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test(expected=IndexOutOfBoundsException.class)
@@ -369,12 +384,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         wndw.getHyperlink(99);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -385,12 +400,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         wndw.getToolBar(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test(expected=IndexOutOfBoundsException.class)
@@ -401,12 +416,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         wndw.getSlider(99);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test(expected=IndexOutOfBoundsException.class)
@@ -417,12 +432,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         wndw.getProgressBar(99);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -433,12 +448,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         wndw.getProgressBar(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test(expected = IndexOutOfBoundsException.class)
@@ -449,12 +464,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         wndw.getProgressBar(99);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -465,12 +480,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         wndw.getDataGrid(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -481,12 +496,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         wndw.getDataGrid(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test(expected=IndexOutOfBoundsException.class)
@@ -497,12 +512,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         wndw.getTreeView(99);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -513,12 +528,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(elem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         wndw.getTreeView(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
@@ -548,12 +563,12 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(spyElem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         wndw.getPasswordEditBox(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test(expected=ElementNotFoundException.class)
@@ -583,15 +598,15 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(spyElem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         AutomationEditBox box = wndw.getPasswordEditBox(99);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
-    @Test(expected=IndexOutOfBoundsException.class)
+    @Test
     public void testGetMaskedEdit_By_Index() throws Exception {
         List<AutomationElement> list = new ArrayList<>();
 
@@ -618,15 +633,15 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(spyElem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         wndw.getMaskedEdit(0);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
-    @Test(expected=IndexOutOfBoundsException.class)
+    @Test(expected=ElementNotFoundException.class)
     public void testGetMaskedEdit_By_Index_Throws_Exception_When_Not_found() throws Exception {
         List<AutomationElement> list = new ArrayList<>();
 
@@ -653,18 +668,16 @@ public class AutomationContainerTest {
 
         list.add(new AutomationElement(spyElem));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.getDescendant(anyObject(), anyInt())).thenAnswer(descendantOf(list));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         wndw.getMaskedEdit(99);
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, atLeastOnce()).getDescendant(anyObject(), anyInt());
     }
 
     @Test
     public void testGetMaskedEdit_By_Name_Calls_FindFirst_Once() throws Exception {
-        List<AutomationElement> list = new ArrayList<>();
-
         IUIAutomationElement3 elem = Mockito.mock(IUIAutomationElement3.class);
 
         IUIAutomationElement3 spyElem = Mockito.spy(elem);
@@ -717,14 +730,12 @@ public class AutomationContainerTest {
             }
         }).when(spyElem).getCurrentName(anyObject());
 
-        list.add(new AutomationElement(spyElem));
-
-        when(element.findAll(anyObject(), anyObject())).thenReturn(list);
+        when(element.findFirst(anyObject(), anyObject())).thenReturn(new AutomationElement(spyElem));
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
         wndw.getMaskedEdit("SMITH-01");
 
-        verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
+        verify(element, times(1)).findFirst(anyObject(), anyObject());
     }
 
     @Test(expected=ElementNotFoundException.class)
@@ -762,7 +773,7 @@ public class AutomationContainerTest {
         verify(element, atLeastOnce()).findFirst(anyObject(), anyObject());
     }
 
-    @Test(expected=IndexOutOfBoundsException.class)
+    @Test
     public void test_PasswordBox_By_Index() throws Exception {
         List<AutomationElement> list = new ArrayList<>();
 
@@ -797,7 +808,7 @@ public class AutomationContainerTest {
         verify(element, atLeastOnce()).findAll(anyObject(), anyObject());
     }
 
-    @Test(expected=IndexOutOfBoundsException.class)
+    @Test(expected=ElementNotFoundException.class)
     public void test_PasswordBox_By_Index_Throws_Exception_When_Not_found() throws Exception {
         List<AutomationElement> list = new ArrayList<>();
 
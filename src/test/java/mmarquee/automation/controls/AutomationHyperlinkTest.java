@@ -38,7 +38,7 @@ public class AutomationHyperlinkTest {
         AutomationElement element = Mockito.mock(AutomationElement.class);
         Invoke pattern = Mockito.mock(Invoke.class);
 
-        when(element.getPropertyValue(PropertyID.IsInvokePatternAvailable.getValue())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.of(PatternID.Invoke));
 
         AutomationHyperlink link = new AutomationHyperlink(element, pattern);
 
@@ -52,7 +52,7 @@ public class AutomationHyperlinkTest {
         AutomationElement element = Mockito.mock(AutomationElement.class);
         Invoke pattern = Mockito.mock(Invoke.class);
 
-        when(element.getPropertyValue(PropertyID.IsInvokePatternAvailable.getValue())).thenReturn(0);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.none());
 
         AutomationHyperlink link = new AutomationHyperlink(element, pattern);
 
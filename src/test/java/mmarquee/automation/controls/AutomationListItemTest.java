@@ -10,7 +10,8 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import mmarquee.automation.AutomationElement;
-import mmarquee.automation.PropertyID;
+import mmarquee.automation.PatternID;
+import mmarquee.automation.PatternSet;
 import mmarquee.automation.pattern.Invoke;
 import mmarquee.automation.pattern.PatternNotFoundException;
 import mmarquee.automation.pattern.SelectionItem;
@@ -52,7 +53,7 @@ public class AutomationListItemTest {
         AutomationElement element = Mockito.mock(AutomationElement.class);
         Invoke invokePattern = Mockito.mock(Invoke.class);
         
-        when(element.getPropertyValue(PropertyID.IsInvokePatternAvailable.getValue())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.of(PatternID.Invoke));
 
         AutomationListItem ctrl = new AutomationListItem(element);
         ctrl.invokePattern = invokePattern;
@@ -67,7 +68,7 @@ public class AutomationListItemTest {
         AutomationElement element = Mockito.mock(AutomationElement.class);
         Invoke invokePattern = Mockito.mock(Invoke.class);
         
-        when(element.getPropertyValue(PropertyID.IsInvokePatternAvailable.getValue())).thenReturn(0);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.none());
 
         AutomationListItem ctrl = new AutomationListItem(element);
         ctrl.invokePattern = invokePattern;
@@ -26,6 +26,7 @@ import java.util.List;
 
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.when;
 
 /**
@@ -59,7 +60,7 @@ public class AutomationListTest {
         List<AutomationElement> result = new ArrayList<>();
         result.add(new AutomationElement(listElement));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(result);
+        when(element.findAt(anyObject(), anyObject(), eq(0))).thenReturn(result.get(0));
 
         AutomationList list = new AutomationList(element, selection);
 
@@ -76,7 +77,7 @@ public class AutomationListTest {
         List<AutomationElement> result = new ArrayList<>();
         result.add(new AutomationElement(listElement));
 
-        when(element.findAll(anyObject(), anyObject())).thenReturn(result);
+        when(element.findAt(anyObject(), anyObject(), eq(0))).thenReturn(result.get(0));
 
         AutomationList list = new AutomationList(element, selection);
 
@@ -1,7 +1,8 @@
 package mmarquee.automation.controls;
 
 import mmarquee.automation.AutomationElement;
-import mmarquee.automation.PropertyID;
+import mmarquee.automation.PatternID;
+import mmarquee.automation.PatternSet;
 import mmarquee.automation.pattern.Invoke;
 import mmarquee.automation.pattern.PatternNotFoundException;
 import org.junit.Test;
@@ -51,7 +52,7 @@ public class AutomationSplitButtonTest {
         AutomationElement element = Mockito.mock(AutomationElement.class);
         Invoke pattern = Mockito.mock(Invoke.class);
 
-        when(element.getPropertyValue(PropertyID.IsInvokePatternAvailable.getValue())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.of(PatternID.Invoke));
 
         AutomationSplitButton button = new AutomationSplitButton(element, pattern);
 
@@ -65,7 +66,7 @@ public class AutomationSplitButtonTest {
         AutomationElement element = Mockito.mock(AutomationElement.class);
         Invoke pattern = Mockito.mock(Invoke.class);
 
-        when(element.getPropertyValue(PropertyID.IsInvokePatternAvailable.getValue())).thenReturn(0);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.none());
 
         AutomationSplitButton button = new AutomationSplitButton(element, pattern);
 
@@ -53,7 +53,7 @@ public class AutomationTabTest extends BaseAutomationTest {
 
         when(testElem.getName()).thenReturn("TEST");
         when(testElem.getControlType()).thenReturn(ControlType.TabItem.getValue());
-        when(testElem.getPropertyValue(PropertyID.IsSelectionItemPatternAvailable.getValue())).thenReturn(1);
+        when(testElem.getAvailablePatterns()).thenReturn(PatternSet.of(PatternID.SelectionItem));
 
         // Need to get the selectItem pattern to work correctly
         SelectionItem selectItem = Mockito.mock(SelectionItem.class);
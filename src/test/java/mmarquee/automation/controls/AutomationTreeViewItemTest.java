@@ -17,7 +17,8 @@ package mmarquee.automation.controls;
 
 import mmarquee.automation.AutomationElement;
 import mmarquee.automation.BaseAutomationTest;
-import mmarquee.automation.PropertyID;
+import mmarquee.automation.PatternID;
+import mmarquee.automation.PatternSet;
 import mmarquee.automation.pattern.Invoke;
 import mmarquee.automation.pattern.SelectionItem;
 import org.apache.log4j.Logger;
@@ -72,7 +73,7 @@ public class AutomationTreeViewItemTest {
         SelectionItem selection = Mockito.mock(SelectionItem.class);
         Invoke invoke = Mockito.mock(Invoke.class);
 
-        when(element.getPropertyValue(PropertyID.IsInvokePatternAvailable.getValue())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.of(PatternID.Invoke));
 
         AutomationTreeViewItem ctrl = new AutomationTreeViewItem(element, selection, invoke);
 
@@ -87,7 +88,7 @@ public class AutomationTreeViewItemTest {
         SelectionItem selection = Mockito.mock(SelectionItem.class);
         Invoke invoke = Mockito.mock(Invoke.class);
 
-        when(element.getPropertyValue(PropertyID.IsInvokePatternAvailable.getValue())).thenReturn(0);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.none());
 
         AutomationTreeViewItem ctrl = new AutomationTreeViewItem(element, selection, invoke);
 
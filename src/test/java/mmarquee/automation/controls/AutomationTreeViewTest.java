@@ -1,7 +1,8 @@
 package mmarquee.automation.controls;
 
 import mmarquee.automation.AutomationElement;
-import mmarquee.automation.PropertyID;
+import mmarquee.automation.PatternID;
+import mmarquee.automation.PatternSet;
 import mmarquee.automation.pattern.ItemContainer;
 import mmarquee.automation.uiautomation.IUIAutomationElement3;
 import org.junit.Test;
@@ -41,7 +42,7 @@ public class AutomationTreeViewTest {
         AutomationElement result = new AutomationElement(listElement);
 
         when(element.findFirst(anyObject(), anyObject())).thenReturn(result);
-        when(element.getPropertyValue(PropertyID.IsSelectionItemPatternAvailable.getValue())).thenReturn(1);
+        when(element.getAvailablePatterns()).thenReturn(PatternSet.of(PatternID.SelectionItem));
 
         AutomationTreeView ctrl = new AutomationTreeView(element);
 
@@ -144,13 +144,13 @@ public class AutomationWindowTest2 {
 
                 return 1234;
             }
-        }).when(element).getPropertyValue(anyInt());
+        }).when(element).getIntProperty(anyObject());
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
 
         wndw.setTransparency(100);
 
-        verify(element, atLeastOnce()).getPropertyValue(anyInt());
+        verify(element, atLeastOnce()).getIntProperty(anyObject());
     }
 
     @Test
@@ -165,13 +165,13 @@ public class AutomationWindowTest2 {
 
                 return 1234;
             }
-        }).when(element).getPropertyValue(anyInt());
+        }).when(element).getIntProperty(anyObject());
 
         AutomationWindow wndw = new AutomationWindow(element, window, container);
 
         WinDef.HWND handle = wndw.getNativeWindowHandle();
 
-        verify(element, atLeastOnce()).getPropertyValue(anyInt());
+        verify(element, atLeastOnce()).getIntProperty(anyObject());
     }
 
     @Test(expected=AutomationException.class)
@@ -230,13 +230,13 @@ public class AutomationWindowTest2 {
 
                 return 1234;
             }
-        }).when(element).getPropertyValue(anyInt());
+        }).when(element).getIntProperty(anyObject());
 
         AutomationWindow wndw = new AutomationWindow(element, window, container, user32);
 
         wndw.setTransparency(100);
 
-        verify(element, atLeastOnce()).getPropertyValue(anyInt());
+        verify(element, atLeastOnce()).getIntProperty(anyObject());
     }
 
     @Test(expected = Win32Exception.class)
@@ -266,13 +266,13 @@ public class AutomationWindowTest2 {
 
                 return 1234;
             }
-        }).when(element).getPropertyValue(anyInt());
+        }).when(element).getIntProperty(anyObject());
 
         AutomationWindow wndw = new AutomationWindow(element, window, container, user32);
 
         wndw.setTransparency(100);
 
-        verify(element, atLeastOnce()).getPropertyValue(anyInt());
+        verify(element, atLeastOnce()).getIntProperty(anyObject());
     }
 
     @Test(expected = Win32Exception.class)
@@ -302,13 +302,13 @@ public class AutomationWindowTest2 {
 
                 return 1234;
             }
-        }).when(element).getPropertyValue(anyInt());
+        }).when(element).getIntProperty(anyObject());
 
         AutomationWindow wndw = new AutomationWindow(element, window, container, user32);
 
         wndw.setTransparency(100);
 
-        verify(element, atLeastOnce()).getPropertyValue(anyInt());
+        verify(element, atLeastOnce()).getIntProperty(anyObject());
     }
 
     @Test(expected=ElementNotFoundException.class)
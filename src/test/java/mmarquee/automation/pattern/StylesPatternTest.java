@@ -1,9 +1,8 @@
 package mmarquee.automation.pattern;
 
-import com.sun.jna.Memory;
-import com.sun.jna.Native;
-import com.sun.jna.Pointer;
 import com.sun.jna.platform.win32.COM.Unknown;
+import com.sun.jna.platform.win32.OleAuto;
+import com.sun.jna.platform.win32.WTypes;
 import com.sun.jna.platform.win32.WinNT;
 import com.sun.jna.ptr.PointerByReference;
 import mmarquee.automation.AutomationException;
@@ -71,11 +70,10 @@ public class StylesPatternTest {
                 Object[] args = invocation.getArguments();
                 PointerByReference reference = (PointerByReference)args[0];
 
-                String value = "Hello";
-                Pointer pointer = new Memory(Native.WCHAR_SIZE * (value.length() +1));
-                pointer.setWideString(0, value);
+                // The caller frees the string, so it has to be a real BSTR
+                WTypes.BSTR value = OleAuto.INSTANCE.SysAllocString("Hello");
 
-                reference.setValue(pointer);
+                reference.setValue(value.getPointer());
 
                 return 0;
             }
@@ -150,11 +148,10 @@ public class StylesPatternTest {
                 Object[] args = invocation.getArguments();
                 PointerByReference reference = (PointerByReference)args[0];
 
-                String value = "Hello";
-                Pointer pointer = new Memory(Native.WCHAR_SIZE * (value.length() +1));
-                pointer.setWideString(0, value);
+                // The caller frees the string, so it has to be a real BSTR
+                WTypes.BSTR value = OleAuto.INSTANCE.SysAllocString("Hello");
 
-                reference.setValue(pointer);
+                reference.setValue(value.getPointer());
 
                 return 0;
             }
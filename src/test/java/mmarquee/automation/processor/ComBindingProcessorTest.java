@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation.processor;
+
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compiles small annotated interfaces with the processor, and checks what it generates.
+ */
+public class ComBindingProcessorTest {
+
+    private static class Source extends SimpleJavaFileObject {
+        private final String code;
+
+        Source(String name, String code) {
+            super(URI.create("string:///" + name.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return this.code;
+        }
+    }
+
+    private File output;
+
+    private boolean compile(String code, DiagnosticCollector<JavaFileObject> diagnostics) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, null);
+
+        this.output = Files.createTempDirectory("proxies").toFile();
+        files.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(this.output));
+        files.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singleton(this.output));
+
+        JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics,
+                Arrays.asList("-classpath", System.getProperty("java.class.path"), "-proc:only"),
+                null,
+                Collections.singleton(new Source("mmarquee.automation.uiautomation.ITest", code)));
+
+        task.setProcessors(Collections.singleton(new ComBindingProcessor()));
+
+        return task.call();
+    }
+
+    private String generated() throws IOException {
+        File proxy = new File(this.output, "mmarquee/automation/uiautomation/ITestProxy.java");
+        return new String(Files.readAllBytes(proxy.toPath()), "UTF-8");
+    }
+
+    private static boolean hasError(DiagnosticCollector<JavaFileObject> diagnostics, String text) {
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (diagnostic.getKind() == Diagnostic.Kind.ERROR && diagnostic.getMessage(null).contains(text)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Test
+    public void test_Proxy_Calls_Through_Declared_Slots() throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+
+        assertTrue(diagnostics.getDiagnostics().toString(), this.compile(
+                "package mmarquee.automation.uiautomation;\n" +
+                "@ComInterface\n" +
+                "public interface ITest extends com.sun.jna.platform.win32.COM.IUnknown {\n" +
+                "    int AddRef();\n" +
+                "    @VTableSlot(5)\n" +
+                "    int findFirst(TreeScope scope, com.sun.jna.Pointer condition, com.sun.jna.ptr.PointerByReference sr);\n" +
+                "    @VTableSlot(3)\n" +
+                "    int setFocus();\n" +
+                "}\n", diagnostics));
+
+        String proxy = this.generated();
+
+        assertTrue(proxy, proxy.contains("final class ITestProxy"));
+        assertTrue(proxy, proxy.contains("METHODS = 6;"));
+        assertTrue(proxy, proxy.contains("this.vTable[1].invokeInt(new Object[]{this.pointer})"));
+        assertTrue(proxy, proxy.contains("this.vTable[3].invokeInt(new Object[]{this.pointer})"));
+        assertTrue(proxy, proxy.contains("this.vTable[5].invokeInt(new Object[]{this.pointer, scope.value, condition, sr})"));
+        assertTrue(proxy, proxy.contains("new com.sun.jna.platform.win32.WinNT.HRESULT(this.vTable[0]"));
+    }
+
+    @Test
+    public void test_Missing_Slot_Is_An_Error() throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+
+        assertFalse(this.compile(
+                "package mmarquee.automation.uiautomation;\n" +
+                "@ComInterface\n" +
+                "public interface ITest extends com.sun.jna.platform.win32.COM.IUnknown {\n" +
+                "    int setFocus();\n" +
+                "}\n", diagnostics));
+
+        assertTrue(hasError(diagnostics, "No vtable slot for setFocus"));
+    }
+
+    @Test
+    public void test_Duplicate_Slot_Is_An_Error() throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+
+        assertFalse(this.compile(
+                "package mmarquee.automation.uiautomation;\n" +
+                "@ComInterface\n" +
+                "public interface ITest extends com.sun.jna.platform.win32.COM.IUnknown {\n" +
+                "    @VTableSlot(3)\n" +
+                "    int setFocus();\n" +
+                "    @VTableSlot(3)\n" +
+                "    int getRuntimeId(com.sun.jna.ptr.PointerByReference runtimeId);\n" +
+                "}\n", diagnostics));
+
+        assertTrue(hasError(diagnostics, "Vtable slot 3 is used by both"));
+    }
+
+    @Test
+    public void test_Alias_Shares_The_Slot() throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+
+        assertTrue(diagnostics.getDiagnostics().toString(), this.compile(
+                "package mmarquee.automation.uiautomation;\n" +
+                "@ComInterface\n" +
+                "public interface ITest extends com.sun.jna.platform.win32.COM.IUnknown {\n" +
+                "    @VTableSlot(10)\n" +
+                "    int getValue(int id, com.sun.jna.platform.win32.Variant.VARIANT.ByReference value);\n" +
+                "    @VTableSlot(value = 10, alias = true)\n" +
+                "    int getValueRaw(int id, com.sun.jna.Pointer value);\n" +
+                "}\n", diagnostics));
+
+        String proxy = this.generated();
+
+        assertTrue(proxy, proxy.contains("METHODS = 11;"));
+        assertTrue(proxy, proxy.contains("getValue(int id, com.sun.jna.platform.win32.Variant.VARIANT.ByReference value)"));
+        assertTrue(proxy, proxy.contains("getValueRaw(int id, com.sun.jna.Pointer value)"));
+        assertFalse(proxy, proxy.contains("this.vTable[11]"));
+    }
+
+    @Test
+    public void test_Alias_Without_A_Binding_Is_An_Error() throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+
+        assertFalse(this.compile(
+                "package mmarquee.automation.uiautomation;\n" +
+                "@ComInterface\n" +
+                "public interface ITest extends com.sun.jna.platform.win32.COM.IUnknown {\n" +
+                "    @VTableSlot(value = 4, alias = true)\n" +
+                "    int getValueRaw(int id, com.sun.jna.Pointer value);\n" +
+                "}\n", diagnostics));
+
+        assertTrue(hasError(diagnostics, "Vtable slot 4 has no binding for the alias getValueRaw"));
+    }
+}
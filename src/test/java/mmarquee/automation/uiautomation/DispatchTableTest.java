@@ -0,0 +1,84 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation.uiautomation;
+
+import com.sun.jna.Function;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for the shared dispatch tables, using fake vtables (the slots are never called).
+ */
+public class DispatchTableTest {
+
+    private static Memory fakeVTable(int slots) {
+        Memory vTable = new Memory(slots * Native.POINTER_SIZE);
+
+        for (int slot = 0; slot < slots; slot++) {
+            // Any non-null address will do, nothing is invoked
+            vTable.setPointer(slot * Native.POINTER_SIZE, new Pointer(0x1000 + slot));
+        }
+
+        return vTable;
+    }
+
+    private static Memory fakeObject(Memory vTable) {
+        Memory object = new Memory(Native.POINTER_SIZE);
+        object.setPointer(0, vTable);
+        return object;
+    }
+
+    @Test
+    public void test_Objects_With_The_Same_VTable_Share_The_Table() {
+        Memory vTable = fakeVTable(10);
+
+        Function[] first = DispatchTable.of(fakeObject(vTable), 10);
+        Function[] second = DispatchTable.of(fakeObject(vTable), 10);
+
+        assertSame(first, second);
+        assertEquals(10, first.length);
+        assertEquals(new Pointer(0x1000 + 4), first[4]);
+    }
+
+    @Test
+    public void test_Different_VTables_Get_Different_Tables() {
+        Function[] first = DispatchTable.of(fakeObject(fakeVTable(5)), 5);
+        Function[] second = DispatchTable.of(fakeObject(fakeVTable(5)), 5);
+
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void test_Table_Is_Rebuilt_When_More_Slots_Are_Needed() {
+        Memory vTable = fakeVTable(20);
+        Memory object = fakeObject(vTable);
+
+        Function[] small = DispatchTable.of(object, 5);
+        Function[] large = DispatchTable.of(object, 20);
+
+        assertEquals(5, small.length);
+        assertEquals(20, large.length);
+
+        // Once the larger table has been built, it is used for smaller requests too
+        assertSame(large, DispatchTable.of(object, 5));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation.utils;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.PointerByReference;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for the BSTR decoding, using BSTRs laid out in Java-allocated memory (which are never freed).
+ */
+public class BSTRUtilsTest {
+
+    /**
+     * Lays out a BSTR, i.e. the length in bytes, then the UTF-16 characters and a terminator
+     */
+    private static Memory fakeBSTR(String value) {
+        Memory memory = new Memory(4 + (value.length() + 1) * 2);
+        memory.clear();
+        memory.setInt(0, value.length() * 2);
+
+        for (int index = 0; index < value.length(); index++) {
+            memory.setShort(4 + index * 2, (short)value.charAt(index));
+        }
+
+        return memory;
+    }
+
+    private static Pointer characters(Memory bstr) {
+        return new Pointer(Pointer.nativeValue(bstr) + 4);
+    }
+
+    @Test
+    public void test_Decode_Uses_The_Length_Prefix() {
+        Memory bstr = fakeBSTR("Embedded\u0000Null");
+
+        assertEquals("Embedded\u0000Null", BSTRUtils.decode(characters(bstr), false));
+    }
+
+    @Test
+    public void test_Decode_Empty_String() {
+        Memory bstr = fakeBSTR("");
+
+        assertEquals("", BSTRUtils.decode(characters(bstr), false));
+    }
+
+    @Test
+    public void test_Decode_Longer_Than_The_Buffer() {
+        StringBuilder builder = new StringBuilder();
+
+        for (int index = 0; index < 20000; index++) {
+            builder.append((char)('a' + index % 26));
+        }
+
+        Memory bstr = fakeBSTR(builder.toString());
+
+        assertEquals(builder.toString(), BSTRUtils.decode(characters(bstr), false));
+    }
+
+    @Test
+    public void test_Interned_Values_Are_Shared() {
+        Memory first = fakeBSTR("WindowsForms10.Window.8.app");
+        Memory second = fakeBSTR("WindowsForms10.Window.8.app");
+
+        String firstValue = BSTRUtils.decode(characters(first), true);
+        String secondValue = BSTRUtils.decode(characters(second), true);
+
+        assertEquals("WindowsForms10.Window.8.app", firstValue);
+        assertSame(firstValue, secondValue);
+    }
+
+    @Test
+    public void test_Values_Are_Not_Shared_Unless_Interned() {
+        Memory bstr = fakeBSTR("Button");
+
+        assertNotSame(BSTRUtils.decode(characters(bstr), false), BSTRUtils.decode(characters(bstr), false));
+    }
+
+    @Test
+    public void test_Read_Null_Is_Empty() {
+        assertEquals("", BSTRUtils.read(new PointerByReference()));
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for the bounded intern table.
+ */
+public class InternTableTest {
+
+    @Test
+    public void test_Same_Characters_Give_Same_String() {
+        InternTable table = new InternTable(16, 32);
+
+        String first = table.intern("Edit".toCharArray(), 4);
+        String second = table.intern("Edit".toCharArray(), 4);
+
+        assertEquals("Edit", first);
+        assertSame(first, second);
+    }
+
+    @Test
+    public void test_Only_The_Given_Length_Is_Used() {
+        InternTable table = new InternTable(16, 32);
+
+        assertEquals("Edit", table.intern("EditBox".toCharArray(), 4));
+    }
+
+    @Test
+    public void test_Long_Values_Are_Not_Interned() {
+        InternTable table = new InternTable(16, 4);
+
+        String first = table.intern("Button".toCharArray(), 6);
+        String second = table.intern("Button".toCharArray(), 6);
+
+        assertEquals("Button", first);
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void test_Table_Is_Bounded() {
+        // A single slot, so each new value replaces the last one
+        InternTable table = new InternTable(1, 32);
+
+        String edit = table.intern("Edit".toCharArray(), 4);
+        table.intern("Button".toCharArray(), 6);
+
+        assertNotSame(edit, table.intern("Edit".toCharArray(), 4));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016-17 inpwtepydjuf@gmail.com
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package mmarquee.automation.utils;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.win32.Variant;
+import mmarquee.automation.AutomationException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for reading values out of VARIANTs, using the types that hold nothing to release.
+ */
+public class VariantUtilsTest {
+
+    private static Pointer variant(int type) {
+        Pointer variant = VariantUtils.buffer();
+        variant.setShort(0, (short)type);
+        return variant;
+    }
+
+    @Test
+    public void test_Buffer_Is_Empty() {
+        assertEquals(Variant.VT_EMPTY, VariantUtils.getType(VariantUtils.buffer()));
+    }
+
+    @Test
+    public void test_Buffer_Is_Reused_By_The_Thread() {
+        assertTrue(VariantUtils.buffer() == VariantUtils.buffer());
+    }
+
+    @Test
+    public void test_getBoolean_Reads_VARIANT_BOOL() throws Exception {
+        Pointer variant = variant(Variant.VT_BOOL);
+        variant.setShort(8, (short)-1);
+
+        assertTrue(VariantUtils.getBoolean(variant));
+
+        variant = variant(Variant.VT_BOOL);
+        variant.setShort(8, (short)0);
+
+        assertFalse(VariantUtils.getBoolean(variant));
+    }
+
+    @Test
+    public void test_getInt_Reads_I4() throws Exception {
+        Pointer variant = variant(Variant.VT_I4);
+        variant.setInt(8, 50033);
+
+        assertEquals(50033, VariantUtils.getInt(variant));
+    }
+
+    @Test
+    public void test_getDouble_Reads_R8() throws Exception {
+        Pointer variant = variant(Variant.VT_R8);
+        variant.setDouble(8, 12.5);
+
+        assertEquals(12.5, VariantUtils.getDouble(variant), 0.0);
+    }
+
+    @Test
+    public void test_Empty_Variant_Reads_As_Default() throws Exception {
+        assertFalse(VariantUtils.getBoolean(variant(Variant.VT_EMPTY)));
+        assertEquals(0, VariantUtils.getInt(variant(Variant.VT_EMPTY)));
+        assertEquals(0.0, VariantUtils.getDouble(variant(Variant.VT_EMPTY)), 0.0);
+    }
+
+    @Test(expected = AutomationException.class)
+    public void test_Unexpected_Type_Throws_Exception() throws Exception {
+        // VT_DATE
+        VariantUtils.getInt(variant(7));
+    }
+}